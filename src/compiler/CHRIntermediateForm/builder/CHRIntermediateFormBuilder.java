@@ -1624,6 +1624,38 @@ public class CHRIntermediateFormBuilder extends
         getDebugInfo().specifyRule(currentRule.get());
     }
     
+    public void beginPriorityPragma() throws BuilderException {
+        try {
+            currentCBS.set(new PriorityBuildingStrategy());
+        } catch (IllegalStateException ise) {
+            throw new BuilderException(ise);
+        }
+    }
+    
+    public void endPriorityPragma() throws BuilderException {
+        try {
+            final IArgument priority = 
+                ((PriorityBuildingStrategy)currentCBS.get()).getPriority();
+            resetCurrentCBS();
+            currentRule.get().setPriority(priority);
+            
+        } catch (IllegalStateException ise) {
+            throw new BuilderException(ise);
+        } catch (IllegalArgumentException iae) {
+            throw new BuilderException(iae);
+        } catch (UnsupportedOperationException uoe) {
+            throw new BuilderException(uoe);
+        }
+    }
+    
+    public void addPartitionPragma(String id) throws BuilderException {
+        try {
+            currentRule.get().setPartitionKey(getNamedVariable(id));
+        } catch (IllegalStateException ise) {
+            throw new BuilderException(ise);
+        }
+    }
+    
     public void endPragmas() throws BuilderException {
         // NOP
     }
@@ -3211,6 +3243,32 @@ public class CHRIntermediateFormBuilder extends
         }
     }
     
+    /**
+     * Builds the argument of a <code>priority</code> pragma. This is
+     * either a constant, or an expression over the variables of the 
+     * positive head of the rule (e.g. a variable or a method invocation),
+     * which is evaluated each time the rule fires.
+     */
+    protected class PriorityBuildingStrategy extends GuardConjunctBuildingStrategy {
+        
+        public PriorityBuildingStrategy() {
+            // collects the (single) argument of the pragma:
+            push(SIMPLE_ID);
+        }
+        
+        public IArgument getPriority() throws BuilderException {
+            try {
+                final ConjunctBuildingBlock result = pop(SIMPLE_ID);
+                if (result.getArity() != 1)
+                    throw new BuilderException("Illegal rule priority");
+                return result.getArgumentAt(0);
+                
+            } catch (IllegalStateException ise) {
+                throw new BuilderException(ise);
+            }
+        }
+    }
+    
     protected class ImplicitGuardConjunctBuildingStrategy extends GuardConjunctBuildingStrategy {
 
         /**
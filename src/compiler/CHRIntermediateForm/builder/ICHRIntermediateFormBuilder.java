@@ -247,6 +247,11 @@ public interface ICHRIntermediateFormBuilder<Result> extends IBuilder<Result> {
                     public void addNoHistoryPragma() throws BuilderException;
                     
                     public void addDebugPragma() throws BuilderException;
+                    
+                    public void beginPriorityPragma() throws BuilderException;
+                    public void endPriorityPragma() throws BuilderException;
+                    
+                    public void addPartitionPragma(String id) throws BuilderException;
                 
                 public void endPragmas() throws BuilderException;
                     
@@ -99,6 +99,18 @@ public abstract class Comparison extends NoSolverConstraint {
     	return getArgumentType().getErasure();
     }
     
+    /**
+     * Checks whether this comparison compares its arguments using their 
+     * natural ordering (i.e. using {@link Comparable#compareTo(Object)}),
+     * rather than using an explicit comparator.
+     * 
+     * @return <code>true</code> iff this comparison uses the natural 
+     *  ordering of its arguments; <code>false</code> otherwise.
+     */
+    public boolean isNaturalOrdering() {
+        return false;
+    }
+    
     private static class ComparableComparison extends Comparison {
         protected final static TypeVariable<?> TYPE_VARIABLE = Comparable.class.getTypeParameters()[0];
         
@@ -125,6 +137,11 @@ public abstract class Comparison extends NoSolverConstraint {
 			}
         }
         
+        @Override
+        public boolean isNaturalOrdering() {
+            return true;
+        }
+        
         @Override
         public boolean equals(NoSolverConstraint other) {
             return (other instanceof ComparableComparison) 
@@ -78,6 +78,8 @@ public class UserDefinedConstraint
     
     private boolean idempotent;
     
+    private int partitionIndex = -1;
+    
     private FunctionalDependencies functionalDependencies;
     
     private int modifiers;
@@ -588,7 +590,29 @@ public class UserDefinedConstraint
     public void setRecursive(boolean recursive) {
 		this.recursive = recursive;
 	}
-    
+
+    private boolean recyclable;
+
+    /**
+     * Can objects representing this constraint be reused once
+     * they have been activated (or, if they may be stored, once they
+     * have been removed)? This is only the case if no iterator,
+     * propagation history or other reference can observe a constraint
+     * after its activation has finished (note that this method
+     * is conservative: if no analysis is performed, the result
+     * will be <code>false</code>).
+     *
+     * @return <code>true</code> if it is known that constraint
+     * objects of this constraint can be recycled,
+     * <code>false</code> otherwise.
+     */
+    public boolean isRecyclable() {
+    	return recyclable;
+    }
+    public void setRecyclable(boolean recyclable) {
+    	this.recyclable = recyclable;
+    }
+
     public void setRemovees(Set<UserDefinedConstraint> removees) {
 		this.removees = removees;
 	}
@@ -629,4 +653,23 @@ public class UserDefinedConstraint
     public boolean isIdempotent() {
     	return idempotent;
     }
+    
+    /**
+     * Returns the index of the argument on which the constraint store 
+     * of this constraint is partitioned, or <code>-1</code> if it is 
+     * not partitioned. All heads of all rules share the partitioning
+     * arguments of their occurrences, so constraints with different 
+     * partitioning arguments never interact.
+     */
+    public int getPartitionIndex() {
+    	return partitionIndex;
+    }
+    public boolean isPartitioned() {
+    	return partitionIndex >= 0;
+    }
+    public void setPartitionIndex(int partitionIndex) throws IndexOutOfBoundsException {
+    	if (partitionIndex >= getArity())
+    		throw new IndexOutOfBoundsException(String.valueOf(partitionIndex));
+    	this.partitionIndex = partitionIndex;
+    }
 }
\ No newline at end of file
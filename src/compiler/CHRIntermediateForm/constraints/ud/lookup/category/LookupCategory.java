@@ -102,6 +102,7 @@ public class LookupCategory implements ILookupCategory, Cloneable<LookupCategory
     @Override
     public boolean equals(Object other) {
         return (other instanceof ILookupCategory)
+            && this.getIndexType().isOrdered() == ((ILookupCategory)other).getIndexType().isOrdered()
             && Arrays.equals(this.getVariableIndices(), ((ILookupCategory)other).getVariableIndices());
     }
     
@@ -1,7 +1,7 @@
 package compiler.CHRIntermediateForm.constraints.ud.lookup.type;
 
 public enum IndexType {
-    DEFAULT, NEVER_STORED, HASH_MAP, SS_HASH_MAP, FD_SS_HASH_MAP;
+    DEFAULT, NEVER_STORED, HASH_MAP, SS_HASH_MAP, FD_SS_HASH_MAP, RANGE, ARRAY;
     
     public boolean mayReturnNull() {
     	return this != DEFAULT;
@@ -10,4 +10,16 @@ public enum IndexType {
     public boolean isSetSemantics() {
     	return this == SS_HASH_MAP || this == FD_SS_HASH_MAP;
     }
+    
+    public boolean isOrdered() {
+    	return this == RANGE;
+    }
+    
+    /**
+     * Do lookups on indexes of this type return the constraint lists
+     * the constraints are stored in (instead of some other iterable)?
+     */
+    public boolean returnsConstraintLists() {
+    	return this == DEFAULT || this == HASH_MAP || this == ARRAY;
+    }
 }
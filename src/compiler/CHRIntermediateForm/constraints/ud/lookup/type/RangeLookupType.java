@@ -0,0 +1,117 @@
+package compiler.CHRIntermediateForm.constraints.ud.lookup.type;
+
+import static compiler.CHRIntermediateForm.arg.visitor.VariableCollector.collectVariables;
+import static util.collections.CollectionUtils.disjoint;
+
+import compiler.CHRIntermediateForm.arg.argument.IArgument;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.types.IType;
+
+/**
+ * The type of a lookup on an ordered index: the lookup returns all
+ * constraints whose argument at a given index lies within a range,
+ * bounded from below, from above, or both.
+ */
+public class RangeLookupType extends LookupType {
+
+    private int variableIndex;
+
+    private IType keyType;
+
+    private IArgument lowerBound, upperBound;
+
+    private boolean lowerInclusive, upperInclusive;
+
+    public RangeLookupType(int variableIndex, IType keyType) {
+        super(IndexType.RANGE);
+        setVariableIndex(variableIndex);
+        setKeyType(keyType);
+    }
+
+    public int getVariableIndex() {
+        return variableIndex;
+    }
+    protected void setVariableIndex(int variableIndex) {
+        this.variableIndex = variableIndex;
+    }
+
+    public int[] getVariableIndices() {
+        return new int[] { getVariableIndex() };
+    }
+
+    public IType getKeyType() {
+        return keyType;
+    }
+    protected void setKeyType(IType keyType) {
+        this.keyType = keyType;
+    }
+
+    public void setLowerBound(IArgument lowerBound, boolean inclusive) {
+        this.lowerBound = lowerBound;
+        this.lowerInclusive = inclusive;
+    }
+    public IArgument getLowerBound() {
+        return lowerBound;
+    }
+    public boolean hasLowerBound() {
+        return lowerBound != null;
+    }
+    public boolean isLowerInclusive() {
+        return lowerInclusive;
+    }
+
+    public void setUpperBound(IArgument upperBound, boolean inclusive) {
+        this.upperBound = upperBound;
+        this.upperInclusive = inclusive;
+    }
+    public IArgument getUpperBound() {
+        return upperBound;
+    }
+    public boolean hasUpperBound() {
+        return upperBound != null;
+    }
+    public boolean isUpperInclusive() {
+        return upperInclusive;
+    }
+
+    public int getNbBounds() {
+        return (hasLowerBound()? 1 : 0) + (hasUpperBound()? 1 : 0);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return (other instanceof RangeLookupType)
+            && this.equals((RangeLookupType)other);
+    }
+
+    public boolean equals(RangeLookupType other) {
+        return super.equals(other)
+            && this.hasLowerBound() == other.hasLowerBound()
+            && this.hasUpperBound() == other.hasUpperBound()
+            && (!this.hasLowerBound() || this.isLowerInclusive() == other.isLowerInclusive())
+            && (!this.hasUpperBound() || this.isUpperInclusive() == other.isUpperInclusive());
+    }
+
+    @Override
+    public int hashCode() {
+        int result = 37 * 23 + getIndexType().hashCode();
+        result = 37 * result + getVariableIndex();
+        result = 37 * result + (hasLowerBound()? (isLowerInclusive()? 1 : 2) : 0);
+        return 37 * result + (hasUpperBound()? (isUpperInclusive()? 1 : 2) : 0);
+    }
+
+    public boolean isSeededBy(Occurrence occurrence) {
+        return (hasLowerBound() && !disjoint(occurrence.getVariables(), collectVariables(getLowerBound())))
+            || (hasUpperBound() && !disjoint(occurrence.getVariables(), collectVariables(getUpperBound())));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append(getIndexType()).append(':');
+        result.append(hasLowerBound()? (isLowerInclusive()? '[' : '(') : '<');
+        result.append(getVariableIndex());
+        result.append(hasUpperBound()? (isUpperInclusive()? ']' : ')') : '>');
+        return result.toString();
+    }
+}
@@ -61,6 +61,8 @@ implements IScheduleVisitable, Iterable<IScheduleElement> {
             protected IVariableInfoQueue createImplicitVariableInfos2() {
             	final SortedSet<Variable> used = new TreeSet<Variable>();
     			VariableCollector.collectVariables(occurrence.getBody(), used);
+    			if (occurrence.getRule().hasPriority())
+    				VariableCollector.collectVariables(occurrence.getRule().getPriority(), used);
         		ScheduleVariableCollector.collectVariables(occurrence, used);
         		
         		IVariableInfoQueue result = DefaultVariableInfoQueue.createPositiveInstance(occurrence);
@@ -9,6 +9,7 @@ import annotations.JCHR_Fixed;
 import util.Terminatable;
 import util.iterator.IteratorUtilities;
 
+import compiler.CHRIntermediateForm.arg.argument.IArgument;
 import compiler.CHRIntermediateForm.arg.visitor.IArgumentVisitable;
 import compiler.CHRIntermediateForm.arg.visitor.IArgumentVisitor;
 import compiler.CHRIntermediateForm.arg.visitor.ILeafArgumentVisitor;
@@ -19,6 +20,8 @@ import compiler.CHRIntermediateForm.conjuncts.IGuardConjunctVisitor;
 import compiler.CHRIntermediateForm.exceptions.IllegalIdentifierException;
 import compiler.CHRIntermediateForm.id.AbstractIdentified;
 import compiler.CHRIntermediateForm.id.Identifier;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
+import compiler.CHRIntermediateForm.variables.Variable;
 
 /**
  * @author Peter Van Weert
@@ -187,12 +190,14 @@ implements Comparable<Rule>,
         for (NegativeHead head : getNegativeHeadsRef())
             head.accept(visitor);
         getBody().accept(visitor);
+        if (hasPriority()) getPriority().accept(visitor);
     }
     public void accept(ILeafArgumentVisitor visitor) throws Exception {
         getPositiveHead().accept(visitor);
         for (NegativeHead head : getNegativeHeadsRef())
             head.accept(visitor);
         getBody().accept(visitor);
+        if (hasPriority()) getPriority().accept(visitor);
     }
     
     /**
@@ -225,7 +230,55 @@ implements Comparable<Rule>,
     }
     
     public abstract void setNoHistory();
-    
+
+    private IArgument priority;
+
+    /**
+     * Returns the priority of this rule, as specified by a
+     * <code>priority</code> pragma, or <code>null</code> if no priority
+     * was specified. The priority is an <code>int</code> expression:
+     * a constant, or an expression over the variables of the positive head,
+     * which is evaluated each time the rule fires. Lower values denote
+     * higher priorities. The user-defined constraints told by
+     * the body of a rule with a priority are not activated immediately,
+     * but only once no constraints told by rule firings of a higher
+     * priority remain to be activated. Note that priorities thus order
+     * the activation of the constraints told by rule firings, and not
+     * the firings themselves: the rule instances found by an activation
+     * are still tried in the refined (textual) order.
+     *
+     * @return The priority of this rule, or <code>null</code>.
+     */
+    public IArgument getPriority() {
+        return priority;
+    }
+    public boolean hasPriority() {
+        return priority != null;
+    }
+    public void setPriority(IArgument priority) throws IllegalArgumentException {
+        if (! priority.getType().isDirectlyAssignableTo(PrimitiveType.INT))
+            throw new IllegalArgumentException("Illegal rule priority: " + priority);
+        this.priority = priority;
+    }
+
+    private Variable partitionKey;
+
+    /**
+     * Returns the variable named by the <code>partition</code> pragma
+     * of this rule, or <code>null</code> if it has none. If the
+     * constraint store is partitioned, the partitioning arguments of
+     * all heads of this rule have to be this variable (see
+     * {@link compiler.analysis.partitioning.PartitioningAnalysis}).
+     *
+     * @return The partitioning key of this rule, or <code>null</code>.
+     */
+    public Variable getPartitionKey() {
+        return partitionKey;
+    }
+    public void setPartitionKey(Variable partitionKey) {
+        this.partitionKey = partitionKey;
+    }
+
     public abstract boolean needsHistory();
     
     /**
@@ -7,8 +7,11 @@ import compiler.analysis.indexselection.LookupCategorizer;
 import compiler.analysis.join.JoinAnalysor;
 import compiler.analysis.joinordering.GreedyJoinOrderer;
 import compiler.analysis.observation.ObservationAnalysis;
+import compiler.analysis.partitioning.PartitioningAnalysis;
 import compiler.analysis.passiveness.PassivenessFacade;
+import compiler.analysis.profile.RuntimeProfile;
 import compiler.analysis.reactiveness.ReactivenessAnalysis;
+import compiler.analysis.recycling.RecyclingAnalysis;
 import compiler.analysis.removal.RemovalAnalysor;
 import compiler.analysis.setsemantics.SetSemanticsDetection;
 import compiler.analysis.stack.RecursionAnalysor;
@@ -35,12 +38,15 @@ public final class Analysis {
         new ReactivenessAnalysis(cif, options).doAnalysis();
         new SetSemanticsDetection(cif, options).doAnalysis();
         new JoinAnalysor(cif, options).doAnalysis();
-        new GreedyJoinOrderer(cif, options).doAnalysis();
-        new GreedyHashLookupInsertor(cif, options).doAnalysis();
+        RuntimeProfile profile = RuntimeProfile.getInstance(options);
+        new GreedyJoinOrderer(cif, options, profile).doAnalysis();
+        new GreedyHashLookupInsertor(cif, options, profile).doAnalysis();
         new LookupCategorizer(cif, options).doAnalysis();
         new HistoryAnalysis(cif, options).doAnalysis();
         new RecursionAnalysor(cif, options).doAnalysis();
         new RemovalAnalysor(cif, options).doAnalysis();
+        new RecyclingAnalysis(cif, options).doAnalysis();
+        new PartitioningAnalysis(cif, options).doAnalysis();
         new ValidityTest(cif, options).doAnalysis();
     }
 }
\ No newline at end of file
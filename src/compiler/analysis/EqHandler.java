@@ -752,7 +752,7 @@ public class EqHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -854,7 +854,7 @@ public class EqHandler extends Handler {
 			compiler.CHRIntermediateForm.arg.argument.IArgument X = this.$0;
 			compiler.CHRIntermediateForm.arg.argument.IArgument Y = this.$1;
 			stored = true;
-			ID = IDcounter++;
+			ID = $$constraintSystem.nextConstraintId();
 			int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 			hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 			hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -884,7 +884,7 @@ public class EqHandler extends Handler {
 							compiler.CHRIntermediateForm.arg.argument.IArgument X = eq_6.$0;
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -923,7 +923,7 @@ public class EqHandler extends Handler {
 							compiler.CHRIntermediateForm.arg.argument.IArgument Z = eq_5.$1;
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -954,7 +954,7 @@ public class EqHandler extends Handler {
 				if ((continuation = eq_6()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
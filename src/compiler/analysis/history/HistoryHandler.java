@@ -2521,7 +2521,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2648,7 +2648,7 @@ class HistoryHandler extends Handler {
 							|| !$$$rule_4_history.insert(tells_6.ID))) {
 							compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint X = tells_6.$0;
 							stored = true;
-							ID = IDcounter++;
+							ID = $$constraintSystem.nextConstraintId();
 							int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 							hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 							hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2686,7 +2686,7 @@ class HistoryHandler extends Handler {
 							compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Z = tells_5.$1;
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2717,7 +2717,7 @@ class HistoryHandler extends Handler {
 				if ((continuation = tells_6()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2902,7 +2902,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3034,7 +3034,7 @@ class HistoryHandler extends Handler {
 					tells_7 = tells_7_iter.next();
 					compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Y = tells_7.$1;
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3060,7 +3060,7 @@ class HistoryHandler extends Handler {
 				if ((continuation = tell_5()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3162,7 +3162,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeReset_self(Reset_selfConstraint.this);
 			}
 		}
@@ -3270,7 +3270,7 @@ class HistoryHandler extends Handler {
 			if (reset_self_1() && reset_self_2() && reset_self_3()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeReset_self(Reset_selfConstraint.this);
 				}
 			}
@@ -3282,7 +3282,7 @@ class HistoryHandler extends Handler {
 			if (reset_self_1() && reset_self_2() && reset_self_3()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeReset_self(Reset_selfConstraint.this);
 				}
 			}
@@ -3676,7 +3676,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storePessimistic(PessimisticConstraint.this);
 			}
 		}
@@ -3780,7 +3780,7 @@ class HistoryHandler extends Handler {
 			if (pessimistic_1() && pessimistic_2()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storePessimistic(PessimisticConstraint.this);
 				}
 			}
@@ -3792,7 +3792,7 @@ class HistoryHandler extends Handler {
 			if (pessimistic_1() && pessimistic_2()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storePessimistic(PessimisticConstraint.this);
 				}
 			}
@@ -3845,7 +3845,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeTell_self(Tell_selfConstraint.this);
 			}
 		}
@@ -3930,7 +3930,7 @@ class HistoryHandler extends Handler {
 			if (tell_self_1()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeTell_self(Tell_selfConstraint.this);
 				}
 			}
@@ -3942,7 +3942,7 @@ class HistoryHandler extends Handler {
 			if (tell_self_1()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeTell_self(Tell_selfConstraint.this);
 				}
 			}
@@ -3995,7 +3995,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storePessimistic_self(Pessimistic_selfConstraint.this);
 			}
 		}
@@ -4076,7 +4076,7 @@ class HistoryHandler extends Handler {
 			if (pessimistic_self_1()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storePessimistic_self(Pessimistic_selfConstraint.this);
 				}
 			}
@@ -4088,7 +4088,7 @@ class HistoryHandler extends Handler {
 			if (pessimistic_self_1()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storePessimistic_self(Pessimistic_selfConstraint.this);
 				}
 			}
@@ -4138,7 +4138,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeSelf(SelfConstraint.this);
 			}
 		}
@@ -4220,7 +4220,7 @@ class HistoryHandler extends Handler {
 			if (self_3()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeSelf(SelfConstraint.this);
 				}
 			}
@@ -4232,7 +4232,7 @@ class HistoryHandler extends Handler {
 			if (self_3()) {
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeSelf(SelfConstraint.this);
 				}
 			}
@@ -4285,7 +4285,7 @@ class HistoryHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -4381,7 +4381,7 @@ class HistoryHandler extends Handler {
 					tells_2 = tells_2_iter.next();
 					compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint X = tells_2.$0;
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -4407,7 +4407,7 @@ class HistoryHandler extends Handler {
 				if ((continuation = unknown_4()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1,5 +1,10 @@
 package compiler.analysis.indexselection;
 
+import static compiler.CHRIntermediateForm.constraints.bi.IBuiltInConstraint.GEQ;
+import static compiler.CHRIntermediateForm.constraints.bi.IBuiltInConstraint.GT;
+import static compiler.CHRIntermediateForm.constraints.bi.IBuiltInConstraint.LEQ;
+import static compiler.CHRIntermediateForm.constraints.bi.IBuiltInConstraint.LT;
+import static compiler.CHRIntermediateForm.constraints.ud.lookup.type.IndexType.ARRAY;
 import static compiler.CHRIntermediateForm.constraints.ud.lookup.type.IndexType.FD_SS_HASH_MAP;
 import static compiler.CHRIntermediateForm.constraints.ud.lookup.type.IndexType.HASH_MAP;
 import static compiler.CHRIntermediateForm.constraints.ud.lookup.type.IndexType.SS_HASH_MAP;
@@ -28,6 +33,9 @@ import compiler.CHRIntermediateForm.arg.visitor.AbstractVariableScanner;
 import compiler.CHRIntermediateForm.arg.visitor.UpCastingArgumentVisitor;
 import compiler.CHRIntermediateForm.conjuncts.IGuardConjunct;
 import compiler.CHRIntermediateForm.conjuncts.ImplicitGuardConjunct;
+import compiler.CHRIntermediateForm.constraints.java.Comparison;
+import compiler.CHRIntermediateForm.constraints.java.NoSolverConjunct;
+import compiler.CHRIntermediateForm.constraints.java.NoSolverConstraint;
 import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
 import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.BasicLookup;
@@ -35,31 +43,71 @@ import compiler.CHRIntermediateForm.constraints.ud.lookup.Lookup;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.type.BinaryGuardedLookupType;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.type.DefaultLookupType;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.type.ILookupType;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.RangeLookupType;
 import compiler.CHRIntermediateForm.constraints.ud.schedule.AbstractScheduleVisitor;
 import compiler.CHRIntermediateForm.constraints.ud.schedule.IScheduleElement;
 import compiler.CHRIntermediateForm.constraints.ud.schedule.IScheduled;
 import compiler.CHRIntermediateForm.constraints.ud.schedule.ISelector;
 import compiler.CHRIntermediateForm.constraints.ud.schedule.ScheduleElements;
+import compiler.CHRIntermediateForm.members.MethodInvocation;
 import compiler.CHRIntermediateForm.rulez.NegativeHead;
 import compiler.CHRIntermediateForm.rulez.Rule;
+import compiler.CHRIntermediateForm.types.IType;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
+import compiler.CHRIntermediateForm.variables.FormalVariable;
 import compiler.CHRIntermediateForm.variables.NamelessVariable;
 import compiler.CHRIntermediateForm.variables.Variable;
+import compiler.CHRIntermediateForm.variables.VariableType;
 import compiler.analysis.AnalysisException;
 import compiler.analysis.CifAnalysor;
+import compiler.analysis.profile.RuntimeProfile;
 import compiler.options.Options;
 
 public class GreedyHashLookupInsertor extends CifAnalysor {
 
+    /**
+     * Constraints whose stores are measured to be at most this large 
+     * (on average) are not indexed: scanning a handful of constraints is
+     * cheaper than maintaining an index on each storage and removal.
+     */
+    public final static float SMALL_STORE_SIZE = 4;
+    
+    /**
+     * The cardinalities measured at runtime.
+     */
+    private final RuntimeProfile profile;
+    
+    private int nbUnindexed;
+    
     public GreedyHashLookupInsertor(ICHRIntermediateForm intermediateForm, Options options) {
+        this(intermediateForm, options, RuntimeProfile.EMPTY);
+    }
+    
+    public GreedyHashLookupInsertor(ICHRIntermediateForm intermediateForm, Options options, RuntimeProfile profile) {
         super(intermediateForm, options);
+        this.profile = profile;
     }
 
     @Override
     public boolean doAnalysis() throws AnalysisException {
-        if (getOptions().hashIndexing()) analyseRules();
+        if (getOptions().hashIndexing()) {
+            analyseRules();
+            printResult();
+        }
         return true;
     }
     
+    public void printResult() {
+        switch (nbUnindexed) {
+            case 0: break;
+            case 1: 
+                System.out.println(" --> optimization: one lookup in a small store (according to the join profile) is not indexed");
+            break;
+            default:
+                System.out.printf(" --> optimization: %d lookups in small stores (according to the join profile) are not indexed%n", nbUnindexed);
+        }
+    }
+    
     @Override
     protected void analyse(Rule rule) throws AnalysisException {
         for (Occurrence occurrence : rule.getPositiveHead())
@@ -70,7 +118,10 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
     
     protected void analyse(IScheduled scheduled) throws AnalysisException {
         try {
-            new ScheduleConstructor(scheduled).construct();
+            ScheduleConstructor constructor = 
+                new ScheduleConstructor(scheduled, getOptions().doTrailing(), profile);
+            constructor.construct();
+            nbUnindexed += constructor.getNbUnindexed();
         } catch (BuilderException be) {
             throw new AnalysisException(be);
         }
@@ -86,8 +137,30 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
 
         private HashLookupBuilder builder;
         
+        private final RuntimeProfile profile;
+        
+        private int nbUnindexed;
+        
         public ScheduleConstructor(IScheduled scheduled) {
-            setBuilder(new HashLookupBuilder());
+            this(scheduled, false);
+        }
+        
+        public ScheduleConstructor(IScheduled scheduled, boolean onlyFixed) {
+            this(scheduled, onlyFixed, RuntimeProfile.EMPTY);
+        }
+        
+        /**
+         * @param onlyFixed
+         *  Whether only fixed arguments can be looked up in hash indexes.
+         *  This is the case if changes have to be trailed: the keys of 
+         *  constraints whose arguments are unified cannot be restored.
+         * @param profile
+         *  The cardinalities measured at runtime: lookups in stores that
+         *  are known to be small are not indexed.
+         */
+        public ScheduleConstructor(IScheduled scheduled, boolean onlyFixed, RuntimeProfile profile) {
+            this.profile = profile;
+            setBuilder(new HashLookupBuilder(onlyFixed));
             setScheduled(scheduled);
             setScheduleElements(new ScheduleElements(
                 scheduled.getScheduleElements()
@@ -119,6 +192,19 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
         public HashLookupBuilder getBuilder() {
             return builder;
         }
+        
+        /**
+         * Returns the number of lookups that were not indexed because
+         * the store they look in is known to be small.
+         */
+        public int getNbUnindexed() {
+            return nbUnindexed;
+        }
+        
+        protected boolean isSmallStore(Lookup lookup) {
+            float size = profile.getStoreSize(lookup.getConstraint());
+            return size <= SMALL_STORE_SIZE;    // false if unknown (NaN)
+        }
         protected void setBuilder(HashLookupBuilder builder) {
             this.builder = builder;
         }
@@ -174,7 +260,10 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
             
             if (lookup.getLookupType() != DefaultLookupType.getInstance())
                 add(lookup);
-            else
+            else if (isSmallStore(lookup)) {
+                nbUnindexed++;
+                add(lookup);
+            } else
                 getBuilder().buildLookup(lookup);
         }
     }
@@ -186,8 +275,18 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
         private Lookup result; 
         
         private GuardIncorporationInfo[] guardIncorporationInfos;
+        private List<RangeGuardInfo> rangeGuardInfos = new ArrayList<RangeGuardInfo>();
         private List<ISelector> remainingSelectors = new ArrayList<ISelector>();
         
+        private final boolean onlyFixed;
+        
+        public HashLookupBuilder() {
+            this(false);
+        }
+        public HashLookupBuilder(boolean onlyFixed) {
+            this.onlyFixed = onlyFixed;
+        }
+        
         public boolean isBuilding() {
             return currentLookup.isSet();
         }
@@ -230,21 +329,110 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
                     remainingSelectors.add(guard);
                 }
             } else {
+                if (!guard.isNegated()) analyseRangeGuard(guard);
                 remainingSelectors.add(guard);
             }
         }
         
+        /**
+         * Checks whether the given guard is an inequality that bounds
+         * one of the variables of the current lookup (from above or 
+         * from below), and if so, remembers it as a candidate for a 
+         * range lookup. Only primitive integral types and types that
+         * are compared using their natural ordering are considered. 
+         * In both cases the indexed argument has to be fixed.
+         * 
+         * @param guard
+         *  A non-negated guard that is no equality.
+         */
+        protected void analyseRangeGuard(IGuardConjunct guard) {
+            if (!(guard instanceof NoSolverConjunct)) return;
+            
+            final NoSolverConjunct conjunct = (NoSolverConjunct)guard;
+            final NoSolverConstraint comparison = conjunct.getConstraint();
+            
+            final String id = comparison.getIdentifier();
+            boolean upper, inclusive;
+            if (LT.equals(id)) {
+                upper = true; inclusive = false;
+            } else if (LEQ.equals(id)) {
+                upper = true; inclusive = true;
+            } else if (GT.equals(id)) {
+                upper = false; inclusive = false;
+            } else if (GEQ.equals(id)) {
+                upper = false; inclusive = true;
+            } else
+                return;
+            
+            final boolean natural = (comparison instanceof Comparison);
+            IArgument one, other;
+            if (natural) {
+                if (!((Comparison)comparison).isNaturalOrdering()) return;
+                IArgument invocation = conjunct.getExplicitArgumentAt(0);
+                if (!(invocation instanceof MethodInvocation<?>)) return;
+                if (((MethodInvocation<?>)invocation).getArity() != 2) return;
+                one = ((MethodInvocation<?>)invocation).getArgumentAt(0);
+                other = ((MethodInvocation<?>)invocation).getArgumentAt(1);
+            } else {
+                if (!isRangeIndexable(comparison.getFormalParameterTypeAt(0))) return;
+                one = conjunct.getExplicitArgumentAt(0);
+                other = conjunct.getExplicitArgumentAt(1);
+            }
+            
+            int variableIndex = getTopLevelVariableIndexOf(one);
+            if (variableIndex < 0) {
+                variableIndex = getTopLevelVariableIndexOf(other);
+                if (variableIndex < 0) return;
+                other = one;
+                upper = !upper;
+            }
+            if (containsLookupVariable(other)) return;
+            
+            final VariableType variableType = currentLookup.get()
+                .getConstraint().getFormalVariableTypeAt(variableIndex);
+            final IType keyType = variableType.getType();
+            if (!variableType.isFixed()) return;
+            if (natural) {
+                if (keyType instanceof PrimitiveType 
+                        || !other.getType().isDirectlyAssignableTo(keyType)) return;
+            } else {
+                if (!keyType.equals(comparison.getFormalParameterTypeAt(0))) return;
+            }
+            
+            rangeGuardInfos.add(new RangeGuardInfo(
+                guard, variableIndex, keyType, other, upper, inclusive
+            ));
+        }
+        
+        protected static boolean isRangeIndexable(IType type) {
+            return type == PrimitiveType.BYTE
+                || type == PrimitiveType.SHORT
+                || type == PrimitiveType.CHAR
+                || type == PrimitiveType.INT
+                || type == PrimitiveType.LONG;
+        }
+        
+        protected int getTopLevelVariableIndexOf(IArgument argument) {
+            return (argument instanceof Variable)
+                ? getVariableIndexOf((Variable)argument)
+                : -1;
+        }
+        
+        protected boolean containsLookupVariable(IArgument argument) {
+            return new AbstractVariableScanner() {
+                @Override
+                protected boolean scanVariable(Variable variable) {
+                    return getVariableIndexOf(variable) >= 0;
+                }
+            }.scan(argument);
+        }
+        
         public void buildImplicitGuard(ImplicitGuardConjunct guard) throws BuilderException {
             if (!isBuilding()) throw new BuilderException();
             try {
                 IArgument other = guard.getOtherArgument();
             
-                if (new AbstractVariableScanner() {
-                    @Override
-                    protected boolean scanVariable(Variable variable) {
-                        return getVariableIndexOf(variable) >= 0;
-                    }
-                }.scan(other)) {       // other argument contains another variable
+                if (containsLookupVariable(other)) {       // other argument contains another variable
                     remainingSelectors.add(guard);
                     return;
                 } 
@@ -266,6 +454,12 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
         }
         
         protected void incorporateGuard(IGuardConjunct guard, boolean implicitGuard, int variableIndex, IArgument other, int otherIndex) {
+            if (onlyFixed && !currentLookup.get().getConstraint()
+                    .getFormalVariableTypeAt(variableIndex).isFixed()) {
+                remainingSelectors.add(guard);
+                return;
+            }
+            
             GuardIncorporationInfo previous = guardIncorporationInfos[variableIndex];
             
             if (previous != null) {
@@ -328,7 +522,10 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
             }
             
             if (type.getNbGuards() == 0) {
-                setResult(currentLookup.get());
+                if (rangeGuardInfos.isEmpty())
+                    setResult(currentLookup.get());
+                else
+                    finishRangeLookup();
             } else {
                 UserDefinedConstraint constraint =
                     currentLookup.get().getOccurrence().getConstraint();
@@ -339,6 +536,8 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
                     else if (functionalDependenciesImplySetSemantics(constraint, type))
                     	type.setIndexType(FD_SS_HASH_MAP);
                 }
+                if (type.getIndexType() == HASH_MAP && isArrayIndexable(constraint, type))
+                	type.setIndexType(ARRAY);
                     
                 setResult(new BasicLookup(
                     currentLookup.get(), type, arguments
@@ -346,6 +545,54 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
             }
         }
         
+        /**
+         * Creates a range lookup using the candidate range guards
+         * of the first variable that has any: at most one lower and 
+         * one upper bound are incorporated. Only used if no equality 
+         * guard could be incorporated in a hash lookup.
+         */
+        protected void finishRangeLookup() {
+            RangeLookupType type = null;
+            
+            for (RangeGuardInfo info : rangeGuardInfos) {
+                if (type == null)
+                    type = new RangeLookupType(info.variableIndex, info.keyType);
+                else if (type.getVariableIndex() != info.variableIndex)
+                    continue;
+                
+                if (info.upper) {
+                    if (type.hasUpperBound()) continue;
+                    type.setUpperBound(info.other, info.inclusive);
+                } else {
+                    if (type.hasLowerBound()) continue;
+                    type.setLowerBound(info.other, info.inclusive);
+                }
+                remainingSelectors.remove(info.guard);
+            }
+            
+            IArguments arguments = new Arguments();
+            if (type.hasLowerBound()) arguments.addArgument(type.getLowerBound());
+            if (type.hasUpperBound()) arguments.addArgument(type.getUpperBound());
+            
+            setResult(new BasicLookup(currentLookup.get(), type, arguments));
+        }
+        
+        /**
+         * A single equality on a <code>boolean</code> or <code>enum</code>
+         * typed argument can be looked up in an array indexed by 
+         * ordinal. The argument has to be fixed and its declared type 
+         * a concrete <code>enum</code> type though, or the number of 
+         * slots would not be known.
+         */
+        protected static boolean isArrayIndexable(UserDefinedConstraint constraint, BinaryGuardedLookupType type) {
+            if (!type.testArrayability()) return false;
+            FormalVariable variable = constraint.getFormalVariableAt(type.getVariableIndices()[0]);
+            if (!variable.isFixed()) return false;
+            IType variableType = variable.getType();
+            return variableType == PrimitiveType.BOOLEAN
+                || variableType.getErasure().isEnum();
+        }
+        
         protected static boolean functionalDependenciesImplySetSemantics(UserDefinedConstraint constraint, ILookupType type) {
         	int[] indices = type.getVariableIndices();
         	int[] impliedIndices = 
@@ -359,6 +606,7 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
 
         public void reset() {
             currentLookup.reset();
+            rangeGuardInfos.clear();
             remainingSelectors.clear();
             setResult(null);
         }
@@ -380,6 +628,27 @@ public class GreedyHashLookupInsertor extends CifAnalysor {
             }
         }
         
+        protected static class RangeGuardInfo {
+            public final IGuardConjunct guard;
+            public final int variableIndex;
+            public final IType keyType;
+            public final IArgument other;
+            public final boolean upper;
+            public final boolean inclusive;
+            
+            public RangeGuardInfo(
+                    IGuardConjunct guard, int variableIndex, IType keyType,
+                    IArgument other, boolean upper, boolean inclusive)
+            {
+                this.guard = guard;
+                this.variableIndex = variableIndex;
+                this.keyType = keyType;
+                this.other = other;
+                this.upper = upper;
+                this.inclusive = inclusive;
+            }
+        }
+        
         protected final GuardAnalysor GUARD_ANALYSOR = new GuardAnalysor();
         protected class GuardAnalysor extends UpCastingArgumentVisitor {
             private int depth;
@@ -38,12 +38,27 @@ import compiler.CHRIntermediateForm.variables.Variable;
 import compiler.analysis.AnalysisException;
 import compiler.analysis.CifAnalysor;
 import compiler.analysis.FunctionalDependencies;
+import compiler.analysis.profile.RuntimeProfile;
+import compiler.analysis.profile.RuntimeProfile.OccurrenceProfile;
 import compiler.options.Options;
 
 public class GreedyJoinOrderer extends CifAnalysor {
     
+    /**
+     * The cardinalities measured at runtime, used to order the
+     * partners of active occurrences of which they are known.
+     */
+    private final RuntimeProfile profile;
+    
+    private OccurrenceProfile occurrenceProfile;
+    
     public GreedyJoinOrderer(CHRIntermediateForm intermediateForm, Options options) {
+        this(intermediateForm, options, RuntimeProfile.EMPTY);
+    }
+    
+    public GreedyJoinOrderer(CHRIntermediateForm intermediateForm, Options options, RuntimeProfile profile) {
         super(intermediateForm, options);
+        this.profile = profile;
     }
 
     @Override
@@ -95,9 +110,11 @@ public class GreedyJoinOrderer extends CifAnalysor {
     
     protected void analysePositive(Occurrence active, Occurrence[] partners) {
         if (! active.isPassive()) {
+            occurrenceProfile = profile.getOccurrenceProfile(active);
             initialize(active, partners);
             analyse();
             finalize(active);
+            occurrenceProfile = null;
         }
     }
     
@@ -183,7 +200,7 @@ public class GreedyJoinOrderer extends CifAnalysor {
         		possibles, 
         		cost, 
         		unordered
-            );
+            ).profile = occurrenceProfile;
             
             alsoFixed.clear();
         }
@@ -298,6 +315,13 @@ public class GreedyJoinOrderer extends CifAnalysor {
         System.out.println();
     }
     
+    /**
+     * Profiled estimates are only preferred over the static costs
+     * if they differ by at least this factor: small differences are
+     * within the noise of most profiles.
+     */
+    protected final static float PROFILE_MARGIN = 2;
+    
     protected static class ToOrder implements Comparable<ToOrder> {
         public final Occurrence occurrence;
         public final boolean[] fixed;
@@ -306,6 +330,12 @@ public class GreedyJoinOrderer extends CifAnalysor {
         public final SelectorMap possibles;
         public final SCost cost;
         
+        /**
+         * The runtime profile of the active occurrence, or 
+         * <code>null</code> if it is unknown.
+         */
+        public OccurrenceProfile profile;
+        
         public ToOrder next;
         public ToOrder previous;
         
@@ -449,8 +479,50 @@ public class GreedyJoinOrderer extends CifAnalysor {
             return occurrence.getMultisetInfo().isSet();
         }
         
+        /**
+         * Returns whether at least one argument of the occurrence is
+         * fixed, i.e. whether its lookup can (probably) use an index.
+         */
+        public boolean isKeyed() {
+            if (!fixedByDependency.isEmpty()) return true;
+            for (boolean b : fixed) if (b) return true;
+            return false;
+        }
+        
+        /**
+         * Returns the number of partners that are estimated to survive
+         * the lookup of this occurrence and the selectors that are
+         * certainly scheduled right after it (for each time it is reached), 
+         * or {@link Float#NaN} if no estimate can be made from the runtime
+         * profile. Unkeyed lookups enumerate the entire store; keyed 
+         * ones are assumed to have the fan-out measured at runtime.
+         */
+        public float getEstimate() {
+            if (profile == null) return Float.NaN;
+            float result = isKeyed()
+                ? profile.getFanOut(occurrence)
+                : profile.getStoreSize(occurrence.getConstraint());
+            if (Float.isNaN(result)) return result;
+            for (ISelector selector : certains) {
+                float ratio = profile.getPassRatio(selector);
+                if (!Float.isNaN(ratio)) result *= ratio;
+            }
+            return result;
+        }
+        
+        protected int compareEstimates(ToOrder other) {
+            float x = this.getEstimate(), y = other.getEstimate();
+            if (Float.isNaN(x) || Float.isNaN(y)) return 0;
+            if (x * PROFILE_MARGIN < y) return -1;
+            if (y * PROFILE_MARGIN < x) return +1;
+            return 0;
+        }
+        
         public int compareTo(ToOrder other) {
-            int result = this.cost.compareTo(other.cost);
+            int result = compareEstimates(other);
+            if (result != 0) return result;
+            
+            result = this.cost.compareTo(other.cost);
             if (result == 0) {
                 boolean x = this.hasSetSemantics();
                 boolean y = other.hasSetSemantics();
@@ -467,6 +539,7 @@ public class GreedyJoinOrderer extends CifAnalysor {
                 + ", !" + String.valueOf(certains) 
                 + ", ?" + String.valueOf(possibles) 
                 + ", @" + String.valueOf(cost)
+                + ((profile == null)? "" : ", ~" + getEstimate())
                 + '}';
         }
     }
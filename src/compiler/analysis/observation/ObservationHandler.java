@@ -970,7 +970,7 @@ class ObservationHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1073,7 +1073,7 @@ class ObservationHandler extends Handler {
 						|| !$$indirect_history.insert(observes_3.getConstraintId()))) {
 						compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Z = observes_3.Observee;
 						stored = true;
-						ID = IDcounter++;
+						ID = $$constraintSystem.nextConstraintId();
 						int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 						hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 						hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1099,7 +1099,7 @@ class ObservationHandler extends Handler {
 				if ((continuation = activates_3()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1217,7 +1217,7 @@ class ObservationHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + Observor.hashCode()) + Observee.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1318,7 +1318,7 @@ class ObservationHandler extends Handler {
 					activates_3 = activates_3_iter.next();
 					compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint X = activates_3.$0;
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					$$indirect_history.add(activates_3.getConstraintId());
 					int hashCode = 37 * (37 * (23) + Observor.hashCode()) + Observee.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -1343,7 +1343,7 @@ class ObservationHandler extends Handler {
 				if ((continuation = observes_3()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + Observor.hashCode()) + Observee.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
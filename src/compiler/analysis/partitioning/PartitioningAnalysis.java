@@ -0,0 +1,210 @@
+package compiler.analysis.partitioning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import compiler.CHRIntermediateForm.ICHRIntermediateForm;
+import compiler.CHRIntermediateForm.arg.argument.IArgument;
+import compiler.CHRIntermediateForm.conjuncts.IConjunct;
+import compiler.CHRIntermediateForm.conjuncts.IGuardConjunct;
+import compiler.CHRIntermediateForm.conjuncts.ImplicitGuardConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.rulez.Head;
+import compiler.CHRIntermediateForm.rulez.NegativeHead;
+import compiler.CHRIntermediateForm.rulez.Rule;
+import compiler.CHRIntermediateForm.variables.Variable;
+import compiler.analysis.AnalysisException;
+import compiler.analysis.CifAnalysor;
+import compiler.options.Options;
+
+/**
+ * Looks for a <em>partitioning argument</em> for each constraint:
+ * a fixed argument such that, in each rule, the partitioning arguments
+ * of all occurrences (positive and negative) are one and the same
+ * variable, and all constraints told by the body are told with that
+ * same variable as their partitioning argument. If such arguments
+ * exist, constraints with different partitioning arguments can
+ * never interact, so the constraint store can be partitioned over
+ * a number of independent handlers (see {@link runtime.ShardedHandler}
+ * and {@link runtime.StripedHandler}).
+ * <br/>
+ * Partitioning arguments can be given explicitly using the
+ * <code>-partition</code> option; for the other constraints all
+ * fixed arguments are tried. A rule can also name the variable its
+ * heads are partitioned on, using a <code>partition</code> pragma
+ * (e.g. <code>pragma partition(K)</code>). Either all constraints are partitioned,
+ * or none are. The analysis is only performed if sharding or striping
+ * is enabled in the {@link Options}.
+ */
+public class PartitioningAnalysis extends CifAnalysor {
+
+	private UserDefinedConstraint[] constraints;
+
+	private int[][] candidates;
+
+	private int[] assignment;
+
+	public PartitioningAnalysis(ICHRIntermediateForm cif, Options options) {
+		super(cif, options);
+	}
+
+	@Override
+	public boolean doAnalysis() throws AnalysisException {
+		if (!getOptions().doSharding() && !getOptions().isStriped()) return false;
+
+		final int n = getNbUdConstraints();
+		constraints = new UserDefinedConstraint[n];
+		candidates = new int[n][];
+		assignment = new int[n];
+		int i = 0;
+		for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
+			constraints[i] = constraint;
+			candidates[i] = getCandidates(constraint);
+			assignment[i++] = -1;
+		}
+
+		if (search(0)) {
+			for (i = 0; i < n; i++)
+				constraints[i].setPartitionIndex(assignment[i]);
+			printResult(true);
+			return true;
+		} else {
+			printResult(false);
+			return false;
+		}
+	}
+
+	protected int[] getCandidates(UserDefinedConstraint constraint) throws AnalysisException {
+		final int given = getOptions().getPartitionIndex(constraint.getIdentifier());
+		if (given >= 0) {
+			if (given >= constraint.getArity()
+					|| !constraint.getFormalVariableTypeAt(given).isFixed())
+				throw new AnalysisException(
+					"Illegal partitioning argument for " + constraint.getIdentifier()
+					+ ": " + given + " (not a fixed argument)"
+				);
+			return new int[] { given };
+		}
+
+		final List<Integer> result = new ArrayList<Integer>(constraint.getArity());
+		for (int i = 0; i < constraint.getArity(); i++)
+			if (constraint.getFormalVariableTypeAt(i).isFixed()) result.add(i);
+		final int[] array = new int[result.size()];
+		for (int i = 0; i < array.length; i++) array[i] = result.get(i);
+		return array;
+	}
+
+	/**
+	 * Assigns a partitioning argument to the constraints with index
+	 * <code>index</code> or higher, using simple backtracking
+	 * (handlers seldom have many constraints with many fixed arguments).
+	 */
+	protected boolean search(int index) {
+		if (index == constraints.length) return true;
+		for (int candidate : candidates[index]) {
+			assignment[index] = candidate;
+			if (isConsistent(constraints[index]) && search(index+1))
+				return true;
+		}
+		assignment[index] = -1;
+		return false;
+	}
+
+	/**
+	 * Checks whether the current (partial) assignment is consistent
+	 * for all rules in which the given constraint occurs, either in
+	 * a head or in the body.
+	 */
+	protected boolean isConsistent(UserDefinedConstraint constraint) {
+		for (Rule rule : getRules())
+			if (involves(rule, constraint) && !isConsistent(rule))
+				return false;
+		return true;
+	}
+
+	protected boolean involves(Rule rule, UserDefinedConstraint constraint) {
+		for (Occurrence occurrence : constraint.getPositiveOccurrences())
+			if (occurrence.getRule() == rule) return true;
+		for (Occurrence occurrence : constraint.getNegativeOccurrences())
+			if (occurrence.getRule() == rule) return true;
+		for (IConjunct conjunct : rule.getBody())
+			if (conjunct instanceof UserDefinedConjunct
+					&& ((UserDefinedConjunct)conjunct).getConstraint() == constraint)
+				return true;
+		return false;
+	}
+
+	protected boolean isConsistent(Rule rule) {
+		IArgument key = rule.getPartitionKey();
+
+		final List<Head> heads = new ArrayList<Head>(rule.getNbNegativeHeads() + 1);
+		heads.add(rule.getPositiveHead());
+		heads.addAll(rule.getNegativeHeads());
+		for (Head head : heads) {
+			for (Occurrence occurrence : head) {
+				final int index = getAssignment(occurrence.getConstraint());
+				if (index < 0) continue;
+				final Variable variable = getExplicitVariable(rule, occurrence.getArgumentAt(index));
+				if (variable == null) return false;
+				if (key == null)
+					key = variable;
+				else if (key != variable)
+					return false;
+			}
+		}
+
+		for (IConjunct conjunct : rule.getBody()) {
+			if (!(conjunct instanceof UserDefinedConjunct)) continue;
+			final UserDefinedConjunct told = (UserDefinedConjunct)conjunct;
+			final int index = getAssignment(told.getConstraint());
+			if (index < 0) continue;
+			final IArgument argument = told.getArgumentAt(index);
+			if (key == null && argument instanceof Variable)
+				key = argument;
+			else if (key != argument)
+				return false;
+		}
+
+		return true;
+	}
+
+	protected int getAssignment(UserDefinedConstraint constraint) {
+		for (int i = 0; i < constraints.length; i++)
+			if (constraints[i] == constraint) return assignment[i];
+		throw new InternalError();
+	}
+
+	/**
+	 * Returns the explicit variable an implicit head variable is
+	 * equated to, or the variable itself if it is explicit. If the
+	 * argument is not equated to a variable, the result is
+	 * <code>null</code>.
+	 */
+	protected Variable getExplicitVariable(Rule rule, IArgument argument) {
+		if (!(argument instanceof Variable)) return null;
+		final Variable variable = (Variable)argument;
+
+		final List<IGuardConjunct> guards = new ArrayList<IGuardConjunct>();
+		for (IGuardConjunct guard : rule.getPositiveGuard()) guards.add(guard);
+		for (NegativeHead head : rule.getNegativeHeads())
+			for (IGuardConjunct guard : head.getGuard()) guards.add(guard);
+
+		for (IGuardConjunct guard : guards) {
+			if (!(guard instanceof ImplicitGuardConjunct)) continue;
+			final ImplicitGuardConjunct implicit = (ImplicitGuardConjunct)guard;
+			if (implicit.getImplicitVariable() != variable) continue;
+			final IArgument other = implicit.getOtherArgument();
+			return (other instanceof Variable)? (Variable)other : null;
+		}
+		return variable;
+	}
+
+	protected void printResult(boolean partitioned) {
+		if (partitioned)
+			System.out.println(" --> optimization: partitioned the constraint store");
+		else if (getOptions().doSharding())
+			System.err.println(" --> warning: no partitioning arguments found (no sharded handler)");
+	}
+}
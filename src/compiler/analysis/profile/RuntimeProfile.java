@@ -0,0 +1,250 @@
+package compiler.analysis.profile;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.DefaultLookupType;
+import compiler.CHRIntermediateForm.constraints.ud.schedule.ISelector;
+import compiler.CHRIntermediateForm.rulez.NegativeHead;
+import compiler.analysis.AnalysisException;
+import compiler.options.Options;
+
+/**
+ * <p>
+ * The cardinalities measured by a handler that was generated with the
+ * <code>-profile</code> option, read back from the CSV format of
+ * {@link runtime.JoinProfile#writeCsv(Appendable)}, so that join ordering
+ * and index selection can use real cardinalities instead of static
+ * heuristics (see the <code>-joinprofile</code> option). For each active
+ * occurrence of which the profile contains data, it provides:
+ * <ul>
+ *  <li>the <em>fan-out</em> of the lookup of each partner: the average
+ *      number of candidates it enumerated each time it was reached,
+ *      and whether or not that lookup used an index;</li>
+ *  <li>the <em>pass ratio</em> of each guard and negative head that was
+ *      scheduled separately: the fraction of the times it was reached
+ *      that it succeeded.</li>
+ * </ul>
+ * The (average) <em>store size</em> of a constraint is estimated as the
+ * largest fan-out of a lookup of it that did not use an index.
+ * </p>
+ * <p>
+ * Occurrences are matched by name (<code><i>c</i>_<i>i</i></code>),
+ * guards and negative heads by their description: profiles of older
+ * versions of a handler are partially ignored. Elements that were never
+ * reached carry no information and are ignored as well.
+ * </p>
+ */
+public class RuntimeProfile {
+
+    /**
+     * The profile without any data: all estimates are unknown.
+     */
+    public final static RuntimeProfile EMPTY = new RuntimeProfile();
+
+    private final Map<String, OccurrenceProfile> occurrences
+        = new HashMap<String, OccurrenceProfile>();
+
+    private final Map<String, Float> storeSizes = new HashMap<String, Float>();
+
+    protected RuntimeProfile() {
+        // NOP
+    }
+
+    /**
+     * Returns the profile set using the <code>-joinprofile</code> option,
+     * or {@link #EMPTY} if none was set.
+     *
+     * @throws AnalysisException
+     *  If the profile could not be read.
+     */
+    public static RuntimeProfile getInstance(Options options) throws AnalysisException {
+        final File file = options.getJoinProfile();
+        if (file == null) return EMPTY;
+        try {
+            final Reader reader = new FileReader(file);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (IOException x) {
+            throw new AnalysisException("Could not read join profile %s: %s", x, file, x.getMessage());
+        }
+    }
+
+    /**
+     * Reads a profile in the CSV format of
+     * {@link runtime.JoinProfile#writeCsv(Appendable)}.
+     *
+     * @throws IOException
+     *  If reading fails, or the input is not in the expected format.
+     */
+    public static RuntimeProfile read(Reader in) throws IOException {
+        final RuntimeProfile result = new RuntimeProfile();
+        final BufferedReader reader = new BufferedReader(in);
+
+        String line = reader.readLine();
+        if (line == null || !line.startsWith("rule,occurrence,"))
+            throw new IOException("Missing header line");
+
+        int lineNbr = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNbr++;
+            if (line.length() == 0) continue;
+            final List<String> fields = splitCsv(line);
+            if (fields.size() != 10)
+                throw new IOException("Illegal number of fields on line " + lineNbr);
+            if (fields.get(5).length() == 0) continue;  // no schedule elements
+            try {
+                result.add(
+                    fields.get(1),
+                    fields.get(6),
+                    Long.parseLong(fields.get(7)),
+                    Long.parseLong(fields.get(8)),
+                    Long.parseLong(fields.get(9))
+                );
+            } catch (NumberFormatException x) {
+                throw new IOException("Illegal counter on line " + lineNbr);
+            }
+        }
+        return result;
+    }
+
+    protected static List<String> splitCsv(String line) {
+        final List<String> result = new ArrayList<String>();
+        final StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            final char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"')
+                    field.append(line.charAt(++i));
+                else
+                    quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                result.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        result.add(field.toString());
+        return result;
+    }
+
+    protected final static String
+        LOOKUP = "lookup ",
+        UNINDEXED = " [" + DefaultLookupType.getInstance() + ']';
+
+    protected void add(String occurrence, String element, long entries, long candidates, long survivors) {
+        if (entries == 0) return;
+
+        OccurrenceProfile profile = occurrences.get(occurrence);
+        if (profile == null)
+            occurrences.put(occurrence, profile = new OccurrenceProfile());
+
+        if (element.startsWith(LOOKUP)) {
+            final int space = element.indexOf(' ', LOOKUP.length());
+            if (space < 0) return;
+            final String partner = element.substring(LOOKUP.length(), space);
+            final float fanOut = (float)candidates / entries;
+            final boolean indexed = !element.endsWith(UNINDEXED);
+            profile.fanOuts.put(partner, fanOut);
+            profile.indexed.put(partner, indexed);
+
+            if (!indexed) {
+                final String constraint = getConstraintName(partner);
+                final Float storeSize = storeSizes.get(constraint);
+                if (storeSize == null || storeSize < fanOut)
+                    storeSizes.put(constraint, fanOut);
+            }
+        } else {
+            profile.passRatios.put(element, (float)survivors / entries);
+        }
+    }
+
+    protected static String getName(Occurrence occurrence) {
+        return occurrence.getIdentifier() + '_' + occurrence.getConstraintOccurrenceNbr();
+    }
+    protected static String getConstraintName(String occurrence) {
+        return occurrence.substring(0, occurrence.lastIndexOf('_'));
+    }
+
+    public boolean isEmpty() {
+        return occurrences.isEmpty();
+    }
+
+    /**
+     * Returns the profile of the given active occurrence, or
+     * <code>null</code> if there is no data for it.
+     */
+    public OccurrenceProfile getOccurrenceProfile(Occurrence active) {
+        return occurrences.get(getName(active));
+    }
+
+    /**
+     * Returns the estimated average size of the store of the given
+     * constraint, or {@link Float#NaN} if it is unknown.
+     */
+    public float getStoreSize(UserDefinedConstraint constraint) {
+        final Float result = storeSizes.get(constraint.getIdentifier());
+        return (result == null)? Float.NaN : result.floatValue();
+    }
+
+    /**
+     * The measurements of the schedule of a single active occurrence.
+     */
+    public final class OccurrenceProfile {
+        final Map<String, Float> fanOuts = new HashMap<String, Float>();
+        final Map<String, Boolean> indexed = new HashMap<String, Boolean>();
+        final Map<String, Float> passRatios = new HashMap<String, Float>();
+
+        /**
+         * Returns the measured fan-out of the lookup of the given
+         * partner, or {@link Float#NaN} if it is unknown.
+         */
+        public float getFanOut(Occurrence partner) {
+            final Float result = fanOuts.get(getName(partner));
+            return (result == null)? Float.NaN : result.floatValue();
+        }
+
+        /**
+         * Returns whether the measured lookup of the given partner
+         * used an index (the result is only meaningful if its
+         * fan-out is known).
+         */
+        public boolean isIndexed(Occurrence partner) {
+            return Boolean.TRUE.equals(indexed.get(getName(partner)));
+        }
+
+        /**
+         * Returns the measured fraction of the times the given guard
+         * or negative head succeeded, or {@link Float#NaN} if it is
+         * unknown (e.g. because it was incorporated in a lookup).
+         */
+        public float getPassRatio(ISelector selector) {
+            final Float result = passRatios.get(
+                ((selector instanceof NegativeHead)? "negative head " : "guard ") + selector
+            );
+            return (result == null)? Float.NaN : result.floatValue();
+        }
+
+        public float getStoreSize(UserDefinedConstraint constraint) {
+            return RuntimeProfile.this.getStoreSize(constraint);
+        }
+    }
+}
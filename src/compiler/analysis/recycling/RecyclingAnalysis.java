@@ -0,0 +1,103 @@
+package compiler.analysis.recycling;
+
+import static compiler.CHRIntermediateForm.modifiers.Modifier.isPrivate;
+
+import compiler.CHRIntermediateForm.ICHRIntermediateForm;
+import compiler.CHRIntermediateForm.conjuncts.IConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.rulez.Rule;
+import compiler.analysis.AnalysisException;
+import compiler.analysis.CifAnalysor;
+import compiler.options.Options;
+
+/**
+ * Detects constraints whose constraint objects can be reused once
+ * their activation has finished. This is the case for constraints that
+ * are never stored (see the never stored analysis) and are activated
+ * directly instead of through the continuation stack: such constraints
+ * can never be found as partner constraint, and they are never
+ * added to an observer list, so nothing can refer to them
+ * after their activation returns. Propagation histories and
+ * tracers can still observe constraint objects, so constraints that
+ * need a history, or handlers that are traced, are excluded.
+ * <br/>
+ * Constraints that are stored can be recycled as well, once they
+ * have been removed, if no reference to them can remain: they have
+ * to be private (so the host language can never look them up),
+ * and the handler may not have reactive constraints (no observer
+ * lists, and no activations outside of calls to the handler) nor
+ * trail the removal of constraints. The generated handler only makes
+ * removed constraint objects available for reuse when none of its
+ * activations are in progress (see {@link runtime.Handler#recycle()}).
+ * <br/>
+ * The analysis is only performed if recycling is enabled in the
+ * {@link Options}, and has to be run after the history
+ * and recursion analyses.
+ */
+public class RecyclingAnalysis extends CifAnalysor {
+
+	private int nbRecyclable;
+	
+	private boolean reactive;
+
+	public RecyclingAnalysis(ICHRIntermediateForm cif, Options options) {
+		super(cif, options);
+	}
+
+	@Override
+	public boolean doAnalysis() throws AnalysisException {
+		if (!getOptions().doConstraintRecycling() || getDebugInfo().hasToDebug())
+			return false;
+		for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+			reactive |= constraint.isReactive();
+		analyseConstraints();
+		printResult();
+		return getNbRecyclable() > 0;
+	}
+
+	@Override
+	protected void analyse(UserDefinedConstraint constraint) throws AnalysisException {
+		if (isRecursive(constraint)) return;
+		if (constraint.mayBeStored()) {
+			if (!constraint.mayBeRemoved() || !isPrivate(constraint)) return;
+			if (reactive || getOptions().doTrailing()) return;
+			for (Occurrence occurrence : constraint.getPositiveOccurrences())
+				if (occurrence.getRule().needsHistory()) return;
+		} else {
+			for (Occurrence occurrence : constraint.getPositiveOccurrences()) {
+				if (!occurrence.isActive()) continue;
+				final Rule rule = occurrence.getRule();
+				if (rule.needsHistory()) return;
+				// continuations pushed for recursive conjuncts may outlive the activation
+				for (IConjunct conjunct : rule.getBody())
+					if (conjunct instanceof UserDefinedConjunct
+							&& isRecursive(((UserDefinedConjunct)conjunct).getConstraint()))
+						return;
+			}
+		}
+
+		constraint.setRecyclable(true);
+		nbRecyclable++;
+	}
+
+	protected boolean isRecursive(UserDefinedConstraint constraint) {
+		return getOptions().doStackOptimizations() && constraint.isRecursive();
+	}
+
+	public int getNbRecyclable() {
+		return nbRecyclable;
+	}
+
+	protected void printResult() {
+		switch (getNbRecyclable()) {
+			case 0: break;
+			case 1:
+				System.out.println(" --> optimization: detected one recyclable constraint");
+			break;
+			default:
+				System.out.printf(" --> optimization: detected %d recyclable constraints%n", getNbRecyclable());
+		}
+	}
+}
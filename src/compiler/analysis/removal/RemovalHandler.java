@@ -1631,7 +1631,7 @@ class RemovalHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1769,7 +1769,7 @@ class RemovalHandler extends Handler {
 						tracer.fires("$rule_7", 1, tells_6, this);
 
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -1817,7 +1817,7 @@ class RemovalHandler extends Handler {
 
 								if (!stored) {
 									stored = true;
-									ID = IDcounter++;
+									ID = $$constraintSystem.nextConstraintId();
 									$$$rule_12_history.add(new runtime.history.Tuple3(this.ID, exported_6.getConstraintId(), removes_5.getConstraintId()));
 									int hashCode = 37 * (23) + $0.hashCode();
 									hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -1851,7 +1851,7 @@ class RemovalHandler extends Handler {
 				if ((continuation = tells_reactive_5()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2094,7 +2094,7 @@ class RemovalHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2249,7 +2249,7 @@ class RemovalHandler extends Handler {
 					tracer.fires("$rule_6", 0, this, tells_exported_4);
 
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2276,7 +2276,7 @@ class RemovalHandler extends Handler {
 
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2313,7 +2313,7 @@ class RemovalHandler extends Handler {
 
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2356,7 +2356,7 @@ class RemovalHandler extends Handler {
 
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2398,7 +2398,7 @@ class RemovalHandler extends Handler {
 
 						if (!stored) {
 							stored = true;
-							ID = IDcounter++;
+							ID = $$constraintSystem.nextConstraintId();
 							int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 							hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 							hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2436,7 +2436,7 @@ class RemovalHandler extends Handler {
 				if ((continuation = tells_9()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2783,7 +2783,7 @@ class RemovalHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2919,7 +2919,7 @@ class RemovalHandler extends Handler {
 						tracer.fires("$rule_6", 1, tells_5, this);
 
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2966,7 +2966,7 @@ class RemovalHandler extends Handler {
 
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								$$$rule_11_history.add(new runtime.history.Tuple3(this.ID, exported_5.getConstraintId(), removes_4.getConstraintId()));
 								int hashCode = 37 * (23) + $0.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -2999,7 +2999,7 @@ class RemovalHandler extends Handler {
 				if ((continuation = tells_exported_5()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3240,7 +3240,7 @@ class RemovalHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + Remover.hashCode()) + Removee.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3358,7 +3358,7 @@ class RemovalHandler extends Handler {
 						tracer.fires("$rule_10", 1, tells_9, this);
 
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					$$$rule_10_history.add(tells_9.getConstraintId());
 					int hashCode = 37 * (37 * (23) + Remover.hashCode()) + Removee.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -3396,7 +3396,7 @@ class RemovalHandler extends Handler {
 
 					if (!stored) {
 						stored = true;
-						ID = IDcounter++;
+						ID = $$constraintSystem.nextConstraintId();
 						$$$rule_11_history.add(new runtime.history.Tuple3(tells_exported_5.getConstraintId(), exported_5.getConstraintId(), this.ID));
 						int hashCode = 37 * (37 * (23) + Remover.hashCode()) + Removee.hashCode();
 						hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -3437,7 +3437,7 @@ class RemovalHandler extends Handler {
 
 						if (!stored) {
 							stored = true;
-							ID = IDcounter++;
+							ID = $$constraintSystem.nextConstraintId();
 							$$$rule_12_history.add(new runtime.history.Tuple3(tells_reactive_5.getConstraintId(), exported_6.getConstraintId(), this.ID));
 							int hashCode = 37 * (37 * (23) + Remover.hashCode()) + Removee.hashCode();
 							hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -3472,7 +3472,7 @@ class RemovalHandler extends Handler {
 				if ((continuation = removes_5()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + Remover.hashCode()) + Removee.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3773,7 +3773,7 @@ class RemovalHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3954,7 +3954,7 @@ class RemovalHandler extends Handler {
 								tracer.fires("$rule_11", 1, tells_exported_5, this, removes_4);
 
 							stored = true;
-							ID = IDcounter++;
+							ID = $$constraintSystem.nextConstraintId();
 							$$$rule_11_history.add(new runtime.history.Tuple3(tells_exported_5.getConstraintId(), this.ID, removes_4.getConstraintId()));
 							int hashCode = 37 * (23) + $0.hashCode();
 							hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -4003,7 +4003,7 @@ class RemovalHandler extends Handler {
 
 								if (!stored) {
 									stored = true;
-									ID = IDcounter++;
+									ID = $$constraintSystem.nextConstraintId();
 									$$$rule_12_history.add(new runtime.history.Tuple3(tells_reactive_5.getConstraintId(), this.ID, removes_5.getConstraintId()));
 									int hashCode = 37 * (23) + $0.hashCode();
 									hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
@@ -4038,7 +4038,7 @@ class RemovalHandler extends Handler {
 				if ((continuation = exported_6()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -137,6 +137,8 @@ public class SetSemanticsDetection extends RulesRemover implements Resettable {
     protected void analyse(UserDefinedConstraint constraint) {
         if (!constraint.mayBeStored()) return;
         if (constraint.getMultisetInfo() == SET) return;
+        // the keys of set semantic indexes cannot be restored after unifications
+        if (getOptions().doTrailing() && !constraint.canNeverBeReactived()) return;
         
         for (Occurrence occurrence : constraint.getPositiveOccurrences()) {
             if (occurrence.isPassive()) continue;
@@ -2022,7 +2022,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeReactivates(ReactivatesConstraint.this);
 			}
 		}
@@ -2110,7 +2110,7 @@ class RecursionHandler extends Handler {
 				reactive_1 = reactive_1_iter.next();
 				compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Y = reactive_1.$0;
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeReactivates(ReactivatesConstraint.this);
 
 				if (reactive_1_iter.hasNext()) {
@@ -2129,7 +2129,7 @@ class RecursionHandler extends Handler {
 				if ((continuation = reactivates_2()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeReactivates(ReactivatesConstraint.this);
 				}
 			}
@@ -2377,7 +2377,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeReactive(ReactiveConstraint.this);
 			}
 		}
@@ -2453,7 +2453,7 @@ class RecursionHandler extends Handler {
 			if ((continuation = reactive_1()) != null) return continuation;
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeReactive(ReactiveConstraint.this);
 			}
 			return $$continuationStack.pop();
@@ -2553,7 +2553,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2690,7 +2690,7 @@ class RecursionHandler extends Handler {
 							|| !$$$rule_8_history.insert(tells_7.ID))) {
 							compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint X = tells_7.$0;
 							stored = true;
-							ID = IDcounter++;
+							ID = $$constraintSystem.nextConstraintId();
 							int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 							hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 							hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2728,7 +2728,7 @@ class RecursionHandler extends Handler {
 							compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Z = tells_6.$1;
 							if (!stored) {
 								stored = true;
-								ID = IDcounter++;
+								ID = $$constraintSystem.nextConstraintId();
 								int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 								hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 								hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2760,7 +2760,7 @@ class RecursionHandler extends Handler {
 				if ((continuation = tells_7()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (37 * (23) + $0.hashCode()) + $1.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -2945,7 +2945,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeExported(ExportedConstraint.this);
 			}
 		}
@@ -3021,7 +3021,7 @@ class RecursionHandler extends Handler {
 			if ((continuation = exported_1()) != null) return continuation;
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeExported(ExportedConstraint.this);
 			}
 			return $$continuationStack.pop();
@@ -3239,7 +3239,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				int hashCode = 37 * (23) + $0.hashCode();
 				hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 				hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3335,7 +3335,7 @@ class RecursionHandler extends Handler {
 					tells_5 = tells_5_iter.next();
 					compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint X = tells_5.$0;
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3397,7 +3397,7 @@ class RecursionHandler extends Handler {
 				if ((continuation = recursive_6()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					int hashCode = 37 * (23) + $0.hashCode();
 					hashCode ^= (hashCode >>> 20) ^ (hashCode >>> 12);
 					hashCode ^= (hashCode >>> 7) ^ (hashCode >>> 4);
@@ -3523,7 +3523,7 @@ class RecursionHandler extends Handler {
 		protected void store() {
 			if (!stored) {
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeTells_exported(Tells_exportedConstraint.this);
 			}
 		}
@@ -3611,7 +3611,7 @@ class RecursionHandler extends Handler {
 				exported_1 = exported_1_iter.next();
 				compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint Y = exported_1.$0;
 				stored = true;
-				ID = IDcounter++;
+				ID = $$constraintSystem.nextConstraintId();
 				storeTells_exported(Tells_exportedConstraint.this);
 
 				if (exported_1_iter.hasNext()) {
@@ -3630,7 +3630,7 @@ class RecursionHandler extends Handler {
 				if ((continuation = tells_exported_2()) != null) return continuation;
 				if (!stored) {
 					stored = true;
-					ID = IDcounter++;
+					ID = $$constraintSystem.nextConstraintId();
 					storeTells_exported(Tells_exportedConstraint.this);
 				}
 			}
@@ -7,6 +7,8 @@ import compiler.CHRIntermediateForm.constraints.ud.lookup.type.BinaryGuardedLook
 import compiler.CHRIntermediateForm.variables.FormalVariable;
 
 public abstract class AbstractHashIndexCodeGenerator extends ConstraintStoreCodeGenerator {
+	
+	private boolean incrementalResizing;
 
 	public AbstractHashIndexCodeGenerator(
         CodeGenerator codeGenerator, 
@@ -16,40 +18,28 @@ public abstract class AbstractHashIndexCodeGenerator extends ConstraintStoreCode
 	}
 	
 	@Override
-	protected void generateInitialisationCode() throws GenerationException {
-		for (int i = 0; i < getCategory().getNbLookupTypes(); i++)
-			getLookupKeyCodeGenerator(i).printInitalisationCode(getLookupKeyName(i));
+	protected void generateMembers() throws GenerationException {
+		printHashIndexInitialisation();
+	}
+	
+	public void setIncrementalResizing(boolean incrementalResizing) {
+		this.incrementalResizing = incrementalResizing;
+	}
+	public boolean incrementalResizing() {
+		return incrementalResizing;
 	}
 	
 	@Override
-	protected void generateMembers() throws GenerationException {
-		printHashIndexInitialisation();
-        
-        KeyCodeGenerator generator;
-        for (int i = 0; i < getCategory().getNbLookupTypes(); i++) {
-            nl();
-            (generator = getLookupKeyCodeGenerator(i)).generate();
-            nl();
-            printInitialisation("private final", generator, getLookupKeyName(i));
-        }
+	protected void printConstructorArguments() throws GenerationException {
+		if (incrementalResizing()) print("true");
 	}
 	
 	protected void printHashIndexInitialisation() throws GenerationException {
 		printInitialisation(getHashIndexModifiers(), getIndexType(), getIndexName());
 	}
 	
-	protected void printInitialisation(String modifiers, KeyCodeGenerator generator, String name) throws GenerationException {
-		tprint(modifiers);
-		print(' ');
-		prints(generator.getType());
-		print(name);
-		generator.printIsNewKey();
-	}
-	
     protected abstract String getHashIndexModifiers();
     
-    protected abstract LookupKeyCodeGenerator getLookupKeyCodeGenerator(int i);
-    
     protected void printGetVariable(FormalVariable variable) throws GenerationException {
         print("constraint.");
         print(ConstraintCodeGenerator.getVariableGetterName(variable));
@@ -99,28 +89,17 @@ public abstract class AbstractHashIndexCodeGenerator extends ConstraintStoreCode
         return (BinaryGuardedLookupType)super.getLookupTypeAt(index);
     }
     
-	@Override
-	protected void generateLookupCode(int lookupTypeIndex) throws GenerationException {
-        String key = getLookupKeyName(lookupTypeIndex);
-        
-        tprint(key); print(".init("); 
-            printLookupArgumentList(lookupTypeIndex, false); 
-        println(");");
-        tprint("return "); print(getIndexName()); print(".get("); print(key); println(");");
-	}
-    
-    public String getLookupKeyName(int lookupTypeIndex) {
-        return getLookupKeyName(getIndexName(), lookupTypeIndex);
-    }
-    public static String getLookupKeyName(String hashIndexName, int lookupTypeIndex) {
-        return hashIndexName + "_LookupKey_" + lookupTypeIndex;
-    }
-	
 	public abstract String getIndexType();
 	
 	public String getIndexName() {
 		return getHashIndexName(getConstraint(), getCategory());
 	}
+	
+	@Override
+	protected void doGenerateClearCode() throws GenerationException {
+		tprint(getIndexName());
+		println(".reset();");
+	}
 	public static String getHashIndexName(UserDefinedConstraint constraint, ILookupCategory category) {
 		return "$$" 
 			+ constraint.getIdentifier()
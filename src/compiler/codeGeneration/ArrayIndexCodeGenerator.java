@@ -0,0 +1,134 @@
+package compiler.codeGeneration;
+
+import runtime.list.ArrayIndex;
+
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.BinaryGuardedLookupType;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
+import compiler.CHRIntermediateForm.variables.FormalVariable;
+
+public class ArrayIndexCodeGenerator extends ConstraintStoreCodeGenerator {
+
+	public ArrayIndexCodeGenerator(
+        CodeGenerator codeGenerator,
+		UserDefinedConstraint constraint, ILookupCategory category
+    ) {
+		super(codeGenerator, constraint, category);
+	}
+
+	@Override
+	protected void generateMembers() throws GenerationException {
+		tprint("private final ");
+		print(getIndexType()); print(' '); print(getIndexName());
+		print(" = new "); print(getIndexType()); print('(');
+		if (!isBooleanIndexed()) {
+			print(getIndexedVariable().getType().toTypeString()); print(".class");
+		}
+		println(");");
+	}
+
+	@Override
+	protected void generateStorageCode() throws GenerationException {
+		tprintln('{');
+		incNbTabs();
+		tprint(getConstraintListType()); print(" list = ");
+			print(getIndexName()); print(".get(ArrayIndex.indexOf(");
+			printGetVariable(getIndexedVariable());
+		println("));");
+		tprintln("if (list == null) {");
+		ttprint(getIndexName()); print(".put(ArrayIndex.indexOf(");
+			printGetVariable(getIndexedVariable());
+			print("), list = new "); print(getConstraintListType());
+		println("());");
+		tprintln('}');
+		tprintln("list.addFirst(constraint);");
+		decNbTabs();
+		tprintln('}');
+	}
+
+    protected void printGetVariable(FormalVariable variable) throws GenerationException {
+        print("constraint.");
+        print(ConstraintCodeGenerator.getVariableGetterName(variable));
+        print("()");
+    }
+
+	@Override
+	protected void printCreateIteratorCode() throws GenerationException {
+		print("new NestedIterator<");
+		print(getConstraintTypeName());
+		print(">("); print(getIndexName());  print(')');
+	}
+
+	@Override
+	protected void generateFilteredMasterLookupCode() throws GenerationException {
+        tprint("return new FilteredIterable<");
+            print(getConstraintTypeName());
+        println(">(");
+            ttprint("new NestedIterable<");
+                print(getConstraintTypeName());
+            print(">("); print(getIndexName()); println("), filter");
+        tprintln(");");
+	}
+
+    @Override
+    protected BinaryGuardedLookupType getLookupTypeAt(int index) {
+        return (BinaryGuardedLookupType)super.getLookupTypeAt(index);
+    }
+
+    @Override
+    protected void generateLookupArgumentList(int lookupTypeIndex) throws GenerationException {
+        prints(getLookupTypeAt(lookupTypeIndex).getGuards().first().getOtherTypeString());
+        print(getLookupArgumentName());
+    }
+
+	@Override
+	protected void generateLookupCode(int lookupTypeIndex) throws GenerationException {
+		tprint("return "); print(getIndexName());
+			print(".get(ArrayIndex.indexOf("); print(getLookupArgumentName());
+		println("));");
+	}
+
+	@Override
+	protected void doGenerateResetCode() throws GenerationException {
+        tprintln('{');
+        incNbTabs();
+        tprint("Iterator<"); print(getConstraintListType()); print("> outer = ");
+            print(getIndexName()); println(".iterator();");
+        tprintln("while (outer.hasNext()) terminateAll(outer.next());");
+        decNbTabs();
+        tprintln('}');
+        tprint(getIndexName()); println(".reset();");
+	}
+
+	@Override
+	protected void doGenerateClearCode() throws GenerationException {
+		tprint(getIndexName());
+		println(".reset();");
+	}
+
+	protected FormalVariable getIndexedVariable() {
+		return getIndexedVariableAt(0);
+	}
+	protected boolean isBooleanIndexed() {
+		return getIndexedVariable().getType() == PrimitiveType.BOOLEAN;
+	}
+	protected String getLookupArgumentName() {
+		return getIndexedVariable().getIdentifier() + "_value";
+	}
+
+	public String getIndexType() {
+		return ArrayIndex.class.getSimpleName()
+			+ '<' + getConstraintListType() + '>';
+	}
+
+	public String getIndexName() {
+		return getArrayIndexName(getConstraint(), getCategory());
+	}
+	public static String getArrayIndexName(UserDefinedConstraint constraint, ILookupCategory category) {
+		return "$$"
+			+ constraint.getIdentifier()
+			+ "ArrayIndex_"
+			+ constraint.getIndexOf(category);
+	}
+}
@@ -214,6 +214,18 @@ public abstract class CIFJavaCodeGenerator extends JavaCodeGenerator {
     public Rule getRuleAt(int index) {
         return getRules().get(index);
     }
+    
+    /**
+     * Returns whether the constraints told by some of the rules are 
+     * scheduled in the constraint system, because these rules have
+     * a priority (cf. {@link ConstraintCodeGenerator#isScheduled(Rule)}).
+     */
+    protected boolean hasScheduledRules() {
+    	if (getOptions().doStackOptimizations())
+    		for (Rule rule : getRules())
+    			if (rule.hasPriority()) return true;
+    	return false;
+    }
 
     public Collection<Solver> getSolvers() {
         return getCHRIntermediateForm().getSolvers();
@@ -242,6 +254,46 @@ public abstract class CIFJavaCodeGenerator extends JavaCodeGenerator {
     protected boolean hasToTrace() {
     	return getDebugInfo().hasToDebug();
     }
+    
+    protected boolean hasToCount() {
+    	return getOptions().doMetrics();
+    }
+    
+    private MetricsLayout metricsLayout;
+    
+    protected MetricsLayout getMetricsLayout() {
+    	if (metricsLayout == null)
+    		metricsLayout = new MetricsLayout(getCHRIntermediateForm());
+    	return metricsLayout;
+    }
+    
+    /**
+     * Prints the statement that increments the counter with the given
+     * index (cf. {@link MetricsLayout}), without indentation.
+     */
+    protected void printCount(int index) throws GenerationException {
+    	print("$$metrics["); print(index); println("]++;");
+    }
+    
+    protected boolean hasToProfile() {
+    	return getOptions().doProfiling();
+    }
+    
+    private ProfileLayout profileLayout;
+    
+    protected ProfileLayout getProfileLayout() {
+    	if (profileLayout == null)
+    		profileLayout = new ProfileLayout(getCHRIntermediateForm());
+    	return profileLayout;
+    }
+    
+    /**
+     * Prints the statement that increments the profile counter with 
+     * the given index (cf. {@link ProfileLayout}), without indentation.
+     */
+    protected void printProfileCount(int index) throws GenerationException {
+    	print("$$profile["); print(index); println("]++;");
+    }
 
     public HashSet<Variable> getLocalVariables() {
         return getCHRIntermediateForm().getLocalVariables();
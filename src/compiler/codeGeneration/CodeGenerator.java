@@ -1181,7 +1181,7 @@ public abstract class CodeGenerator implements Appendable {
     }
     
     public Appendable append(CharSequence csq, int start, int end) throws IOException {
-    	write(csq.toString(), start, end);
+    	write(csq.toString(), start, end - start);
     	return this;
     }
             
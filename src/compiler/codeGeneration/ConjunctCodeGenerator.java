@@ -187,6 +187,11 @@ public class ConjunctCodeGenerator extends JavaCodeGenerator
 	
 	public void visit(UserDefinedConjunct conjunct) throws GenerationException {
 		UserDefinedConstraint constraint = conjunct.getConstraint(); 
+		if (constraint.isRecyclable()) {
+			print(HandlerCodeGenerator.getActivationMethodFor(constraint));
+			printExplicitArguments(conjunct);
+			return;
+		}
         print("new ");
         print(ConstraintCodeGenerator.getConstraintTypeName(constraint));
         printExplicitArguments(conjunct);
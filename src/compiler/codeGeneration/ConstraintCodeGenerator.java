@@ -20,6 +20,11 @@ import static compiler.codeGeneration.HandlerCodeGenerator.getHandlerTypeName;
 import static compiler.codeGeneration.HandlerCodeGenerator.getLookupMethodName;
 import static compiler.codeGeneration.HandlerCodeGenerator.getStorageMethodNameFor;
 import static compiler.codeGeneration.HistoryCodeGenerator.hasToDoHistoryTest;
+import static compiler.codeGeneration.MetricsLayout.ACTIVATIONS;
+import static compiler.codeGeneration.MetricsLayout.ATTEMPTS;
+import static compiler.codeGeneration.MetricsLayout.PARTNERS;
+import static compiler.codeGeneration.MetricsLayout.REACTIVATIONS;
+import static compiler.codeGeneration.MetricsLayout.REMOVALS;
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
 
@@ -35,6 +40,8 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import runtime.ConstraintIterable;
+import runtime.DoublyLinkedConstraintList;
+import runtime.SinglyLinkedConstraintList;
 import util.StringUtils;
 import util.Terminatable;
 import util.collections.Stack;
@@ -104,6 +111,8 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         setGeneratedContinuations(new HashSet<AbstractContinuationInfo>());
         
         PROPAGATION_HISTORY_CODE_GENERATOR = new HistoryCodeGenerator(this);
+        PROPAGATION_HISTORY_CODE_GENERATOR.setFilterHistories(getOptions().doHistoryFilters());
+        PROPAGATION_HISTORY_CODE_GENERATOR.setTrailing(getOptions().doTrailing());
 	}
 	
 	public UserDefinedConstraint getConstraint() {
@@ -221,8 +230,11 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			generateReactivationCode();
 			generateBackPointerCode();
 			generateTerminateMethod();
+			if (doTrailing()) generateTrailingMethods();
+			if (isRecyclable()) generateRecyclingMembers();
 		} else {
 			generateNotStoredMethods();
+			if (isRecyclable()) generateRecyclingMembers();
 		}
 		generateTrivialInspectors();
 	}
@@ -271,7 +283,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 	protected void generateArgumentMembers() throws GenerationException {
 		for (FormalVariable variable : getFormalVariables()) {
 			nl();
-			tprint("final ");
+			if (!isRecyclable()) tprint("final "); else printTabs();
 			print(variable.getTypeString());
 			print(' ');
 			print(variable.getIdentifier());
@@ -289,6 +301,33 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 	public boolean mayBeStored() {
 		return getConstraint().mayBeStored();
 	}
+	public boolean isRecyclable() {
+		return getConstraint().isRecyclable();
+	}
+	
+	protected void generateRecyclingMembers() throws GenerationException {
+		nl();
+		tprint(getConstraintTypeName()); println(" $$nextFree;");
+		nl();
+		tprint("final void $$reinit(");
+		printFullVariableList(getFormalVariables());
+		println(") {");
+		if (mayBeStored()) {
+			ttprintln("alive = true;");
+			ttprintln("ID = 0;");
+			ttprintln("$$generation = null;");
+		} else if (getArity() == 0) {
+			ttprintln("// NOP");
+		}
+		for (FormalVariable variable : getFormalVariables()) {
+			ttprint("this.");
+			print(variable.getIdentifier());
+			print(" = ");
+			print(variable.getIdentifier());
+			println(";");
+		}
+		tprintln('}');
+	}
     
     protected void generateStorageCode() throws GenerationException {
     	nl();
@@ -313,6 +352,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		if (isReactive()) {
 			if (hasToTrace())
 				tprintln("if (tracer != null) tracer.reactivated(this);");
+			tprintCount(REACTIVATIONS);
 			
 			if (isRecursive()) {
 				if (warrantsReactivationClass())
@@ -327,18 +367,101 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			tprintln("// NOP");
 		}
 		closeAccolade();
+		
+		if (doTargetedWakeups()) generateTargetedReactivationCode();
+	}
+	
+	/**
+	 * Generates the <code>reactivate(int)</code> method, called by the
+	 * {@link runtime.Watcher}s of the constraint, that only reactivates
+	 * the given set of reactive occurrences.
+	 * 
+	 * @see #doTargetedWakeups()
+	 */
+	protected void generateTargetedReactivationCode() throws GenerationException {
+		if (isRecursive()) {
+			nl();
+			tprintln("protected int $$wakeups;");
+		}
+		
+		nl();
+		tprintOverride();
+		if (isRecursive()) tprintSuppress("synthetic-access");
+		tprintln("public final void reactivate(int occurrences) {");
+		incNbTabs();
+		if (hasToTrace())
+			tprintln("if (tracer != null) tracer.reactivated(this);");
+		tprintCount(REACTIVATIONS);
+		
+		if (isRecursive()) {
+			tprintln("$$wakeups |= occurrences;");
+			printReactivate("WAKEUP", false);
+		} else {
+			printNonRecursive__ctivationCode(false, true);
+		}
+		closeAccolade();
 	}
 	
 	protected void printReactivate(String it, boolean doGeneration) throws GenerationException {
 		tprintln("if ($$constraintSystem.inHostLanguageMode()) {");
 		ttprint(getHandlerTypeName(getHandler()));
-			print(".this.call("); print(it); println(");");
+			print(hasScheduledRules()? ".this.callPrioritized(" : ".this.call(");
+			print(it); println(");");
 		tprintln("} else {");
 		if (doGeneration) ttprintln("reactivated = false;");
 		printTab(); printPush(it);
 		tprintln('}');
 	}
 	
+	/**
+	 * Returns the occurrences that are run when the constraint is
+	 * reactivated, in order. In the occurrence sets of 
+	 * {@link runtime.Watcher}s, the <code>i</code>'th of these
+	 * is represented by bit <code>i</code>.
+	 */
+	protected List<Occurrence> getReactiveOccurrences() {
+		List<Occurrence> result = new ArrayList<Occurrence>();
+		for (Occurrence occurrence : getConstraint().getPositiveOccurrences())
+			if (occurrence.isActive() && occurrence.isReactive())
+				result.add(occurrence);
+		return result;
+	}
+	
+	/**
+	 * Returns the set of reactive occurrences that can be affected
+	 * when the variable at the given argument is bound or unified.
+	 */
+	protected int getWakeupMask(int index) {
+		int result = 0, bit = 1;
+		for (Occurrence occurrence : getReactiveOccurrences()) {
+			if (occurrence.isReactiveOn(index)) result |= bit;
+			bit <<= 1;
+		}
+		return result;
+	}
+	
+	/**
+	 * Checks whether the constraint observes some of its arguments
+	 * through {@link runtime.Watcher}s, that only reactivate the 
+	 * occurrences that depend on that argument. This is the case if 
+	 * there is a reactive argument on which not all reactive occurrences
+	 * depend. Targeted wakeups are not combined with the generation 
+	 * optimization: a partial reactivation does not supersede 
+	 * earlier ones. They can be turned off using the 
+	 * <code>-watchers</code> option.
+	 */
+	protected boolean doTargetedWakeups() {
+		if (!getOptions().doTargetedWakeups()) return false;
+		if (!isReactive() || doGenerationOptimization()) return false;
+		final int n = getReactiveOccurrences().size();
+		if (n < 2 || n >= Integer.SIZE) return false;
+		final int all = (1 << n) - 1;
+		for (int i = 0; i < getArity(); i++)
+			if (getConstraint().isReactiveOn(i) && getWakeupMask(i) != all)
+				return true;
+		return false;
+	}
+	
 	protected boolean warrantsReactivationClass() {
 		if (isReactive() && isRecursive())
 			for (Occurrence occurrence : getConstraint().getPositiveOccurrences())
@@ -373,9 +496,78 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		tprintOverride();
 		tprintln("protected final void terminate() {");
 		incNbTabs();
+		if (isRecyclable()) tprintln("if (!alive) return;");
 		generateTerminateCode(false);
+		if (isRecyclable()) {
+			// the object is recycled once no activation can refer to it anymore
+			final String removed = HandlerCodeGenerator.getRemovedListName(getConstraint());
+			final String nbRemoved = HandlerCodeGenerator.getNbRemovedName(getConstraint());
+			nl();
+			tprint("if ("); print(nbRemoved); println(" < RECYCLING_LIMIT) {");
+				ttprint("$$nextFree = "); print(removed); println(';');
+				ttprint(removed); println(" = this;");
+				ttprint(nbRemoved); println("++;");
+			tprintln('}');
+		}
 		closeAccolade();
 	}
+	/**
+	 * Generates the trail entry that records the removal of a constraint,
+	 * and the methods that are called when that removal is undone,
+	 * or can no longer be undone (see {@link runtime.Trail}).
+	 * A revived constraint keeps its identifier and propagation histories.
+	 */
+	protected void generateTrailingMethods() throws GenerationException {
+		final boolean logging = HistoryCodeGenerator.usesTerminationLog(getRules());
+		
+		nl();
+		tprintln("private final class $$Removal extends runtime.Trail.Entry {");
+		incNbTabs();
+		tprintOverride();
+		tprintln("protected void undo() { revive(); }");
+		if (logging) {
+			tprintOverride();
+			tprintln("protected void commit() { logTermination(); }");
+		}
+		closeAccolade();
+		
+		nl();
+		tprintln("private void revive() {");
+		incNbTabs();
+		tprintln("alive = stored = true;");
+		printStorageCode();
+		closeAccolade();
+		
+		if (logging) {
+			nl();
+			tprintln("private void logTermination() {");
+			incNbTabs();
+			PROPAGATION_HISTORY_CODE_GENERATOR.setNbTabs(getNbTabs());
+			PROPAGATION_HISTORY_CODE_GENERATOR.generateTerminationLogCode(getConstraint(), getRules());
+			closeAccolade();
+		}
+	}
+	
+	/**
+	 * Returns whether changes to the constraint store have to be 
+	 * recorded on the trail (see {@link runtime.Trail}).
+	 */
+	protected boolean doTrailing() {
+		return getOptions().doTrailing();
+	}
+	
+	/**
+	 * Prints the statement that increments the given counter of
+	 * the constraint (cf. {@link MetricsLayout}), if counters
+	 * have to be generated.
+	 */
+	protected void tprintCount(int counter) throws GenerationException {
+		if (hasToCount()) {
+			printTabs();
+			printCount(getMetricsLayout().getIndex(getConstraint(), counter));
+		}
+	}
+	
 	protected void generateBackPointerCode() throws GenerationException {
 		if (hasStorageBackPointers()) {
 			nl();
@@ -396,6 +588,10 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		
 		if (constraint.mayBeStored()) {
 			if (!inRehash) {
+				// a separate history identifier is registered as soon as it is allocated
+				if (HistoryCodeGenerator.usesTerminationLog(getRules())
+						&& HistoryCodeGenerator.needsSeparateHistoryId(constraint))
+					tprintln("if (!stored) $$constraintSystem.getTerminationLog().add(historyId);");
 				nl();
 				tprintln("if (stored) {");
 				incNbTabs();
@@ -405,6 +601,12 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			PROPAGATION_HISTORY_CODE_GENERATOR.setNbTabs(getNbTabs());
 	        for (Rule rule : getRules())
 	        	PROPAGATION_HISTORY_CODE_GENERATOR.generateTerminationCode(constraint, rule);
+	        if (doTrailing()) {
+	        	tprintln("if ($$constraintSystem.isTrailing()) $$constraintSystem.getTrail().push(new $$Removal());");
+	        	if (HistoryCodeGenerator.usesTerminationLog(getRules()))
+	        		tprintln("else logTermination();");
+	        } else
+	        	PROPAGATION_HISTORY_CODE_GENERATOR.generateTerminationLogCode(constraint, getRules());
 			
 	        if (hasStorageBackPointers())
 				tprintln(
@@ -421,6 +623,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			
 			if (hasToTrace())
 				tprintln("if (tracer != null) tracer.removed(this);");
+			tprintCount(REMOVALS);
 			
 			if (!inRehash) closeAccolade();
 		}
@@ -634,12 +837,12 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			if (hasToBeRehashable()) {
 				nl();
 				tprintln("public int getRehashableKeyId() {");
-				ttprintln("return ID;");
+				ttprintln("return (int)ID;");
 				tprintln('}');
 				nl();
 				tprintln("public boolean rehash() {");
 	            incNbTabs();
-	            tprintln("if (!alive) return false;");
+	            tprintln("if (!isAlive() || isExpired()) return false;");
 				printRemoveSelfCode();
 				printHashCodeComputation(); 
 				for (ILookupCategory category : getConstraint().getLookupCategories()) {
@@ -657,7 +860,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 				closeAccolade();
 				nl();
 				tprintln("public boolean isSuperfluous() {");
-				ttprintln("return !alive;");
+				ttprintln("return !isAlive() || isExpired();");
 				tprintln('}');				
 			}
 			
@@ -771,7 +974,26 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		if (isRecursive()) print("Continuation "); else print("boolean ");
 		print(getOccurrenceMethodName(active)); print("()");
 		openAccolade();
+		if (hasToCount()) {
+			printTabs();
+			printCount(getMetricsLayout().getIndex(active, ATTEMPTS));
+		}
+		if (hasToProfile()) {
+			printTabs();
+			printProfileCount(getProfileLayout().getIndex(active, ProfileLayout.ATTEMPTS));
+			tprintln("final long $$start = System.nanoTime();");
+			tprintln("try {");
+			incNbTabs();
+		}
 		doGenerateOccurrenceMethod(active);
+		if (hasToProfile()) {
+			decNbTabs();
+			tprintln("} finally {");
+			ttprint("$$profile[");
+				print(getProfileLayout().getIndex(active, ProfileLayout.NANOS));
+				println("] += System.nanoTime() - $$start;");
+			tprintln('}');
+		}
 		closeAccolade();
 	}
 	
@@ -803,6 +1025,10 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		boolean historyTest = hasToDoHistoryTest(active)
 			&& (!continuation || active.hasPartners());
 		
+		if (hasToProfile()) {
+			printTabs();
+			printProfileCount(getProfileLayout().getIndex(active, ProfileLayout.MATCHED));
+		}
 		if (historyTest) {
 			PROPAGATION_HISTORY_CODE_GENERATOR.setNbTabs(getNbTabs());
 			PROPAGATION_HISTORY_CODE_GENERATOR.generateNotInHistoryTest(active); 
@@ -1004,6 +1230,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 				@Override
                 public void visit(NegativeHead negativeHead) throws GenerationException {
 					printDeclarations();
+					printProfileEntry();
 					
 					if (!continuation || !first) {
 						if (addFirstCode)
@@ -1031,6 +1258,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 				@Override
                 public void visit(IGuardConjunct guard) throws GenerationException {
 					printDeclarations();
+					printProfileEntry();
 					
 					if (!continuation || !first) { 
                         tprint("if (");
@@ -1046,12 +1274,23 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 				protected void tprintNotFirstTest() throws GenerationException {
 					if (addFirstCode) tprint("if (!first) "); else printTabs();
 				}
+				/**
+				 * Counts the entry in the current element of the schedule
+				 * of the active occurrence (if profiling): the element is
+				 * the one whose declarations were printed last.
+				 */
+				protected void printProfileEntry() throws GenerationException {
+					if (hasToProfile() && scheduled instanceof Occurrence && (!continuation || !first)) {
+						tprintNotFirstTest();
+						printProfileCount(getProfileLayout().getIndex(active, index-1, ProfileLayout.ENTRIES));
+					}
+				}
 				protected void printNextTest(Lookup lookup) throws GenerationException {
 					Occurrence partner = lookup.getOccurrence();
 					if (isSSLookup(lookup)) {
 						print(getOccurrenceName(partner)); print(" != null)");
 					} else {
-						print(getIteratorName(partner)); print(".hasNext())");
+						printHasNextTest(lookup, false); print(')');
 					}
 					result = true;
 
@@ -1063,13 +1302,14 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 					if (isSSLookup(lookup)) {
 						print(getOccurrenceName(partner)); print(" == null)");
 					} else {
-						print('!'); print(getIteratorName(partner)); print(".hasNext())");
+						printHasNextTest(lookup, true); print(')');
 					}
 				}
 			
 				@Override
-                public void visit(Lookup lookup) throws GenerationException {
+                public void visit(final Lookup lookup) throws GenerationException {
 					printDeclarations();
+					printProfileEntry();
 					
 					final String constraintType = getConstraintTypeName(lookup.getConstraint());
 					final Occurrence partner = lookup.getOccurrence();
@@ -1077,12 +1317,18 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 					final String iterable = getIterableName(partner);
 					final String name = getOccurrenceName(partner);
 					final boolean ss = isSSLookup(lookup);
+					final boolean cursor = !ss && usesCursor(lookup);
 					boolean nextTested = hasNextTested;
                     
                     // declare the iteratables and iterators, and do the lookups:
 					if (!ss && (!continuation || !first)) {
-						tprint(ConstraintIterable.class.getCanonicalName());
-							print('<'); print(constraintType); print("> "); 
+						if (cursor)
+							tprint(ConstraintStoreCodeGenerator.getConstraintListType(lookup.getConstraint()));
+						else {
+							tprint(ConstraintIterable.class.getCanonicalName());
+								print('<'); print(constraintType); print('>');
+						}
+						print(' ');
 						printcln(iterable);
 						
 						tprint(iterable); print(" = ");
@@ -1101,17 +1347,19 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 						}
 						
 						if (!continuation || !includeIteratorInContinuation(active, lookup)) {
-                            tprint("Iterator<"); print(constraintType); print("> ");
+                            tprint(getIteratorType(lookup)); print(' ');
                             printcln(iter);
                         }
 						
 						tprintNotFirstTest();
 						print(iter); print(" = "); print(iterable); print('.');
-						if (universal)
-							print(mayBeRemoved(partner)? "universal" : "semiUniversal");
+						if (cursor)
+							print("firstNode");
+						else if (universal)
+							print(mayBeRemoved(partner)? "universalIterator" : "semiUniversalIterator");
 						else
-							print("existential");
-						println("Iterator();");
+							print("existentialIterator");
+						println("();");
 						
 						if (partner.getType() == REMOVED) universal = false;
 					}
@@ -1171,11 +1419,11 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 								public void generate() throws GenerationException {
 									decNbTabs();
 									tprint("} while (");
-									print(iter); println(".hasNext());");
+									printHasNextTest(lookup, false); println(");");
 								}
 								@Override
 								public String toString() {
-									return "} while (" + iter + ".hasNext());";
+									return "} while (" + iter + (cursor? " != null);" : ".hasNext());");
 								}
 							});
 						} else if (!nextTested) {
@@ -1198,7 +1446,27 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 					
 					if (!ss && (scheduled instanceof Occurrence || moreTests)) {
 						tprintNotFirstTest();
-						print(name); print(" = "); print(iter); println(".next();");
+						if (cursor) {
+							// the node can have been removed since the last test:
+							if (addFirstCode) print("{ ");
+							print(name); print(" = ("); print(iter); print(" = ");
+								print(getCursorListType(lookup)); print(".skipTerminated(");
+								print(iter); print(")).getValue(); ");
+							print(iter); print(" = "); print(iter); print(".getNext();");
+							if (addFirstCode) print(" }");
+							nl();
+						} else {
+							print(name); print(" = "); print(iter); println(".next();");
+						}
+					}
+					
+					if (hasToCount() && scheduled instanceof Occurrence) {
+						tprintNotFirstTest();
+						printCount(getMetricsLayout().getIndex(active, PARTNERS));
+					}
+					if (hasToProfile() && scheduled instanceof Occurrence) {
+						tprintNotFirstTest();
+						printProfileCount(getProfileLayout().getIndex(active, index-1, ProfileLayout.CANDIDATES));
 					}
 					
 					printDifferentPartnersTest(partner);
@@ -1497,13 +1765,21 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         printDeclarations(active, declaredVariables);
         
         if (hasToTrace()) printRuleFire_('s', active);
+        if (hasToCount()) {
+        	printTabs();
+        	printCount(getMetricsLayout().getIndex(rule));
+        }
+        if (hasToProfile()) {
+        	printTabs();
+        	printProfileCount(getProfileLayout().getIndex(active, ProfileLayout.FIRED));
+        }
         
         boolean store = !continuation && active.isStored();
         if (store) {
         	// it has to be stored if this rule fires,
         	// but if firing this body always returns (possibly with continuation)
         	// this can also not be the case...
-        	boolean mayBePreviouslyStored = active.isReactive() || !alwaysReturns(rule.getBody());
+        	boolean mayBePreviouslyStored = active.isReactive() || !alwaysReturns(rule);
         	if (!mayBePreviouslyStored)
         		for (Occurrence previous : active.getPreviousActivePositiveOccurrences())
         			if (previous.isStored()) {
@@ -1550,7 +1826,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         int continuationIndex,
         List<ContinuationArgument> declaredVariables
     ) throws GenerationException {
-        final int index = getContinuationIndex(restBody);
+        final int index = getContinuationIndex(active.getRule(), restBody);
         final boolean continuation = declaredVariables != null; 
         
         final boolean doGeneration = doGenerationOptimization(active);
@@ -1722,6 +1998,40 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		return lookup.getLookupCategory().getIndexType().isSetSemantics();
 	}
 	
+	/**
+	 * Lookups that return the constraint lists themselves are traversed
+	 * using a node cursor kept in a local variable (or continuation field)
+	 * instead of an iterator object. The cursor skips (and unlinks) the
+	 * nodes of removed constraints, just like a universal iterator.
+	 */
+	protected static boolean usesCursor(Lookup lookup) {
+		return lookup.getLookupCategory().getIndexType().returnsConstraintLists();
+	}
+	protected static String getCursorListType(Lookup lookup) {
+		return (lookup.getConstraint().mayBeRemoved()
+			? DoublyLinkedConstraintList.class
+			: SinglyLinkedConstraintList.class
+		).getCanonicalName();
+	}
+	protected static String getIteratorType(Lookup lookup) {
+		final String constraintType = getConstraintTypeName(lookup.getConstraint());
+		return usesCursor(lookup)
+			? getCursorListType(lookup) + ".Node<" + constraintType + '>'
+			: "Iterator<" + constraintType + '>';
+	}
+	protected void printHasNextTest(Lookup lookup, boolean negated) throws GenerationException {
+		final String iter = getIteratorName(lookup.getOccurrence());
+		if (usesCursor(lookup)) {
+			print('('); print(iter); print(" = "); 
+				print(getCursorListType(lookup)); print(".skipTerminated(");
+				print(iter); print("))");
+			print(negated? " == null" : " != null");
+		} else {
+			if (negated) print('!');
+			print(iter); print(".hasNext()");
+		}
+	}
+	
 	private void printRuleFire_(char X, Occurrence active) throws GenerationException {
 		printRuleFire_(X, active, false);
 	}
@@ -1809,7 +2119,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 					seedingJump;
 				
 				private boolean noJumpAfterCommit = active.getType() == REMOVED 
-					|| alwaysReturns(active.getBody())
+					|| alwaysReturns(active.getRule())
 					|| ( 
 						theLookup.getOccurrence().getType() == KEPT
 							&& !mayBeRemoved(theLookup.getOccurrence())
@@ -1913,7 +2223,17 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		@Override
 		public void visit(UserDefinedConjunct conjunct) throws GenerationException {
 			exitHostLanguageMode();
-			super.visit(conjunct);
+			final Rule rule = active.getRule();
+			if (isScheduled(rule)) {
+				print("$$constraintSystem.schedule(");
+				printArgument(rule.getPriority());
+				print(", new ");
+				print(ConstraintCodeGenerator.getConstraintTypeName(conjunct.getConstraint()));
+				printExplicitArguments(conjunct);
+				print(')');
+			} else {
+				super.visit(conjunct);
+			}
 			index++;
 		}
 		@Override
@@ -2061,6 +2381,16 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		}
     }
 	
+	/**
+	 * The constraints told by the body of a rule with a priority are
+	 * scheduled in the constraint system, instead of being activated
+	 * immediately. Scheduled constraints are called as continuations,
+	 * so this requires stack optimizations.
+	 */
+	protected boolean isScheduled(Rule rule) {
+		return rule.hasPriority() && getOptions().doStackOptimizations();
+	}
+	
 	protected boolean reactiveConstraints() {
 		for (UserDefinedConstraint constraint : getUserDefinedConstraints())
 			if (constraint.isReactive()) return true;
@@ -2072,17 +2402,26 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 		return false;
 	}
     
-    protected boolean alwaysReturns(Body body) {
+    protected boolean alwaysReturns(Rule rule) {
+    	final Body body = rule.getBody();
     	return body.hasConjuncts() && (
-			body.endsWithFailure() || needsContinuation(body)
+			body.endsWithFailure() || needsContinuation(rule, body)
 		);
     }
     
-    protected boolean needsContinuation(Body body) {
-    	return getContinuationIndex(body) >= 0;
+    protected boolean needsContinuation(Rule rule, Body body) {
+    	return getContinuationIndex(rule, body) >= 0;
     }
     
-    protected int getContinuationIndex(Body body) {
+    /**
+     * Returns the index of the first conjunct of the given (part of the)
+     * body of the given rule that has to be called as a continuation,
+     * or <code>-1</code> if there is none. The constraints told by
+     * a rule with a priority are scheduled (cf. {@link #isScheduled(Rule)}),
+     * so its body never needs a continuation.
+     */
+    protected int getContinuationIndex(Rule rule, Body body) {
+    	if (isScheduled(rule)) return -1;
         int result = 0;
         for (IConjunct conjunct : body) {
             if (conjunct instanceof UserDefinedConjunct
@@ -2133,8 +2472,8 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 					if (setReactivatedFalse && !lastKept)
 						tprintln("reactivated = false;");
 					tprint("if (");
-					print(getIteratorName(occurrence));
-					println(".hasNext()) {");
+					printHasNextTest(lookups.get(0), false);
+					println(") {");
 					incNbTabs();
 					if (setReactivatedFalse && lastKept)
 						tprintln("reactivated = false;");
@@ -2160,7 +2499,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 
 	        if (testedHasNext) {
 	        	if (doSelfTailCall) {
-	        		printUndoPop();
+	        		printUndoPop(active, continuationIndex, lookups.get(0));
 	        		doSelfTailCall = false;
 	        	} else {
 	        		printPush(lastPush);
@@ -2447,6 +2786,56 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 	        tprintln('}');
 	        closeAccolade();
     	}
+    	if (isRecursive() && doTargetedWakeups()) {
+    		nl();
+    		generateWakeupContinuation();
+    	}
+    }
+    
+    /**
+     * Generates the continuation that reactivates the occurrences
+     * in the set <code>$$wakeups</code> (cf. {@link #doTargetedWakeups()}).
+     * The sets of targeted reactivations that happen before
+     * it is called are combined.
+     */
+    protected void generateWakeupContinuation() throws GenerationException {
+    	tprintln("final Wakeup WAKEUP = new Wakeup();");
+    	tprint("protected final class Wakeup extends Continuation");
+    	openAccolade();
+    	tprintOverride();
+    	tprint("protected Continuation call()");
+    	openAccolade();
+    	tprintln("final int wakeups = $$wakeups;");
+    	tprintln("$$wakeups = 0;");
+    	
+    	boolean testAlive = mayBeRemoved();
+    	if (testAlive) {
+    		tprint("if (isAlive())");
+    		openAccolade();
+    	}
+    	tprintln("Continuation continuation;");
+    	int bit = 1;
+    	for (Occurrence occurrence : getReactiveOccurrences()) {
+    		tprint("if ((wakeups & "); print(bit); print(") != 0 && (continuation = ");
+    		print(getOccurrenceMethodName(occurrence));
+    		println("()) != null) return continuation;");
+    		bit <<= 1;
+    	}
+    	if (hasToTrace()) {
+    		tprint("if (tracer != null) tracer.suspended(");
+    		print(getConstraintTypeName());
+    		println(".this);");
+    	}
+    	if (testAlive) closeAccolade();
+    	tprintDeadContinuation();
+    	closeAccolade();
+    	nl();
+    	tprintOverride();
+    	tprintln("public String toString() {");
+    	ttprint("return "); printLiteral("Wakeup "); 
+    		print(" + "); print(getConstraintTypeName()); println(".this;");
+    	tprintln('}');
+    	closeAccolade();
     }
     
     protected void generateNonRecursiveCallMethod() throws GenerationException {
@@ -2474,10 +2863,19 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         	tprintln("if (tracer != null) tracer.activated(this);");
         	nl();
         }
+    	tprintCount(ACTIVATIONS);
     	printNonRecursive__ctivationCode(true);
     }
     
     private void printNonRecursive__ctivationCode(final boolean activate) throws GenerationException {
+    	printNonRecursive__ctivationCode(activate, false);
+    }
+    /**
+     * @param targeted
+     * 	Only reactivate the occurrences in the set 
+     * 	<code>occurrences</code> (cf. {@link #doTargetedWakeups()}).
+     */
+    private void printNonRecursive__ctivationCode(final boolean activate, boolean targeted) throws GenerationException {
     	Iterator<Occurrence> iterator = new FilteredIterator<Occurrence>(
 			getConstraint().getPositiveOccurrences(), 
     		new Filtered.Filter<Occurrence>() {
@@ -2495,10 +2893,16 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
     			accos = stored || hasToTrace();
     		
     		tprint("if (");
+    		int bit = 1;
     		do {
 	    		Occurrence occurrence = iterator.next();
+	    		if (targeted) {
+	    			print("((occurrences & "); print(bit); print(") == 0 || ");
+	    			bit <<= 1;
+	    		}
 				print(getOccurrenceMethodName(occurrence));
 				print("()");
+				if (targeted) print(')');
 				
 				if (iterator.hasNext()) print(" && ");
 				else { print(')'); break; }
@@ -2543,6 +2947,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         	tprintln("if (tracer != null) tracer.activated(this);");
         	nl();
         }
+        if (activate) tprintCount(ACTIVATIONS);
         
         boolean mayBeReactivation = !activate || !warrantsReactivationClass();
         boolean doGeneration = doGenerationOptimization();
@@ -2661,7 +3066,8 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
             = getContinuationArguments(active, index);
     
         for (ContinuationArgument argument : arguments) {
-            tprint("private final ");
+        	// cursors are advanced when the continuation is resumed in place
+        	tprint(isCursor(argument)? "private " : "private final ");
             prints(argument.getTypeString());
             print(argument.getIdentifier());
             println(';');
@@ -2950,7 +3356,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 						public void visit(Lookup lookup) throws Exception {
 							Occurrence partner = lookup.getOccurrence();
 							if (!isSSLookup(lookup) && includeInContinuation(active, lookups, lookup, lastIndex + 1))
-				        		arguments.add(new IteratorContinuationArgument(partner));
+				        		arguments.add(new IteratorContinuationArgument(lookup));
 				        	if (!hasToTrace() && includeInContinuation(active, lookups, lookup, lastIndex))
 				        		arguments.add(new PartnerContinuationArgument(partner));
 						}
@@ -3175,13 +3581,20 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
             return getConstraintTypeName(partner.getConstraint());
         }
     }
+    protected static boolean isCursor(ContinuationArgument argument) {
+    	return (argument instanceof IteratorContinuationArgument)
+    		&& usesCursor(((IteratorContinuationArgument)argument).getLookup());
+    }
     protected static class IteratorContinuationArgument extends ContinuationArgument {
-        private Occurrence partner;
-        protected IteratorContinuationArgument(Occurrence partner) {
-            this.partner = partner;
+        private Lookup lookup;
+        protected IteratorContinuationArgument(Lookup lookup) {
+            this.lookup = lookup;
         }
+        protected Lookup getLookup() {
+			return lookup;
+		}
         protected Occurrence getPartner() {
-			return partner;
+			return getLookup().getOccurrence();
 		}
         
         @Override
@@ -3194,7 +3607,7 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         }
         @Override
         public String getTypeString() {
-            return "Iterator<" + getConstraintTypeName(getPartner().getConstraint()) + '>';
+            return getIteratorType(getLookup());
         }
     }
     
@@ -3210,7 +3623,12 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         }
         
         tprintln("stored = true;");
-        tprintln("ID = IDcounter++;");
+        tprintln(HistoryCodeGenerator.usesTerminationLog(getRules())
+        	? "ID = nextLoggedConstraintId();"
+        	: "ID = $$constraintSystem.nextConstraintId();"
+        );
+        tprint("$$generation = "); 
+        	print(getHandlerTypeName(getHandler())); println(".this.$$generation;");
         
         // history updaten moet mogelijk alleen als niet met insert gebeurde...
         if (active != null && active.getRule().needsHistory()) {
@@ -3218,10 +3636,35 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
 			PROPAGATION_HISTORY_CODE_GENERATOR.generateAddToHistoryOnStore(active);
         }
         
+        printStorageCode();
+        
+        if (doTrailing()) {
+        	tprint("if ($$constraintSystem.isTrailing()) $$constraintSystem.trailInsertion(");
+        		print(getConstraintTypeName()); println(".this);");
+        }
+        
+        if (printStoredTest) closeAccolade(); 
+    }
+    
+    /**
+     * Prints the code that adds the constraint to all indexes,
+     * and to the observer lists of its reactive arguments. 
+     */
+    protected void printStorageCode() throws GenerationException {
         if (hasSetSemanticsLookup()) printHashCodeComputation(true); 
         tprint(getStorageMethodNameFor(getConstraint()));
         	print('('); print(getConstraintTypeName()); println(".this);");
         
+        // arguments with the same set of occurrences share a watcher:
+        final int[] masks = getObserverMasks();
+        for (int i = 0; i < masks.length; i++) {
+        	if (masks[i] != 0 && getWatcherIndex(masks, i) == i) {
+        		tprint("final Watcher $$watcher"); print(i); 
+        			print(" = new Watcher("); print(getConstraintTypeName()); 
+        			print(".this, "); print(masks[i]); println(");");
+        	}
+        }
+        
         for (int i = 0; i < getArity(); i++) {
         	// XXX: if the variable is known fixed at the current occurrence: do not add observer!
         	if (getConstraint().isReactiveOn(i)) {
@@ -3229,7 +3672,11 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         		if (var.getVariableType().isBuiltInConstraintObservable()) {
         			tprint(var.getIdentifier());
         			print(".addBuiltInConstraintObserver("); 
+        			if (masks[i] == 0) {
 	            		print(getConstraintTypeName()); println(".this);");
+        			} else {
+        				print("$$watcher"); print(getWatcherIndex(masks, i)); println(");");
+        			}
         		} else {
         			if (getOptions().performAnalysis())
         				throw new GenerationException("Reactive argument is not observable: " + var);
@@ -3238,8 +3685,30 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
         		}
         	}
         }
-        
-        if (printStoredTest) closeAccolade(); 
+    }
+    
+    /**
+     * Returns, for each argument, the set of reactive occurrences 
+     * that have to be reactivated by a {@link runtime.Watcher} when
+     * it is bound or unified, or zero if the constraint itself 
+     * observes the argument (or if it does not observe it at all).
+     */
+    protected int[] getObserverMasks() {
+    	final int[] result = new int[getArity()];
+    	if (doTargetedWakeups()) {
+    		final int all = (1 << getReactiveOccurrences().size()) - 1;
+    		for (int i = 0; i < result.length; i++) {
+    			if (!getConstraint().isReactiveOn(i)) continue;
+    			int mask = getWakeupMask(i);
+    			if (mask != all) result[i] = mask;
+    		}
+    	}
+    	return result;
+    }
+    private static int getWatcherIndex(int[] masks, int i) {
+    	int j = 0;
+    	while (masks[j] != masks[i]) j++;
+    	return j;
     }
     
     protected void tprintLiveContinuation() throws GenerationException {
@@ -3266,4 +3735,21 @@ public class ConstraintCodeGenerator extends CIFJavaCodeGenerator {
     protected void printUndoPop() throws GenerationException {
     	tprintln("$$continuationStack.undoPop();");
     }
+    
+    /**
+     * Resumes the continuation that is being executed once more. 
+     * Unlike iterators, cursors are values: the cursor of the 
+     * continuation has to be advanced explicitly, or it would 
+     * resume at the same partner again.
+     */
+    protected void printUndoPop(Occurrence active, int index, Lookup lookup) throws GenerationException {
+    	if (usesCursor(lookup)) {
+    		final String iter = getIteratorName(lookup.getOccurrence());
+    		tprint("(("); print(getContinuationType(active, index));
+    			print(")$$continuationStack.undoPop()).");
+    			print(iter); print(" = "); print(iter); println(';');
+    	} else {
+    		printUndoPop();
+    	}
+    }
 }
\ No newline at end of file
@@ -50,7 +50,13 @@ public abstract class ConstraintStoreCodeGenerator extends JavaCodeGenerator {
 		print(name);
 		print(" = new ");
 		print(type);
-		print("()");
+		print('(');
+		printConstructorArguments();
+		print(')');
+	}
+	
+	protected void printConstructorArguments() throws GenerationException {
+		// NOP unless overridden
 	}
 	
 	protected abstract void generateStorageCode() throws GenerationException;
@@ -63,11 +69,27 @@ public abstract class ConstraintStoreCodeGenerator extends JavaCodeGenerator {
 	
 	protected abstract void printCreateIteratorCode() throws GenerationException;
 	
+	/**
+	 * Prints an expression that creates a spliterator over all constraints
+	 * in the store. By default this is a spliterator of unknown size over
+	 * the iterator created by {@link #printCreateIteratorCode()}: stores
+	 * that can be split more efficiently override this method.
+	 */
+	protected void printCreateSpliteratorCode() throws GenerationException {
+		print("java.util.Spliterators.spliteratorUnknownSize(");
+		printCreateIteratorCode();
+		print(", java.util.Spliterator.NONNULL)");
+	}
+	
 	protected abstract void generateFilteredMasterLookupCode() throws GenerationException;
 	
     protected void printLookupReturnType() throws GenerationException {
-    	print(ConstraintIterable.class.getCanonicalName());
-    		print('<'); print(getConstraintTypeName()); print('>');
+    	if (getCategory().getIndexType().returnsConstraintLists())
+    		print(getConstraintListType());
+    	else {
+    		print(ConstraintIterable.class.getCanonicalName());
+    			print('<'); print(getConstraintTypeName()); print('>');
+    	}
     }
     protected abstract void generateLookupArgumentList(int lookupTypeIndex) throws GenerationException;
 	protected abstract void generateLookupCode(int lookupTypeIndex) throws GenerationException;
@@ -84,6 +106,35 @@ public abstract class ConstraintStoreCodeGenerator extends JavaCodeGenerator {
 	protected void doGenerateResetCode() throws GenerationException {
 		// NOP (default implementation, should be overridden)
 	}
+	
+	/**
+	 * Generates the code that empties the store as a whole, without 
+	 * terminating the constraints in it (they are expired instead:
+	 * cf. {@link runtime.Handler#expireGeneration()}).
+	 * 
+	 * @return <code>true</code> iff code was generated.
+	 */
+	protected boolean generateClearCode() throws GenerationException {
+		doGenerateClearCode();
+		return true;
+	}
+	
+	protected void doGenerateClearCode() throws GenerationException {
+		// NOP (default implementation, should be overridden)
+	}
+	
+	/**
+	 * Generates the code that prepares the store for the addition
+	 * of a number of constraints at once (cf. the generated 
+	 * <code>tellAll</code> methods), e.g. by pre-sizing its index.
+	 * 
+	 * @param number
+	 *  An expression for the number of constraints that will be added.
+	 * @return <code>true</code> iff code was generated.
+	 */
+	protected boolean generateEnsureCapacityCode(String number) throws GenerationException {
+		return false;
+	}
     
 	public UserDefinedConstraint getConstraint() {
 		return constraint;
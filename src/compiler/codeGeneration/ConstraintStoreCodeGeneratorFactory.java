@@ -7,7 +7,7 @@ public class ConstraintStoreCodeGeneratorFactory {
 	private ConstraintStoreCodeGeneratorFactory() { /* FACTORY CLASS */ }
 	
 	public static ConstraintStoreCodeGenerator getInstance(
-        CodeGenerator base, 
+        CIFJavaCodeGenerator base, 
 		UserDefinedConstraint constraint, ILookupCategory category
     ) {
 		switch (category.getIndexType()) {
@@ -18,16 +18,31 @@ public class ConstraintStoreCodeGeneratorFactory {
 				return new NeverStoredIndexCodeGenerator(base, constraint);
 				
 			case HASH_MAP:
-				return new HashIndexCodeGenerator(base, constraint, category);
+				if (PrimitiveHashIndexCodeGenerator.isApplicable(constraint, category))
+					return new PrimitiveHashIndexCodeGenerator(base, constraint, category);
+				return configure(new HashIndexCodeGenerator(base, constraint, category), base);
 			
 			case SS_HASH_MAP:
-				return new SSHashIndexCodeGenerator(base, constraint, category);
+				return configure(new SSHashIndexCodeGenerator(base, constraint, category), base);
 				
 			case FD_SS_HASH_MAP:
-				return new FDSSHashIndexCodeGenerator(base, constraint, category);
+				return configure(new FDSSHashIndexCodeGenerator(base, constraint, category), base);
+				
+			case RANGE:
+				return new RangeIndexCodeGenerator(base, constraint, category);
+				
+			case ARRAY:
+				return new ArrayIndexCodeGenerator(base, constraint, category);
                 
 			default:
 				throw new InternalError();
 		}
 	}
+	
+	private static AbstractHashIndexCodeGenerator configure(
+		AbstractHashIndexCodeGenerator generator, CIFJavaCodeGenerator base
+	) {
+		generator.setIncrementalResizing(base.getOptions().doIncrementalResizing());
+		return generator;
+	}
 }
\ No newline at end of file
@@ -32,6 +32,11 @@ public class DefaultIndexCodeGenerator extends ConstraintStoreCodeGenerator {
         print(getConstraintListName()); print(".iterator()");
 	}
 	
+	@Override
+	protected void printCreateSpliteratorCode() throws GenerationException {
+		print(getConstraintListName()); print(".spliterator()");
+	}
+	
 	@Override
 	protected void generateFilteredMasterLookupCode() throws GenerationException {
 		tprint("return new FilteredIterable<");
@@ -57,4 +62,10 @@ public class DefaultIndexCodeGenerator extends ConstraintStoreCodeGenerator {
 		print(getConstraintListName());
 		println(");");
 	}
+	
+	@Override
+	protected void doGenerateClearCode() throws GenerationException {
+		tprint(getConstraintListName());
+		println(".reset();");
+	}
 }
@@ -11,17 +11,21 @@ import static compiler.codeGeneration.HandlerCodeGenerator.XXX.DEBUG;
 import static compiler.codeGeneration.HandlerCodeGenerator.XXX.PACKAGE;
 import static compiler.codeGeneration.HandlerCodeGenerator.XXX.PROTECTED;
 import static util.StringUtils.capFirst;
+import static util.StringUtils.javaEscape;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import runtime.Constraint;
@@ -29,13 +33,20 @@ import runtime.ConstraintIterable;
 import runtime.ConstraintSystem;
 import runtime.ContinuationStack;
 import runtime.IConstraint;
+import runtime.Watcher;
 import runtime.debug.Tracer;
+import runtime.hash.DoubleHashIndex;
 import runtime.hash.FDSSHashIndex;
 import runtime.hash.HashIndex;
+import runtime.hash.IntHashIndex;
+import runtime.hash.LongHashIndex;
+import runtime.list.ArrayIndex;
+import runtime.tree.RangeIndex;
 import util.Cloneable;
 import util.collections.AbstractUnmodifiableCollection;
 import util.collections.Empty;
 import util.iterator.ChainingIterator;
+import util.iterator.ChainingSpliterator;
 import util.iterator.ConvertingIterator;
 import util.iterator.EmptyIterator;
 import util.iterator.Filtered;
@@ -54,6 +65,9 @@ import annotations.JCHR_Constraint.Value;
 
 import compiler.CHRIntermediateForm.Handler;
 import compiler.CHRIntermediateForm.ICHRIntermediateForm;
+import compiler.CHRIntermediateForm.conjuncts.IConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConjunct;
 import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.Lookup;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategories;
@@ -61,8 +75,11 @@ import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCatego
 import compiler.CHRIntermediateForm.constraints.ud.lookup.category.NeverStoredLookupCategory;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.type.ILookupType;
 import compiler.CHRIntermediateForm.id.Identifier;
+import compiler.CHRIntermediateForm.rulez.Rule;
 import compiler.CHRIntermediateForm.solver.Solver;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
 import compiler.CHRIntermediateForm.types.TypeParameter;
+import compiler.CHRIntermediateForm.variables.FormalVariable;
 import compiler.options.Options;
 
 public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
@@ -128,9 +145,15 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
         printImport(runtime.Handler.class);
         printImport(IConstraint.class);
         printImport(Constraint.class);
+        printImport(Watcher.class);
         println();
         printImport(HashIndex.class);
         printImport(FDSSHashIndex.class);
+        printImport(IntHashIndex.class);
+        printImport(LongHashIndex.class);
+        printImport(DoubleHashIndex.class);
+        printImport(RangeIndex.class);
+        printImport(ArrayIndex.class);
         if (hasToTrace()) {
             println();
             printImport(Tracer.class);
@@ -257,20 +280,335 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
         nl();
 		generateLookupMethod("lookup", getAccessibleConstraints());
         nl();
+        generateSpliteratorMethod(getAccessibleConstraints());
+        nl();
         generateAccessibilityMethods();
         nl();
         generateTellMethods();
         nl();
+        generateTellAllMethods();
+        generateRecyclingCode();
         generateConstraintStoreCode();
         nl();
         generateConstraintClasses();
         nl();
         generateIsStoredMethod();
+        if (isSharded()) {
+        	nl();
+        	generateShardedClass();
+        }
+        if (isStriped()) {
+        	nl();
+        	generateStripedClass();
+        }
                 
         decNbTabs();
         println('}');
     }
     
+    /**
+     * Returns whether a sharded front-end has to be generated for this
+     * handler (see {@link runtime.ShardedHandler}). This requires all
+     * constraints to be partitioned (see the partitioning analysis).
+     * Handlers with solvers or type parameters cannot be sharded:
+     * solvers would be shared by all shards.
+     */
+    protected boolean isSharded() {
+    	if (!getOptions().doSharding() || !isPartitioned()) return false;
+    	if (hasSolvers() || !getHandler().getTypeParameters().isEmpty()) {
+    		System.err.println(" --> warning: handlers with solvers or type parameters cannot be sharded");
+    		return false;
+    	}
+    	return true;
+    }
+    
+    protected void generateShardedClass() throws GenerationException {
+    	final String handler = getHandlerTypeName();
+    	
+    	tprintln(
+			"/**",
+			" * A front-end that partitions the constraint store of this handler",
+			" * over a number of shards, that each run on their own thread.",
+			" *",
+			" * @see runtime.ShardedHandler",
+			" */",
+			"public static class Sharded extends runtime.ShardedHandler<" + handler + "> {",
+			"	private Sharded() {",
+			"		super();",
+			"	}",
+			"	private Sharded(int nbShards) {",
+			"		super(nbShards);",
+			"	}",
+			"",
+			"	/**",
+			"	 * Creates a new sharded handler with one shard for each available",
+			"	 * processor, and starts its worker threads.",
+			"	 */",
+			"	public static Sharded create() {",
+			"		final Sharded result = new Sharded();",
+			"		result.start();",
+			"		return result;",
+			"	}",
+			"	/**",
+			"	 * Creates a new sharded handler with the given number of shards,",
+			"	 * and starts its worker threads.",
+			"	 */",
+			"	public static Sharded create(int nbShards) {",
+			"		final Sharded result = new Sharded(nbShards);",
+			"		result.start();",
+			"		return result;",
+			"	}",
+			"",
+			"	@Override",
+			"	protected " + handler + " createShard() {",
+			"		return new " + handler + "();",
+			"	}"
+		);
+    	incNbTabs();
+    	
+    	for (UserDefinedConstraint constraint : getAccessibleConstraints()) {
+    		final List<FormalVariable> variables = constraint.getFormalVariables();
+    		
+    		nl();
+    		tprint("public void ");
+    		print(getTellMethodFor(constraint));
+    		print('(');
+    		for (int i = 0; i < variables.size(); i++) {
+            	if (i != 0) print(", ");
+            	print("final ");
+            	print(variables.get(i).getTypeString());
+            	print(' ');
+            	print(variables.get(i));
+            }
+    		println(") {");
+    		ttprint("submit(");
+    		print(variables.get(constraint.getPartitionIndex()));
+    		print(", new Task<"); print(handler); println(">() {");
+    		incNbTabs(2);
+    		tprintln("@Override");
+    		tprint("protected void run("); print(handler); println(" $$handler) {");
+    		ttprint("$$handler."); 
+    		print(getTellMethodFor(constraint));
+    		print('(');
+    		printVariableList(variables);
+    		println(");");
+    		tprintln('}');
+    		decNbTabs(2);
+    		ttprintln("});");
+    		tprintln('}');
+    		
+    		final String type = getConstraintTypeName(constraint);
+    		nl();
+    		tprint("public Collection<"); print(type); print("> ");
+    		print(getMasterGetterName(constraint)); println("() {");
+    		ttprint("return merge(gather(new Query<"); print(handler); 
+    			print(", java.util.List<"); print(type); println(">>() {");
+    		incNbTabs(2);
+    		tprintln("@Override");
+    		tprint("protected java.util.List<"); print(type); print("> run(");
+    			print(handler); println(" $$handler) {");
+    		ttprint("return new java.util.ArrayList<"); print(type); print(">($$handler.");
+    			print(getMasterGetterName(constraint)); println("());");
+    		tprintln('}');
+    		decNbTabs(2);
+    		ttprintln("}));");
+    		tprintln('}');
+    	}
+    	
+    	decNbTabs();
+    	tprintln('}');
+    }
+    
+    /**
+     * Returns whether all constraints are partitioned (see the 
+     * partitioning analysis).
+     */
+    protected boolean isPartitioned() {
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+    		if (!constraint.isPartitioned()) return false;
+    	return true;
+    }
+    
+    /**
+     * Returns whether a striped front-end has to be generated for this
+     * handler (see {@link runtime.StripedHandler}). Handlers with solvers
+     * or reactive constraints cannot be used concurrently: logical variables
+     * could be bound by any thread. Handlers with type parameters are not
+     * supported either.
+     */
+    protected boolean isStriped() {
+    	if (!getOptions().isStriped()) return false;
+    	boolean reactive = false;
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+    		reactive |= constraint.isReactive();
+    	if (hasSolvers() || reactive || !getHandler().getTypeParameters().isEmpty()) {
+    		System.err.println(" --> warning: handlers with solvers, reactive constraints or type parameters cannot be striped");
+    		return false;
+    	}
+    	return true;
+    }
+    
+    /**
+     * Divides the user-defined constraints into stripes: the largest
+     * number of sets of constraints such that each rule only involves
+     * (in its heads and its body) constraints of a single set.
+     * 
+     * @return The index of the stripe of each user-defined constraint,
+     *  in the order of {@link #getUserDefinedConstraints()}. Stripes 
+     *  are numbered in order of their first constraint.
+     */
+    protected int[] getStripes() {
+    	final List<UserDefinedConstraint> constraints 
+    		= new ArrayList<UserDefinedConstraint>(getUserDefinedConstraints());
+    	final int n = constraints.size();
+    	final int[] parents = new int[n];
+    	for (int i = 0; i < n; i++) parents[i] = i;
+    	
+    	final Map<Rule, Integer> heads = new HashMap<Rule, Integer>();
+    	for (int i = 0; i < n; i++) {
+    		final UserDefinedConstraint constraint = constraints.get(i);
+    		for (Occurrence occurrence : constraint.getPositiveOccurrences())
+    			union(parents, heads, occurrence.getRule(), i);
+    		for (Occurrence occurrence : constraint.getNegativeOccurrences())
+    			union(parents, heads, occurrence.getRule(), i);
+    	}
+    	for (Rule rule : getRules())
+    		for (IConjunct conjunct : rule.getBody())
+    			if (conjunct instanceof UserDefinedConjunct) 
+    				union(parents, heads, rule, 
+						constraints.indexOf(((UserDefinedConjunct)conjunct).getConstraint()));
+    	
+    	final int[] result = new int[n], stripes = new int[n];
+    	Arrays.fill(stripes, -1);
+    	int nbStripes = 0;
+    	for (int i = 0; i < n; i++) {
+    		final int root = find(parents, i);
+    		if (stripes[root] < 0) stripes[root] = nbStripes++;
+    		result[i] = stripes[root];
+    	}
+    	return result;
+    }
+    private static void union(int[] parents, Map<Rule, Integer> heads, Rule rule, int index) {
+    	final Integer other = heads.get(rule);
+    	if (other == null)
+    		heads.put(rule, index);
+    	else
+    		parents[find(parents, index)] = find(parents, other);
+    }
+    private static int find(int[] parents, int index) {
+    	while (parents[index] != index) index = parents[index];
+    	return index;
+    }
+    
+    protected void generateStripedClass() throws GenerationException {
+    	final String handler = getHandlerTypeName();
+    	final boolean partitioned = isPartitioned();
+    	final List<UserDefinedConstraint> constraints 
+			= new ArrayList<UserDefinedConstraint>(getUserDefinedConstraints());
+    	final int[] stripes = partitioned? null : getStripes();
+    	
+    	tprintln(
+			"/**",
+			" * A front-end to which constraints can be told from more than one",
+			" * thread. Its constraint store is divided into stripes that each",
+			" * have a lock of their own: tells are handled atomically, and tells",
+			" * to different stripes are handled in parallel.",
+			" *",
+			" * @see runtime.StripedHandler",
+			" */",
+			"public static class Striped extends runtime.StripedHandler<" + handler + "> {"
+		);
+    	if (partitioned) {
+    		tprintln(
+				"	public Striped() {",
+				"		this(Runtime.getRuntime().availableProcessors());",
+				"	}"
+			);
+    		nl();
+    		tprintln(
+				"	public Striped(int nbStripes) {",
+				"		super(createStripes(nbStripes));",
+				"	}"
+			);
+    	} else {
+    		int nbStripes = 0;
+    		for (int stripe : stripes) nbStripes = Math.max(nbStripes, stripe + 1);
+    		tprintln(
+				"	public Striped() {",
+				"		super(createStripes(" + nbStripes + "));",
+				"	}"
+			);
+    	}
+    	nl();
+    	tprintln(
+			"	private static " + handler + "[] createStripes(int nbStripes) {",
+			"		final " + handler + "[] result = new " + handler + "[nbStripes];",
+			"		for (int i = 0; i < nbStripes; i++)",
+			"			result[i] = new " + handler + "(new runtime.ConstraintSystem());",
+			"		return result;",
+			"	}"
+		);
+    	incNbTabs();
+    	
+    	for (UserDefinedConstraint constraint : getAccessibleConstraints()) {
+    		final List<FormalVariable> variables = constraint.getFormalVariables();
+    		final String stripe = partitioned
+    			? "getStripeIndex(" + variables.get(constraint.getPartitionIndex()) + ')'
+				: String.valueOf(stripes[constraints.indexOf(constraint)]);
+    		
+    		nl();
+    		tprint("public void ");
+    		print(getTellMethodFor(constraint));
+    		print('(');
+    		for (int i = 0; i < variables.size(); i++) {
+            	if (i != 0) print(", ");
+            	print(variables.get(i).getTypeString());
+            	print(' ');
+            	print(variables.get(i));
+            }
+    		println(") {");
+    		ttprint("final int $$stripe = "); print(stripe); println(';');
+    		ttprint("final "); print(handler); println(" $$handler = lock($$stripe);");
+    		ttprintln("try {");
+    		incNbTabs();
+    		ttprint("$$handler."); 
+    		print(getTellMethodFor(constraint));
+    		print('(');
+    		printVariableList(variables);
+    		println(");");
+    		decNbTabs();
+    		ttprintln("} finally {");
+    		ttprintln("\tunlock($$stripe);");
+    		ttprintln('}');
+    		tprintln('}');
+    		
+    		final String type = getConstraintTypeName(constraint);
+    		nl();
+    		tprint("public Collection<"); print(type); print("> ");
+    		print(getMasterGetterName(constraint)); println("() {");
+    		if (partitioned) {
+    			ttprint("return merge(gather(");
+    		} else {
+    			ttprint("return query("); print(stripe); print(", ");
+    		}
+    		print("new Query<"); print(handler); 
+    			print(", java.util.List<"); print(type); println(">>() {");
+    		incNbTabs(2);
+    		tprintln("@Override");
+    		tprint("protected java.util.List<"); print(type); print("> run(");
+    			print(handler); println(" $$handler) {");
+    		ttprint("return new java.util.ArrayList<"); print(type); print(">($$handler.");
+    			print(getMasterGetterName(constraint)); println("());");
+    		tprintln('}');
+    		decNbTabs(2);
+    		ttprintln(partitioned? "}));" : "});");
+    		tprintln('}');
+    	}
+    	
+    	decNbTabs();
+    	tprintln('}');
+    }
+    
     public void printHandlerType() throws GenerationException {
     	printType(getHandlerTypeName(), getHandler().getTypeParameters());
     }
@@ -325,6 +663,14 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     protected void generateConstructorsAndFields() throws GenerationException {
     	printConstraintSystemCode();
     	nl();
+    	if (hasToCount()) {
+    		printMetricsCode();
+    		nl();
+    	}
+    	if (hasToProfile()) {
+    		printProfileCode();
+    		nl();
+    	}
     	if (hasSolvers()) {
 			generateSolverCode();
 			nl();
@@ -437,6 +783,93 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     	}
     }
     
+    protected void printMetricsCode() throws GenerationException {
+    	tprintln("private final static String[] $$METRIC_NAMES = {");
+    	incNbTabs();
+    	final Iterator<String> names = getMetricsLayout().getNames().iterator();
+    	while (names.hasNext()) {
+    		printTabs();
+    		printLiteral(names.next());
+    		if (names.hasNext()) print(',');
+    		nl();
+    	}
+    	decNbTabs();
+    	tprintln("};");
+    	tprint("final long[] $$metrics = new long["); 
+    		print(getMetricsLayout().getNbCounters()); println("];");
+    	nl();
+    	tprintln(
+			"@Override",
+			"public boolean hasMetrics() {",
+				"\treturn true;",
+			"}",
+			"",
+			"@Override",
+			"public runtime.Metrics getMetrics() {",
+				"\treturn new runtime.Metrics($$METRIC_NAMES, $$metrics);",
+			"}",
+			"",
+			"@Override",
+			"public void resetMetrics() {",
+				"\tjava.util.Arrays.fill($$metrics, 0);",
+			"}"
+    	);
+    }
+    
+    protected void printProfileCode() throws GenerationException {
+    	final ProfileLayout layout = getProfileLayout();
+    	final List<Occurrence> occurrences = layout.getOccurrences();
+    	final int n = occurrences.size();
+    	
+    	tprintln("private final static runtime.JoinProfile.Layout $$PROFILE_LAYOUT");
+    	ttprintln("= new runtime.JoinProfile.Layout(");
+    	incNbTabs(2);
+    	tprintln("new String[] {");
+    	for (int i = 0; i < n; i++) {
+    		ttprint(""); printLiteral(occurrences.get(i).getRule().getIdentifier());
+    		println((i + 1 < n)? "," : "");
+    	}
+    	tprintln("},");
+    	tprintln("new String[] {");
+    	for (int i = 0; i < n; i++) {
+    		ttprint(""); printLiteral(ConstraintCodeGenerator.getOccurrenceName(occurrences.get(i)));
+    		println((i + 1 < n)? "," : "");
+    	}
+    	tprintln("},");
+    	tprintln("new String[][] {");
+    	for (int i = 0; i < n; i++) {
+    		ttprint("{");
+    		final Iterator<String> elements = layout.getElementDescriptions(i).iterator();
+    		while (elements.hasNext()) {
+    			printLiteral(javaEscape(elements.next()));
+    			if (elements.hasNext()) print(", ");
+    		}
+    		println((i + 1 < n)? "}," : "}");
+    	}
+    	tprintln('}');
+    	decNbTabs(2);
+    	ttprintln(");");
+    	tprint("final long[] $$profile = new long["); 
+    		print(layout.getNbCounters()); println("];");
+    	nl();
+    	tprintln(
+			"@Override",
+			"public boolean hasJoinProfile() {",
+				"\treturn true;",
+			"}",
+			"",
+			"@Override",
+			"public runtime.JoinProfile getJoinProfile() {",
+				"\treturn new runtime.JoinProfile($$PROFILE_LAYOUT, $$profile);",
+			"}",
+			"",
+			"@Override",
+			"public void resetJoinProfile() {",
+				"\tjava.util.Arrays.fill($$profile, 0);",
+			"}"
+    	);
+    }
+    
     protected void printTracerCode() throws GenerationException {
     	tprintln(
 			"Tracer tracer;",
@@ -564,6 +997,7 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     		
     		generateLookupMethod("iterator", constraints); nl();
     		generateLookupMethod("lookup", constraints); nl();
+    		generateSpliteratorMethod(constraints); nl();
     		
     		generateConstraintClassesMethod(constraints);
     		
@@ -590,6 +1024,57 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
 		nl();
     }
     
+    /**
+     * Generates a <code>spliterator()</code> method that chains the
+     * spliterators of the constraint stores of the given constraints,
+     * so that the streams of a handler (<code>stream()</code> and
+     * <code>parallelStream()</code>) can be split over the stores,
+     * and further within each store.
+     */
+    protected void generateSpliteratorMethod(Iterable<UserDefinedConstraint> constraints) throws GenerationException {
+    	tprintln("/**");
+    	tprintln(" * {@inheritDoc}");
+    	tprintln(" * <br/>");
+    	tprintln(" * The constraint store should not be modified while the spliterator is used.");
+    	tprintln(" */");
+    	tprintOverride();
+    	tprintln("public java.util.Spliterator<IConstraint> spliterator() {");
+    	incNbTabs();
+    	
+    	Iterator<UserDefinedConstraint> iter = new FilteredIterator<UserDefinedConstraint>(
+			constraints.iterator(),
+			new Filter<UserDefinedConstraint>() {
+				@Override
+				public boolean include(UserDefinedConstraint elem) {
+					return elem.mayBeStored();
+				}
+			}
+		);
+		if (iter.hasNext()) {
+    		tprint("return new ");
+    		print(ChainingSpliterator.class.getCanonicalName());
+			println("<IConstraint>(");
+    		do {
+    			final UserDefinedConstraint constraint = iter.next();
+    			printTabs(); print('\t');
+    			ConstraintStoreCodeGeneratorFactory
+    				.getInstance(this, constraint, constraint.getMasterLookupCategory())
+    				.printCreateSpliteratorCode();
+    			if (iter.hasNext())
+    				println(',');
+    			else
+    				break;
+			} while (true);
+    		nl();
+    		tprintln(");");
+		} else {
+			tprintln("return java.util.Spliterators.<IConstraint>emptySpliterator();");
+		}
+		
+		decNbTabs();
+		tprintln('}');
+    }
+    
     protected void generateLookupMethod(String name, Iterable<UserDefinedConstraint> constraints) throws GenerationException {
     	tprintln("/**");
     	tprintln(" * {@inheritDoc}");
@@ -662,6 +1147,21 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     public static String getTellMethodFor(UserDefinedConstraint constraint) {
         return "tell" + capFirst(constraint.getIdentifier());
     }
+    public static String getTellAllMethodFor(UserDefinedConstraint constraint) {
+        return "tellAll" + capFirst(constraint.getIdentifier());
+    }
+    public static String getActivationMethodFor(UserDefinedConstraint constraint) {
+        return "$$activate" + capFirst(constraint.getIdentifier());
+    }
+    public static String getFreeListName(UserDefinedConstraint constraint) {
+        return "$$" + constraint.getIdentifier() + "FreeList";
+    }
+    public static String getRemovedListName(UserDefinedConstraint constraint) {
+        return "$$" + constraint.getIdentifier() + "Removed";
+    }
+    public static String getNbRemovedName(UserDefinedConstraint constraint) {
+        return "$$nb" + capFirst(constraint.getIdentifier()) + "Removed";
+    }
 	
     public List<UserDefinedConstraint> accessibleConstraints;
     public List<UserDefinedConstraint> getAccessibleConstraints() {
@@ -764,9 +1264,22 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
             print(')');
             openAccolade();
             
+            final boolean enters = recyclesStoredConstraints() || hasToTrace();
+            if (enters) {
+            	tprintln("enter();");
+            	tprint("try");
+            	openAccolade();
+            }
+            if (getOptions().doStackOptimizations()) {
+            	tprintln("if (defersTells()) {");
+            		ttprint("addToBulkLoad("); printNewConstraint(constraint); println(");");
+            		ttprintln("return;");
+            	tprintln('}');
+            }
             if (isRecursive(constraint)) {
             	tprintln("if ($$constraintSystem.inDefaultHostLanguageMode())");
-            		ttprint("call("); printNewConstraint(constraint); println(");");
+            		ttprint(hasScheduledRules()? "callPrioritized(" : "call(");
+            			printNewConstraint(constraint); println(");");
             	tprintln("else if (!$$constraintSystem.isQueuing())");	// implies not host language mode
             		ttprint("$$continuationStack.push("); printNewConstraint(constraint); println(");");
             	tprintln("else");
@@ -774,8 +1287,22 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
         		
             } else {
             	printTabs();
-            	printNewConstraint(constraint);
-            	println(".activate();");
+            	if (constraint.isRecyclable())
+            		printActivationCall(constraint);
+            	else {
+            		printNewConstraint(constraint);
+            		print(".activate()");
+            	}
+            	println(';');
+            	if (hasScheduledRules())
+            		tprintln("callScheduled();");
+            }
+            if (enters) {
+            	decNbTabs();
+            	tprint("} finally");
+            	openAccolade();
+            	tprintln("leave();");
+            	closeAccolade();
             }
             
             closeAccolade();
@@ -783,6 +1310,114 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
         }
     }
     
+    /**
+     * Generates, for each non-private constraint with arguments, 
+     * a method that tells a number of these constraints at once,
+     * given an array per argument (and an overload taking an 
+     * {@link Iterable} for constraints with a single reference argument).
+     * The indexes are pre-sized first, and the constraints are told 
+     * in a single bulk load session (cf. {@link runtime.Handler#beginBulkLoad()}),
+     * unless one is in progress already.
+     */
+    protected void generateTellAllMethods() throws GenerationException {
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
+    		if (isPrivate(constraint) || constraint.getArity() == 0) continue;
+    		
+    		final List<FormalVariable> variables = constraint.getFormalVariables();
+    		
+    		printAccessModifier(constraint, "private");
+            print("final void ");
+            print(getTellAllMethodFor(constraint));
+            print('(');
+            for (int i = 0; i < variables.size(); i++) {
+            	if (i != 0) print(", ");
+            	print(variables.get(i).getTypeString());
+            	print("[] ");
+            	print(variables.get(i));
+            }
+            print(')');
+            openAccolade();
+            tprint("final int $$n = "); print(variables.get(0)); println(".length;");
+            for (int i = 1; i < variables.size(); i++) {
+            	tprint("if ("); print(variables.get(i)); println(".length != $$n)");
+            		ttprintln("throw new IllegalArgumentException(\"Arguments of different lengths\");");
+            }
+            printBulkTellPrologue(constraint, "$$n");
+            tprint("for (int $$i = 0; $$i < $$n; $$i++) ");
+            print(getTellMethodFor(constraint));
+            print('(');
+            for (int i = 0; i < variables.size(); i++) {
+            	if (i != 0) print(", ");
+            	print(variables.get(i));
+            	print("[$$i]");
+            }
+            println(");");
+            printBulkTellEpilogue();
+            closeAccolade();
+            nl();
+            
+            if (variables.size() != 1 || PrimitiveType.isPrimitive(variables.get(0).getType()))
+            	continue;
+            
+            printAccessModifier(constraint, "private");
+            print("final void ");
+            print(getTellAllMethodFor(constraint));
+            print("(Iterable<? extends ");
+            print(variables.get(0).getTypeString());
+            print("> ");
+            print(variables.get(0));
+            print(')');
+            openAccolade();
+            tprint("final int $$n = ("); print(variables.get(0)); 
+            	print(" instanceof java.util.Collection<?>)? ((java.util.Collection<?>)"); 
+            	print(variables.get(0)); println(").size() : 0;");
+            printBulkTellPrologue(constraint, "$$n");
+            tprint("for ("); print(variables.get(0).getTypeString()); print(" $$x : ");
+            	print(variables.get(0)); print(") ");
+            	print(getTellMethodFor(constraint)); println("($$x);");
+            printBulkTellEpilogue();
+            closeAccolade();
+            nl();
+    	}
+    }
+    
+    /**
+     * Prints the code that pre-sizes the indexes of the given constraint
+     * for the given number of additional constraints, and starts a
+     * bulk load session if none is in progress. The code that tells
+     * the constraints is printed in a <code>try</code> block that is
+     * closed by the epilogue (cf. {@link #printBulkTellEpilogue()}).
+     */
+    protected void printBulkTellPrologue(UserDefinedConstraint constraint, String number) 
+    throws GenerationException {
+    	for (ILookupCategory category : constraint.getLookupCategories())
+    		ConstraintStoreCodeGeneratorFactory
+    			.getInstance(this, constraint, category)
+    			.generateEnsureCapacityCode(number);
+    	if (getOptions().doStackOptimizations()) {
+    		tprintln("final boolean $$session = !isBulkLoading() && $$constraintSystem.inDefaultHostLanguageMode();");
+    		tprintln("if ($$session) beginBulkLoad();");
+    		tprint("try");
+    		openAccolade();
+    		tprint("if (defersTells()) ensureBulkLoadCapacity("); print(number); println(");");
+    	}
+    }
+    /**
+     * Prints the code that ends the bulk load session started by the
+     * prologue, if any. The session is ended even if telling one
+     * of the constraints fails, activating the constraints told
+     * before the failure: the handler is never left in a session.
+     */
+    protected void printBulkTellEpilogue() throws GenerationException {
+    	if (getOptions().doStackOptimizations()) {
+    		decNbTabs();
+    		tprint("} finally");
+    		openAccolade();
+    		tprintln("if ($$session) endBulkLoad();");
+    		closeAccolade();
+    	}
+    }
+    
     protected void printNewConstraint(UserDefinedConstraint constraint) throws GenerationException {
     	print("new ");
     	print(getConstraintTypeName(constraint));
@@ -791,6 +1426,95 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     	print(')');
     }
     
+    protected void printActivationCall(UserDefinedConstraint constraint) throws GenerationException {
+    	print(getActivationMethodFor(constraint));
+    	print('(');
+    	printVariableList(constraint.getFormalVariables());
+    	print(')');
+    }
+    
+    /**
+     * Returns whether the handler recycles constraints that are stored,
+     * in which case all calls that can activate constraints have to be
+     * bracketed (cf. {@link runtime.Handler#enter()}).
+     */
+    protected boolean recyclesStoredConstraints() {
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+    		if (constraint.isRecyclable() && constraint.mayBeStored()) return true;
+    	return false;
+    }
+    
+    /**
+     * Generates, for each recyclable constraint, a free list of constraint
+     * objects whose activation has finished, and a method that activates
+     * a new constraint using a recycled object where possible.
+     * Activations can be nested, so an object is only put back
+     * on the free list once its activation is over. Stored constraints
+     * are only done once they are removed: their objects are kept on a
+     * separate list, that is moved to the free list once no activation
+     * can still refer to them (see {@link runtime.Handler#recycle()}).
+     */
+    protected void generateRecyclingCode() throws GenerationException {
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
+    		if (!constraint.isRecyclable()) continue;
+    		
+    		final String type = getConstraintTypeName(constraint);
+    		final String freeList = getFreeListName(constraint);
+    		
+    		tprint("private "); print(type); print(' '); print(freeList); println(';');
+    		if (constraint.mayBeStored()) {
+    			tprint("private "); print(type); print(' '); print(getRemovedListName(constraint)); println(';');
+    			tprint("private int "); print(getNbRemovedName(constraint)); println(';');
+    		}
+    		nl();
+    		tprint("final void ");
+    		print(getActivationMethodFor(constraint));
+    		print('(');
+    		printFullVariableList(constraint.getFormalVariables());
+    		print(')');
+    		openAccolade();
+    		tprint(type); print(" $$constraint = "); print(freeList); println(';');
+    		tprintln("if ($$constraint == null)");
+    			ttprint("$$constraint = "); printNewConstraint(constraint); println(';');
+    		tprintln("else {");
+    			ttprint(freeList); println(" = $$constraint.$$nextFree;");
+    			ttprint("$$constraint.$$reinit(");
+    			printVariableList(constraint.getFormalVariables());
+    			println(");");
+    		tprintln('}');
+    		tprintln("$$constraint.activate();");
+    		if (!constraint.mayBeStored()) {
+    			tprint("$$constraint.$$nextFree = "); print(freeList); println(';');
+    			tprint(freeList); println(" = $$constraint;");
+    		}
+    		closeAccolade();
+    		nl();
+    	}
+    	
+    	if (recyclesStoredConstraints()) {
+    		tprintOverride();
+    		tprint("protected final void recycle()");
+    		openAccolade();
+    		for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
+    			if (!constraint.isRecyclable() || !constraint.mayBeStored()) continue;
+    			
+    			final String freeList = getFreeListName(constraint);
+    			final String removed = getRemovedListName(constraint);
+    			
+    			tprint("if ("); print(removed); println(" != null) {");
+    				ttprint(getConstraintTypeName(constraint)); print(" $$constraint = "); print(removed); println(';');
+    				ttprintln("while ($$constraint.$$nextFree != null) $$constraint = $$constraint.$$nextFree;");
+    				ttprint("$$constraint.$$nextFree = "); print(freeList); println(';');
+    				ttprint(freeList); print(" = "); print(removed); println(';');
+    				ttprint(removed); println(" = null;");
+    				ttprint(getNbRemovedName(constraint)); println(" = 0;");
+    			tprintln('}');
+    		}
+    		closeAccolade();
+    		nl();
+    	}
+    }
+    
     protected void generateConstraintClasses() throws GenerationException {
     	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
     		new ConstraintCodeGenerator(this, constraint).generate();
@@ -826,6 +1550,7 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
             generateLookupMethods(constraint);
             generateMasterLookupMethod(constraint);
             generateFilteredMasterLookupMethod(constraint);
+            generateMasterStreamMethod(constraint);
             generateMasterGetter(constraint);
             generateReactivationMethods(constraint);
         }
@@ -866,6 +1591,10 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
 	
 	        if (hasToTrace())
 	            tprintln("if (tracer != null) tracer.stored(constraint);");
+	        if (hasToCount()) {
+	        	printTabs();
+	        	printCount(getMetricsLayout().getIndex(constraint, MetricsLayout.STORES));
+	        }
 	        
 	        decNbTabs();
 	        tprintln('}');
@@ -996,6 +1725,39 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
 		nl();
     }
     
+    protected void generateMasterStreamMethod(UserDefinedConstraint constraint) throws GenerationException {
+    	if (isPrivate(constraint)) return;
+    	
+    	tprintln(
+			"/**",
+			" * Returns a sequential stream over all {@link "+ getConstraintTypeName(constraint) +"}s ",
+			" * currently in the constraint store. As far as the constraint store allows this,",
+			" * the stream can be split efficiently, so use <code>parallel()</code> to query",
+			" * large stores using more than one thread. Unlike the iterators, streams should",
+			" * only be used while the constraint store is not modified (i.e. in between calls",
+			" * to the handler): the behavior of a stream is undefined otherwise.",
+			" *",
+			" * @return A sequential stream over all <code>"+ getConstraintTypeName(constraint) +"</code>s currently",
+			" * \tin the constraint store.",
+			" *",
+			" * @see #"+ getMasterLookupMethodName(constraint),
+			" */"
+    	);
+    	
+		printAccessModifier(constraint);
+    	print("java.util.stream.Stream<"); print(getConstraintTypeName(constraint)); print("> ");
+    		print(getMasterStreamMethodName(constraint)); println("() {");
+    	
+		ttprint("return java.util.stream.StreamSupport.stream(");
+		ConstraintStoreCodeGeneratorFactory
+        	.getInstance(this, constraint, constraint.getMasterLookupCategory())
+			.printCreateSpliteratorCode();
+		println(", false);");
+		
+		tprintln('}');
+		nl();
+    }
+    
     protected void generateMasterGetter(UserDefinedConstraint constraint) throws GenerationException {
     	if (isPrivate(constraint)) return;
     	
@@ -1206,17 +1968,50 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
 			" * Resets the handler, i.e. it terminates and removes all constraints",
 			" * from the constraint store.",
 			" * The resulting constraint store will be empty.",
+			" * If no handler is active, this takes constant time: the current",
+			" * generation of the store is expired, and all indexes are dropped",
+			" * as a whole, without terminating the constraints one by one.",
+			" * Removed constraints that are still referred to by logical",
+			" * variables are only marked as terminated once these variables",
+			" * are bound or unified.",
 			" */",
 			"public void reset() {"
 		);
     	
     	incNbTabs();
     	boolean notEmpty = false;
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+    		if (constraint.mayBeStored()) notEmpty = true;
+    	
+    	if (notEmpty) {
+    		tprint("if ($$constraintSystem.inHostLanguageMode())");
+    		openAccolade();
+    		tprintln("expireGeneration();");
+	    	for (UserDefinedConstraint constraint : getUserDefinedConstraints())
+	    		for (ILookupCategory category : constraint.getLookupCategories())
+	    			ConstraintStoreCodeGeneratorFactory
+	    				.getInstance(this, constraint, category)
+	    				.generateClearCode();
+	    	decNbTabs();
+	    	tprint("} else");
+	    	openAccolade();
+    	}
     	for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
     		notEmpty |= ConstraintStoreCodeGeneratorFactory
     			.getInstance(this, constraint, constraint.getMasterLookupCategory())
     			.generateResetCode();
     	}
+    	if (notEmpty) closeAccolade();
+    	for (UserDefinedConstraint constraint : getUserDefinedConstraints()) {
+    		if (constraint.isRecyclable()) {
+    			tprint(getFreeListName(constraint)); println(" = null;");
+    			if (constraint.mayBeStored()) {
+    				tprint(getRemovedListName(constraint)); println(" = null;");
+    				tprint(getNbRemovedName(constraint)); println(" = 0;");
+    			}
+    			notEmpty = true;
+    		}
+    	}
     	if (!notEmpty) tprintln("// NOP");
     	decNbTabs();
     	tprintln('}');
@@ -1225,6 +2020,9 @@ public class HandlerCodeGenerator extends CIFJavaCodeGenerator {
     public static String getMasterLookupMethodName(UserDefinedConstraint constraint) {
     	return "lookup" + capFirst(constraint.getIdentifier());
     }
+    public static String getMasterStreamMethodName(UserDefinedConstraint constraint) {
+    	return "stream" + capFirst(constraint.getIdentifier());
+    }
     public static String getFilteredMasterLookupMethodName(UserDefinedConstraint constraint) {
     	return getMasterGetterName(constraint);
     }
@@ -8,7 +8,7 @@ import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
 import compiler.CHRIntermediateForm.variables.FormalVariable;
 
-public class HashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
+public class HashIndexCodeGenerator extends LookupKeyHashIndexCodeGenerator {
 
 	public HashIndexCodeGenerator(
         CodeGenerator codeGenerator, 
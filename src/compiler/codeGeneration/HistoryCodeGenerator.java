@@ -8,6 +8,8 @@ import java.util.Iterator;
 import java.util.Set;
 
 import runtime.history.IdentifierPropagationHistory;
+import runtime.history.PackedPairPropagationHistory;
+import runtime.history.PackedTriplePropagationHistory;
 import runtime.history.TuplePropagationHistory;
 import util.iterator.Filtered.Filter;
 
@@ -22,6 +24,10 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
     
     private boolean insertInLastTest = true;
     
+    private boolean filterHistories;
+    
+    private boolean trailing;
+    
     public HistoryCodeGenerator(ConstraintCodeGenerator codeGenerator) {
         this(codeGenerator, codeGenerator.getUsedTupleArities());
     }
@@ -51,7 +57,11 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
     public void generateMembers(UserDefinedConstraint constraint, Iterable<Rule> rules) throws GenerationException {
     	if (needsSeparateHistoryId(constraint)) {
     		nl();
-    		tprintln("protected final int historyId = IDcounter++;");
+    		// constraints that are never stored never end up in the histories of others
+    		tprintln(usesTerminationLog(rules) && constraint.mayBeStored()
+    			? "protected final long historyId = nextLoggedConstraintId();"
+    			: "protected final long historyId = $$constraintSystem.nextConstraintId();"
+    		);
     	}
     	for (Rule rule : rules) {
 	        if (needsHistoryMembers(constraint, rule)) {
@@ -65,21 +75,59 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
 	            } else {
 	                String type = (n == 2)
 	                	? IdentifierPropagationHistory.class.getCanonicalName()
-	                    : TuplePropagationHistory.class.getCanonicalName();
+	                    : usesPackedHistory(rule)
+	                    	? getPackedHistoryType(getTupleArity(rule))
+	                    	: TuplePropagationHistory.class.getCanonicalName();
 	
 	                tprint("protected "); print(type); print(' '); print(name);
-	                    print(" = new "); print(type); println("();");
+	                    print(" = new "); print(type); print("($$constraintSystem.getTerminationLog()");
+	                    if (n == 2 || !usesPackedHistory(rule)) {
+	                    	if (filterHistories())
+	                    		print(", true");
+	                    	else if (isTrailing())
+	                    		print(", false");
+	                    }
+	                    if (isTrailing()) print(", $$constraintSystem.getTrail()");
+	                    println(");");
 	            }
 	        }
     	}
     }
     
     public void generateTerminationCode(UserDefinedConstraint constraint, Rule rule) throws GenerationException {
+    	// the histories of a removed constraint are kept if it can be revived
+    	if (isTrailing()) return;
     	if (needsHistoryMembers(constraint, rule) && rule.getPositiveHead().getNbOccurrences() > 1) {
 			tprint(getHistoryName(rule)); println(" = null;");
     	}
     }
     
+    /**
+     * Generates the code that records the removal of a constraint
+     * in the termination log of the constraint system, used 
+     * by the propagation histories to drop entries that refer to 
+     * removed constraints. As soon as the handler has a propagation 
+     * history that contains identifiers, all its identifiers are 
+     * registered in the log when they are allocated, and the removal
+     * of every stored constraint is recorded (otherwise they would
+     * never leave the log).
+     */
+    public void generateTerminationLogCode(UserDefinedConstraint constraint, Iterable<Rule> rules) throws GenerationException {
+    	if (usesTerminationLog(rules)) {
+    		tprintln("$$constraintSystem.getTerminationLog().add(ID);");
+    		if (needsSeparateHistoryId(constraint))
+    			tprintln("$$constraintSystem.getTerminationLog().add(historyId);");
+    	}
+    }
+    
+    public static boolean usesTerminationLog(Iterable<Rule> rules) {
+    	for (Rule rule : rules)
+    		if (rule.needsHistory() && !simpleHistorySuffices(rule)
+    				&& rule.getPositiveHead().getNbOccurrences() > 1)
+    			return true;
+    	return false;
+    }
+    
     protected static boolean needsHistoryMembers(UserDefinedConstraint constraint, Rule rule) {
     	if (rule.needsHistory() && !simpleHistorySuffices(rule)) 
     		for (Occurrence occurrence : rule.getPositiveHead())
@@ -165,7 +213,33 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
             
             default:
                 Iterator<Occurrence> activePartners = active.getPartners(ACTIVE_PARTNERS).iterator();
-                if (activePartners.hasNext()) {
+                if (usesPackedHistory(active.getRule())) {
+                    if (activePartners.hasNext()) {
+                        tprintln("if (!stored || !(");
+                        tprintTabs();
+                        do {
+                            print(getOccurrenceName(activePartners.next()));
+                            	print('.'); print(name); print(".contains(");
+                            	printTupleArguments(active, false);
+                            	println(')');
+                        	ttprint("|| ");
+                        } while (activePartners.hasNext());
+                        
+                        if (insertInLastTest()) print('!');
+                        print(name);
+                        print(insertInLastTest()? ".insert(" : ".contains(");
+                        	printTupleArguments(active, false);
+                        println(')');
+                        tprint("))");
+                    } else {    // no active partners
+                        tprint("if (!stored || ");
+                        if (!insertInLastTest()) print('!');
+                        print(name);
+                        print(insertInLastTest()? ".insert(" : ".contains(");
+                        	printTupleArguments(active, true);
+                        print("))");
+                    }
+                } else if (activePartners.hasNext()) {
                     printTupleDeclaration(active, false);
                     tprintln("if (!stored || !(");
                     tprintTabs();
@@ -218,9 +292,18 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
     
     protected void printNewTuple(Occurrence active, boolean excludeActive)
     throws GenerationException {
-        Head head = active.getHead();
-        final int nb = head.getNbOccurrences(), arity = nb - (excludeActive? 1 : 0);
+        final int arity = active.getHead().getNbOccurrences() - (excludeActive? 1 : 0);
         print("new "); print(getTupleFQN(arity)); print('(');
+        printTupleArguments(active, excludeActive);
+        print(')');
+        
+        addUsedTupleArity(arity);
+    }
+    
+    protected void printTupleArguments(Occurrence active, boolean excludeActive)
+    throws GenerationException {
+        Head head = active.getHead();
+        final int nb = head.getNbOccurrences();
         
         for (int i = 0; i < nb; i++) {
             Occurrence partner = head.getOccurrenceAt(i);
@@ -234,10 +317,36 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
                 printOccurrenceDotId(active, partner);
             }
         }
-        
-        print(')');
-        
-        addUsedTupleArity(arity);
+    }
+    
+    /**
+     * Returns the arity of the tuples stored in the propagation histories
+     * of the given rule (with more than two positive heads): 
+     * if only one occurrence is active, its identifier is left out.
+     */
+    protected static int getTupleArity(Rule rule) {
+    	int nbActive = 0;
+    	for (Occurrence occurrence : rule.getPositiveHead())
+    		if (occurrence.isActive()) nbActive++;
+    	final int n = rule.getPositiveHead().getNbOccurrences();
+    	return (nbActive > 1)? n : n-1;
+    }
+    
+    /**
+     * Checks whether the tuples of the propagation histories of the 
+     * given rule are packed in a primitive array, instead of being 
+     * allocated as tuple objects. 
+     */
+    protected static boolean usesPackedHistory(Rule rule) {
+    	if (rule.getPositiveHead().getNbOccurrences() <= 2) return false;
+    	final int arity = getTupleArity(rule);
+    	return arity == 2 || arity == 3;
+    }
+    
+    protected static String getPackedHistoryType(int arity) {
+    	return (arity == 2)
+    		? PackedPairPropagationHistory.class.getCanonicalName()
+			: PackedTriplePropagationHistory.class.getCanonicalName();
     }
     
     public static boolean hasToDoHistoryTest(Occurrence occurrence) {
@@ -285,6 +394,13 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
             case 1:
             	tprint(getHistoryName(active.getRule()));
                 println(" = true;");
+                if (isTrailing()) {
+                	tprintln("if ($$constraintSystem.isTrailing()) $$constraintSystem.getTrail().push(new runtime.Trail.Entry() {");
+                	ttprintln("@Override");
+                	ttprint("protected void undo() { "); 
+                		print(getHistoryName(active.getRule())); println(" = false; }");
+                	tprintln("});");
+                }
             break;
             
             case 2:
@@ -301,7 +417,14 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
         	break;
             
             default:
-        		if (hasToDoHistoryTest(active)) {
+            	if (usesPackedHistory(active.getRule())) {
+            		if (!hasToDoHistoryTest(active) || !insertInLastTest() || onStore) {
+            			tprint(getHistoryName(active.getRule()));
+            			print(".add(");
+            			printTupleArguments(active, !active.hasPartners(ACTIVE_PARTNERS));
+            			println(");");
+            		}
+            	} else if (hasToDoHistoryTest(active)) {
         			if (!insertInLastTest() || onStore) {
         				tprint(getHistoryName(active.getRule()));
         				print(".add(");
@@ -327,4 +450,23 @@ public class HistoryCodeGenerator extends JavaCodeGenerator {
     public boolean insertInLastTest() {
 		return insertInLastTest;
 	}
+    
+    public void setFilterHistories(boolean filterHistories) {
+		this.filterHistories = filterHistories;
+	}
+    public boolean filterHistories() {
+		return filterHistories;
+	}
+    
+    /**
+     * Sets whether history insertions have to be recorded on the trail
+     * of the constraint system, so they can be undone 
+     * (see {@link runtime.Trail}).
+     */
+    public void setTrailing(boolean trailing) {
+		this.trailing = trailing;
+	}
+    public boolean isTrailing() {
+		return trailing;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,65 @@
+package compiler.codeGeneration;
+
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
+
+/**
+ * A hash index whose lookups initialise a reusable lookup key object
+ * (cf. {@link LookupKeyCodeGenerator}), one per lookup type, and look
+ * up the index with it.
+ */
+public abstract class LookupKeyHashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
+
+	public LookupKeyHashIndexCodeGenerator(
+        CodeGenerator codeGenerator, 
+		UserDefinedConstraint constraint, ILookupCategory category
+    ) {
+		super(codeGenerator, constraint, category);
+	}
+	
+	@Override
+	protected void generateInitialisationCode() throws GenerationException {
+		for (int i = 0; i < getCategory().getNbLookupTypes(); i++)
+			getLookupKeyCodeGenerator(i).printInitalisationCode(getLookupKeyName(i));
+	}
+	
+	@Override
+	protected void generateMembers() throws GenerationException {
+		super.generateMembers();
+        
+        KeyCodeGenerator generator;
+        for (int i = 0; i < getCategory().getNbLookupTypes(); i++) {
+            nl();
+            (generator = getLookupKeyCodeGenerator(i)).generate();
+            nl();
+            printInitialisation("private final", generator, getLookupKeyName(i));
+        }
+	}
+	
+	protected void printInitialisation(String modifiers, KeyCodeGenerator generator, String name) throws GenerationException {
+		tprint(modifiers);
+		print(' ');
+		prints(generator.getType());
+		print(name);
+		generator.printIsNewKey();
+	}
+    
+    protected abstract LookupKeyCodeGenerator getLookupKeyCodeGenerator(int i);
+	
+	@Override
+	protected void generateLookupCode(int lookupTypeIndex) throws GenerationException {
+        String key = getLookupKeyName(lookupTypeIndex);
+        
+        tprint(key); print(".init("); 
+            printLookupArgumentList(lookupTypeIndex, false); 
+        println(");");
+        tprint("return "); print(getIndexName()); print(".get("); print(key); println(");");
+	}
+    
+    public String getLookupKeyName(int lookupTypeIndex) {
+        return getLookupKeyName(getIndexName(), lookupTypeIndex);
+    }
+    public static String getLookupKeyName(String hashIndexName, int lookupTypeIndex) {
+        return hashIndexName + "_LookupKey_" + lookupTypeIndex;
+    }
+}
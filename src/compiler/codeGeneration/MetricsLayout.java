@@ -0,0 +1,80 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.ConstraintCodeGenerator.getOccurrenceName;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.CHRIntermediateForm.ICHRIntermediateForm;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.rulez.Rule;
+
+/**
+ * The layout of the counters of a handler generated with the
+ * <code>-metrics</code> option (see {@link runtime.Metrics}).
+ * All counters are kept in a single <code>long[]</code>: first,
+ * for each constraint, the number of activations, reactivations,
+ * stores and removals; then, for each rule, the number of firings;
+ * and finally, for each positive occurrence, the number of times it
+ * was tried and the number of candidate partners it looked up.
+ * The indices are compile-time constants in the generated code.
+ */
+public class MetricsLayout {
+
+	public final static int
+		ACTIVATIONS = 0, REACTIVATIONS = 1, STORES = 2, REMOVALS = 3;
+	private final static String[] CONSTRAINT_COUNTERS =
+		{ "activations", "reactivations", "stores", "removals" };
+
+	public final static int
+		ATTEMPTS = 0, PARTNERS = 1;
+	private final static String[] OCCURRENCE_COUNTERS =
+		{ "attempts", "partners" };
+
+	private final Map<Object, Integer> offsets = new IdentityHashMap<Object, Integer>();
+
+	private final List<String> names = new ArrayList<String>();
+
+	public MetricsLayout(ICHRIntermediateForm cif) {
+		for (UserDefinedConstraint constraint : cif.getUserDefinedConstraints()) {
+			offsets.put(constraint, names.size());
+			for (String counter : CONSTRAINT_COUNTERS)
+				names.add("constraint:" + constraint.getIdentifier() + '.' + counter);
+		}
+		for (Rule rule : cif.getRules()) {
+			offsets.put(rule, names.size());
+			names.add("rule:" + rule.getIdentifier() + ".firings");
+		}
+		for (UserDefinedConstraint constraint : cif.getUserDefinedConstraints()) {
+			for (Occurrence occurrence : constraint.getPositiveOccurrences()) {
+				offsets.put(occurrence, names.size());
+				for (String counter : OCCURRENCE_COUNTERS)
+					names.add("occurrence:" + getOccurrenceName(occurrence) + '.' + counter);
+			}
+		}
+	}
+
+	public int getNbCounters() {
+		return names.size();
+	}
+
+	/**
+	 * Returns the names of the counters, in order.
+	 */
+	public List<String> getNames() {
+		return names;
+	}
+
+	public int getIndex(UserDefinedConstraint constraint, int counter) {
+		return offsets.get(constraint) + counter;
+	}
+	public int getIndex(Rule rule) {
+		return offsets.get(rule);
+	}
+	public int getIndex(Occurrence occurrence, int counter) {
+		return offsets.get(occurrence) + counter;
+	}
+}
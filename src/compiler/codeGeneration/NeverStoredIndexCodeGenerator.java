@@ -24,6 +24,11 @@ public class NeverStoredIndexCodeGenerator extends ConstraintStoreCodeGenerator
 		print("EmptyIterator.getInstance()");
 	}
 	
+	@Override
+	protected void printCreateSpliteratorCode() throws GenerationException {
+		print("java.util.Spliterators.emptySpliterator()");
+	}
+	
 	@Override
 	protected void generateFilteredMasterLookupCode() throws GenerationException {
 		tprintln("return Empty.getInstance();");
@@ -46,4 +51,9 @@ public class NeverStoredIndexCodeGenerator extends ConstraintStoreCodeGenerator
 	protected boolean generateResetCode() throws GenerationException {
 		return false;
 	}
+	
+	@Override
+	protected boolean generateClearCode() throws GenerationException {
+		return false;
+	}
 }
@@ -0,0 +1,180 @@
+package compiler.codeGeneration;
+
+import runtime.hash.DoubleHashIndex;
+import runtime.hash.IntHashIndex;
+import runtime.hash.LongHashIndex;
+
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.BinaryGuardedLookupType;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.BinaryGuardedLookupType.BinaryGuardInfo;
+import compiler.CHRIntermediateForm.types.IType;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
+
+/**
+ * Generates a hash index keyed on primitive values, for categories whose
+ * key arguments are all of primitive type. Contrary to the
+ * {@link HashIndexCodeGenerator}, no storage or lookup key classes are
+ * generated: the primitive values are used as keys directly.
+ * A single <code>int</code> (or <code>byte</code>, <code>short</code>,
+ * <code>char</code>) key is stored in an {@link IntHashIndex}, a
+ * <code>long</code> or a pair of <code>int</code>s in a {@link LongHashIndex},
+ * and a <code>double</code> or <code>float</code> in a {@link DoubleHashIndex}.
+ */
+public class PrimitiveHashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
+
+	protected enum KeyKind { INT, LONG, DOUBLE }
+
+	public PrimitiveHashIndexCodeGenerator(
+        CodeGenerator codeGenerator,
+		UserDefinedConstraint constraint, ILookupCategory category
+    ) {
+		super(codeGenerator, constraint, category);
+	}
+
+	public static boolean isApplicable(UserDefinedConstraint constraint, ILookupCategory category) {
+		return getIndexClass(constraint, category) != null;
+	}
+
+	protected static KeyKind getKeyKind(IType type) {
+		if (!(type instanceof PrimitiveType)) return null;
+		switch ((PrimitiveType)type) {
+			case BYTE: case SHORT: case CHAR: case INT:
+				return KeyKind.INT;
+			case LONG:
+				return KeyKind.LONG;
+			case FLOAT: case DOUBLE:
+				return KeyKind.DOUBLE;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Returns the kind of key of the variable at the given index of the
+	 * category, or <code>null</code> if no primitive key can be used
+	 * for it. Each lookup has to compare the variable with values of
+	 * the same kind, or else the lookup arguments would not fit the key.
+	 */
+	protected static KeyKind getKeyKind(UserDefinedConstraint constraint, ILookupCategory category, int index) {
+		final KeyKind result = getKeyKind(
+			constraint.getFormalVariableAt(category.getVariableIndices()[index]).getType()
+		);
+		if (result == null) return null;
+		for (int i = 0; i < category.getNbLookupTypes(); i++) {
+			int j = 0;
+			for (BinaryGuardInfo info : ((BinaryGuardedLookupType)category.getLookupTypeAt(i)).getGuards())
+				if (j++ == index && getKeyKind(info.getOtherType()) != result) return null;
+		}
+		return result;
+	}
+
+	protected static Class<?> getIndexClass(UserDefinedConstraint constraint, ILookupCategory category) {
+		switch (category.getNbVariables()) {
+			case 1:
+				KeyKind kind = getKeyKind(constraint, category, 0);
+				if (kind == null) return null;
+				switch (kind) {
+					case INT: return IntHashIndex.class;
+					case LONG: return LongHashIndex.class;
+					default: return DoubleHashIndex.class;
+				}
+
+			case 2:
+				return (getKeyKind(constraint, category, 0) == KeyKind.INT
+						&& getKeyKind(constraint, category, 1) == KeyKind.INT)
+					? LongHashIndex.class
+					: null;
+
+			default:
+				return null;
+		}
+	}
+
+	@Override
+	protected String getHashIndexModifiers() {
+		return "final";
+	}
+
+	@Override
+	protected void generateStorageCode() throws GenerationException {
+		tprintln('{');
+		incNbTabs();
+		tprint(getConstraintListType()); print(" list = ");
+			print(getIndexName()); print(".get("); printStorageKey(); println(");");
+		tprint("if (list == null) ");
+			print(getIndexName()); print(".put("); printStorageKey();
+			print(", list = new "); print(getConstraintListType()); println("());");
+		tprintln("list.addFirst(constraint);");
+		decNbTabs();
+		tprintln('}');
+	}
+
+	protected void printStorageKey() throws GenerationException {
+		if (getNbIndexedVariables() == 1)
+			printGetVariable(getIndexedVariableAt(0));
+		else {
+			print("((long)");
+			printGetVariable(getIndexedVariableAt(0));
+			print(" << 32 | (");
+			printGetVariable(getIndexedVariableAt(1));
+			print(" & 0xFFFFFFFFL))");
+		}
+	}
+
+	@Override
+	protected void generateLookupCode(int lookupTypeIndex) throws GenerationException {
+		tprint("return "); print(getIndexName()); print(".get(");
+		if (getNbIndexedVariables() == 1)
+			printLookupArgumentList(lookupTypeIndex, false);
+		else {
+			print("(long)"); printLookupValueName(0);
+			print(" << 32 | ("); printLookupValueName(1); print(" & 0xFFFFFFFFL)");
+		}
+		println(");");
+	}
+
+	protected void printLookupValueName(int index) throws GenerationException {
+		print(getIndexedVariableAt(index).getIdentifier());
+		print("_value");
+	}
+
+	@Override
+	protected void printCreateIteratorCode() throws GenerationException {
+		print("new NestedIterator<");
+		print(getConstraintTypeName());
+		print(">("); print(getIndexName());  print(')');
+	}
+
+	@Override
+	protected void generateFilteredMasterLookupCode() throws GenerationException {
+        tprint("return new FilteredIterable<");
+            print(getConstraintTypeName());
+        println(">(");
+            ttprint("new NestedIterable<");
+                print(getConstraintTypeName());
+            print(">("); print(getIndexName()); println("), filter");
+        tprintln(");");
+	}
+
+	@Override
+	protected void doGenerateResetCode() throws GenerationException {
+        tprintln('{');
+        incNbTabs();
+        tprint("Iterator<"); print(getConstraintListType()); print("> outer = ");
+            print(getIndexName()); println(".iterator();");
+        tprintln("while (outer.hasNext()) terminateAll(outer.next());");
+        decNbTabs();
+        tprintln('}');
+        tprint(getIndexName()); println(".reset();");
+    }
+
+	@Override
+	public String getIndexType() {
+		return getPrimitiveHashIndexType(getConstraint(), getCategory());
+	}
+	public static String getPrimitiveHashIndexType(UserDefinedConstraint constraint, ILookupCategory category) {
+		return getIndexClass(constraint, category).getSimpleName()
+			+ '<' + getConstraintListType(constraint) + '>';
+	}
+}
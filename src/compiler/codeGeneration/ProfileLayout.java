@@ -0,0 +1,108 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.ConstraintCodeGenerator.getOccurrenceName;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import compiler.CHRIntermediateForm.ICHRIntermediateForm;
+import compiler.CHRIntermediateForm.conjuncts.IGuardConjunct;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.Lookup;
+import compiler.CHRIntermediateForm.constraints.ud.schedule.AbstractScheduleVisitor;
+import compiler.CHRIntermediateForm.rulez.NegativeHead;
+
+/**
+ * The layout of the counters of a handler generated with the
+ * <code>-profile</code> option (see {@link runtime.JoinProfile}).
+ * For each active positive occurrence, in order, there are four
+ * counters (attempts, firings, nanoseconds spent, and the number of
+ * matches that reached the propagation history test), followed by two
+ * counters for each element of its schedule (the number of times it was
+ * reached, and, for lookups, the number of candidate partners it
+ * enumerated). {@link runtime.JoinProfile.Layout} computes the same
+ * offsets from the number of elements of each occurrence.
+ * The descriptions of lookups end with their lookup type, so that
+ * profiles can be read back by the compiler
+ * (see {@link compiler.analysis.profile.RuntimeProfile}).
+ */
+public class ProfileLayout {
+
+	public final static int
+		ATTEMPTS = 0, FIRED = 1, NANOS = 2, MATCHED = 3, NB_OCCURRENCE_COUNTERS = 4;
+
+	public final static int
+		ENTRIES = 0, CANDIDATES = 1, NB_ELEMENT_COUNTERS = 2;
+
+	private final List<Occurrence> occurrences = new ArrayList<Occurrence>();
+
+	private final List<List<String>> elements = new ArrayList<List<String>>();
+
+	private final Map<Occurrence, Integer> offsets = new IdentityHashMap<Occurrence, Integer>();
+
+	private int nbCounters;
+
+	public ProfileLayout(ICHRIntermediateForm cif) {
+		for (UserDefinedConstraint constraint : cif.getUserDefinedConstraints()) {
+			for (Occurrence occurrence : constraint.getPositiveOccurrences()) {
+				if (!occurrence.isActive()) continue;
+				final List<String> elements = getElementDescriptions(occurrence);
+				occurrences.add(occurrence);
+				this.elements.add(elements);
+				offsets.put(occurrence, nbCounters);
+				nbCounters += NB_OCCURRENCE_COUNTERS + NB_ELEMENT_COUNTERS * elements.size();
+			}
+		}
+	}
+
+	protected static List<String> getElementDescriptions(Occurrence occurrence) {
+		final List<String> result = new ArrayList<String>();
+		try {
+			occurrence.accept(new AbstractScheduleVisitor() {
+				@Override
+				public void visit(Lookup lookup) throws Exception {
+					result.add("lookup " + getOccurrenceName(lookup.getOccurrence())
+						+ ' ' + lookup + " [" + lookup.getLookupType() + ']');
+				}
+				@Override
+				public void visit(IGuardConjunct guard) throws Exception {
+					result.add("guard " + guard);
+				}
+				@Override
+				public void visit(NegativeHead negativeHead) throws Exception {
+					result.add("negative head " + negativeHead);
+				}
+			});
+		} catch (Exception x) {
+			throw new InternalError();
+		}
+		return result;
+	}
+
+	public int getNbCounters() {
+		return nbCounters;
+	}
+
+	public List<Occurrence> getOccurrences() {
+		return occurrences;
+	}
+
+	/**
+	 * Returns the descriptions of the elements of the schedule of the
+	 * occurrence with the given index (in the order of {@link #getOccurrences()}).
+	 */
+	public List<String> getElementDescriptions(int index) {
+		return elements.get(index);
+	}
+
+	public int getIndex(Occurrence occurrence, int counter) {
+		return offsets.get(occurrence) + counter;
+	}
+	public int getIndex(Occurrence occurrence, int element, int counter) {
+		return offsets.get(occurrence) + NB_OCCURRENCE_COUNTERS
+			+ NB_ELEMENT_COUNTERS * element + counter;
+	}
+}
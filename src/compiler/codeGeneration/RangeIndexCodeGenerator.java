@@ -0,0 +1,149 @@
+package compiler.codeGeneration;
+
+import runtime.tree.RangeIndex;
+
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.RangeLookupType;
+import compiler.CHRIntermediateForm.types.IType;
+import compiler.CHRIntermediateForm.types.PrimitiveType;
+import compiler.CHRIntermediateForm.variables.FormalVariable;
+
+public class RangeIndexCodeGenerator extends ConstraintStoreCodeGenerator {
+
+	public RangeIndexCodeGenerator(
+        CodeGenerator codeGenerator,
+		UserDefinedConstraint constraint, ILookupCategory category
+    ) {
+		super(codeGenerator, constraint, category);
+	}
+
+	@Override
+	protected void generateMembers() throws GenerationException {
+		tprint("private final ");
+		print(getIndexType()); print(' '); print(getIndexName());
+		print(" = new "); print(getIndexType());
+		print('('); print(getConstraint().mayBeRemoved()); println(");");
+	}
+
+	@Override
+	protected void generateStorageCode() throws GenerationException {
+		tprint(getIndexName()); print(".insert(");
+			printGetVariable(getIndexedVariable());
+		println(", constraint);");
+	}
+
+    protected void printGetVariable(FormalVariable variable) throws GenerationException {
+        print("constraint.");
+        print(ConstraintCodeGenerator.getVariableGetterName(variable));
+        print("()");
+    }
+
+	@Override
+	protected void printCreateIteratorCode() throws GenerationException {
+		print(getIndexName()); print(".iterator()");
+	}
+
+	@Override
+	protected void printCreateSpliteratorCode() throws GenerationException {
+		print(getIndexName()); print(".spliterator()");
+	}
+
+	@Override
+	protected void generateFilteredMasterLookupCode() throws GenerationException {
+		tprint("return new FilteredIterable<");
+		print(getConstraintTypeName());
+		print(">(");
+		print(getIndexName());
+		println(", filter);");
+	}
+
+    @Override
+    protected RangeLookupType getLookupTypeAt(int index) {
+        return (RangeLookupType)super.getLookupTypeAt(index);
+    }
+
+    @Override
+    protected void generateLookupArgumentList(int lookupTypeIndex) throws GenerationException {
+        final RangeLookupType type = getLookupTypeAt(lookupTypeIndex);
+        final FormalVariable variable = getIndexedVariable();
+
+        if (type.hasLowerBound()) {
+        	prints(variable.getTypeString());
+        	print(getLowerBoundName());
+        	if (type.hasUpperBound()) print(", ");
+        }
+        if (type.hasUpperBound()) {
+        	prints(variable.getTypeString());
+        	print(getUpperBoundName());
+        }
+    }
+
+	@Override
+	protected void generateLookupCode(int lookupTypeIndex) throws GenerationException {
+        final RangeLookupType type = getLookupTypeAt(lookupTypeIndex);
+
+        tprint("return "); print(getIndexName()); print(".lookup(");
+        if (type.hasLowerBound()) {
+        	print(getLowerBoundName()); print(", "); print(type.isLowerInclusive());
+        } else {
+        	print("null, false");
+        }
+        print(", ");
+        if (type.hasUpperBound()) {
+        	print(getUpperBoundName()); print(", "); print(type.isUpperInclusive());
+        } else {
+        	print("null, false");
+        }
+        println(");");
+	}
+
+	@Override
+	protected void doGenerateResetCode() throws GenerationException {
+		tprint("terminateAll(");
+		print(getIndexName());
+		println(".iterator());");
+		tprint(getIndexName());
+		println(".reset();");
+	}
+
+	@Override
+	protected void doGenerateClearCode() throws GenerationException {
+		tprint(getIndexName());
+		println(".reset();");
+	}
+
+	protected FormalVariable getIndexedVariable() {
+		return getIndexedVariableAt(0);
+	}
+	protected String getLowerBoundName() {
+		return getIndexedVariable().getIdentifier() + "_lower";
+	}
+	protected String getUpperBoundName() {
+		return getIndexedVariable().getIdentifier() + "_upper";
+	}
+
+	public String getIndexType() {
+		return getRangeIndexType(getConstraint(), getIndexedVariable());
+	}
+	public static String getRangeIndexType(UserDefinedConstraint constraint, FormalVariable variable) {
+		IType type = variable.getType();
+		return RangeIndex.class.getSimpleName()
+			+ '<'
+			+ ((type instanceof PrimitiveType)
+				? ((PrimitiveType)type).getWrapperType().toTypeString()
+				: type.toTypeString())
+			+ ", " + getConstraintTypeName(constraint)
+			+ '>';
+	}
+
+	public String getIndexName() {
+		return getRangeIndexName(getConstraint(), getCategory());
+	}
+	public static String getRangeIndexName(UserDefinedConstraint constraint, ILookupCategory category) {
+		return "$$"
+			+ constraint.getIdentifier()
+			+ "RangeIndex_"
+			+ constraint.getIndexOf(category);
+	}
+}
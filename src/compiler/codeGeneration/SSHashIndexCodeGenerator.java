@@ -5,7 +5,7 @@ import runtime.hash.HashIndex;
 import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
 import compiler.CHRIntermediateForm.constraints.ud.lookup.category.ILookupCategory;
 
-public class SSHashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
+public class SSHashIndexCodeGenerator extends LookupKeyHashIndexCodeGenerator {
 
 	public SSHashIndexCodeGenerator(
         CodeGenerator codeGenerator, 
@@ -34,6 +34,11 @@ public class SSHashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
         print(getIndexName()); print(".iterator()");
 	}
 	
+	@Override
+	protected void printCreateSpliteratorCode() throws GenerationException {
+		print(getIndexName()); print(".spliterator()");
+	}
+	
 	@Override
 	protected void generateFilteredMasterLookupCode() throws GenerationException {
         tprint("return new FilteredIterable<"); 
@@ -54,6 +59,21 @@ public class SSHashIndexCodeGenerator extends AbstractHashIndexCodeGenerator {
     	print(getIndexName()); 
     	println(".iterator());");
     }
+	
+	/**
+	 * Under set semantics, each stored constraint is a separate entry
+	 * of the index, so the index can be pre-sized exactly.
+	 */
+	@Override
+	protected boolean generateEnsureCapacityCode(String number) throws GenerationException {
+		tprint(getIndexName());
+		print(".ensureCapacity(");
+		print(getIndexName());
+		print(".size() + ");
+		print(number);
+		println(");");
+		return true;
+	}
     
 	@Override
     public String getIndexType() {
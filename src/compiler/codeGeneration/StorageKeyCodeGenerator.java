@@ -69,7 +69,7 @@ public class StorageKeyCodeGenerator extends KeyCodeGenerator {
 		tprintln("public boolean rehash() {");
 		incNbTabs();
 		tprint(getIndexName()); println(".remove(this);");
-		tprintln("if (head == null || isEmpty()) return false;");
+		tprintln("if (head == null || isEmpty() || isExpired()) return false;");
 		generateHashCodeInitialization();
 		tprint("final "); print(getIndexValueType()); print(" temp = ");
 			print(getIndexName()); println(".insertOrGet(this);");
@@ -82,7 +82,7 @@ public class StorageKeyCodeGenerator extends KeyCodeGenerator {
 		tprintln('}');
 		nl();
 		tprintln("public boolean isSuperfluous() {");
-		ttprintln("return (head == null || isEmpty());");
+		ttprintln("return (head == null || isEmpty() || isExpired());");
 		tprintln('}');
 	}
 	
@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
 
+import runtime.history.TerminationLog;
 import runtime.history.TuplePropagationHistory;
 
 
@@ -44,6 +45,8 @@ public class TupleCodeGenerator extends JavaCodeGenerator {
             nl();
             generateEqualsMethods();
             nl();
+            generateRefersToRemovedMethod();
+            nl();
             generateToStringMethod();
         decNbTabs();
         println('}');
@@ -59,6 +62,7 @@ public class TupleCodeGenerator extends JavaCodeGenerator {
     }
     
     protected void generateImports() throws GenerationException {
+    	printImport(TerminationLog.class);
     	printImport(TuplePropagationHistory.class);
     }
     
@@ -71,15 +75,15 @@ public class TupleCodeGenerator extends JavaCodeGenerator {
     
     protected void generateMembers() throws GenerationException {
         for (int i = 1; i <= getArity(); i++) {
-            tprint("private final int X"); print(i); println(';');
+            tprint("private final long X"); print(i); println(';');
         }
     }
     
     protected void generateConstructor() throws GenerationException {
         tprint("public "); print(getTupleClassName()); print('(');
-        print("int X1");
+        print("long X1");
         for (int i = 2; i <= getArity(); i++) {
-            print(", int X"); print(i);
+            print(", long X"); print(i);
         }
         println(") {");
         
@@ -90,7 +94,7 @@ public class TupleCodeGenerator extends JavaCodeGenerator {
         for (int i = 1; i <= getArity(); i++) print("37 * (");
         print(23);
         for (int i = 1; i <= getArity(); i++) {
-            print(") + X"); print(i);
+            print(") + (int)(X"); print(i); print(" ^ (X"); print(i); print(" >>> 32))");
         }
         println(';');
         ttprintln("hash ^= (hash >>> 20) ^ (hash >>> 12);");
@@ -133,6 +137,19 @@ public class TupleCodeGenerator extends JavaCodeGenerator {
         tprintln('}');
     }
     
+    protected void generateRefersToRemovedMethod() throws GenerationException {
+        tprintOverride();
+        tprint("protected boolean refersToRemoved(");
+            print(TerminationLog.class.getSimpleName()); println(" log) {");
+        ttprint("return ");
+        for (int i = 1; i <= getArity(); i++) {
+            if (i != 1) { nl(); ttprint("    || "); }
+            print("log.contains(X"); print(i); print(')');
+        }
+        println(';');
+        tprintln('}');
+    }
+    
     protected void generateToStringMethod() throws GenerationException {
         tprintOverride();
         tprintln("public String toString() {");
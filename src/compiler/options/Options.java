@@ -11,12 +11,15 @@ import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
 
+import java.io.File;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.ResourceBundle;
 
 /**
@@ -201,6 +204,22 @@ public class Options {
     
     //  ----------------------------------------------------------
     
+    private boolean targetedWakeups = true;
+    
+    @Option(
+		name = "-watchers",
+		handler = Generic.class,
+		usage = "set reactivation of only the occurrences that depend on a changed variable"
+    )
+    public void toggleTargetedWakeups(boolean targetedWakeups) {
+    	this.targetedWakeups = targetedWakeups;
+    }
+    public boolean doTargetedWakeups() {
+        return targetedWakeups;
+    }
+    
+    //  ----------------------------------------------------------
+    
     private boolean stackOptimizations = true;
     
     @Option(
@@ -214,7 +233,185 @@ public class Options {
     public boolean doStackOptimizations() {
         return stackOptimizations;
     }
-    
+
+    //  ----------------------------------------------------------
+
+    private boolean constraintRecycling;
+
+    @Option(
+		name = "-recycling",
+		handler = Generic.class,
+		usage = "set recycling of never stored and removed constraint objects"
+    )
+    public void toggleConstraintRecycling(boolean constraintRecycling) {
+    	this.constraintRecycling = constraintRecycling;
+    }
+    public boolean doConstraintRecycling() {
+        return constraintRecycling;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean historyFilters;
+
+    @Option(
+		name = "-bloom",
+		handler = Generic.class,
+		usage = "set use of Bloom filters in front of propagation histories"
+    )
+    public void toggleHistoryFilters(boolean historyFilters) {
+    	this.historyFilters = historyFilters;
+    }
+    public boolean doHistoryFilters() {
+        return historyFilters;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean incrementalResizing;
+
+    @Option(
+		name = "-incremental",
+		handler = Generic.class,
+		usage = "set incremental resizing of hash indexes"
+    )
+    public void toggleIncrementalResizing(boolean incrementalResizing) {
+    	this.incrementalResizing = incrementalResizing;
+    }
+    public boolean doIncrementalResizing() {
+        return incrementalResizing;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean trailing;
+
+    @Option(
+		name = "-trailing",
+		handler = Generic.class,
+		usage = "set trailing of constraint store and history changes (for choice points)"
+    )
+    public void toggleTrailing(boolean trailing) {
+    	this.trailing = trailing;
+    }
+    public boolean doTrailing() {
+        return trailing;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean metrics;
+
+    @Option(
+		name = "-metrics",
+		handler = Generic.class,
+		usage = "set generation of (low-overhead) counters that can be inspected at runtime"
+    )
+    public void toggleMetrics(boolean metrics) {
+    	this.metrics = metrics;
+    }
+    public boolean doMetrics() {
+        return metrics;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean profiling;
+
+    @Option(
+		name = "-profile",
+		handler = Generic.class,
+		usage = "set generation of a join-selectivity profiler (for each occurrence and partner lookup)"
+    )
+    public void toggleProfiling(boolean profiling) {
+    	this.profiling = profiling;
+    }
+    public boolean doProfiling() {
+        return profiling;
+    }
+
+    private File joinProfile;
+
+    @Option(
+		name = "-joinprofile",
+		metaVar = "<file>",
+		usage = "set the join profile (in CSV, as exported by a handler generated with -profile) used for join ordering and index selection"
+    )
+    public void setJoinProfile(File joinProfile) {
+    	this.joinProfile = joinProfile;
+    }
+    /**
+     * Returns the join profile set using the <code>-joinprofile</code>
+     * option, or <code>null</code> if it was not set.
+     */
+    public File getJoinProfile() {
+        return joinProfile;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean striped;
+
+    @Option(
+		name = "-striped",
+		handler = Generic.class,
+		usage = "set generation of a front-end to which more than one thread can tell constraints, with a lock per independent part of the store"
+    )
+    public void toggleStriped(boolean striped) {
+    	this.striped = striped;
+    }
+    public boolean isStriped() {
+        return striped;
+    }
+
+    //  ----------------------------------------------------------
+
+    private boolean sharding;
+
+    @Option(
+		name = "-sharded",
+		handler = Generic.class,
+		usage = "set generation of a sharded front-end for partitionable handlers"
+    )
+    public void toggleSharding(boolean sharding) {
+    	this.sharding = sharding;
+    }
+    public boolean doSharding() {
+        return sharding;
+    }
+
+    private Map<String, Integer> partitionIndices = new HashMap<String, Integer>();
+
+    @Option(
+		name = "-partition",
+		metaVar = "<constraint>/<index>",
+		usage = "set the (zero-based) index of the partitioning argument of a constraint"
+    )
+    public void addPartitionIndex(String partition) throws CmdLineException {
+    	final int slash = partition.lastIndexOf('/');
+    	try {
+    		if (slash > 0) {
+    			partitionIndices.put(
+					partition.substring(0, slash),
+					Integer.valueOf(partition.substring(slash + 1))
+				);
+    			return;
+    		}
+    	} catch (NumberFormatException nfe) {
+    		// fall through
+    	}
+    	throw new CmdLineException(getParser(), new IllegalArgumentException("Illegal partitioning argument: " + partition));
+    }
+    /**
+     * Returns the index of the partitioning argument of the constraint
+     * with the given identifier set using the <code>-partition</code>
+     * option, or <code>-1</code> if it was not set.
+     */
+    public int getPartitionIndex(String constraint) {
+    	final Integer result = partitionIndices.get(constraint);
+    	return (result == null)? -1 : result.intValue();
+    }
+
     // ----------------------------------------------------------
     
     private boolean sysin;
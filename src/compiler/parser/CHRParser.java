@@ -1,4 +1,4 @@
-// $ANTLR : "chr.g" -> "CHRParser.java"$
+// $ANTLR 2.7.7 (20060906): "chr.g" -> "CHRParser.java"$
 
 package compiler.parser;
 
@@ -453,7 +453,7 @@ public CHRParser(ParserSharedInputState state) {
 				getBuilder().beginImports();
 			}
 			{
-			_loop642:
+			_loop16:
 			do {
 				if ((LA(1)==IMPORT)) {
 					match(IMPORT);
@@ -484,7 +484,7 @@ public CHRParser(ParserSharedInputState state) {
 					}
 				}
 				else {
-					break _loop642;
+					break _loop16;
 				}
 				
 			} while (true);
@@ -719,14 +719,14 @@ public CHRParser(ParserSharedInputState state) {
 			{
 				typeParameter();
 				{
-				_loop659:
+				_loop33:
 				do {
 					if ((LA(1)==COMMA)) {
 						match(COMMA);
 						typeParameter();
 					}
 					else {
-						break _loop659;
+						break _loop33;
 					}
 					
 				} while (true);
@@ -767,8 +767,8 @@ public CHRParser(ParserSharedInputState state) {
 				getBuilder().beginDeclarations();
 			}
 			{
-			int _cnt653=0;
-			_loop653:
+			int _cnt27=0;
+			_loop27:
 			do {
 				switch ( LA(1)) {
 				case PUBLIC:
@@ -810,10 +810,10 @@ public CHRParser(ParserSharedInputState state) {
 				}
 				default:
 				{
-					if ( _cnt653>=1 ) { break _loop653; } else {throw new NoViableAltException(LT(1), getFilename());}
+					if ( _cnt27>=1 ) { break _loop27; } else {throw new NoViableAltException(LT(1), getFilename());}
 				}
 				}
-				_cnt653++;
+				_cnt27++;
 			} while (true);
 			}
 			if ( inputState.guessing==0 ) {
@@ -840,7 +840,7 @@ public CHRParser(ParserSharedInputState state) {
 				getBuilder().beginRules();
 			}
 			{
-			_loop698:
+			_loop72:
 			do {
 				switch ( LA(1)) {
 				case VARIABLE:
@@ -873,7 +873,7 @@ public CHRParser(ParserSharedInputState state) {
 				}
 				default:
 				{
-					break _loop698;
+					break _loop72;
 				}
 				}
 			} while (true);
@@ -909,14 +909,14 @@ public CHRParser(ParserSharedInputState state) {
 				match(EXTENDS);
 				upperBound();
 				{
-				_loop648:
+				_loop22:
 				do {
 					if ((LA(1)==AMPERCENT)) {
 						match(AMPERCENT);
 						upperBound();
 					}
 					else {
-						break _loop648;
+						break _loop22;
 					}
 					
 				} while (true);
@@ -1110,14 +1110,14 @@ public CHRParser(ParserSharedInputState state) {
 			}
 			constraintDeclarationBody(access);
 			{
-			_loop687:
+			_loop61:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					constraintDeclarationBody(access);
 				}
 				else {
-					break _loop687;
+					break _loop61;
 				}
 				
 			} while (true);
@@ -1144,14 +1144,14 @@ public CHRParser(ParserSharedInputState state) {
 			match(LT);
 			typeArgument();
 			{
-			_loop675:
+			_loop49:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					typeArgument();
 				}
 				else {
-					break _loop675;
+					break _loop49;
 				}
 				
 			} while (true);
@@ -1329,14 +1329,14 @@ public CHRParser(ParserSharedInputState state) {
 				match(INFIX);
 				infixDeclaration();
 				{
-				_loop682:
+				_loop56:
 				do {
 					if ((LA(1)==COMMA) && (_tokenSet_16.member(LA(2)))) {
 						match(COMMA);
 						infixDeclaration();
 					}
 					else {
-						break _loop682;
+						break _loop56;
 					}
 					
 				} while (true);
@@ -1393,14 +1393,14 @@ public CHRParser(ParserSharedInputState state) {
 			}
 			}
 			{
-			_loop691:
+			_loop65:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					constraintArgument();
 				}
 				else {
-					break _loop691;
+					break _loop65;
 				}
 				
 			} while (true);
@@ -1686,14 +1686,14 @@ public CHRParser(ParserSharedInputState state) {
 			variableType(fixed);
 			variableDeclaration();
 			{
-			_loop709:
+			_loop83:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					variableDeclaration();
 				}
 				else {
-					break _loop709;
+					break _loop83;
 				}
 				
 			} while (true);
@@ -1770,14 +1770,14 @@ public CHRParser(ParserSharedInputState state) {
 			variableType(fixed);
 			localVariableDeclaration();
 			{
-			_loop704:
+			_loop78:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					localVariableDeclaration();
 				}
 				else {
-					break _loop704;
+					break _loop78;
 				}
 				
 			} while (true);
@@ -1806,10 +1806,10 @@ public CHRParser(ParserSharedInputState state) {
 				getBuilder().beginRule();
 			}
 			{
-			boolean synPredMatched716 = false;
+			boolean synPredMatched90 = false;
 			if (((LA(1)==SIMPLE_ID) && (LA(2)==AT))) {
-				int _m716 = mark();
-				synPredMatched716 = true;
+				int _m90 = mark();
+				synPredMatched90 = true;
 				inputState.guessing++;
 				try {
 					{
@@ -1818,12 +1818,12 @@ public CHRParser(ParserSharedInputState state) {
 					}
 				}
 				catch (RecognitionException pe) {
-					synPredMatched716 = false;
+					synPredMatched90 = false;
 				}
-				rewind(_m716);
+				rewind(_m90);
 inputState.guessing--;
 			}
-			if ( synPredMatched716 ) {
+			if ( synPredMatched90 ) {
 				id = LT(1);
 				match(SIMPLE_ID);
 				match(AT);
@@ -1958,10 +1958,10 @@ inputState.guessing--;
 		
 		
 		try {      // for error handling
-			boolean synPredMatched720 = false;
+			boolean synPredMatched94 = false;
 			if (((_tokenSet_21.member(LA(1))) && (_tokenSet_24.member(LA(2))) && (_tokenSet_25.member(LA(3))) && (_tokenSet_26.member(LA(4))))) {
-				int _m720 = mark();
-				synPredMatched720 = true;
+				int _m94 = mark();
+				synPredMatched94 = true;
 				inputState.guessing++;
 				try {
 					{
@@ -1970,31 +1970,31 @@ inputState.guessing--;
 					}
 				}
 				catch (RecognitionException pe) {
-					synPredMatched720 = false;
+					synPredMatched94 = false;
 				}
-				rewind(_m720);
+				rewind(_m94);
 inputState.guessing--;
 			}
-			if ( synPredMatched720 ) {
+			if ( synPredMatched94 ) {
 				simpagationDef(name);
 			}
 			else {
-				boolean synPredMatched724 = false;
+				boolean synPredMatched98 = false;
 				if (((_tokenSet_21.member(LA(1))) && (_tokenSet_27.member(LA(2))) && (_tokenSet_28.member(LA(3))) && (_tokenSet_29.member(LA(4))))) {
-					int _m724 = mark();
-					synPredMatched724 = true;
+					int _m98 = mark();
+					synPredMatched98 = true;
 					inputState.guessing++;
 					try {
 						{
 						occurrenceList();
 						{
-						_loop723:
+						_loop97:
 						do {
 							if ((LA(1)==DOUBLE_MINUS)) {
 								negativeHead();
 							}
 							else {
-								break _loop723;
+								break _loop97;
 							}
 							
 						} while (true);
@@ -2003,12 +2003,12 @@ inputState.guessing--;
 						}
 					}
 					catch (RecognitionException pe) {
-						synPredMatched724 = false;
+						synPredMatched98 = false;
 					}
-					rewind(_m724);
+					rewind(_m98);
 inputState.guessing--;
 				}
-				if ( synPredMatched724 ) {
+				if ( synPredMatched98 ) {
 					simplificationDef(name);
 				}
 				else if ((_tokenSet_21.member(LA(1))) && (_tokenSet_30.member(LA(2))) && (_tokenSet_31.member(LA(3))) && (_tokenSet_32.member(LA(4)))) {
@@ -2042,14 +2042,14 @@ inputState.guessing--;
 			}
 			pragma();
 			{
-			_loop727:
+			_loop101:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					pragma();
 				}
 				else {
-					break _loop727;
+					break _loop101;
 				}
 				
 			} while (true);
@@ -2105,14 +2105,14 @@ inputState.guessing--;
 		try {      // for error handling
 			occurrence();
 			{
-			_loop761:
+			_loop136:
 			do {
 				if ((LA(1)==COMMA||LA(1)==AND)) {
 					and();
 					occurrence();
 				}
 				else {
-					break _loop761;
+					break _loop136;
 				}
 				
 			} while (true);
@@ -2266,7 +2266,6 @@ inputState.guessing--;
 		
 		
 		try {      // for error handling
-			{
 			switch ( LA(1)) {
 			case LITERAL_passive:
 			{
@@ -2284,16 +2283,21 @@ inputState.guessing--;
 				break;
 			}
 			default:
-			{
+				if (((LA(1)==SIMPLE_ID) && (LA(2)==LPAREN) && (_tokenSet_21.member(LA(3))) && (_tokenSet_37.member(LA(4))))&&( LT(1).getText().equals("priority") )) {
+					priorityPragma();
+				}
+				else if (((LA(1)==SIMPLE_ID) && (LA(2)==LPAREN) && (LA(3)==SIMPLE_ID) && (LA(4)==RPAREN))&&( LT(1).getText().equals("partition") )) {
+					partitionPragma();
+				}
+			else {
 				throw new NoViableAltException(LT(1), getFilename());
 			}
 			}
-			}
 		}
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_37);
+				recover(ex,_tokenSet_38);
 			} else {
 			  throw ex;
 			}
@@ -2308,14 +2312,14 @@ inputState.guessing--;
 			match(LPAREN);
 			passivePragmaId();
 			{
-			_loop732:
+			_loop105:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					passivePragmaId();
 				}
 				else {
-					break _loop732;
+					break _loop105;
 				}
 				
 			} while (true);
@@ -2325,7 +2329,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_37);
+				recover(ex,_tokenSet_38);
 			} else {
 			  throw ex;
 			}
@@ -2344,7 +2348,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_37);
+				recover(ex,_tokenSet_38);
 			} else {
 			  throw ex;
 			}
@@ -2363,7 +2367,55 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_37);
+				recover(ex,_tokenSet_38);
+			} else {
+			  throw ex;
+			}
+		}
+	}
+	
+	protected final void priorityPragma() throws RecognitionException, TokenStreamException, BuilderException {
+		
+		
+		try {      // for error handling
+			match(SIMPLE_ID);
+			match(LPAREN);
+			if ( inputState.guessing==0 ) {
+				getBuilder().beginPriorityPragma();
+			}
+			argument();
+			if ( inputState.guessing==0 ) {
+				getBuilder().endPriorityPragma();
+			}
+			match(RPAREN);
+		}
+		catch (RecognitionException ex) {
+			if (inputState.guessing==0) {
+				reportError(ex);
+				recover(ex,_tokenSet_38);
+			} else {
+			  throw ex;
+			}
+		}
+	}
+	
+	protected final void partitionPragma() throws RecognitionException, TokenStreamException, BuilderException {
+		
+		String id;
+		
+		try {      // for error handling
+			match(SIMPLE_ID);
+			match(LPAREN);
+			id=simpleID();
+			if ( inputState.guessing==0 ) {
+				getBuilder().addPartitionPragma(id);
+			}
+			match(RPAREN);
+		}
+		catch (RecognitionException ex) {
+			if (inputState.guessing==0) {
+				reportError(ex);
+				recover(ex,_tokenSet_38);
 			} else {
 			  throw ex;
 			}
@@ -2405,7 +2457,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_38);
+				recover(ex,_tokenSet_39);
 			} else {
 			  throw ex;
 			}
@@ -2427,7 +2479,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_39);
+				recover(ex,_tokenSet_40);
 			} else {
 			  throw ex;
 			}
@@ -2442,13 +2494,13 @@ inputState.guessing--;
 				getBuilder().beginNegativeHeads();	
 			}
 			{
-			_loop741:
+			_loop116:
 			do {
 				if ((LA(1)==DOUBLE_MINUS)) {
 					negativeHead();
 				}
 				else {
-					break _loop741;
+					break _loop116;
 				}
 				
 			} while (true);
@@ -2460,7 +2512,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_40);
+				recover(ex,_tokenSet_41);
 			} else {
 			  throw ex;
 			}
@@ -2472,10 +2524,10 @@ inputState.guessing--;
 		
 		try {      // for error handling
 			{
-			boolean synPredMatched755 = false;
-			if (((_tokenSet_41.member(LA(1))) && (_tokenSet_42.member(LA(2))) && (_tokenSet_43.member(LA(3))) && (_tokenSet_44.member(LA(4))))) {
-				int _m755 = mark();
-				synPredMatched755 = true;
+			boolean synPredMatched130 = false;
+			if (((_tokenSet_42.member(LA(1))) && (_tokenSet_43.member(LA(2))) && (_tokenSet_44.member(LA(3))) && (_tokenSet_45.member(LA(4))))) {
+				int _m130 = mark();
+				synPredMatched130 = true;
 				inputState.guessing++;
 				try {
 					{
@@ -2484,15 +2536,15 @@ inputState.guessing--;
 					}
 				}
 				catch (RecognitionException pe) {
-					synPredMatched755 = false;
+					synPredMatched130 = false;
 				}
-				rewind(_m755);
+				rewind(_m130);
 inputState.guessing--;
 			}
-			if ( synPredMatched755 ) {
+			if ( synPredMatched130 ) {
 				guard();
 			}
-			else if ((_tokenSet_41.member(LA(1))) && (_tokenSet_45.member(LA(2))) && (_tokenSet_46.member(LA(3))) && (_tokenSet_47.member(LA(4)))) {
+			else if ((_tokenSet_42.member(LA(1))) && (_tokenSet_46.member(LA(2))) && (_tokenSet_47.member(LA(3))) && (_tokenSet_48.member(LA(4)))) {
 			}
 			else {
 				throw new NoViableAltException(LT(1), getFilename());
@@ -2526,7 +2578,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_48);
+				recover(ex,_tokenSet_49);
 			} else {
 			  throw ex;
 			}
@@ -2569,7 +2621,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -2589,7 +2641,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -2615,7 +2667,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -2660,14 +2712,14 @@ inputState.guessing--;
 			}
 			}
 			{
-			_loop793:
+			_loop168:
 			do {
 				if ((LA(1)==COMMA)) {
 					match(COMMA);
 					argument();
 				}
 				else {
-					break _loop793;
+					break _loop168;
 				}
 				
 			} while (true);
@@ -2699,7 +2751,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_50);
+				recover(ex,_tokenSet_51);
 			} else {
 			  throw ex;
 			}
@@ -2725,7 +2777,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_50);
+				recover(ex,_tokenSet_51);
 			} else {
 			  throw ex;
 			}
@@ -2738,14 +2790,14 @@ inputState.guessing--;
 		try {      // for error handling
 			conjunct();
 			{
-			_loop773:
+			_loop148:
 			do {
 				if ((LA(1)==COMMA||LA(1)==AND)) {
 					and();
 					conjunct();
 				}
 				else {
-					break _loop773;
+					break _loop148;
 				}
 				
 			} while (true);
@@ -2754,7 +2806,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_51);
+				recover(ex,_tokenSet_52);
 			} else {
 			  throw ex;
 			}
@@ -2777,7 +2829,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_41);
+				recover(ex,_tokenSet_42);
 			} else {
 			  throw ex;
 			}
@@ -2812,10 +2864,10 @@ inputState.guessing--;
 		
 		try {      // for error handling
 			{
-			boolean synPredMatched765 = false;
-			if (((_tokenSet_21.member(LA(1))) && (_tokenSet_52.member(LA(2))) && (_tokenSet_53.member(LA(3))) && (_tokenSet_54.member(LA(4))))) {
-				int _m765 = mark();
-				synPredMatched765 = true;
+			boolean synPredMatched140 = false;
+			if (((_tokenSet_21.member(LA(1))) && (_tokenSet_53.member(LA(2))) && (_tokenSet_54.member(LA(3))) && (_tokenSet_55.member(LA(4))))) {
+				int _m140 = mark();
+				synPredMatched140 = true;
 				inputState.guessing++;
 				try {
 					{
@@ -2824,17 +2876,17 @@ inputState.guessing--;
 					}
 				}
 				catch (RecognitionException pe) {
-					synPredMatched765 = false;
+					synPredMatched140 = false;
 				}
-				rewind(_m765);
+				rewind(_m140);
 inputState.guessing--;
 			}
-			if ( synPredMatched765 ) {
+			if ( synPredMatched140 ) {
 				infixConstraint();
 			}
-			else if ((LA(1)==SIMPLE_ID) && (_tokenSet_55.member(LA(2))) && (_tokenSet_56.member(LA(3))) && (_tokenSet_57.member(LA(4)))) {
+			else if ((LA(1)==SIMPLE_ID) && (_tokenSet_56.member(LA(2))) && (_tokenSet_57.member(LA(3))) && (_tokenSet_58.member(LA(4)))) {
 				{
-				if ((LA(1)==SIMPLE_ID) && (_tokenSet_50.member(LA(2)))) {
+				if ((LA(1)==SIMPLE_ID) && (_tokenSet_51.member(LA(2)))) {
 					flagOccurrence();
 				}
 				else if ((LA(1)==SIMPLE_ID) && (LA(2)==LPAREN)) {
@@ -2861,7 +2913,7 @@ inputState.guessing--;
 				}
 				}
 			}
-			else if ((LA(1)==NUMBER_SIGN) && (_tokenSet_58.member(LA(2)))) {
+			else if ((LA(1)==NUMBER_SIGN) && (_tokenSet_59.member(LA(2)))) {
 				{
 				match(NUMBER_SIGN);
 				{
@@ -2892,7 +2944,7 @@ inputState.guessing--;
 				}
 				}
 			}
-			else if ((_tokenSet_59.member(LA(1)))) {
+			else if ((_tokenSet_60.member(LA(1)))) {
 			}
 			else {
 				throw new NoViableAltException(LT(1), getFilename());
@@ -2903,7 +2955,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_59);
+				recover(ex,_tokenSet_60);
 			} else {
 			  throw ex;
 			}
@@ -2934,7 +2986,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_41);
+				recover(ex,_tokenSet_42);
 			} else {
 			  throw ex;
 			}
@@ -2964,7 +3016,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_60);
+				recover(ex,_tokenSet_61);
 			} else {
 			  throw ex;
 			}
@@ -2977,10 +3029,10 @@ inputState.guessing--;
 		String message=null;
 		
 		try {      // for error handling
-			boolean synPredMatched776 = false;
-			if (((_tokenSet_21.member(LA(1))) && (_tokenSet_52.member(LA(2))) && (_tokenSet_53.member(LA(3))) && (_tokenSet_61.member(LA(4))))) {
-				int _m776 = mark();
-				synPredMatched776 = true;
+			boolean synPredMatched151 = false;
+			if (((_tokenSet_21.member(LA(1))) && (_tokenSet_53.member(LA(2))) && (_tokenSet_54.member(LA(3))) && (_tokenSet_62.member(LA(4))))) {
+				int _m151 = mark();
+				synPredMatched151 = true;
 				inputState.guessing++;
 				try {
 					{
@@ -2989,17 +3041,17 @@ inputState.guessing--;
 					}
 				}
 				catch (RecognitionException pe) {
-					synPredMatched776 = false;
+					synPredMatched151 = false;
 				}
-				rewind(_m776);
+				rewind(_m151);
 inputState.guessing--;
 			}
-			if ( synPredMatched776 ) {
+			if ( synPredMatched151 ) {
 				{
 				infixConstraint();
 				}
 			}
-			else if ((_tokenSet_62.member(LA(1))) && (_tokenSet_63.member(LA(2))) && (_tokenSet_64.member(LA(3))) && (_tokenSet_65.member(LA(4)))) {
+			else if ((_tokenSet_63.member(LA(1))) && (_tokenSet_64.member(LA(2))) && (_tokenSet_65.member(LA(3))) && (_tokenSet_66.member(LA(4)))) {
 				{
 				switch ( LA(1)) {
 				case NEW:
@@ -3071,10 +3123,10 @@ inputState.guessing--;
 					else if ((LA(1)==SIMPLE_ID||LA(1)==ID) && (LA(2)==LPAREN)) {
 						argumentedConjunct();
 					}
-					else if ((LA(1)==ID) && (_tokenSet_49.member(LA(2)))) {
+					else if ((LA(1)==ID) && (_tokenSet_50.member(LA(2)))) {
 						fieldAccessConjunct();
 					}
-					else if ((LA(1)==SIMPLE_ID) && (_tokenSet_49.member(LA(2)))) {
+					else if ((LA(1)==SIMPLE_ID) && (_tokenSet_50.member(LA(2)))) {
 						simpleIdConjunct();
 					}
 				else {
@@ -3091,7 +3143,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -3165,7 +3217,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -3192,7 +3244,7 @@ inputState.guessing--;
 		catch (RecognitionException ex) {
 			if (inputState.guessing==0) {
 				reportError(ex);
-				recover(ex,_tokenSet_49);
+				recover(ex,_tokenSet_50);
 			} else {
 			  throw ex;
 			}
@@ -3739,149 +3791,154 @@ inputState.guessing--;
 	}
 	public static final BitSet _tokenSet_36 = new BitSet(mk_tokenSet_36());
 	private static final long[] mk_tokenSet_37() {
-		long[] data = { 5120L, 32L, 0L, 0L};
+		long[] data = { 2164263168L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_37 = new BitSet(mk_tokenSet_37());
 	private static final long[] mk_tokenSet_38() {
-		long[] data = { 27303072740933632L, 0L};
+		long[] data = { 5120L, 32L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_38 = new BitSet(mk_tokenSet_38());
 	private static final long[] mk_tokenSet_39() {
-		long[] data = { 18577348462903296L, 0L};
+		long[] data = { 27303072740933632L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_39 = new BitSet(mk_tokenSet_39());
 	private static final long[] mk_tokenSet_40() {
-		long[] data = { 9570149208162304L, 0L};
+		long[] data = { 18577348462903296L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_40 = new BitSet(mk_tokenSet_40());
 	private static final long[] mk_tokenSet_41() {
-		long[] data = { 144123986333917184L, 206L, 0L, 0L};
+		long[] data = { 9570149208162304L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_41 = new BitSet(mk_tokenSet_41());
 	private static final long[] mk_tokenSet_42() {
-		long[] data = { -252201025602059008L, 23L, 0L, 0L};
+		long[] data = { 144123986333917184L, 206L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_42 = new BitSet(mk_tokenSet_42());
 	private static final long[] mk_tokenSet_43() {
-		long[] data = { 180153333645569280L, 222L, 0L, 0L};
+		long[] data = { -252201025602059008L, 23L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_43 = new BitSet(mk_tokenSet_43());
 	private static final long[] mk_tokenSet_44() {
-		long[] data = { -106951141525553920L, 255L, 0L, 0L};
+		long[] data = { 180153333645569280L, 222L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_44 = new BitSet(mk_tokenSet_44());
 	private static final long[] mk_tokenSet_45() {
-		long[] data = { -287103922714176256L, 55L, 0L, 0L};
+		long[] data = { -106951141525553920L, 255L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_45 = new BitSet(mk_tokenSet_45());
 	private static final long[] mk_tokenSet_46() {
-		long[] data = { 152111423517622016L, 254L, 0L, 0L};
+		long[] data = { -287103922714176256L, 55L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_46 = new BitSet(mk_tokenSet_46());
 	private static final long[] mk_tokenSet_47() {
-		long[] data = { -36054597339709696L, 255L, 0L, 0L};
+		long[] data = { 152111423517622016L, 254L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_47 = new BitSet(mk_tokenSet_47());
 	private static final long[] mk_tokenSet_48() {
-		long[] data = { 63613344736608256L, 0L};
+		long[] data = { -36054597339709696L, 255L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_48 = new BitSet(mk_tokenSet_48());
 	private static final long[] mk_tokenSet_49() {
-		long[] data = { 64739244643456000L, 48L, 0L, 0L};
+		long[] data = { 63613344736608256L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_49 = new BitSet(mk_tokenSet_49());
 	private static final long[] mk_tokenSet_50() {
-		long[] data = { 135952413751247872L, 16L, 0L, 0L};
+		long[] data = { 64739244643456000L, 48L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_50 = new BitSet(mk_tokenSet_50());
 	private static final long[] mk_tokenSet_51() {
-		long[] data = { 64739244643454976L, 32L, 0L, 0L};
+		long[] data = { 135952413751247872L, 16L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_51 = new BitSet(mk_tokenSet_51());
 	private static final long[] mk_tokenSet_52() {
-		long[] data = { -288229822621024000L, 7L, 0L, 0L};
+		long[] data = { 64739244643454976L, 32L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_52 = new BitSet(mk_tokenSet_52());
 	private static final long[] mk_tokenSet_53() {
-		long[] data = { 2701913344L, 206L, 0L, 0L};
+		long[] data = { -288229822621024000L, 7L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_53 = new BitSet(mk_tokenSet_53());
 	private static final long[] mk_tokenSet_54() {
-		long[] data = { -152277408868995840L, 223L, 0L, 0L};
+		long[] data = { 2701913344L, 206L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_54 = new BitSet(mk_tokenSet_54());
 	private static final long[] mk_tokenSet_55() {
-		long[] data = { 135952413751248128L, 16L, 0L, 0L};
+		long[] data = { -152277408868995840L, 223L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_55 = new BitSet(mk_tokenSet_55());
 	private static final long[] mk_tokenSet_56() {
-		long[] data = { 210270605860924416L, 222L, 0L, 0L};
+		long[] data = { 135952413751248128L, 16L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_56 = new BitSet(mk_tokenSet_56());
 	private static final long[] mk_tokenSet_57() {
-		long[] data = { -7027524793271040L, 255L, 0L, 0L};
+		long[] data = { 210270605860924416L, 222L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_57 = new BitSet(mk_tokenSet_57());
 	private static final long[] mk_tokenSet_58() {
-		long[] data = { 66146619527005184L, 16L, 0L, 0L};
+		long[] data = { -7027524793271040L, 255L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_58 = new BitSet(mk_tokenSet_58());
 	private static final long[] mk_tokenSet_59() {
-		long[] data = { 63894819713319936L, 16L, 0L, 0L};
+		long[] data = { 66146619527005184L, 16L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_59 = new BitSet(mk_tokenSet_59());
 	private static final long[] mk_tokenSet_60() {
-		long[] data = { 137078313658094592L, 48L, 0L, 0L};
+		long[] data = { 63894819713319936L, 16L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_60 = new BitSet(mk_tokenSet_60());
 	private static final long[] mk_tokenSet_61() {
-		long[] data = { -223490577976787712L, 255L, 0L, 0L};
+		long[] data = { 137078313658094592L, 48L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_61 = new BitSet(mk_tokenSet_61());
 	private static final long[] mk_tokenSet_62() {
-		long[] data = { 144123986333794304L, 8L, 0L, 0L};
+		long[] data = { -223490577976787712L, 255L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_62 = new BitSet(mk_tokenSet_62());
 	private static final long[] mk_tokenSet_63() {
-		long[] data = { 64739247344588032L, 48L, 0L, 0L};
+		long[] data = { 144123986333794304L, 8L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_63 = new BitSet(mk_tokenSet_63());
 	private static final long[] mk_tokenSet_64() {
-		long[] data = { 215724768254230272L, 254L, 0L, 0L};
+		long[] data = { 64739247344588032L, 48L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_64 = new BitSet(mk_tokenSet_64());
 	private static final long[] mk_tokenSet_65() {
-		long[] data = { -25800320745728L, 255L, 0L, 0L};
+		long[] data = { 215724768254230272L, 254L, 0L, 0L};
 		return data;
 	}
 	public static final BitSet _tokenSet_65 = new BitSet(mk_tokenSet_65());
+	private static final long[] mk_tokenSet_66() {
+		long[] data = { -25800320745728L, 255L, 0L, 0L};
+		return data;
+	}
+	public static final BitSet _tokenSet_66 = new BitSet(mk_tokenSet_66());
 	
 	}
@@ -473,7 +473,10 @@ protected pragmas throws BuilderException:
 ;
 
 protected pragma throws BuilderException:
-	( passivePragma | no_historyPragma | debugPragma )
+	passivePragma | no_historyPragma | debugPragma
+	// not keywords: "priority" and "partition" remain valid identifiers elsewhere
+	| { LT(1).getText().equals("priority") }? priorityPragma
+	| { LT(1).getText().equals("partition") }? partitionPragma
 ;
 
 protected passivePragma throws BuilderException:
@@ -494,6 +497,20 @@ protected debugPragma throws BuilderException:
 	"debug" { getBuilder().addDebugPragma(); }
 ;
 
+protected priorityPragma throws BuilderException:
+	SIMPLE_ID LPAREN
+	{ getBuilder().beginPriorityPragma(); }
+		argument
+	{ getBuilder().endPriorityPragma(); }
+	RPAREN
+;
+
+protected partitionPragma throws BuilderException
+{ String id; }
+:
+	SIMPLE_ID LPAREN id=simpleID { getBuilder().addPartitionPragma(id); } RPAREN
+;
+
 protected simpagationDef[String name] throws BuilderException:	
 	{ getBuilder().beginRuleDefinition(name, SIMPAGATION); }
 		
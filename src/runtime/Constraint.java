@@ -18,9 +18,33 @@ public abstract class Constraint extends Continuation implements IConstraint {
     
     protected boolean stored = false;
     
-    protected static int IDcounter = 1;
+    /**
+     * The identifier of this constraint, assigned when it is stored
+     * (see {@link ConstraintSystem#nextConstraintId()}).
+     */
+    protected long ID;
+    
+    /**
+     * The generation of the constraint store in which this constraint
+     * was stored, or <code>null</code> if it was never stored.
+     * 
+     * @see Handler#expireGeneration()
+     */
+    protected Handler.Generation $$generation;
     
-    protected int ID;
+    /**
+     * The last batch of the constraint system in which this constraint
+     * was recorded to be reactivated (see {@link ConstraintSystem#beginBatch()}),
+     * either directly or through one of its {@link Watcher}s.
+     */
+    long batch;
+    
+    /**
+     * The set of occurrences to reactivate at the end of that batch
+     * (cf. {@link #reactivate(int)}), or <code>-1</code> if all
+     * occurrences have to be reactivated.
+     */
+    int batchOccurrences;
     
     /**
      * Returns the simple name of the class that is generated for
@@ -65,6 +89,25 @@ public abstract class Constraint extends Continuation implements IConstraint {
         return alive;
     }
     
+    /**
+     * Checks whether this constraint was stored in a generation of the
+     * constraint store that has expired since (see 
+     * {@link Handler#expireGeneration()}). Such constraints are no longer
+     * reachable through the store, only through the logical variables 
+     * they observe: only there this check is needed, so that 
+     * {@link #isAlive()} remains a single field read. An expired 
+     * constraint is marked as terminated the first time it is detected.
+     * 
+     * @return <code>true</code> if this constraint belongs to an 
+     *  expired generation; <code>false</code> otherwise.
+     */
+    public final boolean isExpired() {
+        final Handler.Generation generation = $$generation;
+        if (generation == null || !generation.expired) return false;
+        alive = stored = false;
+        return true;
+    }
+    
     /**
      * Checks whether this constraint is currently stored or not in 
      * the constraint store. Many constraints will never be stored
@@ -75,11 +118,11 @@ public abstract class Constraint extends Continuation implements IConstraint {
      *  otherwise. 
      */
     public final boolean isStored() {
-        return stored;
+        return stored && isAlive();
     }
     
     public final boolean isTerminated() {
-        return !alive;
+        return !isAlive();
     }
     
     protected abstract void terminate();
@@ -90,6 +133,21 @@ public abstract class Constraint extends Continuation implements IConstraint {
     
     public abstract void reactivate();
     
+    /**
+     * Reactivates only the given set of reactive occurrences of this
+     * constraint: bit <code>i</code> is set if the <code>i</code>'th 
+     * reactive occurrence has to be reactivated. This is called by 
+     * {@link Watcher}s, which observe variables on which only some 
+     * occurrences depend. The default implementation reactivates 
+     * all occurrences.
+     * 
+     * @param occurrences
+     *  The set of occurrences to reactivate.
+     */
+    public void reactivate(int occurrences) {
+    	reactivate();
+    }
+    
     // Indicating that subclasses will override the following methods:
     
     public boolean isOlderThan(Constraint other) {
@@ -99,7 +157,7 @@ public abstract class Constraint extends Continuation implements IConstraint {
     	return this.ID > other.ID;
     }
     
-    public int getConstraintId() {
+    public long getConstraintId() {
     	return ID;
     }
     
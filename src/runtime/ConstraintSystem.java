@@ -1,6 +1,7 @@
 package runtime;
 
 import runtime.Handler.Continuation;
+import runtime.history.TerminationLog;
 
 public final class ConstraintSystem {
 	private final static ThreadLocal<ConstraintSystem> 
@@ -47,7 +48,256 @@ public final class ConstraintSystem {
 	}
 	
 	boolean hostLanguageMode = true;
+
+	/**
+	 * The number of calls into the handlers of this constraint system
+	 * that are in progress (cf. {@link Handler#enter()}).
+	 */
+	int nbCalls;
+
+	private final ContinuationPriorityQueue SCHEDULE = new ContinuationPriorityQueue();
+
+	/**
+	 * Schedules the given continuation (typically a new constraint
+	 * told by a rule with a priority) to be called with the given
+	 * priority. Scheduled continuations are only called once the
+	 * outermost handler call has nothing left to do, highest
+	 * priority (i.e. lowest number) first.
+	 *
+	 * @param priority
+	 *  The priority: lower values denote higher priorities.
+	 */
+	public final void schedule(int priority, Continuation continuation) {
+		SCHEDULE.add(priority, continuation);
+	}
+	public final boolean hasScheduled() {
+		return !SCHEDULE.isEmpty();
+	}
+	final Continuation pollScheduled() {
+		return SCHEDULE.poll();
+	}
+	final void clearScheduled() {
+		SCHEDULE.reset();
+	}
+
+	private long constraintIdCounter = 1;
+	
+	private long uniqueIdCounter;
+	
+	/**
+	 * Returns a fresh identifier for a constraint of a handler 
+	 * running in this constraint system. Identifiers are strictly
+	 * increasing, and never zero, but only unique within one
+	 * constraint system: handlers in different constraint systems 
+	 * (e.g. running on different threads) do not share any state.
+	 * 
+	 * @return A fresh constraint identifier.
+	 */
+	public final long nextConstraintId() {
+		return constraintIdCounter++;
+	}
+	
+	/**
+	 * Returns a fresh number, unique within this constraint system,
+	 * that can be used to generate names.
+	 * 
+	 * @return A fresh number, unique within this constraint system.
+	 * 
+	 * @see IdGenerator
+	 */
+	public final long nextUniqueId() {
+		return uniqueIdCounter++;
+	}
+	
+	private int batchDepth;
+	
+	private long batch;
+	
+	private final ContinuationQueue DIRTY = new ContinuationQueue();
+	
+	/**
+	 * Starts a batch of bindings. While a batch is open, constraints
+	 * that observe variables that are bound or unified from host language
+	 * code are not reactivated immediately: they are recorded, and each
+	 * of them is reactivated only once, when the (outermost) batch is 
+	 * closed using {@link #endBatch()}. Bindings made while handlers are
+	 * running are not affected. A batch should always be closed, 
+	 * typically in a <code>finally</code> block:
+	 * <pre>
+	 * constraintSystem.beginBatch();
+	 * try {
+	 *     for (int i = 0; i &lt; X.length; i++) X[i].tellEqual(values[i]);
+	 * } finally {
+	 *     constraintSystem.endBatch();
+	 * }</pre>
+	 * Batches can be nested.
+	 */
+	public final void beginBatch() {
+		if (batchDepth++ == 0) batch++;
+	}
+	
+	/**
+	 * Closes a batch of bindings. If this was the outermost batch,
+	 * all constraints recorded during the batch that are still alive
+	 * are reactivated (most recently recorded first). 
+	 * 
+	 * @throws IllegalStateException
+	 *  If no batch was open.
+	 *  
+	 * @see #beginBatch()
+	 */
+	public final void endBatch() throws IllegalStateException {
+		if (batchDepth == 0) throw new IllegalStateException("no open batch");
+		if (--batchDepth == 0) {
+			boolean done = false;
+			try {
+				Continuation next;
+				while ((next = DIRTY.pollLast()) != null) {
+					final Constraint constraint = (Constraint)next;
+					if (!constraint.isAlive() || constraint.isExpired()) continue;
+					final int occurrences = constraint.batchOccurrences;
+					if (occurrences == -1)
+						constraint.reactivate();
+					else
+						constraint.reactivate(occurrences);
+				}
+				done = true;
+			} finally {
+				if (!done) DIRTY.reset();
+			}
+		}
+	}
 	
+	public final boolean isBatching() {
+		return batchDepth != 0;
+	}
+	
+	/**
+	 * Notifies the given constraint that one of the variables it observes
+	 * was bound or unified: it is either reactivated immediately, or, 
+	 * if a batch is open and no handler is running, recorded to be 
+	 * reactivated when the batch is closed (at most once per batch).
+	 * The notifications of a constraint and of its {@link Watcher}s are
+	 * combined: the constraint is reactivated once, for the union of the
+	 * occurrences they would reactivate.
+	 * Constraints that are no longer alive are not notified.
+	 * 
+	 * @param constraint
+	 *  The constraint (or watcher) to notify.
+	 *  
+	 * @see #beginBatch()
+	 */
+	public final void reactivate(Constraint constraint) {
+		if (!constraint.isAlive() || constraint.isExpired())
+			return;
+		else if (batchDepth == 0 || !hostLanguageMode)
+			constraint.reactivate();
+		else {
+			int occurrences = -1;
+			if (constraint instanceof Watcher) {
+				occurrences = ((Watcher)constraint).getOccurrences();
+				constraint = ((Watcher)constraint).getConstraint();
+				if (!constraint.isAlive() || constraint.isExpired()) return;
+			}
+			if (constraint.batch != batch) {
+				constraint.batch = batch;
+				constraint.batchOccurrences = occurrences;
+				DIRTY.enqueue(constraint);
+			} else
+				constraint.batchOccurrences |= occurrences;
+		}
+	}
+	
+	private final TerminationLog terminationLog = new TerminationLog();
+	
+	/**
+	 * Returns the log of removed constraints of this constraint system,
+	 * used to drop propagation history entries that refer to
+	 * removed constraints.
+	 */
+	public final TerminationLog getTerminationLog() {
+		return terminationLog;
+	}
+	
+	private final Trail trail = new Trail();
+
+	/**
+	 * Returns the trail of this constraint system, which records
+	 * changes while a choice point is open.
+	 *
+	 * @see #mark()
+	 */
+	public final Trail getTrail() {
+		return trail;
+	}
+	public final boolean isTrailing() {
+		return trail.isTrailing();
+	}
+
+	/**
+	 * Creates a new choice point: until it is released, all changes
+	 * to the constraint store, the propagation histories and logical
+	 * variables are recorded on the trail, so they can be undone
+	 * using {@link #undoTo(int)}. Choice points can only be created
+	 * from host language code, when no handler is running.
+	 *
+	 * @return The mark of the new choice point.
+	 * @throws IllegalStateException
+	 *  If a handler is running.
+	 *
+	 * @see Trail
+	 */
+	public final int mark() throws IllegalStateException {
+		if (STACK.getSize() != 0)
+			throw new IllegalStateException("cannot create a choice point while a handler is running");
+		return trail.mark();
+	}
+
+	/**
+	 * Restores the state of this constraint system to what it was
+	 * when the choice point with the given mark was created. This
+	 * can be done after a {@link FailureException} as well: whatever
+	 * remained to be done by the handlers is discarded.
+	 * The choice point remains open.
+	 *
+	 * @param mark
+	 *  The mark of an open choice point.
+	 * @throws IllegalStateException
+	 *  If the given mark is not that of an open choice point.
+	 *
+	 * @see #mark()
+	 */
+	public final void undoTo(int mark) throws IllegalStateException {
+		STACK.reset();
+		QUEUE.reset();
+		clearScheduled();
+		hostLanguageMode = true;
+		trail.undoTo(mark);
+	}
+
+	/**
+	 * Releases the choice point with the given mark, keeping
+	 * all changes made since it was created.
+	 *
+	 * @param mark
+	 *  The mark of an open choice point.
+	 * @throws IllegalStateException
+	 *  If the given mark is not that of an open choice point.
+	 *
+	 * @see #mark()
+	 */
+	public final void release(int mark) throws IllegalStateException {
+		trail.release(mark);
+	}
+
+	/**
+	 * Records on the trail that the given constraint was stored.
+	 * Should only be called if {@link #isTrailing()}.
+	 */
+	public final void trailInsertion(Constraint constraint) {
+		trail.push(new Trail.Insertion(constraint));
+	}
+
 	public abstract class QueuedBuiltInConstraint extends Continuation {
 		public QueuedBuiltInConstraint() {
 			QUEUE.enqueue(this);
@@ -0,0 +1,169 @@
+package runtime;
+
+import java.util.Arrays;
+
+import runtime.Handler.Continuation;
+import runtime.hash.IntHashIndex;
+
+/**
+ * A bucketed priority queue of continuations. Priorities are arbitrary
+ * integers, lower values denoting higher priorities (they are typically
+ * computed from the variables of the rule that scheduled the continuation,
+ * as in best-first searches). There is one first-in, first-out bucket
+ * per priority that has continuations: continuations with the same
+ * priority are polled in the order they were added. The priorities of
+ * the non-empty buckets are kept in a binary heap, so adding a
+ * continuation with a new priority, and polling the last continuation
+ * of a priority, take time logarithmic in the number of distinct
+ * priorities in the queue. All other operations run in (amortized)
+ * constant time.
+ */
+public final class ContinuationPriorityQueue {
+	private IntHashIndex<Bucket> buckets = new IntHashIndex<Bucket>();
+
+	/**
+	 * A binary min-heap of the priorities of the non-empty buckets.
+	 */
+	private int[] priorities = new int[16];
+	private int nbPriorities;
+
+	/**
+	 * The bucket with the highest priority (i.e. that of 
+	 * <code>priorities[0]</code>), or <code>null</code> if
+	 * the queue is empty.
+	 */
+	private Bucket first;
+
+	private int size;
+
+	/**
+	 * Adds the given continuation to the queue, with the given priority.
+	 *
+	 * @param priority
+	 *  The priority of the continuation: lower values denote
+	 *  higher priorities.
+	 */
+	public void add(int priority, Continuation continuation) {
+		Bucket bucket = buckets.get(priority);
+		if (bucket == null) {
+			buckets.put(priority, bucket = new Bucket());
+			push(priority);
+			if (priorities[0] == priority) first = bucket;
+		}
+		bucket.add(continuation);
+		size++;
+	}
+
+	/**
+	 * Removes and returns the continuation with the highest priority
+	 * that was added first, or <code>null</code> if the queue is empty.
+	 */
+	public Continuation poll() {
+		if (size == 0) return null;
+		size--;
+		final Bucket bucket = first;
+		final Continuation result = bucket.poll();
+		if (bucket.isEmpty()) {
+			buckets.remove(priorities[0]);
+			pop();
+			first = (nbPriorities == 0)? null : buckets.get(priorities[0]);
+		}
+		return result;
+	}
+
+	public int getSize() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void reset() {
+		buckets = new IntHashIndex<Bucket>();
+		priorities = new int[16];
+		nbPriorities = size = 0;
+		first = null;
+	}
+
+	private void push(int priority) {
+		if (nbPriorities == priorities.length)
+			priorities = Arrays.copyOf(priorities, nbPriorities << 1);
+		final int[] priorities = this.priorities;
+		int i = nbPriorities++;
+		while (i > 0) {
+			final int parent = (i - 1) >>> 1;
+			if (priorities[parent] <= priority) break;
+			priorities[i] = priorities[parent];
+			i = parent;
+		}
+		priorities[i] = priority;
+	}
+
+	private void pop() {
+		final int[] priorities = this.priorities;
+		final int n = --nbPriorities, last = priorities[n];
+		int i = 0, child;
+		while ((child = 2*i + 1) < n) {
+			if (child + 1 < n && priorities[child + 1] < priorities[child]) child++;
+			if (last <= priorities[child]) break;
+			priorities[i] = priorities[child];
+			i = child;
+		}
+		priorities[i] = last;
+	}
+
+	/**
+	 * A first-in, first-out queue, implemented as a circular array.
+	 */
+	private final static class Bucket {
+		Continuation[] continuations = new Continuation[16];
+		int head, size;
+
+		void add(Continuation continuation) {
+			Continuation[] continuations = this.continuations;
+			if (size == continuations.length) {
+				final Continuation[] grown = new Continuation[size << 1];
+				System.arraycopy(continuations, head, grown, 0, size - head);
+				System.arraycopy(continuations, 0, grown, size - head, head);
+				this.continuations = continuations = grown;
+				head = 0;
+			}
+			continuations[(head + size++) & (continuations.length-1)] = continuation;
+		}
+
+		Continuation poll() {
+			final Continuation result = continuations[head];
+			continuations[head] = null;	// let gc do its thing
+			head = (head + 1) & (continuations.length-1);
+			size--;
+			return result;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder().append('[');
+			for (int i = 0; i < size; i++) {
+				if (i != 0) result.append(", ");
+				result.append(continuations[(head + i) & (continuations.length-1)]);
+			}
+			return result.append(']').toString();
+		}
+	}
+
+	@Override
+	public String toString() {
+		final int[] sorted = Arrays.copyOf(priorities, nbPriorities);
+		Arrays.sort(sorted);
+		StringBuilder result = new StringBuilder();
+		for (int priority : sorted) {
+			if (result.length() > 0) result.append('-');
+			result.append(priority).append(':').append(buckets.get(priority));
+		}
+		return result.toString();
+	}
+}
@@ -85,6 +85,22 @@ public final class ContinuationQueue {
 		}
 	}
 	
+	/**
+	 * Removes and returns the continuation that was enqueued last,
+	 * or <code>null</code> if the queue is empty.
+	 */
+	public Continuation pollLast() {
+		if (size == 0) return null;
+		size--;
+		if (c == BLOCK_SIZE) {
+			queue = (currentBlock = currentBlock.previous).continuations;
+			c = 0;
+		}
+		Continuation result = queue[c];
+		queue[c++] = null;
+		return result;
+	}
+	
 	public int getSize() {
 		return size;
 	}
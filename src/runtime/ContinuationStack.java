@@ -566,10 +566,12 @@ public final class ContinuationStack {
 	 * The {@link #undoPop()}-operation is not allowed if the stack is empty.
 	 * If called when one of these conditions is valiolated,
 	 * the stack will become inconsistent. 
+	 * 
+	 * @return The continuation that was popped (and is now pushed again).
 	 */
-	public void undoPop() {
-		c++;
+	public Continuation undoPop() {
 		size++;
+		return stack[c++];
 	}
 	
 	public Continuation peek() throws EmptyStackException {
@@ -2,6 +2,9 @@ package runtime;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 import util.Terminatable;
 import util.exceptions.IllegalArgumentException;
@@ -109,7 +112,8 @@ public class DoublyLinkedConstraintList<T extends Constraint>
      * we <em>have</em> to duplicate the entire lists! 
      * The constraints will be notified that they are added to the new
      * list (node). After the merge a constraint can be in the new list as well 
-     * as in both old lists. Only when one of the lists is empty we can
+     * as in both old lists. Distinct objects with the same ID (such as a 
+     * constraint and its {@link Watcher}s) are all kept. Only when one of the lists is empty we can
      * reuse the other list.
      * 
      * @param other
@@ -124,7 +128,7 @@ public class DoublyLinkedConstraintList<T extends Constraint>
             // Release the old list (iterators must not be disturbed)
             head = new Node<T>();
             
-            int thisID = thisCurrent.value.ID,
+            long thisID = thisCurrent.value.ID,
                otherID = otherCurrent.value.ID;
             
             Node<T> trail = head;
@@ -144,7 +148,7 @@ public class DoublyLinkedConstraintList<T extends Constraint>
                     thisID = thisCurrent.value.ID;
                 }
                 /* thisID <= otherID */
-                if (thisID == otherID) {
+                if (thisID == otherID && thisCurrent.value == otherCurrent.value) {
                     thisCurrent = thisCurrent.next;       // otherCurrent will be added next!
                     if (thisCurrent == null) {
                         do {
@@ -171,7 +175,7 @@ public class DoublyLinkedConstraintList<T extends Constraint>
                     otherID = otherCurrent.value.ID;
                 } while (thisID < otherID);
                 /* thisID >= otherID */
-                if (thisID == otherID) {
+                if (thisID == otherID && thisCurrent.value == otherCurrent.value) {
                     otherCurrent = otherCurrent.next;     // thisCurrent will be added next!
                     if (otherCurrent == null) {
                         do {
@@ -190,6 +194,64 @@ public class DoublyLinkedConstraintList<T extends Constraint>
         }
     }
     
+    /**
+     * Returns the first node of this list, or <code>null</code> if the
+     * list is empty. Together with {@link #skipTerminated(Node)} and
+     * the accessors of {@link Node}, this allows a list to be traversed
+     * with the same guarantees as a {@link #universalIterator() universal
+     * iterator}, without allocating an iterator object:
+     * <pre>
+     * for (Node&lt;T&gt; node = list.firstNode(); 
+     *         (node = skipTerminated(node)) != null; 
+     *         node = node.getNext())
+     *     ... node.getValue() ...</pre>
+     * 
+     * @return The first node of this list, or <code>null</code> if the
+     *  list is empty.
+     */
+    public Node<T> firstNode() {
+    	return head.next;
+    }
+    
+    /**
+     * Returns the first node, starting from the given one, 
+     * that holds a constraint that has not been removed, or 
+     * <code>null</code> if there is no such node. 
+     * Nodes of removed constraints that are skipped are unlinked
+     * (path compression), as is done by the universal iterators.
+     * 
+     * @param node
+     *  The node to start from (can be <code>null</code>).
+     * @return The first live node, starting from <code>node</code>, 
+     *  or <code>null</code> if there is none.
+     */
+    public static <T extends Constraint> Node<T> skipTerminated(Node<T> node) {
+    	if (node == null || node.value != null) return node;
+    	
+    	// path compression:
+    	Node<T> trueNext = node.next;
+    	while (trueNext != null) {
+    		if (trueNext.value != null) {
+    			do {
+    				Node<T> temp = node.next;
+    				node.next = trueNext;
+    				node = temp;
+    			} while (node != trueNext);
+    			
+    			return trueNext;
+    		}
+    		trueNext = trueNext.next;
+    	}
+    	
+    	do {
+			Node<T> temp = node.next;
+			node.next = null;
+			node = temp;
+		} while (node != null);
+    	
+    	return null;
+    }
+    
     public Iterator<T> existentialIterator() {
     	return new SemiUniversalIterator<T>(head);
     }
@@ -216,36 +278,8 @@ public class DoublyLinkedConstraintList<T extends Constraint>
             next = head.next;
         }
 
-        @SuppressWarnings("all")
         public boolean hasNext() {
-        	Node<T> next = this.next;
-        	if (next == null) return false;
-        	if (next.value != null) return true;
-        	
-        	// path compression:
-        	Node<T> trueNext = next.next;
-        	while (trueNext != null) {
-        		if (trueNext.value != null) {
-        			do {
-        				Node<T> temp = next.next;
-        				next.next = trueNext;
-        				next = temp;
-        			} while (next != trueNext);
-        			
-        			this.next = trueNext;
-        			return true;
-        		}
-        		trueNext = trueNext.next;
-        	}
-        	
-        	do {
-				Node<T> temp = next.next;
-				next.next = null;
-				next = temp;
-			} while (next != null);
-        	
-        	this.next = null;
-        	return false;
+        	return (next = skipTerminated(next)) != null;
         }
 
         public T next() throws NoSuchElementException {
@@ -381,6 +415,106 @@ public class DoublyLinkedConstraintList<T extends Constraint>
 	    return new UniversalIterator<T>(head);
 	}
 
+	/**
+	 * Returns a spliterator over the constraints in this list, so
+	 * that they can be traversed in parallel. Splitting a linked list
+	 * requires walking it: split off parts are copied to arrays
+	 * (which can be split further in constant time), each time half
+	 * of the remaining constraints, up to a maximum batch size.
+	 * The spliterator is {@link Spliterator#SIZED}, which means the
+	 * list is walked once more to count its constraints when the size
+	 * is first needed.
+	 * <br/>
+	 * Unlike the iterators, the spliterator should only be used
+	 * while the list is not modified (e.g. in between handler calls):
+	 * its size is no longer exact after a structural change.
+	 *
+	 * @return A spliterator over the constraints in this list.
+	 */
+	@Override
+	public Spliterator<T> spliterator() {
+		return new ListSpliterator<T>(head.next);
+	}
+
+	/**
+	 * Splits off batches of constraints into arrays, in the same way
+	 * as {@link java.util.Spliterators#spliteratorUnknownSize(Iterator, int)},
+	 * but with an exact size.
+	 */
+	@SuppressWarnings("hiding")
+	private final static class ListSpliterator<T extends Constraint> implements Spliterator<T> {
+		private final static int MAX_BATCH = 1 << 25;
+
+		private Node<T> next;
+		private int est = -1; // remaining number of constraints (-1 if not yet counted)
+
+		ListSpliterator(Node<T> next) {
+			this.next = next;
+		}
+
+		private int getEst() {
+			if (est < 0) {
+				int result = 0;
+				for (Node<?> n = next; n != null; n = n.next)
+					if (n.value != null) result++;
+				est = result;
+			}
+			return est;
+		}
+
+		public Spliterator<T> trySplit() {
+			final int n = getEst();
+			if (n <= 1) return null;
+			final int batch = Math.min(n >>> 1, MAX_BATCH);
+			final Object[] array = new Object[batch];
+			int i = 0;
+			Node<T> node = next;
+			while (i < batch && (node = skipTerminated(node)) != null) {
+				array[i++] = node.value;
+				node = node.next;
+			}
+			next = node;
+			est = n - i;
+			return Spliterators.spliterator(array, 0, i,
+				Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL);
+		}
+
+		public boolean tryAdvance(Consumer<? super T> action) {
+			if (action == null) throw new NullPointerException();
+			final Node<T> node = skipTerminated(next);
+			if (node == null) {
+				next = null;
+				est = 0;
+				return false;
+			}
+			next = node.next;
+			if (est > 0) est--;
+			action.accept(node.value);
+			return true;
+		}
+
+		@Override
+		public void forEachRemaining(Consumer<? super T> action) {
+			if (action == null) throw new NullPointerException();
+			Node<T> node = next;
+			next = null;
+			est = 0;
+			while ((node = skipTerminated(node)) != null) {
+				action.accept(node.value);
+				node = node.next;
+			}
+		}
+
+		public long estimateSize() {
+			return getEst();
+		}
+
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL
+				| Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+
 	/**
 	 * Maakt de lijst van elementen los van dit object. Merk op dat de lijst
 	 * wel blijft verderbestaan, hij wordt niet vernietigd. Bestaande
@@ -452,6 +586,17 @@ public class DoublyLinkedConstraintList<T extends Constraint>
 			return value == null;
 		}
 		
+		/**
+		 * Returns the constraint held by this node, or <code>null</code>
+		 * if it has been removed.
+		 */
+		public T getValue() {
+			return value;
+		}
+		public Node<T> getNext() {
+			return next;
+		}
+		
 		@Override
 		public String toString() {
 			if (value == null)
@@ -25,16 +25,17 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
             if (!oldValue.equals(value))
                 throw new FailureException("Cannot make equal: " + oldValue + " != " + value);
         } else if (!constraintSystem.isQueuing()) {
+            if (constraintSystem.isTrailing()) Xrepr.trail(constraintSystem.getTrail());
             Xrepr.value = value;
 
             Xrepr.rehashAllAndDispose();
             
-            final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+            final ObserverList<Constraint> observers = Xrepr.variableObservers;
             if (observers != null) {
                 Xrepr.variableObservers = null;
                 final Iterator<Constraint> iter = observers.iterator();
                 while (iter.hasNext()) 
-                    iter.next().reactivate();   /* notify */
+                    constraintSystem.reactivate(iter.next());   /* notify */
             }
         } else {
         	constraintSystem.new QueuedBuiltInConstraint() {
@@ -52,16 +53,17 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
             if (!oldValue.equals(value))
                 throw new FailureException("Cannot make equal: " + oldValue + " != " + value);
         } else if (!constraintSystem.isQueuing()) {
+            if (constraintSystem.isTrailing()) Yrepr.trail(constraintSystem.getTrail());
             Yrepr.value = value;
 
             Yrepr.rehashAllAndDispose();
             
-            final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+            final ObserverList<Constraint> observers = Yrepr.variableObservers;
             if (observers != null) {
                 Yrepr.variableObservers = null;
                 final Iterator<Constraint> iter = observers.iterator();
                 while (iter.hasNext()) 
-                    iter.next().reactivate();   /* notify */
+                    constraintSystem.reactivate(iter.next());   /* notify */
             }
         } else {
         	constraintSystem.new QueuedBuiltInConstraint() {
@@ -79,6 +81,11 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 
         if (Xrepr != Yrepr) {
         	if (!constraintSystem.isQueuing()) {
+	            final boolean trailing = constraintSystem.isTrailing();
+	            if (trailing) {
+	                Xrepr.trail(constraintSystem.getTrail());
+	                Yrepr.trail(constraintSystem.getTrail());
+	            }
 	            final Type Xvalue = Xrepr.value, Yvalue = Yrepr.value;
 	
 	            final int Xrank = Xrepr.rank;
@@ -93,12 +100,12 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                        Xrepr.value = Yvalue;
 	                        Xrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Xrepr.variableObservers;
 	                        if (observers != null) {
 	                            Xrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (2) var var
 	                        if (Yrepr.hashObservers != null) {
@@ -106,14 +113,17 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                            Yrepr.hashObservers = null;
 	                        }
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+	                        final ObserverList<Constraint> Xobs, Yobs;
 	                        if ((Yobs = Yrepr.variableObservers) != null) {
 	                            Yrepr.variableObservers = null;
 	                            if ((Xobs = Xrepr.variableObservers) != null) {
 	                            	final Iterator<Constraint> iter = Xobs.iterator();
-	                            	Xobs.mergeWith(Yobs);
+	                            	if (trailing)
+	                            	    Xrepr.variableObservers = Xobs.concat(Yobs);
+	                            	else
+	                            	    Xobs.mergeWith(Yobs);
 	                                while (iter.hasNext()) 
-	                                    iter.next().reactivate();   /* notify */
+	                                    constraintSystem.reactivate(iter.next());   /* notify */
 	                            } else {
 	                                Xrepr.variableObservers = Yobs;
 	                            }
@@ -123,12 +133,12 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                    if (Yvalue == null) {                  // (3) ground var
 	                        Yrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Yrepr.variableObservers;
 	                        if (observers != null) {
 	                            Yrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (4) ground ground
 	                        if (!Xvalue.equals(Yvalue))
@@ -144,12 +154,12 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                        Yrepr.value = Xvalue;
 	                        Yrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Yrepr.variableObservers;
 	                        if (observers != null) {
 	                            Yrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (2) var var
 	                        if (Xrepr.hashObservers != null) {
@@ -157,14 +167,17 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                            Xrepr.hashObservers = null;
 	                        }
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+	                        final ObserverList<Constraint> Xobs, Yobs;
 	                        if ((Xobs = Xrepr.variableObservers) != null) {
 	                            Xrepr.variableObservers = null;
 	                            if ((Yobs = Yrepr.variableObservers) != null) {
 	                            	final Iterator<Constraint> iter = Yobs.iterator();
-	                            	Yobs.mergeWith(Xobs);
+	                            	if (trailing)
+	                            	    Yrepr.variableObservers = Yobs.concat(Xobs);
+	                            	else
+	                            	    Yobs.mergeWith(Xobs);
 	                                while (iter.hasNext()) 
-	                                    iter.next().reactivate();   /* notify */
+	                                    constraintSystem.reactivate(iter.next());   /* notify */
 	                            } else {
 	                                Yrepr.variableObservers = Xobs;
 	                            }
@@ -174,12 +187,12 @@ public final class EqualitySolverImpl<Type> implements EqualitySolver<Type> {
 	                    if (Xvalue == null) {                  // (3) var ground
 	                        Xrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Xrepr.variableObservers;
 	                        if (observers != null) {
 	                            Xrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (4) ground ground 
 	                        if (!Xvalue.equals(Yvalue))
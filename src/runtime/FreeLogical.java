@@ -18,14 +18,19 @@ public class FreeLogical implements BuiltInConstraintObservable, HashObservable
 
     protected int rank;
 
-    protected DoublyLinkedConstraintList<Constraint> variableObservers;
+    protected ObserverList<Constraint> variableObservers;
     
     protected RehashableKeySet hashObservers; 
     
+    /**
+     * Whether the state of this variable is recorded on a trail with an
+     * open choice point: paths are not compressed across such variables,
+     * as the link to their parent can still be undone.
+     */
+    private boolean trailed;
+    
     private String name;
 
-    private static int counter;
-
     @JCHR_Declare
     public FreeLogical() {
         // NOP
@@ -38,9 +43,9 @@ public class FreeLogical implements BuiltInConstraintObservable, HashObservable
 
     public void addBuiltInConstraintObserver(Constraint constraint) {
         FreeLogical found = find();
-    	DoublyLinkedConstraintList<Constraint> observers = found.variableObservers;
+    	ObserverList<Constraint> observers = found.variableObservers;
         if (observers == null)
-            found.variableObservers = new DoublyLinkedConstraintList<Constraint>(constraint);
+            found.variableObservers = new ObserverList<Constraint>(constraint);
         else
             observers.addFirst(constraint);
     }
@@ -116,16 +121,63 @@ public class FreeLogical implements BuiltInConstraintObservable, HashObservable
 
     public final FreeLogical find() {
     	if (parent == null) return this;
-    	FreeLogical root = parent, temp;
-    	while ((temp = root.parent) != null) root = temp;
+    	FreeLogical root = parent, stop = trailed? this : null, temp;
+    	while ((temp = root.parent) != null) {
+    		if (stop == null && root.trailed) stop = root;
+    		root = temp;
+    	}
+    	if (stop == null) stop = root;
+    	// compress the path up to the first link that can still be undone
         FreeLogical current = this;
-        do {
+        while (current != stop) {
         	temp = current.parent;
-        	current.parent = root;
-        } while ((current = temp) != root);
+        	current.parent = stop;
+        	current = temp;
+        }
         return root;
     }
     
+    /**
+     * Records the current state of this variable on the given trail,
+     * so it can be restored if the changes that follow are undone.
+     */
+    final void trail(Trail trail) {
+    	trail.push(new Undo(this));
+    }
+    
+    private final static class Undo extends Trail.Entry {
+    	private final FreeLogical logical;
+    	private final FreeLogical parent;
+    	private final int rank;
+    	private final ObserverList<Constraint> variableObservers;
+    	private final RehashableKeySet hashObservers;
+    	private final boolean trailed;
+    	
+    	Undo(FreeLogical logical) {
+    		this.logical = logical;
+    		parent = logical.parent;
+    		rank = logical.rank;
+    		variableObservers = logical.variableObservers;
+    		hashObservers = logical.hashObservers;
+    		trailed = logical.trailed;
+    		logical.trailed = true;
+    	}
+    	
+    	@Override
+    	protected void undo() {
+    		logical.parent = parent;
+    		logical.rank = rank;
+    		logical.variableObservers = variableObservers;
+    		logical.hashObservers = hashObservers;
+    		logical.trailed = trailed;
+    	}
+    	
+    	@Override
+    	protected void commit() {
+    		logical.trailed = false;
+    	}
+    }
+    
     @Override
     public int hashCode() {
     	if (parent == null)
@@ -136,12 +188,12 @@ public class FreeLogical implements BuiltInConstraintObservable, HashObservable
     
     public String getName() {
     	if (parent == null) {
-    		if (name == null) name = "$" + counter++;
+    		if (name == null) name = IdGenerator.generateUniqueId();
     		return name;
     	}
     	FreeLogical root = parent, temp;
     	while ((temp = root.parent) != null) root = temp;
-    	if (root.name == null) root.name = "$" + counter++;
+    	if (root.name == null) root.name = IdGenerator.generateUniqueId();
         return root.name;
     }
 
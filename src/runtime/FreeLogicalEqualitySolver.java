@@ -41,6 +41,11 @@ public final class FreeLogicalEqualitySolver {
 
         if (Xrepr != Yrepr) {
         	if (!constraintSystem.isQueuing()) {
+	            final boolean trailing = constraintSystem.isTrailing();
+	            if (trailing) {
+	                Xrepr.trail(constraintSystem.getTrail());
+	                Yrepr.trail(constraintSystem.getTrail());
+	            }
 	
 	            final int Xrank = Xrepr.rank;
 	            int Yrank = Yrepr.rank;
@@ -54,14 +59,17 @@ public final class FreeLogicalEqualitySolver {
                         Yrepr.hashObservers = null;
                     }
                     
-                    final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+                    final ObserverList<Constraint> Xobs, Yobs;
                     if ((Yobs = Yrepr.variableObservers) != null) {
                         Yrepr.variableObservers = null;
                         if ((Xobs = Xrepr.variableObservers) != null) {
                         	final Iterator<Constraint> iter = Xobs.iterator();
-                        	Xobs.mergeWith(Yobs);
+                        	if (trailing)
+                        	    Xrepr.variableObservers = Xobs.concat(Yobs);
+                        	else
+                        	    Xobs.mergeWith(Yobs);
                             while (iter.hasNext()) 
-                                iter.next().reactivate();   /* notify */
+                                constraintSystem.reactivate(iter.next());   /* notify */
                         } else {
                             Xrepr.variableObservers = Yobs;
                         }
@@ -74,14 +82,17 @@ public final class FreeLogicalEqualitySolver {
                         Xrepr.hashObservers = null;
                     }
                     
-                    final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+                    final ObserverList<Constraint> Xobs, Yobs;
                     if ((Xobs = Xrepr.variableObservers) != null) {
                         Xrepr.variableObservers = null;
                         if ((Yobs = Yrepr.variableObservers) != null) {
                             final Iterator<Constraint> iter = Yobs.iterator();
-                        	Yobs.mergeWith(Xobs);
+                        	if (trailing)
+                        	    Yrepr.variableObservers = Yobs.concat(Xobs);
+                        	else
+                        	    Yobs.mergeWith(Xobs);
                             while (iter.hasNext()) 
-                                iter.next().reactivate();   /* notify */
+                                constraintSystem.reactivate(iter.next());   /* notify */
                         } else {
                             Yrepr.variableObservers = Xobs;
                         }
@@ -1,8 +1,10 @@
 package runtime;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 import runtime.debug.Tracer;
+import runtime.history.TerminationLog;
 import util.Resettable;
 import util.collections.AbstractUnmodifiableCollection;
 import util.iterator.Filtered;
@@ -63,6 +65,112 @@ public abstract class Handler extends AbstractUnmodifiableCollection<IConstraint
 	
 	protected final ConstraintSystem $$constraintSystem;
 	protected final ContinuationQueue $$continuationQueue;
+	
+	/**
+	 * A generation of the constraint store of a handler. Constraints 
+	 * that were stored in a generation that has expired are no longer 
+	 * part of the store, even though they were never terminated:
+	 * they are only marked as terminated once they are reached again
+	 * (see {@link Constraint#isExpired()}).
+	 * 
+	 * @see Handler#expireGeneration()
+	 */
+	public final static class Generation {
+		boolean expired;
+		
+		/**
+		 * The identifiers registered in the termination log while this
+		 * generation was current (see {@link Handler#nextLoggedConstraintId()}),
+		 * as runs of consecutive identifiers: <code>runs[2*i]</code> is the
+		 * first, and <code>runs[2*i+1]</code> the last identifier of run
+		 * <code>i</code>.
+		 */
+		private long[] runs;
+		private int nbRuns;
+		
+		public boolean isExpired() {
+			return expired;
+		}
+		
+		void registered(long ID, TerminationLog log) {
+			final int last = 2 * nbRuns - 1;
+			if (nbRuns > 0 && runs[last] == ID - 1) {
+				runs[last] = ID;
+			} else {
+				if (runs == null) 
+					runs = new long[8];
+				else if (last + 1 == runs.length) 
+					prune(log);
+				runs[2 * nbRuns] = runs[2 * nbRuns + 1] = ID;
+				nbRuns++;
+			}
+		}
+		
+		/**
+		 * Drops the runs of which all constraints have been removed,
+		 * and grows the array of runs if more than half of it remains.
+		 * The number of runs therefore stays proportional to the 
+		 * number of constraints of this generation that are alive.
+		 */
+		private void prune(TerminationLog log) {
+			final long[] runs = this.runs;
+			int n = 0;
+			for (int i = 0; i < runs.length; i += 2) {
+				if (!log.containsAll(runs[i], runs[i+1])) {
+					runs[n++] = runs[i];
+					runs[n++] = runs[i+1];
+				}
+			}
+			nbRuns = n / 2;
+			if (2 * n > runs.length) this.runs = Arrays.copyOf(runs, 2 * runs.length);
+		}
+		
+		void expire(TerminationLog log) {
+			expired = true;
+			for (int i = 0; i < 2 * nbRuns; i += 2) log.addAll(runs[i], runs[i+1]);
+			runs = null;
+			nbRuns = 0;
+		}
+	}
+	
+	/**
+	 * The current generation of the constraint store of this handler.
+	 */
+	protected Generation $$generation = new Generation();
+	
+	/**
+	 * Expires the current generation of the constraint store, and starts
+	 * a new one. All constraints stored in the expired generation are 
+	 * considered removed, but are not terminated one by one: this takes
+	 * constant time, unless the handler registers its identifiers in
+	 * the termination log of the constraint system. Their removal is 
+	 * then recorded per run of consecutive identifiers, in time that only
+	 * depends on the constraints that were still alive (see 
+	 * {@link TerminationLog#addAll(long, long)}).
+	 * The indexes of the store have to be emptied as a whole by the caller.
+	 */
+	protected final void expireGeneration() {
+		$$generation.expire($$constraintSystem.getTerminationLog());
+		$$generation = new Generation();
+	}
+	
+	/**
+	 * Returns a fresh constraint identifier (see 
+	 * {@link ConstraintSystem#nextConstraintId()}) that is registered in
+	 * the termination log of the constraint system (see 
+	 * {@link TerminationLog#register(long)}), and in the current generation
+	 * of the store. Handlers with propagation histories allocate all their
+	 * identifiers this way, and record the removal of their constraints
+	 * in that log.
+	 */
+	protected final long nextLoggedConstraintId() {
+		final TerminationLog log = $$constraintSystem.getTerminationLog();
+		final long result = $$constraintSystem.nextConstraintId();
+		log.register(result);
+		$$generation.registered(result, log);
+		return result;
+	}
+	
 	public final ConstraintSystem getConstraintSystem() {
 		return $$constraintSystem;
 	}
@@ -334,6 +442,80 @@ public abstract class Handler extends AbstractUnmodifiableCollection<IConstraint
     public Handler getTracerView() {
     	throw new UnsupportedOperationException();
     }
+
+    /**
+     * Returns <code>true</code> if this handler was generated with
+     * the <code>-metrics</code> option, i.e. if it keeps counters
+     * that can be inspected using {@link #getMetrics()}.
+     *
+     * @return <code>true</code> if this handler keeps counters;
+     * 	<code>false</code> otherwise.
+     */
+    public boolean hasMetrics() {
+    	return false;
+    }
+
+    /**
+     * Returns a snapshot of the counters of this handler.
+     *
+     * @return A snapshot of the counters of this handler.
+     * @throws UnsupportedOperationException
+     * 	If the handler was not generated with the <code>-metrics</code> option.
+     *
+     * @see #hasMetrics()
+     */
+    public Metrics getMetrics() throws UnsupportedOperationException {
+    	throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Resets all counters of this handler to zero.
+     *
+     * @throws UnsupportedOperationException
+     * 	If the handler was not generated with the <code>-metrics</code> option.
+     *
+     * @see #hasMetrics()
+     */
+    public void resetMetrics() throws UnsupportedOperationException {
+    	throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns <code>true</code> if this handler was generated with
+     * the <code>-profile</code> option, i.e. if it keeps a join profile
+     * that can be inspected using {@link #getJoinProfile()}.
+     *
+     * @return <code>true</code> if this handler keeps a join profile;
+     * 	<code>false</code> otherwise.
+     */
+    public boolean hasJoinProfile() {
+    	return false;
+    }
+
+    /**
+     * Returns a snapshot of the join profile of this handler.
+     *
+     * @return A snapshot of the join profile of this handler.
+     * @throws UnsupportedOperationException
+     * 	If the handler was not generated with the <code>-profile</code> option.
+     *
+     * @see #hasJoinProfile()
+     */
+    public JoinProfile getJoinProfile() throws UnsupportedOperationException {
+    	throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Resets the join profile of this handler.
+     *
+     * @throws UnsupportedOperationException
+     * 	If the handler was not generated with the <code>-profile</code> option.
+     *
+     * @see #hasJoinProfile()
+     */
+    public void resetJoinProfile() throws UnsupportedOperationException {
+    	throw new UnsupportedOperationException();
+    }
     
 	protected abstract static class Continuation {
 		protected abstract Continuation call();
@@ -347,7 +529,231 @@ public abstract class Handler extends AbstractUnmodifiableCollection<IConstraint
 		while ((continuation = continuation.call()) != null);
 		$$constraintSystem.hostLanguageMode = true;
 	}
-	
+
+	/**
+	 * Calls the given continuation (cf. {@link #call(Continuation)}).
+	 * If no handler was running, this then continues with the 
+	 * continuations that were scheduled by rules with a priority 
+	 * (cf. {@link ConstraintSystem#schedule(int, Continuation)}),
+	 * until none remain. Only handlers with such rules use this method.
+	 * If an exception (typically a {@link FailureException}) unwinds 
+	 * the outermost call, the remaining scheduled continuations are
+	 * discarded.
+	 */
+	protected final void callPrioritized(Continuation continuation) {
+		final ConstraintSystem constraintSystem = $$constraintSystem;
+		if (constraintSystem.STACK.getSize() != 0) {
+			call(continuation);
+			return;
+		}
+		boolean done = false;
+		try {
+			do call(continuation);
+			while ((continuation = constraintSystem.pollScheduled()) != null);
+			done = true;
+		} finally {
+			if (!done) constraintSystem.clearScheduled();
+		}
+	}
+
+	/**
+	 * Calls the continuations that were scheduled by rules with a
+	 * priority, if any, and if no handler is running.
+	 *
+	 * @see #callPrioritized(Continuation)
+	 */
+	protected final void callScheduled() {
+		if ($$constraintSystem.STACK.getSize() == 0) {
+			final Continuation continuation = $$constraintSystem.pollScheduled();
+			if (continuation != null) callPrioritized(continuation);
+		}
+	}
+
+	/**
+	 * The maximal number of removed constraint objects a handler keeps
+	 * per constraint type until they can be recycled (see {@link #recycle()}).
+	 */
+	protected final static int RECYCLING_LIMIT = 1 << 10;
+
+	/**
+	 * The number of calls to this handler that are in progress
+	 * (see {@link #enter()}).
+	 */
+	private int nbEntries;
+
+	/**
+	 * Marks the start of a call to this handler that can activate
+	 * constraints. Every call of this method has to be matched by a
+	 * call of {@link #leave()}, in a <code>finally</code> block.
+	 * Only handlers that recycle stored constraints, or that can be
+	 * traced, use this method. If this starts the outermost call into
+	 * the handlers of the constraint system, a tracer that is
+	 * {@link Resettable} is reset: the rules that were firing when
+	 * a previous call ended abruptly have to be forgotten.
+	 */
+	protected final void enter() {
+		nbEntries++;
+		if ($$constraintSystem.nbCalls++ == 0 && canBeTraced()) {
+			final Tracer tracer = getTracer();
+			if (tracer instanceof Resettable) try {
+				((Resettable)tracer).reset();
+			} catch (Exception x) {
+				throw new IllegalStateException(x);
+			}
+		}
+	}
+
+	/**
+	 * Marks the end of a call to this handler (cf. {@link #enter()}).
+	 * If this ends the outermost call, and no other handler is running,
+	 * no activation can still refer to a removed constraint, and
+	 * {@link #recycle()} is called.
+	 */
+	protected final void leave() {
+		$$constraintSystem.nbCalls--;
+		if (--nbEntries == 0 && $$constraintSystem.STACK.getSize() == 0) recycle();
+	}
+
+	/**
+	 * Called when no activation of this handler is in progress.
+	 * Handlers that recycle stored constraints make the objects of the
+	 * constraints that were removed since available for reuse.
+	 */
+	protected void recycle() {
+		// NOP
+	}
+
+	/**
+	 * The constraints told during the current bulk load session,
+	 * in the order they were told, or <code>null</code> if no session
+	 * is in progress.
+	 */
+	private Continuation[] bulkLoad;
+	private int bulkLoadSize;
+
+	/**
+	 * <p>
+	 * Starts a bulk load session. Constraints told (from the host
+	 * language) during the session are not activated immediately,
+	 * but only when the session ends (see {@link #endBulkLoad()}).
+	 * They are then activated in the order they were told, in one
+	 * single pass of the scheduler, which is a lot cheaper than
+	 * activating them one by one when loading a large number of
+	 * constraints. The result is the same as when the constraints
+	 * would have been told one by one after the session.
+	 * </p>
+	 * <p>
+	 * Bulk load sessions are only supported by handlers generated
+	 * with stack optimizations: other handlers simply activate all
+	 * constraints immediately.
+	 * </p>
+	 *
+	 * @throws IllegalStateException
+	 *  If a bulk load session is already in progress.
+	 */
+	public final void beginBulkLoad() throws IllegalStateException {
+		if (bulkLoad != null)
+			throw new IllegalStateException("Bulk load already in progress");
+		bulkLoad = new Continuation[16];
+	}
+
+	/**
+	 * Ends the current bulk load session, activating all constraints
+	 * told since it was started.
+	 *
+	 * @throws IllegalStateException
+	 *  If no bulk load session is in progress.
+	 *
+	 * @see #beginBulkLoad()
+	 */
+	public final void endBulkLoad() throws IllegalStateException {
+		final Continuation[] constraints = bulkLoad;
+		if (constraints == null)
+			throw new IllegalStateException("No bulk load in progress");
+		final int size = bulkLoadSize;
+		bulkLoad = null;
+		bulkLoadSize = 0;
+		if (size != 0) {
+			enter();
+			try {
+				callPrioritized(new BulkActivation(constraints, size));
+			} finally {
+				leave();
+			}
+		}
+	}
+
+	/**
+	 * Returns whether a bulk load session is in progress.
+	 *
+	 * @see #beginBulkLoad()
+	 */
+	public final boolean isBulkLoading() {
+		return bulkLoad != null;
+	}
+
+	/**
+	 * Returns whether constraints that are told should be added to
+	 * the current bulk load session instead of being activated: this
+	 * is the case during a session, except when telling constraints
+	 * from the body of a rule.
+	 */
+	protected final boolean defersTells() {
+		return bulkLoad != null && $$constraintSystem.hostLanguageMode;
+	}
+
+	/**
+	 * Makes sure the current bulk load session can hold the given
+	 * number of additional constraints without having to grow.
+	 */
+	protected final void ensureBulkLoadCapacity(int additional) {
+		final int capacity = bulkLoadSize + additional;
+		if (capacity > bulkLoad.length) {
+			final Continuation[] constraints = new Continuation[capacity];
+			System.arraycopy(bulkLoad, 0, constraints, 0, bulkLoadSize);
+			bulkLoad = constraints;
+		}
+	}
+
+	/**
+	 * Adds a (new) constraint to the current bulk load session.
+	 * It will be activated when the session ends.
+	 */
+	protected final void addToBulkLoad(Continuation constraint) {
+		if (bulkLoadSize == bulkLoad.length) {
+			final Continuation[] constraints = new Continuation[bulkLoadSize << 1];
+			System.arraycopy(bulkLoad, 0, constraints, 0, bulkLoadSize);
+			bulkLoad = constraints;
+		}
+		bulkLoad[bulkLoadSize++] = constraint;
+	}
+
+	/**
+	 * Activates a number of constraints in order: each time a constraint
+	 * is done, control returns to this continuation, which continues
+	 * with the next one.
+	 */
+	private final class BulkActivation extends Continuation {
+		private final Continuation[] constraints;
+		private final int size;
+		private int next;
+
+		BulkActivation(Continuation[] constraints, int size) {
+			this.constraints = constraints;
+			this.size = size;
+		}
+
+		@Override
+		protected Continuation call() {
+			final ContinuationStack stack = $$constraintSystem.STACK;
+			if (next == size) return stack.pop();
+			final Continuation result = constraints[next];
+			constraints[next++] = null;	// let gc do its thing
+			stack.push(this);
+			return result;
+		}
+	}
+
 	/**
 	 * Reactivates all constraints.
 	 */
@@ -360,4 +766,10 @@ public abstract class Handler extends AbstractUnmodifiableCollection<IConstraint
 	 *   A filter on the constraints to reactivate.
 	 */
 	public abstract void reactivateAll(Filtered.Filter<? super Constraint> filter);
+	
+	/**
+	 * Removes all constraints from the constraint store(s) of this handler.
+	 * Unlike a general {@link Resettable}, a handler can always be reset.
+	 */
+	public abstract void reset();
 }
\ No newline at end of file
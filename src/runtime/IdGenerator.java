@@ -3,17 +3,18 @@ package runtime;
 /**
  * Use this &quot;feature&quot; with care: identifiers should always
  * be generated lazily if possible!
+ * Identifiers are only unique within the current thread's 
+ * {@link ConstraintSystem}.
  *  
  * @author Peter Van Weert
  */
 public final class IdGenerator {
     private IdGenerator() {/* not instantiatable */}
     
-    private static int ID_COUNTER = 0;
     public static String generateUniqueId() {
-        return "$" + ID_COUNTER++;
+        return "$" + ConstraintSystem.get().nextUniqueId();
     }
     public static String generateUniqueId(String base) {
-        return "$" + ID_COUNTER++ + "$" + base; 
+        return "$" + ConstraintSystem.get().nextUniqueId() + "$" + base; 
     }
 }
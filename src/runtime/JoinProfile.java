@@ -0,0 +1,231 @@
+package runtime;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * A snapshot of the join profile of a handler that was generated with
+ * the <code>-profile</code> option (see {@link Handler#getJoinProfile()}).
+ * For each active occurrence, the profile contains the number of times
+ * it was tried, the number of times its rule fired through it, and the
+ * time spent in it (in nanoseconds, including the rules that fired
+ * because of it, unless these were executed later, through continuations).
+ * For each element of the <em>schedule</em> of the occurrence (in order:
+ * the lookups of partner constraints, the guards and the negative heads,
+ * as chosen by the compiler), the profile contains:
+ * <ul>
+ * 	<li>the number of times it was reached (<em>entries</em>);</li>
+ * 	<li>for lookups, the number of candidate partners it enumerated
+ * 		(<em>candidates</em>);</li>
+ * 	<li>the number of times the next element was reached from it
+ * 		(<em>survivors</em>). The survivors of the last element are
+ * 		the complete matches: these can still be rejected by the
+ * 		propagation history, so they can outnumber the firings.</li>
+ * </ul>
+ * A lookup with many candidates and few survivors is a join that blows up.
+ * </p>
+ * <p>
+ * Profiles can be exported as CSV (one line per schedule element) or
+ * JSON, keyed by rule and occurrence. Occurrences are named as
+ * <code><i>c</i>_<i>i</i></code>, the <i>i</i>'th occurrence of
+ * constraint <i>c</i>. Counters are not synchronized: snapshots of
+ * handlers that are used by more than one thread are approximate.
+ * The CSV export can be fed back to the compiler (the
+ * <code>-joinprofile</code> option), to order joins and select indexes
+ * based on the measured cardinalities.
+ * </p>
+ */
+public final class JoinProfile {
+
+	/**
+	 * The (static) description of the occurrences and schedules of
+	 * a handler, and of the layout of its counters: for each occurrence
+	 * four counters (attempts, firings, nanoseconds and matches), followed
+	 * by two counters (entries and candidates) for each schedule element.
+	 */
+	public final static class Layout {
+		final String[] rules, occurrences;
+		final String[][] elements;
+		final int[] offsets;
+		final int nbCounters;
+
+		public Layout(String[] rules, String[] occurrences, String[][] elements) {
+			if (rules.length != occurrences.length || rules.length != elements.length)
+				throw new IllegalArgumentException();
+			this.rules = rules;
+			this.occurrences = occurrences;
+			this.elements = elements;
+			offsets = new int[rules.length];
+			int n = 0;
+			for (int i = 0; i < rules.length; i++) {
+				offsets[i] = n;
+				n += 4 + 2 * elements[i].length;
+			}
+			nbCounters = n;
+		}
+
+		public int getNbCounters() {
+			return nbCounters;
+		}
+	}
+
+	private final Layout layout;
+
+	private final long[] counters;
+
+	public JoinProfile(Layout layout, long[] counters) {
+		if (counters.length != layout.nbCounters)
+			throw new IllegalArgumentException();
+		this.layout = layout;
+		this.counters = counters.clone();
+	}
+
+	public int getNbOccurrences() {
+		return layout.rules.length;
+	}
+
+	public String getRule(int occurrence) {
+		return layout.rules[occurrence];
+	}
+	public String getOccurrence(int occurrence) {
+		return layout.occurrences[occurrence];
+	}
+
+	public long getAttempts(int occurrence) {
+		return counters[layout.offsets[occurrence]];
+	}
+	public long getFirings(int occurrence) {
+		return counters[layout.offsets[occurrence] + 1];
+	}
+	public long getNanos(int occurrence) {
+		return counters[layout.offsets[occurrence] + 2];
+	}
+	/**
+	 * Returns the number of complete matches of the given occurrence,
+	 * i.e. the number of times its propagation history was tested
+	 * (if it has one). These are its firings, plus the matches that
+	 * the propagation history rejected.
+	 */
+	public long getMatches(int occurrence) {
+		return counters[layout.offsets[occurrence] + 3];
+	}
+
+	public int getNbElements(int occurrence) {
+		return layout.elements[occurrence].length;
+	}
+	public String getElement(int occurrence, int element) {
+		return layout.elements[occurrence][element];
+	}
+	public long getEntries(int occurrence, int element) {
+		return counters[layout.offsets[occurrence] + 4 + 2 * element];
+	}
+	public long getCandidates(int occurrence, int element) {
+		return counters[layout.offsets[occurrence] + 5 + 2 * element];
+	}
+	public long getSurvivors(int occurrence, int element) {
+		return (element + 1 == getNbElements(occurrence))
+			? getMatches(occurrence)
+			: getEntries(occurrence, element + 1);
+	}
+
+	/**
+	 * Writes this profile as CSV, with a header line and one line for
+	 * each schedule element (occurrences without schedule elements
+	 * get one line, with empty element columns).
+	 */
+	public void writeCsv(Appendable out) throws IOException {
+		out.append("rule,occurrence,attempts,fired,nanos,element,description,entries,candidates,survivors\n");
+		for (int i = 0; i < getNbOccurrences(); i++) {
+			final int n = getNbElements(i);
+			for (int j = 0; j < n || j == 0; j++) {
+				appendCsv(out, getRule(i)).append(',');
+				appendCsv(out, getOccurrence(i)).append(',');
+				out.append(String.valueOf(getAttempts(i))).append(',')
+					.append(String.valueOf(getFirings(i))).append(',')
+					.append(String.valueOf(getNanos(i))).append(',');
+				if (n == 0)
+					out.append(",,,,");
+				else {
+					out.append(String.valueOf(j)).append(',');
+					appendCsv(out, getElement(i, j)).append(',');
+					out.append(String.valueOf(getEntries(i, j))).append(',')
+						.append(String.valueOf(getCandidates(i, j))).append(',')
+						.append(String.valueOf(getSurvivors(i, j)));
+				}
+				out.append('\n');
+			}
+		}
+	}
+
+	private static Appendable appendCsv(Appendable out, String value) throws IOException {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0)
+			return out.append(value);
+		return out.append('"').append(value.replace("\"", "\"\"")).append('"');
+	}
+
+	/**
+	 * Writes this profile as a JSON array, with one object for each
+	 * occurrence, holding an array of its schedule elements.
+	 */
+	public void writeJson(Appendable out) throws IOException {
+		out.append('[');
+		for (int i = 0; i < getNbOccurrences(); i++) {
+			if (i > 0) out.append(',');
+			out.append("\n  {\"rule\": ");
+			appendJson(out, getRule(i)).append(", \"occurrence\": ");
+			appendJson(out, getOccurrence(i));
+			out.append(", \"attempts\": ").append(String.valueOf(getAttempts(i)))
+				.append(", \"fired\": ").append(String.valueOf(getFirings(i)))
+				.append(", \"nanos\": ").append(String.valueOf(getNanos(i)))
+				.append(", \"elements\": [");
+			for (int j = 0; j < getNbElements(i); j++) {
+				if (j > 0) out.append(',');
+				out.append("\n    {\"element\": ").append(String.valueOf(j))
+					.append(", \"description\": ");
+				appendJson(out, getElement(i, j));
+				out.append(", \"entries\": ").append(String.valueOf(getEntries(i, j)))
+					.append(", \"candidates\": ").append(String.valueOf(getCandidates(i, j)))
+					.append(", \"survivors\": ").append(String.valueOf(getSurvivors(i, j)))
+					.append('}');
+			}
+			out.append("]}");
+		}
+		out.append("\n]\n");
+	}
+
+	private static Appendable appendJson(Appendable out, String value) throws IOException {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			final char c = value.charAt(i);
+			switch (c) {
+				case '"': out.append("\\\""); break;
+				case '\\': out.append("\\\\"); break;
+				case '\n': out.append("\\n"); break;
+				case '\r': out.append("\\r"); break;
+				case '\t': out.append("\\t"); break;
+				default:
+					if (c < 0x20)
+						out.append(String.format("\\u%04x", (int)c));
+					else
+						out.append(c);
+			}
+		}
+		return out.append('"');
+	}
+
+	/**
+	 * Returns this profile in CSV format.
+	 *
+	 * @see #writeCsv(Appendable)
+	 */
+	@Override
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		try {
+			writeCsv(result);
+		} catch (IOException x) {
+			throw new InternalError();
+		}
+		return result.toString();
+	}
+}
@@ -0,0 +1,121 @@
+package runtime;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A snapshot of the counters of a handler that was generated with the
+ * <code>-metrics</code> option (see {@link Handler#getMetrics()}).
+ * Unlike tracing (see {@link runtime.debug.Tracer}), these counters are
+ * cheap enough to be left on in production: the generated code simply
+ * increments entries of a preallocated <code>long[]</code>, at
+ * indices that are fixed at compile time.
+ * </p>
+ * <p>
+ * The following counters are kept:
+ * <ul>
+ * 	<li><code>constraint:<i>c</i>.activations</code>,
+ * 		<code>.reactivations</code>, <code>.stores</code> and
+ * 		<code>.removals</code> for each constraint <i>c</i>;</li>
+ * 	<li><code>rule:<i>r</i>.firings</code> for each rule <i>r</i>;</li>
+ * 	<li><code>occurrence:<i>o</i>.attempts</code> (the number of times
+ * 		the occurrence was tried) and <code>.partners</code> (the number
+ * 		of candidate partner constraints it looked up) for each positive
+ * 		occurrence <i>o</i> (named as <code><i>c</i>_<i>i</i></code>,
+ * 		the <i>i</i>'th occurrence of constraint <i>c</i>).</li>
+ * </ul>
+ * Counters of occurrences that are never tried (passive occurrences)
+ * remain zero. Only constraints that were stored count as removals:
+ * an active constraint that is removed before it is stored does not.
+ * </p>
+ * <p>
+ * Counters are not synchronized: snapshots taken by another thread
+ * while the handler is running are approximate. The stripes of a
+ * striped front-end (see {@link StripedHandler}) are separate
+ * handlers, each with counters of its own.
+ * </p>
+ */
+public final class Metrics {
+
+	private final String[] names;
+
+	private final long[] counters;
+
+	/**
+	 * Creates a snapshot of the given counters.
+	 *
+	 * @param names
+	 * 	The names of the counters (the array is not copied).
+	 * @param counters
+	 * 	The counters (the array is copied).
+	 */
+	public Metrics(String[] names, long[] counters) {
+		if (names.length != counters.length)
+			throw new IllegalArgumentException();
+		this.names = names;
+		this.counters = counters.clone();
+	}
+
+	public int getNbCounters() {
+		return counters.length;
+	}
+
+	public String getName(int index) {
+		return names[index];
+	}
+
+	public long get(int index) {
+		return counters[index];
+	}
+
+	/**
+	 * Returns the value of the counter with the given name.
+	 *
+	 * @throws IllegalArgumentException
+	 * 	If there is no counter with the given name.
+	 */
+	public long get(String name) throws IllegalArgumentException {
+		for (int i = 0; i < names.length; i++)
+			if (names[i].equals(name)) return counters[i];
+		throw new IllegalArgumentException("No such counter: " + name);
+	}
+
+	/**
+	 * Returns the difference between this snapshot and an earlier one
+	 * of the same handler, i.e. what was counted in between both.
+	 *
+	 * @param earlier
+	 * 	An earlier snapshot of the counters of the same handler.
+	 * @return The difference between this snapshot and the given one.
+	 * @throws IllegalArgumentException
+	 * 	If the given snapshot does not have the same counters.
+	 */
+	public Metrics since(Metrics earlier) throws IllegalArgumentException {
+		if (earlier.names != names && !Arrays.equals(earlier.names, names))
+			throw new IllegalArgumentException("Incompatible metrics");
+		final long[] result = counters.clone();
+		for (int i = 0; i < result.length; i++) result[i] -= earlier.counters[i];
+		return new Metrics(names, result);
+	}
+
+	/**
+	 * Returns an (unmodifiable) map from the names of the counters
+	 * to their values, in the order of the counters.
+	 */
+	public Map<String, Long> asMap() {
+		final Map<String, Long> result = new LinkedHashMap<String, Long>(names.length << 1);
+		for (int i = 0; i < names.length; i++) result.put(names[i], counters[i]);
+		return Collections.unmodifiableMap(result);
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder result = new StringBuilder();
+		for (int i = 0; i < names.length; i++)
+			result.append(names[i]).append(" = ").append(counters[i]).append('\n');
+		return result.toString();
+	}
+}
@@ -0,0 +1,316 @@
+package runtime;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import runtime.DoublyLinkedConstraintList.Node;
+
+/**
+ * <p>
+ * A list of constraints observing a logical variable, that can be
+ * merged with another such list in (amortized) logarithmic time.
+ * </p>
+ * <p>
+ * The list consists of a number of <em>segments</em>:
+ * {@link DoublyLinkedConstraintList}s that are each sorted on the age
+ * of their constraints. The segments are kept in an immutable spine,
+ * so merging two lists simply concatenates both spines. To keep
+ * the number of segments logarithmic in the number of constraints,
+ * segments of comparable size are merged into one
+ * (using {@link DoublyLinkedConstraintList#mergeWith(DoublyLinkedConstraintList)}):
+ * since each time a constraint is copied it ends up in a segment that is
+ * at least half again as large, this happens only a logarithmic number
+ * of times for each constraint.
+ * </p>
+ * <p>
+ * Iterators give the same guarantees as those of a
+ * {@link DoublyLinkedConstraintList}: they are not disturbed by
+ * structural changes or merges, and do not iterate over constraints
+ * that were not in the list when they were created. They visit the
+ * constraints of all segments in descending order of age, visiting a
+ * constraint that occurs in more than one segment only once
+ * (distinct objects with the same identifier, such as {@link Watcher}s
+ * of the same constraint, are all visited).
+ * </p>
+ */
+public class ObserverList<T extends Constraint> implements Iterable<T> {
+
+	/**
+	 * An immutable cell of the spine of segments.
+	 */
+	private final static class Spine<T extends Constraint> {
+		final DoublyLinkedConstraintList<T> segment;
+		final Spine<T> next;
+		final int nbSegments;
+
+		Spine(DoublyLinkedConstraintList<T> segment, Spine<T> next) {
+			this.segment = segment;
+			this.next = next;
+			nbSegments = (next == null)? 1 : next.nbSegments + 1;
+		}
+	}
+
+	/**
+	 * The spine of segments: constraints are added to the first one.
+	 * @invar spine != null
+	 */
+	private Spine<T> spine;
+
+	/**
+	 * The estimated number of constraints in the first segment.
+	 * Weights are upper bounds: removed constraints are only accounted
+	 * for when segments are merged.
+	 */
+	private int firstWeight;
+
+	/**
+	 * The estimated numbers of constraints in the other segments,
+	 * in the order of the spine.
+	 */
+	private int[] weights;
+
+	private final static int[] NO_WEIGHTS = new int[0];
+
+	public ObserverList() {
+		spine = new Spine<T>(new DoublyLinkedConstraintList<T>(), null);
+		weights = NO_WEIGHTS;
+	}
+
+	public ObserverList(T initialConstraint) {
+		spine = new Spine<T>(new DoublyLinkedConstraintList<T>(initialConstraint), null);
+		firstWeight = 1;
+		weights = NO_WEIGHTS;
+	}
+
+    /**
+	 * Adds an element <code>x</code> in front of the list.
+	 * As for a {@link DoublyLinkedConstraintList}, <code>x</code>
+	 * has to be younger than all constraints in the list.
+	 *
+	 * @param x
+	 *  The element you want to add in front of this list.
+	 */
+	public void addFirst(T x) {
+		spine.segment.addFirst(x);
+		firstWeight++;
+	}
+
+    /**
+     * Merges this list with the given argument (<code>other</code>).
+     * The result will be stored in this list. None of the iterators over
+     * either list will be disturbed, nor will they start iterating over
+     * constraints that weren't in <code>this</code> or <code>other</code>
+     * respectively at the time the iterators were created.
+     * The <code>other</code> list should not be used anymore afterwards.
+     *
+     * @param other
+     *  The list of constraints to merge with.
+     */
+	public void mergeWith(ObserverList<T> other) {
+		final int n = spine.nbSegments + other.spine.nbSegments;
+
+		@SuppressWarnings("unchecked")
+		final DoublyLinkedConstraintList<T>[] segments = (DoublyLinkedConstraintList<T>[])new DoublyLinkedConstraintList<?>[n];
+		final int[] weights = new int[n];
+		int k = collect(this, segments, weights, 0);
+		collect(other, segments, weights, k);
+
+		// insertion sort on descending weight (there are few segments)
+		for (int i = 1; i < n; i++) sink(segments, weights, i);
+
+		// merge adjacent segments for as long as there are comparable ones
+		k = n;
+		outer: while (true) {
+			for (int i = k-1; i > 0; i--) {
+				if (weights[i] == 0 || weights[i-1] <= (weights[i] << 1)) {
+					final DoublyLinkedConstraintList<T> merged = segments[i-1];
+					merged.mergeWith(segments[i]);
+					weights[i-1] = merged.size();
+					System.arraycopy(segments, i+1, segments, i, k-i-1);
+					System.arraycopy(weights, i+1, weights, i, k-i-1);
+					k--;
+					// the merged segment can only have become larger
+					sink(segments, weights, i-1);
+					continue outer;
+				}
+			}
+			break;
+		}
+
+		Spine<T> spine = null;
+		for (int i = k-1; i >= 0; i--) spine = new Spine<T>(segments[i], spine);
+		this.spine = spine;
+		firstWeight = weights[0];
+		if (k == 1)
+			this.weights = NO_WEIGHTS;
+		else {
+			this.weights = new int[k-1];
+			System.arraycopy(weights, 1, this.weights, 0, k-1);
+		}
+	}
+
+	/**
+	 * Returns a new list that contains the constraints of this list
+	 * and of the given list (<code>other</code>), without changing
+	 * either of them: the result simply shares their segments.
+	 * This is used instead of {@link #mergeWith(ObserverList)}
+	 * while changes to variables are trailed (see {@link Trail}),
+	 * as both lists may have to be restored later. Note that
+	 * constraints added to the result are also added to this list.
+	 *
+	 * @param other
+	 *  The list of constraints to concatenate with.
+	 * @return A list containing the constraints of both lists.
+	 */
+	public ObserverList<T> concat(ObserverList<T> other) {
+		final int n = spine.nbSegments, m = n + other.spine.nbSegments;
+		@SuppressWarnings("unchecked")
+		final DoublyLinkedConstraintList<T>[] segments = (DoublyLinkedConstraintList<T>[])new DoublyLinkedConstraintList<?>[m];
+		final int[] weights = new int[m];
+		collect(other, segments, weights, collect(this, segments, weights, 0));
+
+		Spine<T> spine = other.spine;
+		for (int i = n-1; i >= 0; i--) spine = new Spine<T>(segments[i], spine);
+
+		final ObserverList<T> result = new ObserverList<T>();
+		result.spine = spine;
+		result.firstWeight = weights[0];
+		result.weights = new int[m-1];
+		System.arraycopy(weights, 1, result.weights, 0, m-1);
+		return result;
+	}
+
+	/**
+	 * Moves the segment at the given index towards the front, until
+	 * the weights in front of it are all at least as large.
+	 */
+	private static <T extends Constraint> void sink(
+		DoublyLinkedConstraintList<T>[] segments, int[] weights, int i
+	) {
+		final DoublyLinkedConstraintList<T> segment = segments[i];
+		final int weight = weights[i];
+		while (i > 0 && weights[i-1] < weight) {
+			segments[i] = segments[i-1];
+			weights[i] = weights[i-1];
+			i--;
+		}
+		segments[i] = segment;
+		weights[i] = weight;
+	}
+
+	private static <T extends Constraint> int collect(
+		ObserverList<T> list, DoublyLinkedConstraintList<T>[] segments, int[] weights, int k
+	) {
+		Spine<T> spine = list.spine;
+		segments[k] = spine.segment;
+		weights[k++] = list.firstWeight;
+		for (int i = 0; (spine = spine.next) != null; i++) {
+			segments[k] = spine.segment;
+			weights[k++] = list.weights[i];
+		}
+		return k;
+	}
+
+	/**
+	 * Returns an iterator over the constraints in this list that is
+	 * <b>not</b> fail-fast, as are the implementations of the
+	 * Java Collections Framework.
+	 *
+	 * @return An iterator over the constraints in this list.
+	 */
+	public Iterator<T> iterator() {
+		final Spine<T> spine = this.spine;
+		if (spine.next == null)
+			return spine.segment.iterator();
+
+		@SuppressWarnings("unchecked")
+		final Node<T>[] cursors = (Node<T>[])new Node<?>[spine.nbSegments];
+		int i = 0;
+		for (Spine<T> s = spine; s != null; s = s.next)
+			cursors[i++] = s.segment.firstNode();
+		return new MergingIterator<T>(cursors);
+	}
+
+	/**
+	 * Iterates over a number of sorted segments at once, in
+	 * descending order of age, skipping duplicates.
+	 */
+	@SuppressWarnings("hiding")
+	private final static class MergingIterator<T extends Constraint> implements Iterator<T> {
+		private final Node<T>[] cursors;
+
+		MergingIterator(Node<T>[] cursors) {
+			this.cursors = cursors;
+		}
+
+		public boolean hasNext() {
+			final Node<T>[] cursors = this.cursors;
+			for (int i = 0; i < cursors.length; i++)
+				if ((cursors[i] = DoublyLinkedConstraintList.skipTerminated(cursors[i])) != null)
+					return true;
+			return false;
+		}
+
+		public T next() throws NoSuchElementException {
+			final Node<T>[] cursors = this.cursors;
+			T result = null;
+			long max = Long.MIN_VALUE;
+			for (int i = 0; i < cursors.length; i++) {
+				Node<T> cursor = cursors[i] = DoublyLinkedConstraintList.skipTerminated(cursors[i]);
+				if (cursor != null && cursor.value.ID > max) {
+					result = cursor.value;
+					max = result.ID;
+				}
+			}
+			if (result == null) throw new NoSuchElementException();
+
+			for (int i = 0; i < cursors.length; i++) {
+				Node<T> cursor = cursors[i];
+				if (cursor != null && cursor.value == result)
+					cursors[i] = cursor.next;
+			}
+			return result;
+		}
+
+        /**
+         * This operation is not supported by this iterator.
+         *
+         * @throws UnsupportedOperationException
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+	}
+
+	/**
+	 * Removes all constraints from this list. Existing iterators
+	 * are not disturbed.
+	 *
+	 * @post isEmpty()
+	 */
+	public void reset() {
+		spine = new Spine<T>(new DoublyLinkedConstraintList<T>(), null);
+		firstWeight = 0;
+		weights = NO_WEIGHTS;
+	}
+
+	/**
+	 * Returns <code>true</code> if this list contains no constraints.
+	 */
+	public boolean isEmpty() {
+		for (Spine<T> s = spine; s != null; s = s.next)
+			if (!s.segment.isEmpty()) return false;
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder().append('[');
+		Iterator<T> iter = iterator();
+		if (iter.hasNext()) {
+			result.append(iter.next());
+			while (iter.hasNext()) result.append(", ").append(iter.next());
+		}
+		return result.append(']').toString();
+	}
+}
@@ -0,0 +1,356 @@
+package runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>
+ * A front-end to a number of instances of the same handler, or
+ * <em>shards</em>, that each run on their own worker thread, in their
+ * own {@link ConstraintSystem}. This allows handlers whose constraint
+ * store can be partitioned to use more than one core: if all
+ * constraints have an argument (the <em>partitioning key</em>) that
+ * is shared by all heads of all rules, and by all constraints these
+ * rules tell, no rule can ever involve constraints with different
+ * keys. Each constraint can then be told to the shard its key belongs
+ * to, without changing the final constraint store (modulo the order
+ * of its constraints).
+ * </p>
+ * <p>
+ * The JCHR compiler generates a subclass of this class for handlers
+ * compiled with the <code>-sharded</code> option (as a nested class
+ * called <code>Sharded</code>), if it can find such partitioning keys.
+ * Tells are routed asynchronously to the shards, through lock-free queues.
+ * The constraint stores can be inspected using {@link #lookup()} (or
+ * the generated, constraint specific getters), which first wait until
+ * all constraints told previously are handled, and then return a
+ * snapshot of the merged stores. Use {@link #await()} to simply wait
+ * until all tells are handled.
+ * </p>
+ * <p>
+ * Failures (and other exceptions) of the shards are reported by the
+ * next call to {@link #await()} or {@link #lookup()}; as for a normal
+ * handler, the constraint store is in an undefined state after a failure.
+ * </p>
+ * <p>
+ * The worker threads are started by {@link #start()} (the generated
+ * front-ends do this in their factory methods, never in a constructor).
+ * They are daemon threads: they are stopped using {@link #shutdown()},
+ * or when the virtual machine exits.
+ * </p>
+ *
+ * @param <H> The type of the handler of the shards.
+ */
+public abstract class ShardedHandler<H extends Handler> {
+
+	/**
+	 * A task that is run by a shard, typically a tell of a constraint.
+	 */
+	protected abstract static class Task<H extends Handler> {
+		protected abstract void run(H handler);
+	}
+
+	/**
+	 * A query that is run by each shard, the results of which are
+	 * gathered using {@link ShardedHandler#gather(Query)}.
+	 */
+	protected abstract static class Query<H extends Handler, T> {
+		protected abstract T run(H handler);
+	}
+
+	private final Shard[] shards;
+
+	private final AtomicReference<RuntimeException> failure
+		= new AtomicReference<RuntimeException>();
+
+	private final CountDownLatch created;
+
+	private volatile boolean started;
+
+	/**
+	 * Creates a new sharded handler. Its worker threads are only
+	 * started by {@link #start()}.
+	 *
+	 * @param nbShards
+	 * 	The number of shards (and worker threads).
+	 * @throws IllegalArgumentException
+	 * 	If the given number is not strictly positive.
+	 */
+	protected ShardedHandler(int nbShards) throws IllegalArgumentException {
+		if (nbShards <= 0)
+			throw new IllegalArgumentException("Illegal number of shards: " + nbShards);
+		@SuppressWarnings("unchecked")
+		final Shard[] shards = (Shard[])new ShardedHandler<?>.Shard[nbShards];
+		this.shards = shards;
+		for (int i = 0; i < nbShards; i++) shards[i] = new Shard(i);
+		created = new CountDownLatch(nbShards);
+	}
+
+	/**
+	 * Creates a new sharded handler with one shard for each
+	 * available processor.
+	 */
+	protected ShardedHandler() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Starts the worker threads, and waits until each has created the
+	 * handler of its shard. This has to be called once, after this
+	 * sharded handler is fully constructed, and before any task is
+	 * submitted.
+	 *
+	 * @throws IllegalStateException
+	 * 	If the worker threads were started before.
+	 * @throws RuntimeException
+	 * 	If the handler of a shard could not be created: all worker
+	 *  threads are then shut down again.
+	 */
+	protected final void start() throws IllegalStateException, RuntimeException {
+		if (started) throw new IllegalStateException("already started");
+		started = true;
+		for (Shard shard : shards) shard.start();
+		awaitUninterruptibly(created);
+
+		final RuntimeException failure = this.failure.getAndSet(null);
+		if (failure != null) {
+			shutdown();
+			throw failure;
+		}
+	}
+
+	/**
+	 * Creates the handler of a new shard. This method is called
+	 * on the worker thread of the shard, so the handler will use the
+	 * constraint system of that thread (cf. {@link ConstraintSystem#get()}).
+	 *
+	 * @return The handler of a new shard.
+	 */
+	protected abstract H createShard();
+
+	public final int getNbShards() {
+		return shards.length;
+	}
+
+	/**
+	 * Runs the given task on the shard the given partitioning key
+	 * belongs to. Tasks with equal keys are run on the same shard,
+	 * in the order they were submitted.
+	 *
+	 * @param key
+	 * 	A partitioning key (can be <code>null</code>).
+	 * @param task
+	 * 	The task to run.
+	 * @throws IllegalStateException
+	 * 	If the worker threads were not started, or were shut down.
+	 */
+	protected final void submit(Object key, Task<H> task) throws IllegalStateException {
+		shards[getShardIndex(key)].submit(task);
+	}
+
+	protected final int getShardIndex(Object key) {
+		return getIndex(key, shards.length);
+	}
+
+	static int getIndex(Object key, int n) {
+		return (key == null)? 0 : getIndex(key.hashCode(), n);
+	}
+
+	static int getIndex(int h, int n) {
+		h ^= (h >>> 20) ^ (h >>> 12);
+		h ^= (h >>> 7) ^ (h >>> 4);
+		return (h & 0x7fffffff) % n;
+	}
+
+	/**
+	 * Runs the given query on all shards, once all tasks submitted
+	 * to them before have been run, and waits for the results.
+	 *
+	 * @param query
+	 * 	The query to run.
+	 * @return The results of the query, one for each shard.
+	 * @throws RuntimeException
+	 * 	If a shard failed (cf. {@link #await()}).
+	 */
+	protected final <T> List<T> gather(final Query<H, T> query) throws RuntimeException {
+		final int n = shards.length;
+		final Object[] results = new Object[n];
+		final CountDownLatch latch = new CountDownLatch(n);
+		for (int i = 0; i < n; i++) {
+			final int index = i;
+			shards[i].submit(new Task<H>() {
+				@Override
+				protected void run(H handler) {
+					try {
+						results[index] = query.run(handler);
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+
+		awaitUninterruptibly(latch);
+
+		final RuntimeException failure = this.failure.getAndSet(null);
+		if (failure != null) throw failure;
+
+		final List<T> result = new ArrayList<T>(n);
+		for (int i = 0; i < n; i++) {
+			@SuppressWarnings("unchecked")
+			T t = (T)results[i];
+			result.add(t);
+		}
+		return result;
+	}
+
+	private static void awaitUninterruptibly(CountDownLatch latch) {
+		boolean interrupted = false;
+		while (true) {
+			try {
+				latch.await();
+				break;
+			} catch (InterruptedException ie) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	private final static Query<Handler, Object> NOOP = new Query<Handler, Object>() {
+		@Override
+		protected Object run(Handler handler) {
+			return null;
+		}
+	};
+
+	/**
+	 * Waits until all shards have handled all constraints that were
+	 * told before.
+	 *
+	 * @throws RuntimeException
+	 * 	If a shard failed (typically a {@link FailureException}) since
+	 *  the previous call to this method or to {@link #lookup()}.
+	 */
+	@SuppressWarnings("unchecked")
+	public final void await() throws RuntimeException {
+		gather((Query<H, Object>)(Query<?, ?>)NOOP);
+	}
+
+	/**
+	 * Returns a snapshot of the (accessible) constraints in the stores
+	 * of all shards, once all constraints told before have been handled.
+	 *
+	 * @return A snapshot of the constraints in the stores of all shards.
+	 * @throws RuntimeException
+	 * 	If a shard failed (cf. {@link #await()}).
+	 */
+	public List<IConstraint> lookup() throws RuntimeException {
+		return merge(gather(new Query<H, List<IConstraint>>() {
+			@Override
+			protected List<IConstraint> run(H handler) {
+				return new ArrayList<IConstraint>(handler);
+			}
+		}));
+	}
+
+	protected static <T> List<T> merge(List<? extends List<? extends T>> lists) {
+		int size = 0;
+		for (List<? extends T> list : lists) size += list.size();
+		final List<T> result = new ArrayList<T>(size);
+		for (List<? extends T> list : lists) result.addAll(list);
+		return result;
+	}
+
+	/**
+	 * Stops all worker threads, after they have run the tasks
+	 * that were submitted to them. Tasks that are submitted
+	 * concurrently are either still run, or rejected with an
+	 * {@link IllegalStateException}.
+	 */
+	public void shutdown() {
+		for (Shard shard : shards) shard.shutdown();
+	}
+
+	/**
+	 * Records the given failure of a shard, unless an earlier one
+	 * was not reported yet. Worker threads do not die of failures:
+	 * otherwise tasks submitted afterwards would never be run.
+	 */
+	final void fail(Throwable x) {
+		failure.compareAndSet(null, (x instanceof RuntimeException)
+			? (RuntimeException)x : new RuntimeException(x));
+	}
+
+	private final class Shard extends Thread {
+		private final ConcurrentLinkedQueue<Task<H>> queue
+			= new ConcurrentLinkedQueue<Task<H>>();
+
+		private volatile boolean shutdown;
+
+		/**
+		 * Set by the worker thread once it no longer waits for new tasks:
+		 * it then only runs the tasks that are already in its queue.
+		 */
+		private volatile boolean terminated;
+
+		Shard(int index) {
+			super(ShardedHandler.this.getClass().getSimpleName() + "-shard-" + index);
+			setDaemon(true);
+		}
+
+		void submit(Task<H> task) {
+			if (!started) throw new IllegalStateException("not started");
+			if (shutdown) throw new IllegalStateException("shut down");
+			queue.offer(task);
+			// the worker may have stopped in between: it either ran the task
+			// while emptying its queue, or the task has to be taken back
+			if (terminated && queue.remove(task))
+				throw new IllegalStateException("shut down");
+			LockSupport.unpark(this);
+		}
+
+		void shutdown() {
+			shutdown = true;
+			LockSupport.unpark(this);
+		}
+
+		@Override
+		public void run() {
+			final H handler;
+			try {
+				handler = createShard();
+			} catch (Throwable x) {
+				fail(x);
+				terminated = true;
+				return;
+			} finally {
+				created.countDown();
+			}
+			final ConcurrentLinkedQueue<Task<H>> queue = this.queue;
+			Task<H> task;
+			while (true) {
+				if ((task = queue.poll()) != null)
+					run(task, handler);
+				else if (shutdown)
+					break;
+				else
+					LockSupport.park(this);
+			}
+			terminated = true;
+			while ((task = queue.poll()) != null) run(task, handler);
+		}
+
+		private void run(Task<H> task, H handler) {
+			try {
+				task.run(handler);
+			} catch (Throwable x) {
+				fail(x);
+			}
+		}
+	}
+}
@@ -39,6 +39,58 @@ public class SinglyLinkedConstraintList<T extends Constraint>
     	return new UniversalIterator<T>(head);
     }
 
+    /**
+     * Returns the first node of this list, or <code>null</code> if the
+     * list is empty. Together with {@link #skipTerminated(Node)}, this
+     * allows a list to be traversed with the same guarantees as a
+     * {@link #universalIterator() universal iterator}, without allocating
+     * an iterator object.
+     * 
+     * @return The first node of this list, or <code>null</code> if the
+     *  list is empty.
+     * 
+     * @see DoublyLinkedConstraintList#firstNode()
+     */
+    public Node<T> firstNode() {
+    	return head;
+    }
+    
+    /**
+     * Returns the first node, starting from the given one, 
+     * that holds a constraint that is still alive, or 
+     * <code>null</code> if there is no such node. 
+     * Nodes of terminated constraints that are skipped are unlinked
+     * (path compression), as is done by the universal iterators.
+     * 
+     * @param node
+     *  The node to start from (can be <code>null</code>).
+     * @return The first live node, starting from <code>node</code>, 
+     *  or <code>null</code> if there is none.
+     */
+    public static <T extends Constraint> Node<T> skipTerminated(Node<T> node) {
+    	if (node == null || node.value.isAlive()) return node;
+        
+        // path compression:
+        Node<T> trueNext = node;
+		do {
+			if ((trueNext = trueNext.next) == null) {
+				do {
+					Node<T> temp = node.next;
+        			node.next = null;
+        			node = temp;
+        		} while (node != null);
+    			return null;
+			}
+		} while (trueNext.value.isTerminated());
+		
+		do {
+			Node<T> temp = node.next;
+			node.next = trueNext;
+			node = temp;
+		} while (node.value.isTerminated());
+    	return trueNext;
+    }
+
     public Iterator<T> existentialIterator() {
     	return new ExistentialIterator<T>(head);
     }
@@ -94,31 +146,7 @@ public class SinglyLinkedConstraintList<T extends Constraint>
         }
 
         public boolean hasNext() {
-        	Node<T> next = this.next;
-        	if (next == null) return false;
-            if (next.value.isAlive()) return true;
-            
-            // path compression:
-            Node<T> trueNext = next;
-    		do {
-    			if ((trueNext = trueNext.next) == null) {
-    				this.next = null;
-    				do {
-    					Node<T> temp = next.next;
-            			next.next = null;
-            			next = temp;
-            		} while (next != null);
-        			return false;
-    			}
-    		} while (trueNext.value.isTerminated());
-    		
-    		this.next = trueNext;
-    		do {
-    			Node<T> temp = next.next;
-    			next.next = trueNext;
-    			next = temp;
-    		} while (next.value.isTerminated());
-        	return true;
+        	return (next = skipTerminated(next)) != null;
         }
 
         public T next() throws NoSuchElementException {
@@ -211,7 +239,7 @@ public class SinglyLinkedConstraintList<T extends Constraint>
     }
     
     @SuppressWarnings("hiding")
-    protected final static class Node<T> {
+    public final static class Node<T> {
     	protected Node(T value) {
     		this.value = value;
     	}
@@ -222,15 +250,20 @@ public class SinglyLinkedConstraintList<T extends Constraint>
         }
         
         /*
-		  It is not a problem to make these fields public, as access is allready
-		  limited by the fact that this is a protected class!
-		  This way, subclasses of SingleLinkedList can use the fields
-		  directly, without the need for getter-methods.
+		  These fields are public so subclasses of SingleLinkedList can use
+		  them directly. Generated code only uses the getter-methods.
 		*/
         public Node<T> next;
         
         public final T value;
         
+        public T getValue() {
+        	return value;
+        }
+        public Node<T> getNext() {
+        	return next;
+        }
+        
         @Override
         public String toString() {
             return toString("[");
@@ -269,7 +302,7 @@ public class SinglyLinkedConstraintList<T extends Constraint>
         
         if (otherCurrent == null) return; // nothing to merge
         if (thisCurrent != null) {
-            int thisID = thisCurrent.value.ID,
+            long thisID = thisCurrent.value.ID,
             	otherID = otherCurrent.value.ID;
             
             Node<T> current;
@@ -0,0 +1,181 @@
+package runtime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>
+ * A front-end that allows constraints to be told to a handler from more
+ * than one thread. The constraint store is divided into <em>stripes</em>:
+ * instances of the same handler, that each have a {@link ConstraintSystem}
+ * and a lock of their own. Each constraint is stored in a single stripe,
+ * and no rule can ever involve constraints of different stripes. So each
+ * tell is handled atomically (including all rule applications it causes)
+ * on the calling thread, while only holding the lock of one stripe:
+ * tells to different stripes are handled in parallel.
+ * </p>
+ * <p>
+ * The JCHR compiler generates a subclass of this class for handlers
+ * compiled with the <code>-striped</code> option (as a nested class
+ * called <code>Striped</code>). If all constraints have a partitioning
+ * key (see {@link ShardedHandler}), the stripes are partitions of the
+ * constraint store, and each key belongs to one of them. Otherwise, the
+ * stripes are the independent parts of the handler: sets of constraints
+ * that never occur together in a rule, neither in its heads nor in its
+ * body. Handlers that are not partitioned, and that only have one such
+ * part, have a single stripe: they can be used by more than one thread,
+ * but tells are then handled one at a time.
+ * </p>
+ * <p>
+ * Note that the stripes do not share a constraint store: this is not a
+ * concurrent store, with locks per index and rule applications that
+ * lock the constraints they involve. Whether tells can be handled in 
+ * parallel is decided at compile time, from the rules of the handler.
+ * </p>
+ * <p>
+ * The constraint stores can be inspected using {@link #lookup()} (or
+ * the generated, constraint specific getters), which return snapshots
+ * of the stores of the stripes, each taken while holding the lock of
+ * that stripe. Failures are thrown by the tell that caused them; as for
+ * a normal handler, the constraint store of that stripe is in an
+ * undefined state afterwards.
+ * </p>
+ * <p>
+ * Handlers with solvers, or with constraints that observe logical
+ * variables, cannot be used concurrently: these variables could then
+ * be bound by any thread, without holding the lock of the stripe of
+ * the constraints that observe them.
+ * </p>
+ *
+ * @param <H> The type of the handler of the stripes.
+ */
+public abstract class StripedHandler<H extends Handler> {
+
+	/**
+	 * A query that is run on a stripe, while holding its lock.
+	 */
+	protected abstract static class Query<H extends Handler, T> {
+		protected abstract T run(H handler);
+	}
+
+	private final H[] stripes;
+
+	private final ReentrantLock[] locks;
+
+	/**
+	 * Creates a new front-end to the given stripes.
+	 *
+	 * @param stripes
+	 * 	The handlers of the stripes: these should be used by
+	 *  this front-end only, and each should have a constraint
+	 *  system of its own.
+	 * @throws IllegalArgumentException
+	 * 	If no stripes are given.
+	 */
+	protected StripedHandler(H[] stripes) throws IllegalArgumentException {
+		if (stripes.length == 0)
+			throw new IllegalArgumentException("Illegal number of stripes: 0");
+		this.stripes = stripes.clone();
+		this.locks = new ReentrantLock[stripes.length];
+		for (int i = 0; i < stripes.length; i++)
+			locks[i] = new ReentrantLock();
+	}
+
+	public final int getNbStripes() {
+		return stripes.length;
+	}
+
+	/**
+	 * Returns the index of the stripe the given partitioning key
+	 * belongs to.
+	 *
+	 * @param key
+	 * 	A partitioning key (can be <code>null</code>).
+	 */
+	protected final int getStripeIndex(Object key) {
+		return ShardedHandler.getIndex(key, stripes.length);
+	}
+
+	/**
+	 * Returns the index of the stripe the given primitive partitioning
+	 * key belongs to: this is the same stripe as for the boxed key
+	 * (which does not have to be created).
+	 */
+	protected final int getStripeIndex(int key) {
+		return ShardedHandler.getIndex(key, stripes.length);
+	}
+
+	/**
+	 * Acquires the lock of the stripe with the given index, and returns
+	 * its handler, which can be used until {@link #unlock(int)} is called.
+	 */
+	protected final H lock(int stripe) {
+		locks[stripe].lock();
+		return stripes[stripe];
+	}
+
+	protected final void unlock(int stripe) {
+		locks[stripe].unlock();
+	}
+
+	/**
+	 * Runs the given query on the stripe with the given index,
+	 * while holding its lock.
+	 */
+	protected final <T> T query(int stripe, Query<H, T> query) {
+		final H handler = lock(stripe);
+		try {
+			return query.run(handler);
+		} finally {
+			unlock(stripe);
+		}
+	}
+
+	/**
+	 * Runs the given query on all stripes, one at a time, each
+	 * while holding its lock.
+	 *
+	 * @return The results of the query, one for each stripe.
+	 */
+	protected final <T> List<T> gather(Query<H, T> query) {
+		final int n = stripes.length;
+		final List<T> result = new ArrayList<T>(n);
+		for (int i = 0; i < n; i++) result.add(query(i, query));
+		return result;
+	}
+
+	/**
+	 * Returns a snapshot of the (accessible) constraints in the stores
+	 * of all stripes.
+	 *
+	 * @return A snapshot of the constraints in the stores of all stripes.
+	 */
+	public List<IConstraint> lookup() {
+		return merge(gather(new Query<H, List<IConstraint>>() {
+			@Override
+			protected List<IConstraint> run(H handler) {
+				return new ArrayList<IConstraint>(handler);
+			}
+		}));
+	}
+
+	/**
+	 * Resets the stores of all stripes, while holding the locks
+	 * of all stripes (these are acquired in a fixed order).
+	 *
+	 * @see Handler#reset()
+	 */
+	public void reset() {
+		int nbLocked = 0;
+		try {
+			while (nbLocked < stripes.length) lock(nbLocked++).reset();
+		} finally {
+			while (nbLocked > 0) unlock(--nbLocked);
+		}
+	}
+
+	protected static <T> List<T> merge(List<? extends List<? extends T>> lists) {
+		return ShardedHandler.merge(lists);
+	}
+}
@@ -0,0 +1,196 @@
+package runtime;
+
+/**
+ * <p>
+ * A trail (or undo log) of the changes made to the state of a
+ * constraint system since some <em>choice point</em>, which allows
+ * that state to be restored cheaply, e.g. to explore another branch
+ * of a search tree without having to rebuild all handlers from scratch.
+ * A choice point is created using {@link #mark()}: from then on,
+ * the insertions of constraints in, and their removals from,
+ * the constraint store, propagation history insertions, and changes to
+ * logical variables are recorded, until the choice point is released
+ * again (see {@link #release(int)}). The changes made since a mark can
+ * be undone, in reverse order, using {@link #undoTo(int)}:
+ * <pre>
+ * final int mark = constraintSystem.mark();
+ * try {
+ *     for (Choice choice : choices) {
+ *         try {
+ *             handler.tellChoice(choice);
+ *             if (isSolution()) break;
+ *         } catch (FailureException fe) {
+ *             // try the next choice
+ *         }
+ *         constraintSystem.undoTo(mark);
+ *     }
+ * } finally {
+ *     constraintSystem.release(mark);
+ * }</pre>
+ * Choice points can be nested. Nothing is recorded while no choice
+ * point is open, so the overhead is negligible then.
+ * </p>
+ * <p>
+ * Constraint store and history changes are only recorded by handlers
+ * that were compiled with the <code>-trailing</code> option. Note
+ * that constraints that are restored in the store can be found
+ * in a different order than before they were removed.
+ * </p>
+ * <p>
+ * <strong>Note that this implementation is not synchronized.</strong>
+ * </p>
+ *
+ * @see ConstraintSystem#getTrail()
+ */
+public final class Trail {
+
+	/**
+	 * A change that was recorded on the trail.
+	 */
+	public abstract static class Entry {
+		/**
+		 * Undoes the change.
+		 */
+		protected abstract void undo();
+
+		/**
+		 * Called when the change can no longer be undone,
+		 * because the outermost choice point is released.
+		 */
+		protected void commit() {
+			// NOP
+		}
+	}
+
+	private Entry[] entries = new Entry[64];
+
+	private int size;
+
+	private int nbChoicePoints;
+
+	private boolean undoing;
+
+	/**
+	 * Returns whether changes have to be recorded on this trail,
+	 * i.e. whether a choice point is open, and no changes
+	 * are being undone.
+	 */
+	public boolean isTrailing() {
+		return nbChoicePoints != 0 && !undoing;
+	}
+
+	/**
+	 * Creates a new choice point.
+	 *
+	 * @return The mark of the new choice point, to be passed to
+	 *  {@link #undoTo(int)} and {@link #release(int)}.
+	 */
+	public int mark() {
+		nbChoicePoints++;
+		return size;
+	}
+
+	/**
+	 * Records the given change. Should only be called
+	 * if {@link #isTrailing()}.
+	 *
+	 * @param entry
+	 *  The entry that can undo the change.
+	 */
+	public void push(Entry entry) {
+		Entry[] entries = this.entries;
+		if (size == entries.length) {
+			final Entry[] grown = new Entry[size << 1];
+			System.arraycopy(entries, 0, grown, 0, size);
+			this.entries = entries = grown;
+		}
+		entries[size++] = entry;
+	}
+
+	/**
+	 * Undoes all changes recorded since the choice point with the given
+	 * mark was created, most recent change first. The choice point
+	 * itself remains open.
+	 *
+	 * @param mark
+	 *  The mark of an open choice point.
+	 * @throws IllegalStateException
+	 *  If no choice point is open, or if the given mark is no
+	 *  longer valid (because changes older than it were already undone).
+	 */
+	public void undoTo(int mark) throws IllegalStateException {
+		checkMark(mark);
+		undoing = true;
+		try {
+			final Entry[] entries = this.entries;
+			while (size > mark) {
+				final Entry entry = entries[--size];
+				entries[size] = null;	// let gc do its thing
+				entry.undo();
+			}
+		} finally {
+			undoing = false;
+		}
+	}
+
+	/**
+	 * Releases the choice point with the given mark: the changes
+	 * recorded since it was created are kept. If it was the outermost
+	 * choice point, the trail is cleared.
+	 *
+	 * @param mark
+	 *  The mark of an open choice point.
+	 * @throws IllegalStateException
+	 *  If no choice point is open, or if the given mark is no
+	 *  longer valid.
+	 */
+	public void release(int mark) throws IllegalStateException {
+		checkMark(mark);
+		if (--nbChoicePoints == 0) {
+			final Entry[] entries = this.entries;
+			final int size = this.size;
+			this.size = 0;
+			for (int i = 0; i < size; i++) {
+				final Entry entry = entries[i];
+				entries[i] = null;
+				entry.commit();
+			}
+		}
+	}
+
+	private void checkMark(int mark) throws IllegalStateException {
+		if (nbChoicePoints == 0)
+			throw new IllegalStateException("no open choice point");
+		if (mark < 0 || mark > size)
+			throw new IllegalStateException("invalid mark: " + mark);
+	}
+
+	/**
+	 * Returns the number of changes on this trail.
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Records that the given constraint was stored: undoing
+	 * this removes it again.
+	 */
+	final static class Insertion extends Entry {
+		private final Constraint constraint;
+
+		Insertion(Constraint constraint) {
+			this.constraint = constraint;
+		}
+
+		@Override
+		protected void undo() {
+			if (constraint.alive) constraint.terminate();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "trail (" + size + " changes, " + nbChoicePoints + " choice points)";
+	}
+}
@@ -0,0 +1,120 @@
+package runtime;
+
+import runtime.Handler.Continuation;
+import util.Terminatable;
+
+/**
+ * <p>
+ * A <code>Watcher</code> observes a variable on behalf of a constraint
+ * that only has to resume some of its occurrences when that variable
+ * is bound or unified. Typically, only a few occurrences of a constraint
+ * depend on a given argument (for instance through a guard or a
+ * lookup): the others can not be affected by changes to it.
+ * A watcher is added to the observer list of the variable instead of
+ * the constraint itself, and, when notified, reactivates
+ * only the occurrences in its set
+ * (see {@link Constraint#reactivate(int)}).
+ * </p>
+ * <p>
+ * A watcher has the same identifier as its constraint, so observer lists
+ * remain sorted on age, and is removed from all lists as soon as
+ * its constraint is removed. A constraint can have several watchers,
+ * one per distinct set of occurrences.
+ * </p>
+ */
+public final class Watcher extends Constraint {
+
+	private final Constraint constraint;
+
+	private final int occurrences;
+
+	/**
+	 * Creates a new watcher for the given (stored) constraint.
+	 *
+	 * @param constraint
+	 *  The constraint to notify.
+	 * @param occurrences
+	 *  The set of occurrences of <code>constraint</code> to reactivate:
+	 *  bit <code>i</code> is set if the <code>i</code>'th reactive
+	 *  occurrence has to be reactivated.
+	 */
+	public Watcher(Constraint constraint, int occurrences) {
+		this.constraint = constraint;
+		this.occurrences = occurrences;
+		this.ID = constraint.ID;
+	}
+
+	/**
+	 * Returns the constraint this watcher observes variables for.
+	 */
+	public Constraint getConstraint() {
+		return constraint;
+	}
+
+	/**
+	 * Returns the set of occurrences that are reactivated
+	 * when this watcher is notified.
+	 *
+	 * @see #Watcher(Constraint, int)
+	 */
+	public int getOccurrences() {
+		return occurrences;
+	}
+
+	@Override
+	public void reactivate() {
+		if (constraint.isAlive() && !constraint.isExpired()) constraint.reactivate(occurrences);
+	}
+
+	@Override
+	public void addStorageBackPointer(Terminatable x) {
+		constraint.addStorageBackPointer(x);
+	}
+
+	@Override
+	protected void terminate() {
+		constraint.terminate();
+	}
+
+	@Override
+	protected Continuation call() {
+		throw new IllegalStateException();
+	}
+
+	public String getIdentifier() {
+		return constraint.getIdentifier();
+	}
+	public String[] getInfixIdentifiers() {
+		return constraint.getInfixIdentifiers();
+	}
+	public boolean hasInfixIdentifiers() {
+		return constraint.hasInfixIdentifiers();
+	}
+	public int getArity() {
+		return constraint.getArity();
+	}
+	public Object[] getArguments() {
+		return constraint.getArguments();
+	}
+	public Class<?>[] getArgumentTypes() {
+		return constraint.getArgumentTypes();
+	}
+	public Handler getHandler() {
+		return constraint.getHandler();
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return this == o;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
+
+	@Override
+	public String toString() {
+		return constraint.toString();
+	}
+}
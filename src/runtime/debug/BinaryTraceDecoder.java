@@ -0,0 +1,197 @@
+package runtime.debug;
+
+import static runtime.debug.BinaryTracer.*;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes traces written by a {@link BinaryTracer}, and renders them
+ * in the textual format of a given {@link PlainTextTracer}, i.e. the
+ * format of the <code>runtime/debug/Tracer.properties</code> file.
+ * From the command line:
+ * <pre>    java runtime.debug.BinaryTraceDecoder &lt;trace&gt; [&lt;output&gt;]</pre>
+ * renders a trace file to the given output file, or to the standard
+ * output stream. Traces that were not closed properly (e.g. because the
+ * traced program crashed) are decoded up to their last complete event.
+ * Dictionary entries of terminated constraints are dropped at the same
+ * events as they are by the {@link BinaryTracer}: when the next top-level
+ * activation (or rule firing) starts.
+ */
+public class BinaryTraceDecoder {
+
+    private final InputStream in;
+
+    private final PlainTextTracer out;
+
+    private final List<String> rules = new ArrayList<String>();
+
+    private final Map<Integer, String> constraints = new HashMap<Integer, String>();
+
+    private int nbFiring;
+
+    private final List<Integer> terminated = new ArrayList<Integer>();
+
+    public BinaryTraceDecoder(InputStream in, PlainTextTracer out) {
+        this.in = in;
+        this.out = out;
+    }
+
+    /**
+     * Decodes the entire trace.
+     *
+     * @return The number of decoded events.
+     * @throws IOException
+     *  If reading fails, or the input is not a binary trace.
+     */
+    public long decode() throws IOException {
+        for (byte b : MAGIC)
+            if (in.read() != b) throw new IOException("Not a (supported) binary trace");
+
+        long result = 0;
+        try {
+            while (true) {
+                final int event = in.read();
+                if (event < 0) break;
+                if (decode(event)) result++;
+            }
+        } catch (EOFException x) {
+            // an incomplete trace: the last event is lost
+        }
+        return result;
+    }
+
+    protected boolean decode(int event) throws IOException {
+        switch (event) {
+            case DEFINE_RULE: {
+                final int reference = readVarint();
+                final String rule = readString();
+                if (reference == rules.size())
+                    rules.add(rule);
+                else
+                    rules.set(reference, rule);
+                return false;
+            }
+            case DEFINE_CONSTRAINT:
+                constraints.put(readVarint(), readString());
+                return false;
+
+            case ACTIVATED:
+                dropTerminated();
+                out.println("activated", readConstraint());
+                return true;
+            case REACTIVATED:
+                dropTerminated();
+                out.println("reactivated", readConstraint());
+                return true;
+            case STORED:
+                out.println("stored", readConstraint());
+                return true;
+            case SUSPENDED:
+                out.println("suspended", readConstraint());
+                return true;
+            case REMOVED:
+                out.println("removed", readConstraint());
+                return true;
+            case TERMINATED: {
+                final int reference = readVarint();
+                out.println("terminated", getConstraint(reference));
+                terminated.add(reference);
+                return true;
+            }
+
+            case FIRES:
+                dropTerminated();
+                fire('s');
+                nbFiring++;
+                return true;
+            case FIRED:
+                fire('d');
+                if (nbFiring > 0) nbFiring--;
+                return true;
+
+            default:
+                throw new IOException("Illegal event: " + event);
+        }
+    }
+
+    private void dropTerminated() {
+        if (nbFiring == 0 && !terminated.isEmpty()) {
+            for (Integer reference : terminated) constraints.remove(reference);
+            terminated.clear();
+        }
+    }
+
+    private void fire(char X) throws IOException {
+        final String rule = rules.get(readVarint());
+        final int activeIndex = readVarint();
+        final int n = readVarint();
+
+        final StringBuilder match = new StringBuilder().append('[');
+        for (int i = 0; i < n; i++) {
+            if (i > 0) match.append(", ");
+            match.append(readConstraint());
+        }
+        match.append(']');
+
+        out.println("fire" + X, rule, activeIndex, match.toString());
+    }
+
+    private String readConstraint() throws IOException {
+        return getConstraint(readVarint());
+    }
+
+    private String getConstraint(int reference) throws IOException {
+        final String result = constraints.get(reference);
+        if (result == null)
+            throw new IOException("Undefined constraint reference: " + reference);
+        return result;
+    }
+
+    private String readString() throws IOException {
+        final byte[] bytes = new byte[readVarint()];
+        int offset = 0;
+        while (offset < bytes.length) {
+            final int n = in.read(bytes, offset, bytes.length - offset);
+            if (n < 0) throw new EOFException();
+            offset += n;
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarint() throws IOException {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            final int b = in.read();
+            if (b < 0) throw new EOFException();
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: java runtime.debug.BinaryTraceDecoder <trace> [<output>]");
+            System.exit(1);
+        }
+        final OutputStreamTracer out = (args.length == 2)
+            ? new FileTracer(args[1])
+            : new OutputStreamTracer(System.out);
+        final InputStream in = new BufferedInputStream(new FileInputStream(args[0]), 1 << 16);
+        try {
+            new BinaryTraceDecoder(in, out).decode();
+        } finally {
+            in.close();
+            out.getOut().flush();
+            if (args.length == 2) out.getOut().close();
+        }
+    }
+}
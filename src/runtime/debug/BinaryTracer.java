@@ -0,0 +1,352 @@
+package runtime.debug;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+
+import runtime.Constraint;
+
+/**
+ * <p>
+ * A tracer that writes all events in a compact binary format, for
+ * tracing handlers at (close to) their normal speed. Events are encoded
+ * into a ring buffer by the thread of the handler, and written to a
+ * channel (typically a {@link java.nio.channels.FileChannel}) by a
+ * background thread. Rule identifiers and the (debug) strings of
+ * constraints are written only once, as entries of a dictionary that
+ * events refer to by number. A constraint is rendered the first time it
+ * is traced, and again each time it is reactivated (i.e. when its
+ * arguments may have changed): this is much cheaper than the textual
+ * tracers, which render all constraints for each event, but for
+ * constraints with mutable arguments the rendering can be outdated.
+ * The entries of terminated constraints are only dropped when the next
+ * top-level activation (or rule firing) starts: the constraints removed
+ * by a rule are terminated before the rule has fired, and are still
+ * referred to by the events that are traced afterwards.
+ * </p>
+ * <p>
+ * Traces are decoded offline into the textual format of the
+ * {@link PlainTextTracer}s using a {@link BinaryTraceDecoder}.
+ * If the ring buffer is full, the handler waits for the background
+ * thread: no events are lost. A tracer can only be used by a single
+ * handler, or by handlers that run on the same thread. Traces are
+ * only complete once the tracer is {@link #close() closed}.
+ * </p>
+ *
+ * @see BinaryTraceDecoder
+ */
+public class BinaryTracer implements Tracer, Closeable {
+
+    final static byte[] MAGIC = { 'J', 'C', 'H', 'R', 'T', 'R', 'C', 1 };
+
+    final static int
+        DEFINE_RULE = 0,
+        DEFINE_CONSTRAINT = 1,
+        ACTIVATED = 2,
+        REACTIVATED = 3,
+        STORED = 4,
+        SUSPENDED = 5,
+        REMOVED = 6,
+        TERMINATED = 7,
+        FIRES = 8,
+        FIRED = 9;
+
+    public final static int DEFAULT_CAPACITY = 1 << 20;
+
+    private final static long PARK_NANOS = 100000L;
+
+    /*
+     * The ring buffer: bytes [drained, published) are waiting to be
+     * written by the drainer, bytes [published, tail) are being
+     * encoded by the producer (the thread of the handler).
+     */
+    private final byte[] buffer;
+
+    private final int mask;
+
+    private long tail, limit;
+
+    private volatile long published, drained;
+
+    private volatile boolean closed;
+
+    private volatile IOException failure;
+
+    private final WritableByteChannel channel;
+
+    private final Thread drainer;
+
+    private final Map<String, Integer> rules = new HashMap<String, Integer>();
+
+    private final Map<Constraint, Integer> constraints
+        = new IdentityHashMap<Constraint, Integer>();
+
+    private int nbConstraintReferences;
+
+    /*
+     * The number of rules that are firing (traced by FIRES, but not
+     * by FIRED yet), and the constraints that were terminated since
+     * the last top-level event (cf. dropTerminated()).
+     */
+    private int nbFiring;
+
+    private final List<Constraint> terminated = new ArrayList<Constraint>();
+
+    private int[] references = new int[4];
+
+    public BinaryTracer(File file) throws IOException {
+        this(new FileOutputStream(file).getChannel());
+    }
+
+    public BinaryTracer(WritableByteChannel channel) {
+        this(channel, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new binary tracer.
+     *
+     * @param channel
+     *  The channel the trace is written to (it is closed when
+     *  the tracer is closed).
+     * @param capacity
+     *  The capacity of the ring buffer, in bytes (rounded up
+     *  to a power of two).
+     */
+    public BinaryTracer(WritableByteChannel channel, int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException();
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        this.buffer = new byte[size];
+        this.mask = size - 1;
+        this.limit = size;
+        this.channel = channel;
+
+        for (byte b : MAGIC) put(b);
+        publish();
+
+        drainer = new Thread(new Runnable() {
+            public void run() {
+                drain();
+            }
+        }, "JCHR trace writer");
+        drainer.setDaemon(true);
+        drainer.start();
+    }
+
+    public void activated(Constraint constraint) {
+        dropTerminated();
+        event(ACTIVATED, constraint);
+    }
+
+    public void reactivated(Constraint constraint) {
+        dropTerminated();
+        final int reference = define(constraint);
+        put(REACTIVATED);
+        putVarint(reference);
+        publish();
+    }
+
+    public void stored(Constraint constraint) {
+        event(STORED, constraint);
+    }
+
+    public void suspended(Constraint constraint) {
+        event(SUSPENDED, constraint);
+    }
+
+    public void removed(Constraint constraint) {
+        event(REMOVED, constraint);
+    }
+
+    public void terminated(Constraint constraint) {
+        event(TERMINATED, constraint);
+        terminated.add(constraint);
+    }
+
+    public void fires(String ruleId, int activeIndex, Constraint... constraints) {
+        dropTerminated();
+        fire(FIRES, ruleId, activeIndex, constraints);
+        nbFiring++;
+    }
+
+    public void fired(String ruleId, int activeIndex, Constraint... constraints) {
+        fire(FIRED, ruleId, activeIndex, constraints);
+        if (nbFiring > 0) nbFiring--;
+    }
+
+    /**
+     * Drops the dictionary entries of the constraints that were terminated,
+     * if no rule is firing: the event that is traced next then starts a
+     * new top-level activity, which cannot refer to them anymore.
+     * The {@link BinaryTraceDecoder} drops its entries at the same events.
+     * (After a failure, the rules that were firing never fire completely,
+     * and entries are no longer dropped.)
+     */
+    private void dropTerminated() {
+        if (nbFiring == 0 && !terminated.isEmpty()) {
+            for (Constraint constraint : terminated) constraints.remove(constraint);
+            terminated.clear();
+        }
+    }
+
+    private void event(int event, Constraint constraint) {
+        final int reference = getReference(constraint);
+        put(event);
+        putVarint(reference);
+        publish();
+    }
+
+    private void fire(int event, String ruleId, int activeIndex, Constraint... constraints) {
+        Integer rule = rules.get(ruleId);
+        if (rule == null) {
+            rules.put(ruleId, rule = rules.size());
+            define(DEFINE_RULE, rule, ruleId);
+        }
+
+        final int n = constraints.length;
+        if (references.length < n) references = new int[n];
+        for (int i = 0; i < n; i++)
+            references[i] = getReference(constraints[i]);
+
+        put(event);
+        putVarint(rule);
+        putVarint(activeIndex);
+        putVarint(n);
+        for (int i = 0; i < n; i++) putVarint(references[i]);
+        publish();
+    }
+
+    /**
+     * Returns the number of the dictionary entry of the given constraint,
+     * after adding it to the dictionary if it was not there yet.
+     */
+    private int getReference(Constraint constraint) {
+        final Integer result = constraints.get(constraint);
+        return (result != null)? result.intValue() : define(constraint);
+    }
+
+    /**
+     * (Re)renders the given constraint as an entry of the dictionary,
+     * and returns its number.
+     */
+    private int define(Constraint constraint) {
+        Integer reference = constraints.get(constraint);
+        if (reference == null)
+            constraints.put(constraint, reference = nbConstraintReferences++);
+        define(DEFINE_CONSTRAINT, reference, constraint.toDebugString());
+        return reference;
+    }
+
+    private void define(int kind, int reference, String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        put(kind);
+        putVarint(reference);
+        putVarint(bytes.length);
+        for (byte b : bytes) put(b);
+    }
+
+    private void putVarint(int value) {
+        while ((value & ~0x7F) != 0) {
+            put((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        put(value);
+    }
+
+    private void put(int b) {
+        if (tail == limit) awaitSpace();
+        buffer[(int)tail & mask] = (byte)b;
+        tail++;
+    }
+
+    private void publish() {
+        published = tail;
+    }
+
+    private void awaitSpace() {
+        publish();
+        LockSupport.unpark(drainer);
+        while ((limit = drained + buffer.length) == tail) {
+            if (failure != null || closed) {
+                // nothing is written anymore: just keep overwriting the buffer
+                limit = Long.MAX_VALUE;
+                return;
+            }
+            LockSupport.parkNanos(this, PARK_NANOS);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                final long start = drained, end = published;
+                if (start == end) {
+                    if (closed && published == start) return;
+                    LockSupport.parkNanos(this, PARK_NANOS);
+                    continue;
+                }
+
+                final int length = (int)(end - start);
+                final int from = (int)start & mask;
+                final int first = Math.min(length, buffer.length - from);
+                write(ByteBuffer.wrap(buffer, from, first));
+                if (first < length) write(ByteBuffer.wrap(buffer, 0, length - first));
+                drained = end;
+            }
+        } catch (IOException x) {
+            failure = x;
+        }
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) channel.write(bytes);
+    }
+
+    /**
+     * Waits until all events traced so far are written to the channel.
+     *
+     * @throws IOException
+     *  If writing to the channel failed.
+     */
+    public void flush() throws IOException {
+        publish();
+        LockSupport.unpark(drainer);
+        while (drained != tail && failure == null)
+            LockSupport.parkNanos(this, PARK_NANOS);
+        if (failure != null) throw failure;
+    }
+
+    /**
+     * Writes all remaining events, stops the background thread and
+     * closes the channel. Events traced afterwards are lost.
+     *
+     * @throws IOException
+     *  If writing to, or closing, the channel failed.
+     */
+    public void close() throws IOException {
+        if (closed) return;
+        publish();
+        closed = true;
+        LockSupport.unpark(drainer);
+        try {
+            drainer.join();
+        } catch (InterruptedException x) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } finally {
+            channel.close();
+        }
+        if (failure != null) throw failure;
+    }
+}
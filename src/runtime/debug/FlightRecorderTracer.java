@@ -0,0 +1,271 @@
+package runtime.debug;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import runtime.Constraint;
+import runtime.hash.HashIndex;
+import util.Resettable;
+
+/**
+ * <p>
+ * A tracer that records the execution of a handler as events of the
+ * Java Flight Recorder (JFR), so that a single recording shows which
+ * rules take up time, next to garbage collection, lock contention, etc.
+ * The following events are recorded (all in the <code>JCHR</code>
+ * category):
+ * <ul>
+ * 	<li><code>jchr.RuleFired</code>: a rule fired. Its duration is
+ * 		that of the execution of its body, including the rules that
+ * 		fired because of it.</li>
+ * 	<li><code>jchr.ConstraintStored</code> and
+ * 		<code>jchr.ConstraintRemoved</code>: a constraint was stored in,
+ * 		or removed from, the constraint store.</li>
+ * 	<li><code>jchr.ReactivationStorm</code>: a number of consecutive
+ * 		reactivations (not interrupted by the activation of a new
+ * 		constraint) that is at least {@link #getStormThreshold()}.</li>
+ * 	<li><code>jchr.IndexResized</code>: the table of a hash index was
+ * 		resized. These events are not recorded by a tracer, but for all
+ * 		handlers at once, once {@link #recordIndexResizes()} is called.</li>
+ * </ul>
+ * Use it like any other tracer: compile the handler with debug code
+ * (e.g. <code>-debug default</code>), and call
+ * {@link runtime.Handler#setTracer(Tracer)}.
+ * </p>
+ * <p>
+ * The event objects are reused, so a tracer hardly allocates, and when
+ * no recording is running the overhead is small (though not zero: the
+ * tracer calls themselves remain). As event objects are not thread-safe,
+ * a tracer can only be used by a single handler, or by handlers that
+ * run on the same thread.
+ * </p>
+ * <p>
+ * If the body of a rule throws an exception, the rules that were firing
+ * never report they fired. The tracer is therefore reset by the handler
+ * at the start of each outermost call (cf. {@link #reset()}).
+ * </p>
+ */
+public class FlightRecorderTracer implements Tracer, Resettable {
+
+	@Name("jchr.RuleFired")
+	@Label("Rule Fired")
+	@Category("JCHR")
+	@Description("A CHR rule fired: the duration includes the execution of its body")
+	@StackTrace(false)
+	public final static class RuleFired extends Event {
+		@Label("Rule")
+		String rule;
+
+		@Label("Active Occurrence")
+		@Description("The index of the active occurrence in the head of the rule")
+		int activeIndex;
+
+		@Label("Active Constraint")
+		String constraint;
+	}
+
+	@Name("jchr.ConstraintStored")
+	@Label("Constraint Stored")
+	@Category("JCHR")
+	@StackTrace(false)
+	public final static class ConstraintStored extends Event {
+		@Label("Constraint")
+		String constraint;
+	}
+
+	@Name("jchr.ConstraintRemoved")
+	@Label("Constraint Removed")
+	@Category("JCHR")
+	@StackTrace(false)
+	public final static class ConstraintRemoved extends Event {
+		@Label("Constraint")
+		String constraint;
+	}
+
+	@Name("jchr.ReactivationStorm")
+	@Label("Reactivation Storm")
+	@Category("JCHR")
+	@Description("A number of consecutive reactivations of constraints")
+	@StackTrace(false)
+	public final static class ReactivationStorm extends Event {
+		@Label("Reactivations")
+		int reactivations;
+	}
+
+	@Name("jchr.IndexResized")
+	@Label("Index Resized")
+	@Category("JCHR")
+	public final static class IndexResized extends Event {
+		@Label("Index")
+		Class<?> index;
+
+		@Label("Old Capacity")
+		int oldCapacity;
+
+		@Label("New Capacity")
+		int newCapacity;
+
+		@Label("Size")
+		int size;
+	}
+
+	/**
+	 * The events of the rules that are firing: rules fire nested
+	 * within the bodies of other rules. Events are reused. The events
+	 * of rules that fired while no recording was running have no rule.
+	 */
+	private final List<RuleFired> firing = new ArrayList<RuleFired>();
+
+	private int depth;
+
+	private final ConstraintStored stored = new ConstraintStored();
+
+	private final ConstraintRemoved removed = new ConstraintRemoved();
+
+	private final ReactivationStorm storm = new ReactivationStorm();
+
+	private int reactivations;
+
+	private int stormThreshold = 100;
+
+	public int getStormThreshold() {
+		return stormThreshold;
+	}
+	/**
+	 * Sets the minimal number of consecutive reactivations that is
+	 * recorded as a <code>jchr.ReactivationStorm</code> event
+	 * (by default <code>100</code>).
+	 */
+	public void setStormThreshold(int stormThreshold) {
+		this.stormThreshold = stormThreshold;
+	}
+
+	public void fires(String ruleId, int activeIndex, Constraint... constraints) {
+		final RuleFired event;
+		if (depth == firing.size())
+			firing.add(event = new RuleFired());
+		else
+			event = firing.get(depth);
+		depth++;
+		if (event.isEnabled()) {
+			event.rule = ruleId;
+			event.activeIndex = activeIndex;
+			event.constraint = constraints[activeIndex].getIdentifier();
+			event.begin();
+		} else {
+			event.rule = null;
+			event.constraint = null;
+		}
+	}
+
+	public void fired(String ruleId, int activeIndex, Constraint... constraints) {
+		if (depth == 0) return;	// the tracer was set while a rule was firing
+		final RuleFired event = firing.get(--depth);
+		if (event.rule != null) {
+			event.end();
+			if (event.shouldCommit()) event.commit();
+		}
+	}
+
+	/**
+	 * Forgets the rules that are still firing, and records the
+	 * current reactivation storm, if any. This is done automatically
+	 * at the start of each outermost call into a handler
+	 * (cf. {@link runtime.Handler#enter()}), so that a rule body
+	 * that threw an exception does not leave its event open.
+	 * Reactivations caused by built-in constraints told from outside
+	 * the handlers do not start a call, and do not reset the tracer.
+	 */
+	public void reset() {
+		if (reactivations != 0) flush();
+		depth = 0;
+	}
+
+	/**
+	 * Returns the number of rules that are firing.
+	 */
+	int getDepth() {
+		return depth;
+	}
+
+	public void stored(Constraint constraint) {
+		final ConstraintStored event = stored;
+		if (event.isEnabled()) {
+			event.begin();
+			event.constraint = constraint.getIdentifier();
+			event.end();
+			event.commit();
+		}
+	}
+
+	public void removed(Constraint constraint) {
+		final ConstraintRemoved event = removed;
+		if (event.isEnabled()) {
+			event.begin();
+			event.constraint = constraint.getIdentifier();
+			event.end();
+			event.commit();
+		}
+	}
+
+	public void activated(Constraint constraint) {
+		if (reactivations != 0) flush();
+	}
+
+	public void reactivated(Constraint constraint) {
+		if (reactivations++ == 0) storm.begin();
+	}
+
+	/**
+	 * Records the current reactivation storm, if any. This is done
+	 * automatically once a new constraint is activated.
+	 */
+	public void flush() {
+		final ReactivationStorm event = storm;
+		if (reactivations >= stormThreshold) {
+			event.end();
+			if (event.shouldCommit()) {
+				event.reactivations = reactivations;
+				event.commit();
+			}
+		}
+		reactivations = 0;
+	}
+
+	public void suspended(Constraint constraint) {
+		// NOP
+	}
+
+	public void terminated(Constraint constraint) {
+		// NOP
+	}
+
+	/**
+	 * Starts recording the resizes of all hash indexes as
+	 * <code>jchr.IndexResized</code> events (of all handlers, on
+	 * all threads). Best called before any handler is created.
+	 *
+	 * @see HashIndex#setResizeListener(HashIndex.ResizeListener)
+	 */
+	public static void recordIndexResizes() {
+		HashIndex.setResizeListener(new HashIndex.ResizeListener() {
+			public void resized(Object index, int oldCapacity, int newCapacity, int size) {
+				final IndexResized event = new IndexResized();
+				if (event.isEnabled()) {
+					event.index = index.getClass();
+					event.oldCapacity = oldCapacity;
+					event.newCapacity = newCapacity;
+					event.size = size;
+					event.commit();
+				}
+			}
+		});
+	}
+}
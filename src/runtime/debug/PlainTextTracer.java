@@ -13,6 +13,7 @@ import runtime.Constraint;
  * {@link #println(String, Object[])} method and change this.
  *
  * @see SysoutTracer
+ * @see BinaryTracer
  * @see MessageFormat
  * @see ResourceBundle
  * 
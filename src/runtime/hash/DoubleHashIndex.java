@@ -0,0 +1,73 @@
+package runtime.hash;
+
+import java.util.Iterator;
+
+import util.Resettable;
+
+/**
+ * Special purpose hash index mapping primitive <code>double</code> keys
+ * to values. Keys are compared as the built-in <code>==</code> operator
+ * does: <code>0.0</code> and <code>-0.0</code> are the same key, and a
+ * <code>NaN</code> key is never found (though values stored under it are
+ * still part of the iteration).
+ *
+ * @see LongHashIndex
+ */
+public final class DoubleHashIndex<V> implements Iterable<V>, Resettable {
+
+    private final LongHashIndex<V> index;
+
+    public DoubleHashIndex() {
+        index = new LongHashIndex<V>();
+    }
+    public DoubleHashIndex(int initialCapacity) {
+        index = new LongHashIndex<V>(initialCapacity);
+    }
+
+    private static long toKey(double key) {
+        // adding 0.0 turns -0.0 into 0.0
+        return Double.doubleToLongBits(key + 0.0);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * @see LongHashIndex#get(long)
+     */
+    public V get(double key) {
+        return (key != key)? null : index.get(toKey(key));
+    }
+
+    /**
+     * @see LongHashIndex#put(long, Object)
+     */
+    public void put(double key, V value) {
+        index.put(toKey(key), value);
+    }
+
+    /**
+     * @see LongHashIndex#remove(long)
+     */
+    public V remove(double key) {
+        return index.remove(toKey(key));
+    }
+
+    public void reset() {
+        index.reset();
+    }
+
+    public Iterator<V> iterator() {
+        return index.iterator();
+    }
+
+    @Override
+    public String toString() {
+        return index.toString();
+    }
+}
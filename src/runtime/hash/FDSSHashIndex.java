@@ -2,10 +2,13 @@ package runtime.hash;
 
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 import runtime.Constraint;
 
 import util.Resettable;
+import util.iterator.ChainingSpliterator;
 
 /**
  * Derived from {@link HashIndex}.
@@ -51,6 +54,33 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
      */
     final float loadFactor;
 
+    /**
+     * Whether or not the table is resized incrementally.
+     * 
+     * @see #FDSSHashIndex(boolean)
+     */
+    final boolean incremental;
+
+    /**
+     * The table that is being migrated to {@link #table} during an 
+     * incremental resize, or <code>null</code> if no resize is in progress.
+     */
+    Entry<E>[] oldTable;
+
+    /**
+     * The number of buckets of {@link #oldTable} that have already been 
+     * migrated: all entries in the remaining buckets have not.
+     */
+    int migrated;
+
+    /**
+     * The maximal number of non-empty buckets migrated per operation
+     * during an incremental resize. At least four times as many buckets 
+     * are visited, which ensures a resize is complete long before 
+     * the new table has to grow again.
+     */
+    final static int MIGRATION_STEP = 4;
+
     /**
      * Constructs an empty <tt>HashIndex</tt> with the specified initial
      * capacity and load factor.
@@ -79,6 +109,7 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         this.loadFactor = loadFactor;
         threshold = (int)(capacity * loadFactor);
         table = new Entry[capacity];
+        incremental = false;
     }
 
     /**
@@ -96,11 +127,31 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
      * Constructs an empty <tt>HashIndex</tt> with the default initial capacity
      * (16) and the default load factor (0.75).
      */
-    @SuppressWarnings("unchecked")
     public FDSSHashIndex() {
+        this(false);
+    }
+
+    /**
+     * Constructs an empty <tt>HashIndex</tt> with the default initial capacity
+     * (16) and the default load factor (0.75). If <code>incremental</code>
+     * is <code>true</code>, the index never rehashes all its entries
+     * at once: when it has to grow, or has become sparse after many removals,
+     * a new table is allocated, and each subsequent insertion 
+     * migrates a bounded number of buckets to it. In the meantime, lookups 
+     * consult both tables. This avoids long pauses when large indexes 
+     * are resized, at the expense of slightly slower operations while 
+     * a resize is in progress. Removals never start or advance a resize,
+     * so entries can safely be removed while iterating over the index.
+     * 
+     * @param incremental
+     *  Whether or not the table should be resized incrementally.
+     */
+    @SuppressWarnings("unchecked")
+    public FDSSHashIndex(boolean incremental) {
         this.loadFactor = DEFAULT_LOAD_FACTOR;
         threshold = (int)(DEFAULT_INITIAL_CAPACITY * DEFAULT_LOAD_FACTOR);
         table = new Entry[DEFAULT_INITIAL_CAPACITY];
+        this.incremental = incremental;
     }
 
     /**
@@ -131,7 +182,38 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
      * @see #safeIterator()
      */
     public Iterator<E> iterator() {
-        return new HashIterator<E>(table);
+        final Entry<E>[] oldTable = this.oldTable;
+        return (oldTable == null)
+            ? new HashIterator<E>(table)
+            : new HashIterator<E>(oldTable, migrated, table);
+    }
+
+    /**
+     * Returns a spliterator over all entries currently in this index,
+     * that splits by ranges of buckets, so that the entries can be
+     * traversed in parallel (e.g. using
+     * <code>StreamSupport.stream(index.spliterator(), true)</code>).
+     * As long as it has not been split, the spliterator is
+     * {@link Spliterator#SIZED}; the sizes of the split parts
+     * are estimates.
+     * <br/>
+     * <em>As the iterator, the returned spliterator is not fail-safe under
+     * structural modifications:</em> the index should not be modified
+     * while it is being traversed.
+     *
+     * @return A spliterator over all entries currently in this index.
+     */
+    public Spliterator<E> spliterator() {
+        final Entry<E>[] oldTable = this.oldTable;
+        if (oldTable == null)
+            return new HashSpliterator<E>(table, 0, table.length, size, true, 0, 1);
+        
+        final int n = oldTable.length;
+        final long est = (long)size * (n - migrated) / n;
+        return new ChainingSpliterator<E>(
+            new HashSpliterator<E>(oldTable, migrated, n, est, false, 0, 1),
+            new HashSpliterator<E>(table, 0, table.length, size - est, false, n-1, migrated)
+        );
     }
     
     /**
@@ -146,7 +228,10 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
      * @see #iterator()
      */
     public Iterator<E> safeIterator() {
-        return new HashIterator<E>(table.clone());
+        final Entry<E>[] oldTable = this.oldTable;
+        return (oldTable == null)
+            ? new HashIterator<E>(table.clone())
+            : new HashIterator<E>(oldTable.clone(), migrated, table.clone());
     }
     
     protected abstract int hash(E entry);
@@ -182,6 +267,12 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
             if (e.hash == hash && key.equals(k = e.entry))
                 return k;
         }
+        if (oldTable != null)
+            for (Entry<E> e = oldBucket(hash); e != null; e = e.next) {
+                E k;
+                if (e.hash == hash && key.equals(k = e.entry))
+                    return k;
+            }
         return null;
     }
     
@@ -205,9 +296,13 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         for (Entry<E> e = table[i]; e != null; e = e.next)
             if (e.hash == hash && entry.equals(old = e.entry))
                 return old;
+        if (oldTable != null)
+            for (Entry<E> e = oldBucket(hash); e != null; e = e.next)
+                if (e.hash == hash && entry.equals(old = e.entry))
+                    return old;
 
-        table[i] = new Entry<E>(hash, entry, table[i]);
-        if (size++ >= threshold) grow();
+        addEntry(hash, entry, i);
+        if (size++ >= threshold) grow(); else if (incremental) shrinkOrMigrate();
         
         return null;
     }
@@ -232,9 +327,13 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         for (Entry<E> e = table[i]; e != null; e = e.next)
             if (e.hash == hash && entry.equals(e.entry))
                 return false;
+        if (oldTable != null)
+            for (Entry<E> e = oldBucket(hash); e != null; e = e.next)
+                if (e.hash == hash && entry.equals(e.entry))
+                    return false;
 
-        table[i] = new Entry<E>(hash, entry, table[i]);
-        if (size++ >= threshold) grow();
+        addEntry(hash, entry, i);
+        if (size++ >= threshold) grow(); else if (incremental) shrinkOrMigrate();
         
         return true;
     }
@@ -253,6 +352,10 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         for (Entry<E> e = table[hash & (table.length-1)]; e != null; e = e.next)
             if (e.hash == hash && entry.equals(e.entry))
                 return true;
+        if (oldTable != null)
+            for (Entry<E> e = oldBucket(hash); e != null; e = e.next)
+                if (e.hash == hash && entry.equals(e.entry))
+                    return true;
 
         return false;
     }
@@ -272,8 +375,8 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         int hash = hash(entry);
         int i = hash & (table.length-1);
         
-        table[i] = new Entry<E>(hash, entry, table[i]);
-        if (size++ >= threshold) grow();
+        addEntry(hash, entry, i);
+        if (size++ >= threshold) grow(); else if (incremental) shrinkOrMigrate();
     }
     
     /**
@@ -297,49 +400,186 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
                 e.entry = entry;
                 return old;
             }
-
-        table[i] = new Entry<E>(hash, entry, table[i]);
-        if (size++ >= threshold) grow();
+        if (oldTable != null)
+            for (Entry<E> e = oldBucket(hash); e != null; e = e.next)
+                if (e.hash == hash && entry.equals(old = e.entry)) {
+                    e.entry = entry;
+                    return old;
+                }
+
+        addEntry(hash, entry, i);
+        if (size++ >= threshold) grow(); else if (incremental) shrinkOrMigrate();
         
         return null;
     }
     
+    /**
+     * Adds a new entry with the given hash to bucket <code>i</code>
+     * of the current table, or, if an incremental resize is in progress
+     * and its bucket of {@link #oldTable} has not been migrated yet,
+     * to that bucket. This way the current table never contains
+     * entries of buckets that still have to be migrated.
+     */
+    private final void addEntry(int hash, E entry, int i) {
+        final Entry<E>[] oldTable = this.oldTable;
+        if (oldTable != null) {
+            final int j = hash & (oldTable.length-1);
+            if (j >= migrated) {
+                oldTable[j] = new Entry<E>(hash, entry, oldTable[j]);
+                return;
+            }
+        }
+        table[i] = new Entry<E>(hash, entry, table[i]);
+    }
+    
     /**
      * Rehashes the contents of this map into a new array with a
-     * larger capacity.
+     * larger capacity. In incremental mode, the entries are only
+     * migrated by subsequent insertions (see {@link #migrate()}).
      *
      * If current capacity is MAXIMUM_CAPACITY, this method does not
      * resize the map, but sets threshold to Integer.MAX_VALUE.
      */
-    @SuppressWarnings("unchecked")
     private final void grow() {
-        Entry[] oldTable = table;
-        int oldCapacity = oldTable.length;
+        if (oldTable != null) completeMigration();
+        
+        int oldCapacity = table.length;
         
         if (oldCapacity == MAXIMUM_CAPACITY) {
             threshold = Integer.MAX_VALUE;
             return;
         }
-            
-        int newCapacity = 2 * oldCapacity;
         
-        Entry<E>[] newTable = new Entry[newCapacity];
-            
-        for (int j = 0; j < oldTable.length; j++) {
-            Entry<E> e = oldTable[j];
-            if (e != null) {
-                oldTable[j] = null;
-                do {
-                    Entry<E> next = e.next;
-                    int i = e.hash & (newCapacity-1);
-                    e.next = newTable[i];
-                    newTable[i] = e;
-                    e = next;
-                } while (e != null);
+        startMigration(2 * oldCapacity);
+        if (!incremental) completeMigration();
+    }
+    
+    /**
+     * Makes sure this index can hold at least the given number of
+     * entries without having to be resized. If necessary, the table is
+     * rebuilt at once (also in incremental mode), so this is best done
+     * before a large number of entries is added, while the index is
+     * still (nearly) empty.
+     *
+     * @param capacity
+     *  The number of entries this index should be able to hold.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= threshold) return;
+        
+        int newCapacity = table.length;
+        while (newCapacity < MAXIMUM_CAPACITY && (int)(newCapacity * loadFactor) < capacity)
+            newCapacity <<= 1;
+        if (newCapacity == table.length) return;
+        
+        if (oldTable != null) completeMigration();
+        startMigration(newCapacity);
+        completeMigration();
+    }
+    
+    /**
+     * Starts an incremental shrink of the table (if it has become sparse), 
+     * or continues an incremental resize that is in progress.
+     * Only called after insertions: removals never move entries,
+     * so that entries can be removed while iterating.
+     */
+    private final void shrinkOrMigrate() {
+        if (oldTable != null)
+            migrate();
+        else if (size < (threshold >> 2) && table.length > DEFAULT_INITIAL_CAPACITY)
+            startMigration(table.length >> 1);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private final void startMigration(int newCapacity) {
+        oldTable = table;
+        migrated = 0;
+        table = new Entry[newCapacity];
+        threshold = (int)(newCapacity * loadFactor);
+        
+        final HashIndex.ResizeListener listener = HashIndex.resizeListener;
+        if (listener != null) listener.resized(this, oldTable.length, newCapacity, size);
+    }
+    
+    /**
+     * Migrates at most {@link #MIGRATION_STEP} non-empty buckets of 
+     * {@link #oldTable} to the current table.
+     */
+    private final void migrate() {
+        final Entry<E>[] oldTable = this.oldTable;
+        int j = migrated, n = MIGRATION_STEP;
+        final int end = Math.min(oldTable.length, j + (MIGRATION_STEP << 2));
+        while (j < end) if (migrate(oldTable, j++) && --n == 0) break;
+        if ((migrated = j) == oldTable.length) this.oldTable = null;
+    }
+    
+    /**
+     * Migrates all remaining buckets of {@link #oldTable} to the 
+     * current table.
+     */
+    private final void completeMigration() {
+        final Entry<E>[] oldTable = this.oldTable;
+        for (int j = migrated; j < oldTable.length; j++) migrate(oldTable, j);
+        this.oldTable = null;
+    }
+    
+    /**
+     * Migrates bucket <code>j</code> of the given old table to the 
+     * current table. In incremental mode, the entries are copied,
+     * and the old bucket is left as it is: iterators created before
+     * may still be traversing it (cf. {@link HashIterator}). 
+     * Otherwise the entries are simply relinked.
+     */
+    private final boolean migrate(Entry<E>[] oldTable, int j) {
+        Entry<E> e = oldTable[j];
+        if (e == null) return false;
+        final Entry<E>[] table = this.table;
+        final int l = table.length-1;
+        if (incremental) {
+            do {
+                int i = e.hash & l;
+                table[i] = new Entry<E>(e.hash, e.entry, table[i]);
+            } while ((e = e.next) != null);
+        } else {
+            oldTable[j] = null;
+            do {
+                Entry<E> next = e.next;
+                int i = e.hash & l;
+                e.next = table[i];
+                table[i] = e;
+                e = next;
+            } while (e != null);
+        }
+        return true;
+    }
+    
+    /**
+     * Returns the bucket of {@link #oldTable} an entry with the given hash
+     * would be in, or <code>null</code> if that bucket has been migrated 
+     * already. An incremental resize has to be in progress.
+     */
+    private final Entry<E> oldBucket(int hash) {
+        int j = hash & (oldTable.length-1);
+        return (j < migrated)? null : oldTable[j];
+    }
+    
+    /**
+     * Removes the specified entry from the bucket of {@link #oldTable}
+     * it would be in, if it is found there.
+     */
+    private final boolean removeFromOldTable(int hash, E entry) {
+        final Entry<E>[] oldTable = this.oldTable;
+        final int j = hash & (oldTable.length-1);
+        if (j < migrated) return false;
+        
+        Entry<E> prev = null;
+        for (Entry<E> e = oldTable[j]; e != null; prev = e, e = e.next) {
+            if (e.entry == entry) {
+                if (prev == null) oldTable[j] = e.next; else prev.next = e.next;
+                return true;
             }
         }
-        table = newTable;
-        threshold = (int)(newCapacity * loadFactor);
+        return false;
     }
 
     /**
@@ -355,9 +595,16 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
      * 	if the entry was not contained by the index at all
      */
     public void remove(E entry) {
-        int i = hash(entry) & (table.length-1);
+        int hash = hash(entry);
         size--;
         
+        if (oldTable == null || !removeFromOldTable(hash, entry))
+            removeFromTable(hash, entry);
+    }
+    
+    private final void removeFromTable(int hash, E entry) {
+        int i = hash & (table.length-1);
+        
         Entry<E> prev = table[i];
         if (prev.entry == entry) {
         	table[i] = prev.next;
@@ -374,11 +621,16 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
     /**
      * Removes all entries from this index.
      * The index will be empty after this call returns.
+     * The table is dropped as a whole (in constant time), 
+     * and replaced by one of the default initial capacity.
      */
+    @SuppressWarnings("unchecked")
     public void reset() {
-        Entry<E>[] tab = table;
-        for (int i = 0; i < tab.length; i++) tab[i] = null;
+        table = new Entry[DEFAULT_INITIAL_CAPACITY];
+        threshold = (int)(DEFAULT_INITIAL_CAPACITY * loadFactor);
         size = 0;
+        oldTable = null;
+        migrated = 0;
     }
 
     private final static class Entry<E> {
@@ -401,15 +653,50 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         }
     }
 
+    /**
+     * If an incremental resize is in progress, first iterates over the
+     * buckets of the old table that have not been migrated yet, and then
+     * over the current table. Migrating copies entries, leaving the old
+     * buckets as they are, so in the current table the entries of 
+     * old buckets that were not migrated when the iterator was created 
+     * are skipped: these are either visited in the old table already, 
+     * or added afterwards. 
+     */
     private final static class HashIterator<E> implements Iterator<E> {
         Entry<E> next;    // next entry to return
         int index;        // current slot
-        final Entry<E>[] table;
+        Entry<E>[] table;
+        Entry<E>[] rest;  // the current table, if still to be iterated
+        final int migrated;
+        int oldMask;      // when filtering, skip entries with (hash & oldMask) >= migrated
+        boolean filter;
 
         HashIterator(Entry<E>[] table) {
-            this.table = table;
-            /* we know table.length is not 0 since 0 is not a power of two */
-            while ((next = table[index]) == null && ++index < table.length);
+            this(table, 0, null);
+        }
+        
+        HashIterator(Entry<E>[] oldTable, int migrated, Entry<E>[] table) {
+            this.table = oldTable;
+            this.rest = table;
+            this.index = migrated - 1;
+            this.migrated = migrated;
+            next = advance(null);
+        }
+
+        private Entry<E> advance(Entry<E> e) {
+            while (true) {
+                for (; e != null; e = e.next)
+                    if (!filter || (e.hash & oldMask) < migrated) return e;
+                if (++index == table.length) {
+                    if (rest == null) return null;
+                    filter = true;
+                    oldMask = table.length-1;
+                    table = rest;
+                    rest = null;
+                    index = 0;
+                }
+                e = table[index];
+            }
         }
 
         public final boolean hasNext() {
@@ -417,12 +704,10 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
         }
 
         public E next() {
-            Entry<E> e = next, next;
+            Entry<E> e = next;
             if (e == null)
                 throw new NoSuchElementException();
-            if ((next = e.next) == null)
-                while (++index < table.length && (next = table[index]) == null);
-            this.next = next;
+            this.next = advance(e.next);
             return e.entry;
         }
 
@@ -430,6 +715,82 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
             throw new UnsupportedOperationException();
         }
     }
+
+    /**
+     * Splits by halving the range of buckets, much like the spliterators
+     * of {@link java.util.HashMap}. As the {@link HashIterator}, 
+     * it skips the entries with <code>(hash &amp; oldMask) &gt;= migrated</code>
+     * (none if <code>oldMask</code> is zero and <code>migrated</code> one).
+     */
+    private final static class HashSpliterator<E> implements Spliterator<E> {
+        final Entry<E>[] table;
+        Entry<E> current; // next entry in the current bucket
+        int index;        // next bucket
+        final int fence;  // one past the last bucket
+        long est;         // estimated number of remaining entries
+        final boolean exact;
+        final int oldMask, migrated;
+
+        HashSpliterator(Entry<E>[] table, int index, int fence, long est, boolean exact, int oldMask, int migrated) {
+            this.table = table;
+            this.index = index;
+            this.fence = fence;
+            this.est = est;
+            this.exact = exact;
+            this.oldMask = oldMask;
+            this.migrated = migrated;
+        }
+
+        public Spliterator<E> trySplit() {
+            final int lo = index, mid = (lo + fence) >>> 1;
+            if (lo >= mid || current != null) return null;
+            index = mid;
+            return new HashSpliterator<E>(table, lo, mid, est >>>= 1, false, oldMask, migrated);
+        }
+
+        public boolean tryAdvance(Consumer<? super E> action) {
+            if (action == null) throw new NullPointerException();
+            while (current != null || index < fence) {
+                if (current == null)
+                    current = table[index++];
+                else {
+                    final Entry<E> e = current;
+                    current = e.next;
+                    if ((e.hash & oldMask) >= migrated) continue;
+                    if (exact) est--;
+                    action.accept(e.entry);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            if (action == null) throw new NullPointerException();
+            final Entry<E>[] table = this.table;
+            final int oldMask = this.oldMask, migrated = this.migrated;
+            Entry<E> e = current;
+            current = null;
+            int i = index;
+            index = fence;
+            while (true) {
+                for (; e != null; e = e.next) 
+                    if ((e.hash & oldMask) < migrated) action.accept(e.entry);
+                if (i >= fence) break;
+                e = table[i++];
+            }
+            if (exact) est = 0;
+        }
+
+        public long estimateSize() {
+            return est;
+        }
+
+        public int characteristics() {
+            return (exact? Spliterator.SIZED : 0) | Spliterator.DISTINCT | Spliterator.NONNULL;
+        }
+    }
     
     
     /**
@@ -440,12 +801,25 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
     @Override
     public String toString() {
     	StringBuilder result = new StringBuilder();
-    	Entry<E>[] entries = table;
     	
     	result.append('{');
     	
     	boolean first = true;
-    	for (int i = 0; i < entries.length; i++) {
+    	if (oldTable != null)
+    		first = appendBuckets(result, oldTable, migrated, first);
+    	appendBuckets(result, table, 0, first);
+    	
+    	result.append('}');
+    	
+    	return result.toString();
+    }
+    
+    /**
+     * Appends the buckets of the given table, starting from the given 
+     * one, to the string representation of this index.
+     */
+    private static boolean appendBuckets(StringBuilder result, Entry<?>[] entries, int from, boolean first) {
+    	for (int i = from; i < entries.length; i++) {
     		if (entries[i] != null) {
     			if (first)
     				first = false;
@@ -455,9 +829,6 @@ public abstract class FDSSHashIndex<E> implements Iterable<E>, Resettable {
 				result.append('@').append(Integer.toHexString(entries[i].hash)).append(" = ").append(entries[i].entry);
     		}
     	}
-    	
-    	result.append('}');
-    	
-    	return result.toString();
+    	return first;
     }
 }
\ No newline at end of file
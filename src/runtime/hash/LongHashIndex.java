@@ -0,0 +1,163 @@
+package runtime.hash;
+
+/**
+ * <p>
+ * Special purpose hash index mapping primitive <code>long</code> keys
+ * to values (cf. {@link PrimitiveHashIndex}).
+ * </p>
+ * <p>
+ * Keys are hashed using multiplicative (Fibonacci) hashing:
+ * dense ranges of keys, such as consecutive node identifiers,
+ * are spread evenly over the table. This also holds for keys
+ * packing two <code>int</code>s, as generated for lookups on
+ * two <code>int</code>-valued arguments.
+ * </p>
+ *
+ * @see HashIndex
+ * @see IntHashIndex
+ */
+public final class LongHashIndex<V> extends PrimitiveHashIndex<V> {
+
+    /**
+     * The keys, parallel to the <code>values</code> array.
+     */
+    private long[] keys;
+
+    /**
+     * Constructs an empty <tt>LongHashIndex</tt> with the default
+     * initial capacity (16).
+     */
+    public LongHashIndex() {
+        this(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty <tt>LongHashIndex</tt> with the specified
+     * initial capacity.
+     *
+     * @param  initialCapacity the initial capacity
+     * @throws IllegalArgumentException if the initial capacity is negative
+     */
+    public LongHashIndex(int initialCapacity) {
+        super(initialCapacity);
+    }
+
+    @Override
+    void initKeys(int capacity) {
+        keys = new long[capacity];
+    }
+
+    private static int hash(long key, int shift) {
+        return (int)((key * 0x9E3779B97F4A7C15L) >>> (shift + 32));
+    }
+
+    /**
+     * Returns the value the given key is mapped to, or <code>null</code>
+     * if this index contains no mapping for the key.
+     *
+     * @param key
+     *  The key whose associated value is to be returned.
+     * @return the value the given key is mapped to, or <code>null</code>
+     * if this index contains no mapping for the key.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int l = keys.length - 1;
+
+        Object value;
+        for (int j = hash(key, shift); (value = values[j]) != null; j = (j + 1) & l)
+            if (keys[j] == key) return (V)value;
+        return null;
+    }
+
+    /**
+     * Maps the given key to the given value. The key is not yet
+     * mapped to a value in this index: this is an
+     * <em>essential precondition</em> to this method.
+     *
+     * @param key
+     *  The new key.
+     * @param value
+     *  The value the key has to be mapped to.
+     *  Cannot be <code>null</code>.
+     */
+    public void put(long key, V value) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int l = keys.length - 1;
+
+        int j = hash(key, shift);
+        while (values[j] != null) j = (j + 1) & l;
+        keys[j] = key;
+        values[j] = value;
+
+        added();
+    }
+
+    /**
+     * Removes the mapping for the given key from this index, if present.
+     *
+     * @param key
+     *  The key whose mapping is to be removed.
+     * @return The value the key was mapped to, or <code>null</code>
+     *  if the key was not present.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int l = keys.length - 1, shift = this.shift;
+
+        Object result;
+        int r = hash(key, shift);
+        while (true) {
+            if ((result = values[r]) == null) return null;
+            if (keys[r] == key) break;
+            r = (r + 1) & l;
+        }
+
+        size--;
+        /* shift back the remainder of the cluster */
+        for (int m = (r + 1) & l; values[m] != null; m = (m + 1) & l) {
+            int hash = hash(keys[m], shift);
+            if (((m - hash) & l) >= ((m - r) & l)) {
+                keys[r] = keys[m];
+                values[r] = values[m];
+                r = m;
+            }
+        }
+        values[r] = null;
+
+        return (V)result;
+    }
+
+    @Override
+    void rehash(int capacity) {
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+        final int oldCapacity = oldKeys.length;
+
+        init(capacity);
+        final long[] keys = this.keys;
+        final Object[] values = this.values;
+        final int l = keys.length - 1, shift = this.shift;
+
+        for (int i = 0; i < oldCapacity; i++) {
+            Object value = oldValues[i];
+            if (value != null) {
+                long key = oldKeys[i];
+                int j = hash(key, shift);
+                while (values[j] != null) j = (j + 1) & l;
+                keys[j] = key;
+                values[j] = value;
+            }
+        }
+    }
+
+    @Override
+    void appendKey(StringBuilder builder, int slot) {
+        builder.append(keys[slot]);
+    }
+}
@@ -0,0 +1,211 @@
+package runtime.hash;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import util.Resettable;
+
+/**
+ * <p>
+ * Common base of the special purpose hash indexes mapping primitive keys
+ * to values (typically lists of constraints). Contrary to the general
+ * purpose {@link HashIndex}, no key objects are needed, neither to
+ * store nor to look up values: keys and values are kept in two parallel
+ * arrays, and collisions are resolved using open addressing with
+ * linear probing.
+ * </p>
+ * <p>
+ * This class manages the values array, the sizing and the iteration:
+ * subclasses only add the array of keys, of their own primitive type,
+ * together with the operations on it (hashing, lookup, insertion,
+ * removal and rehashing). These are kept out of this class on purpose,
+ * so that no key ever has to be boxed or widened.
+ * </p>
+ * <p>
+ * Values can never be <code>null</code>: a <code>null</code> value marks
+ * an empty slot.
+ * The {@link Iterator}s returned by {@link #iterator()} iterate over
+ * the table as it was at the time they were created: values put
+ * after a resize are not seen, values put before it are.
+ * Note that values may be missed if keys are removed during iteration.
+ * </p>
+ * <p>
+ * <strong>Note that this implementation is not synchronized.</strong>
+ * </p>
+ *
+ * @see IntHashIndex
+ * @see LongHashIndex
+ */
+public abstract class PrimitiveHashIndex<V> implements Iterable<V>, Resettable {
+
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    final static int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity, MUST be a power of two <= 1<<30.
+     */
+    final static int MAXIMUM_CAPACITY = 1 << 30;
+
+    /**
+     * The values, parallel to the array of keys of the subclass.
+     * Length MUST Always be a power of two.
+     * A <code>null</code> value marks an empty slot.
+     */
+    Object[] values;
+
+    /**
+     * The number of key-value mappings contained in this index.
+     */
+    int size;
+
+    /**
+     * The next size value at which to resize (capacity / 2).
+     */
+    private int threshold;
+
+    /**
+     * Equal to <code>32 - log2(capacity)</code>.
+     */
+    int shift;
+
+    PrimitiveHashIndex(int initialCapacity) {
+        if (initialCapacity < 0)
+            throw new IllegalArgumentException("Illegal initial capacity: " + initialCapacity);
+
+        int capacity;
+        if (initialCapacity > MAXIMUM_CAPACITY)
+            capacity = MAXIMUM_CAPACITY;
+        else
+            // Find a power of 2 >= initialCapacity
+            for (capacity = 2; capacity < initialCapacity; capacity <<= 1);
+
+        init(capacity);
+    }
+
+    /**
+     * Replaces the table by an empty one of the given capacity.
+     */
+    void init(int capacity) {
+        initKeys(capacity);
+        values = new Object[capacity];
+        threshold = capacity >> 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * Replaces the array of keys by a new one of the given capacity.
+     */
+    abstract void initKeys(int capacity);
+
+    /**
+     * Replaces the table by an empty one of the given capacity,
+     * and puts all mappings of the old table in it again.
+     */
+    abstract void rehash(int capacity);
+
+    /**
+     * Appends the key stored in the given slot to the given builder.
+     */
+    abstract void appendKey(StringBuilder builder, int slot);
+
+    /**
+     * Returns the number of keys in this index.
+     *
+     * @return the number of keys in this index.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this index contains no keys.
+     *
+     * @return <tt>true</tt> if this index contains no keys.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Has to be called after a value has been put in a previously
+     * empty slot: rehashes the contents of this index into new arrays
+     * with twice the capacity if necessary.
+     */
+    final void added() {
+        if (++size > threshold) {
+            final int oldCapacity = values.length;
+            if (oldCapacity == MAXIMUM_CAPACITY) {
+                // at least one slot has to remain empty
+                if (threshold == MAXIMUM_CAPACITY - 2)
+                    throw new IllegalStateException("Maximum capacity exhausted.");
+                threshold = MAXIMUM_CAPACITY - 2;
+            } else {
+                rehash(oldCapacity << 1);
+            }
+        }
+    }
+
+    /**
+     * Removes all mappings from this index.
+     * The index will be empty after this call returns.
+     * The table is dropped as a whole, and replaced by
+     * one of the default initial capacity.
+     */
+    public void reset() {
+        init(DEFAULT_INITIAL_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over all values in this index.
+     *
+     * @return an iterator over all values in this index.
+     */
+    public Iterator<V> iterator() {
+        return new ValueIterator<V>(values);
+    }
+
+    final static class ValueIterator<V> implements Iterator<V> {
+        private final Object[] values;
+        private int index;
+
+        ValueIterator(Object[] values) {
+            this.values = values;
+        }
+
+        public boolean hasNext() {
+            final Object[] values = this.values;
+            while (index < values.length) {
+                if (values[index] != null) return true;
+                index++;
+            }
+            return false;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return (V)values[index++];
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder().append('{');
+        boolean first = true;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                if (first) first = false; else result.append(", ");
+                appendKey(result, i);
+                result.append('=').append(values[i]);
+            }
+        }
+        return result.append('}').toString();
+    }
+}
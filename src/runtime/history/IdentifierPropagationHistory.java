@@ -2,12 +2,13 @@ package runtime.history;
 
 import java.util.Arrays;
 
+import runtime.Trail;
 import util.Resettable;
 
 /**
  * <p>
  * This implementation provides constant-time performance for the basic
- * operations ({@link #add(int)} and {@link #contains(int)}), 
+ * operations ({@link #add(long)} and {@link #contains(long)}), 
  * assuming the hash function disperses the elements properly 
  * among the buckets.
  * The implementation is based on an open-addressing hash table 
@@ -31,7 +32,7 @@ import util.Resettable;
  * As a general rule, the default load factor (.75) offers a good tradeoff
  * between time and space costs.  Higher values decrease the space overhead
  * but increase the lookup cost (reflected in most of the operations, 
- * including {@link #add(int)} and {@link #contains(int)}). 
+ * including {@link #add(long)} and {@link #contains(long)}). 
  * The expected number of entries in the map and its load factor should be 
  * taken into account when setting its initial capacity, 
  * so as to minimise the number of rehash operations.  
@@ -79,7 +80,7 @@ public final class IdentifierPropagationHistory implements Resettable {
     /**
      * The table, resized as necessary. Length MUST Always be a power of two.
      */
-    protected int[] table;
+    protected long[] table;
 
     /**
      * The number of key-value mappings contained in this map.
@@ -90,6 +91,29 @@ public final class IdentifierPropagationHistory implements Resettable {
      * The next size value at which to resize (capacity * load factor).
      */
     protected int threshold;
+    
+    /**
+     * The log of removed constraints used to drop dead entries,
+     * or <code>null</code> if entries are never dropped.
+     */
+    private final TerminationLog log;
+    
+    /**
+     * The epoch of the log at the time of the last sweep.
+     */
+    private int epoch;
+    
+    /**
+     * The filter in front of the table, or <code>null</code>
+     * if all lookups consult the table.
+     */
+    private MembershipFilter filter;
+    
+    /**
+     * The trail on which insertions are recorded while a choice point
+     * is open, or <code>null</code> if insertions are never undone.
+     */
+    private final Trail trail;
 
     /**
      * Constructs an empty <tt>IdPropagationHistory</tt> with the specified initial
@@ -113,7 +137,9 @@ public final class IdentifierPropagationHistory implements Resettable {
         	for (capacity = 1; capacity < initialCapacity; capacity <<= 1);
 
         threshold = (3 * capacity) >> 2;
-        table = new int[capacity];
+        table = new long[capacity];
+        log = null;
+        trail = null;
     }
 
     /**
@@ -122,8 +148,62 @@ public final class IdentifierPropagationHistory implements Resettable {
      */
     @SuppressWarnings("unchecked")
     public IdentifierPropagationHistory() {
+        this((TerminationLog)null);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> with the default initial capacity
+     * (16) and load factor (0.75), that drops the identifiers of constraints
+     * once they are recorded as removed in the given log.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     */
+    public IdentifierPropagationHistory(TerminationLog log) {
+        this(log, false);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> with the default initial capacity
+     * (16) and load factor (0.75), that drops the identifiers of constraints
+     * once they are recorded as removed in the given log, and that
+     * optionally puts a {@link MembershipFilter} in front of its table.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param filtered
+     *  Whether or not most lookups of absent identifiers should be
+     *  answered by a filter, without consulting the table.
+     */
+    public IdentifierPropagationHistory(TerminationLog log, boolean filtered) {
+        this(log, filtered, null);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> as 
+     * {@link #IdentifierPropagationHistory(TerminationLog, boolean)}, 
+     * that records its insertions on the given trail while a choice 
+     * point is open, so they can be undone.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param filtered
+     *  Whether or not most lookups of absent identifiers should be
+     *  answered by a filter, without consulting the table.
+     * @param trail
+     *  The trail to record insertions on (can be <code>null</code>).
+     */
+    public IdentifierPropagationHistory(TerminationLog log, boolean filtered, Trail trail) {
+        this.trail = trail;
         threshold = DEFAULT_INITIAL_THRESHOLD;
-        table = new int[DEFAULT_INITIAL_CAPACITY];
+        table = new long[DEFAULT_INITIAL_CAPACITY];
+        if ((this.log = log) != null) epoch = log.getEpoch();
+        if (filtered) filter = new MembershipFilter(DEFAULT_INITIAL_CAPACITY);
+    }
+
+    private static int hash(long ID) {
+        int hash = (int)(ID ^ (ID >>> 32));
+        return (hash << 1) - (hash << 8);
     }
 
     /**
@@ -154,13 +234,15 @@ public final class IdentifierPropagationHistory implements Resettable {
      * @return <code>true</code> iff this history contains the specified identifier;
      *  <code>false</code> otherwise.
      *
-     * @see #putFirstTime(int)
-     * @see #insert(int)
+     * @see #putFirstTime(long)
+     * @see #insert(long)
      */
-    public boolean contains(int ID) {
-        int[] table = this.table;
+    public boolean contains(long ID) {
+        int hash = hash(ID);
+        if (filter != null && !filter.mightContain(hash)) return false;
+        long[] table = this.table;
         int l = table.length - 1;
-        int hash = ((ID << 1) - (ID << 8)) & l;
+        hash &= l;
 
         for (int j = hash; j >= 0; j--) {
         	if (table[j] == ID) return true;
@@ -184,16 +266,20 @@ public final class IdentifierPropagationHistory implements Resettable {
      * 	<code>false</code> is returned; 
      * else the result will be <code>true</code>.
      */
-    public boolean insert(int ID) {
-        int[] table = this.table;
+    public boolean insert(long ID) {
+        if (log != null && log.getEpoch() - epoch > size) sweep();
+        int hash = hash(ID);
+        if (filter != null) filter.add(hash);
+        long[] table = this.table;
         int l = table.length - 1;
-        int hash = ((ID << 1) - (ID << 8)) & l;
+        hash &= l;
         
         for (int j = hash; j >= 0; j--) {
         	if (table[j] == ID) return false;
         	if (table[j] == 0) {
         		table[j] = ID;
         		if (size++ >= threshold) resize();
+        		trailInsertion(ID);
         		return true;
         	}
         }
@@ -202,6 +288,7 @@ public final class IdentifierPropagationHistory implements Resettable {
         	if (table[j] == 0) {
         		table[j] = ID;
         		if (size++ >= threshold) resize();
+        		trailInsertion(ID);
         		return true;
         	}
         }
@@ -218,15 +305,19 @@ public final class IdentifierPropagationHistory implements Resettable {
      *  The new identifier to put in the history.
      *  An identifier has to be a number different from zero.
      */
-    public void add(int ID) {
-        int[] table = this.table;
+    public void add(long ID) {
+        if (log != null && log.getEpoch() - epoch > size) sweep();
+        int hash = hash(ID);
+        if (filter != null) filter.add(hash);
+        long[] table = this.table;
         int l = table.length - 1;
-        int hash = ((ID << 1) - (ID << 8)) & l;
+        hash &= l;
         
         for (int j = hash; j >= 0; j--) {
         	if (table[j] == 0) {
         		table[j] = ID;
         		if (size++ >= threshold) resize();
+        		trailInsertion(ID);
         		return;
         	}
         }
@@ -234,6 +325,7 @@ public final class IdentifierPropagationHistory implements Resettable {
         	if (table[j] == 0) {
         		table[j] = ID;
         		if (size++ >= threshold) resize();
+        		trailInsertion(ID);
         		return;
         	}
         }
@@ -248,7 +340,12 @@ public final class IdentifierPropagationHistory implements Resettable {
      * This has the effect of preventing future calls.
      */
     protected void resize() {
-        int[] oldTable = table;
+        if (log != null && log.getEpoch() != epoch) {
+            sweep();
+            if (size < threshold) return;
+        }
+        
+        long[] oldTable = table;
         int oldCapacity = oldTable.length;
         
         if (oldCapacity == MAXIMUM_CAPACITY) {
@@ -259,12 +356,12 @@ public final class IdentifierPropagationHistory implements Resettable {
         }
         
         int newCapacity = oldCapacity << 1;
-        int[] newTable = new int[newCapacity];
+        long[] newTable = new long[newCapacity];
         int l = newCapacity - 1;
         
         f0r: for (int k = 0; k < oldCapacity; k++) {
-            int ID = oldTable[k];
-            int hash = ((ID << 1) - (ID << 8)) & l;
+            long ID = oldTable[k];
+            int hash = hash(ID) & l;
             
             for (int j = hash; j >= 0; j--) {
             	if (newTable[j] == 0) {
@@ -282,8 +379,82 @@ public final class IdentifierPropagationHistory implements Resettable {
         
         table = newTable;
         threshold = (3 * newCapacity) >> 2;
+        if (filter != null) rebuildFilter();
+    }
+    
+    private void rebuildFilter() {
+        final MembershipFilter filter = this.filter;
+        final long[] table = this.table;
+        filter.clear(table.length);
+        for (int k = 0; k < table.length; k++)
+            if (table[k] != 0) filter.add(hash(table[k]));
     }
 
+    /**
+     * Drops the identifiers of removed constraints, and shrinks 
+     * the table if it has become sparse (the table is rebuilt 
+     * so that it is at most half full).
+     */
+    protected void sweep() {
+        final TerminationLog log = this.log;
+        epoch = log.getEpoch();
+        
+        final long[] oldTable = table;
+        int live = 0;
+        for (int k = 0; k < oldTable.length; k++) {
+            long ID = oldTable[k];
+            if (ID != 0 && !log.contains(ID)) live++;
+        }
+        if (live == size) return;
+        
+        int capacity = DEFAULT_INITIAL_CAPACITY;
+        while (((3 * capacity) >> 2) <= (live << 1) && capacity < MAXIMUM_CAPACITY) 
+            capacity <<= 1;
+        long[] newTable = new long[capacity];
+        int l = capacity - 1;
+        
+        f0r: for (int k = 0; k < oldTable.length; k++) {
+            long ID = oldTable[k];
+            if (ID == 0 || log.contains(ID)) continue;
+            int hash = hash(ID) & l;
+            
+            for (int j = hash; j >= 0; j--) {
+                if (newTable[j] == 0) {
+                    newTable[j] = ID;
+                    continue f0r;
+                }
+            }
+            for (int j = l; j > hash; j--) {
+                if (newTable[j] == 0) {
+                    newTable[j] = ID;
+                    continue f0r;
+                }
+            }
+        }
+        
+        table = newTable;
+        size = live;
+        threshold = (3 * capacity) >> 2;
+        if (filter != null) rebuildFilter();
+    }
+
+    private void trailInsertion(long ID) {
+    	if (trail != null && trail.isTrailing()) trail.push(new Insertion(ID));
+    }
+    
+    private final class Insertion extends Trail.Entry {
+    	private final long ID;
+    	
+    	Insertion(long ID) {
+    		this.ID = ID;
+    	}
+    	
+    	@Override
+    	protected void undo() {
+    		remove(ID);
+    	}
+    }
+    
     /**
      * Removes the specified identifier from this history.
      *
@@ -296,10 +467,10 @@ public final class IdentifierPropagationHistory implements Resettable {
      *  will not be optimal (best-case linear in the size of the
      *  history, instead of worst-case linear / average case constant).
      */
-    public void remove(int ID) {
-        int[] table = this.table;
+    public void remove(long ID) {
+        long[] table = this.table;
         int l = table.length - 1;
-        int hash = ((ID << 1) - (ID << 8)) & l;
+        int hash = hash(ID) & l;
 
         for (int j = hash; j >= 0; j--) {
         	if (table[j] == ID) {
@@ -317,19 +488,19 @@ public final class IdentifierPropagationHistory implements Resettable {
     
     protected void doRemove(int r) {
     	size--;
-    	int[] table = this.table;
+    	long[] table = this.table;
     	int m = r, l = table.length-1;
     	
     	/* assumption: at least one 0 occurs in table 
     	 		(otherwise outer clearly is an infinite loop) */
     	outer: do {
 	    	while (--m >= 0) {	/* case 1: m < r */
-	    		int ID = table[m];
+	    		long ID = table[m];
 	    		if (ID == 0) {
 	    			table[r] = 0;
 	    	    	return;
 	    		}
-	    		int hash = ((ID << 1) - (ID << 8)) & l;
+	    		int hash = hash(ID) & l;
 	    		if (hash >= r || hash < m) {
 	    			table[r] = ID;
 	    			r = m;
@@ -337,12 +508,12 @@ public final class IdentifierPropagationHistory implements Resettable {
 	    	}
 	    	m = l;
 	    	while (true) {	/* case 2: m > r */
-	    		int ID = table[m];
+	    		long ID = table[m];
 	    		if (ID == 0) {
 	    			table[r] = 0;
 	    	    	return;
 	    		}
-	    		int hash = ((ID << 1) - (ID << 8)) & l;
+	    		int hash = hash(ID) & l;
 	    		if (hash >= r && hash < m) {
 	    			table[r] = ID;
 	    			r = m;
@@ -358,8 +529,9 @@ public final class IdentifierPropagationHistory implements Resettable {
      * The index will be empty after this call returns.
      */
     public void reset() {
-        table = new int[table.length];
+        table = new long[table.length];
         size = 0;
+        if (filter != null) filter.clear(table.length);
     }
 
     /**
@@ -369,7 +541,7 @@ public final class IdentifierPropagationHistory implements Resettable {
      */
     @Override
     public String toString() {
-    	int[] table = new int[size];
+    	long[] table = new long[size];
     	for (int i = 0, j = 0; j < table.length; i++)
     		if ((table[j] = this.table[i]) != 0) j++;
     	return Arrays.toString(table);
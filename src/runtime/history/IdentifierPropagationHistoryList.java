@@ -39,7 +39,7 @@ public class IdentifierPropagationHistoryList {
 		array[size] = hist;
 	}
 	
-	public void removeFromAll(int ID) {
+	public void removeFromAll(long ID) {
 		final int size = this.size;
 		for (int i = 0; i < size; i++)
 			array[i].remove(ID);
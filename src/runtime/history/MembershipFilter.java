@@ -0,0 +1,67 @@
+package runtime.history;
+
+/**
+ * <p>
+ * A blocked Bloom filter that can be put in front of a propagation
+ * history to answer most membership tests for entries that were never
+ * added without consulting the (much larger) hash table of the history.
+ * All bits for an entry are set in a single <code>long</code>, so
+ * a test touches only one word of the filter.
+ * </p>
+ * <p>
+ * The filter never gives false negatives. Entries can not be removed:
+ * a history rebuilds its filter whenever its table is rebuilt.
+ * The filter uses 8 bits per bucket of the history's table.
+ * </p>
+ */
+final class MembershipFilter {
+
+    private long[] words;
+
+    /**
+     * Creates an empty filter for a history with a table
+     * of the given capacity.
+     *
+     * @param capacity
+     *  The capacity of the history's table: a power of two.
+     */
+    MembershipFilter(int capacity) {
+        clear(capacity);
+    }
+
+    /**
+     * Removes all entries, and resizes the filter for a history
+     * with a table of the given capacity.
+     *
+     * @param capacity
+     *  The capacity of the history's table: a power of two.
+     */
+    void clear(int capacity) {
+        words = new long[(capacity > 8)? capacity >> 3 : 1];
+    }
+
+    private static int mix(int hash) {
+        return hash * 0x9E3779B9;
+    }
+    private static long bits(int mix) {
+        return (1L << (mix >>> 26)) | (1L << (mix >>> 20)) | (1L << (mix >>> 14));
+    }
+
+    /**
+     * Adds an entry with the given hash code to the filter.
+     */
+    void add(int hash) {
+        final int mix = mix(hash);
+        words[mix & (words.length - 1)] |= bits(mix);
+    }
+
+    /**
+     * Returns whether an entry with the given hash code might have
+     * been added to the filter: if not, it certainly was not.
+     */
+    boolean mightContain(int hash) {
+        final int mix = mix(hash);
+        final long bits = bits(mix);
+        return (words[mix & (words.length - 1)] & bits) == bits;
+    }
+}
@@ -0,0 +1,103 @@
+package runtime.history;
+
+import runtime.Trail;
+
+/**
+ * A propagation history for pairs of constraint identifiers, 
+ * packed in a primitive array (see {@link PackedPropagationHistory}).
+ */
+public final class PackedPairPropagationHistory extends PackedPropagationHistory {
+
+    public PackedPairPropagationHistory() {
+        this(null);
+    }
+    
+    /**
+     * Constructs an empty history that drops pairs once one of the 
+     * constraints they refer to is recorded as removed in the given log.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     */
+    public PackedPairPropagationHistory(TerminationLog log) {
+        super(2, log);
+    }
+    
+    /**
+     * Constructs an empty history as {@link #PackedPairPropagationHistory(TerminationLog)},
+     * that records its insertions on the given trail while a choice
+     * point is open, so they can be undone.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param trail
+     *  The trail to record insertions on (can be <code>null</code>).
+     */
+    public PackedPairPropagationHistory(TerminationLog log, Trail trail) {
+        super(2, log, trail);
+    }
+    
+    protected static int hash(long X1, long X2) {
+        return spread(hash(hash(23, X1), X2));
+    }
+    
+    /**
+     * Returns whether or not this history contains the given pair.
+     * 
+     * @return <code>true</code> iff this history contains the given pair;
+     *  <code>false</code> otherwise.
+     */
+    public boolean contains(long X1, long X2) {
+        final long[] table = this.table;
+        final int l = (table.length >> 1) - 1;
+        
+        for (int j = hash(X1, X2) & l; ; j = (j - 1) & l) {
+            final int o = j << 1;
+            final long Y1 = table[o];
+            if (Y1 == 0) return false;
+            if (Y1 == X1 && table[o+1] == X2) return true;
+        }
+    }
+    
+    /**
+     * Inserts the given pair in the history. 
+     * Returns whether or not it was already present before.
+     * 
+     * @return If the pair was already present, <code>false</code> 
+     *  is returned; else the result will be <code>true</code>.
+     */
+    public boolean insert(long X1, long X2) {
+        beforeAdd();
+        final long[] table = this.table;
+        final int l = (table.length >> 1) - 1;
+        
+        for (int j = hash(X1, X2) & l; ; j = (j - 1) & l) {
+            final int o = j << 1;
+            final long Y1 = table[o];
+            if (Y1 == 0) {
+                table[o] = X1;
+                table[o+1] = X2;
+                afterAdd(o);
+                return true;
+            }
+            if (Y1 == X1 && table[o+1] == X2) return false;
+        }
+    }
+    
+    /**
+     * Adds the given pair to the history. No equal pair is already
+     * stored in the history: this is an <em>essential precondition</em>
+     * to this method.
+     */
+    public void add(long X1, long X2) {
+        beforeAdd();
+        final long[] table = this.table;
+        final int l = (table.length >> 1) - 1;
+        
+        int j = hash(X1, X2) & l;
+        while (table[j << 1] != 0) j = (j - 1) & l;
+        table[j << 1] = X1;
+        table[(j << 1) + 1] = X2;
+        afterAdd(j << 1);
+    }
+}
@@ -0,0 +1,315 @@
+package runtime.history;
+
+import runtime.Trail;
+import util.Resettable;
+
+/**
+ * <p>
+ * Base class of hash based propagation histories that store tuples
+ * of constraint identifiers of a fixed (small) arity packed in a
+ * single primitive <code>long</code> array, instead of as
+ * {@link TuplePropagationHistory.Tuple} objects. As
+ * {@link ProbingTuplePropagationHistory}, the implementation is
+ * based on an open-addressing hash table with linear probing collision
+ * resolution: a bucket simply consists of <code>arity</code> consecutive
+ * elements of the array. Since identifiers are never zero,
+ * an empty bucket is recognised by a zero first element.
+ * No objects are allocated when adding tuples to, or looking up
+ * tuples in, a packed history.
+ * </p>
+ * <p>
+ * The load factor of a packed history is fixed at .75. If it is
+ * created with a {@link TerminationLog}, tuples that refer to removed
+ * constraints are dropped as in {@link TuplePropagationHistory}.
+ * </p>
+ * <p>
+ * <strong>Note that this implementation is not synchronized.</strong>
+ * </p>
+ *
+ * @see PackedPairPropagationHistory
+ * @see PackedTriplePropagationHistory
+ */
+public abstract class PackedPropagationHistory implements Resettable {
+    /**
+     * The default initial capacity - MUST be a power of two.
+     */
+    protected final static int DEFAULT_INITIAL_CAPACITY = 16;
+
+    /**
+     * The maximum capacity: MUST be a power of two, and
+     * small enough for the table of the largest arity to fit in an array.
+     */
+    protected final static int MAXIMUM_CAPACITY = 1 << 28;
+
+    /**
+     * The table, resized as necessary. The number of buckets
+     * MUST always be a power of two.
+     */
+    protected long[] table;
+
+    /**
+     * The number of tuples contained in this history.
+     */
+    protected int size;
+
+    /**
+     * The next size value at which to resize (capacity * load factor).
+     */
+    protected int threshold;
+
+    /**
+     * The arity of the tuples, i.e. the number of array elements
+     * per bucket.
+     */
+    private final int arity;
+
+    /**
+     * The log of removed constraints used to drop dead tuples,
+     * or <code>null</code> if tuples are never dropped.
+     */
+    private final TerminationLog log;
+
+    /**
+     * The epoch of the log at the time of the last sweep.
+     */
+    private int epoch;
+
+    /**
+     * The trail on which insertions are recorded while a choice point
+     * is open, or <code>null</code> if insertions are never undone.
+     */
+    private final Trail trail;
+
+    protected PackedPropagationHistory(int arity, TerminationLog log) {
+        this(arity, log, null);
+    }
+    protected PackedPropagationHistory(int arity, TerminationLog log, Trail trail) {
+        this.arity = arity;
+        this.trail = trail;
+        table = new long[DEFAULT_INITIAL_CAPACITY * arity];
+        threshold = (3 * DEFAULT_INITIAL_CAPACITY) >> 2;
+        if ((this.log = log) != null) epoch = log.getEpoch();
+    }
+
+    /**
+     * Returns the number of tuples in this history.
+     *
+     * @return the number of tuples in this history.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns <tt>true</tt> if this history contains no tuples.
+     *
+     * @return <tt>true</tt> if this history contains no tuples
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the number of buckets of the current table.
+     *
+     * @return The number of buckets of the current table.
+     */
+    protected final int capacity() {
+        return table.length / arity;
+    }
+
+    /**
+     * Has to be called before a new tuple is added: drops dead tuples
+     * if enough constraints were removed since the last sweep.
+     */
+    protected final void beforeAdd() {
+        if (log != null && log.getEpoch() - epoch > size) sweep();
+    }
+
+    /**
+     * Has to be called after a new tuple was added.
+     *
+     * @param offset
+     *  The offset in the table at which the new tuple was added.
+     */
+    protected final void afterAdd(int offset) {
+        if (trail != null && trail.isTrailing()) trail.push(new Insertion(offset));
+        if (++size > threshold) resize();
+    }
+
+    private final class Insertion extends Trail.Entry {
+        private final long[] tuple;
+
+        Insertion(int offset) {
+            System.arraycopy(table, offset, tuple = new long[arity], 0, arity);
+        }
+
+        @Override
+        protected void undo() {
+            remove(tuple);
+        }
+    }
+
+    /**
+     * Removes the given tuple from this history, if it is present.
+     * The tuples that follow it in the same run of occupied buckets
+     * are reinserted, so that no lookup is cut short by the emptied bucket.
+     *
+     * @param tuple
+     *  An array containing the <code>arity</code> elements of the tuple.
+     */
+    protected final void remove(long[] tuple) {
+        final long[] table = this.table;
+        final int arity = this.arity;
+        final int l = capacity() - 1;
+
+        int j = hashAt(tuple, 0) & l;
+        search: for (; table[j * arity] != 0; j = (j - 1) & l) {
+            for (int i = 0; i < arity; i++)
+                if (table[j * arity + i] != tuple[i]) continue search;
+
+            for (int i = 0; i < arity; i++) table[j * arity + i] = 0;
+            size--;
+
+            final long[] temp = new long[arity];
+            for (j = (j - 1) & l; table[j * arity] != 0; j = (j - 1) & l) {
+                final int o = j * arity;
+                int k = hashAt(table, o) & l;
+                System.arraycopy(table, o, temp, 0, arity);
+                for (int i = 0; i < arity; i++) table[o + i] = 0;
+                while (table[k * arity] != 0) k = (k - 1) & l;
+                System.arraycopy(temp, 0, table, k * arity, arity);
+            }
+            return;
+        }
+    }
+
+    protected static int hash(int h, long X) {
+        return 37 * h + (int)(X ^ (X >>> 32));
+    }
+    protected static int spread(int h) {
+        h ^= (h >>> 20) ^ (h >>> 12);
+        return h ^ (h >>> 7) ^ (h >>> 4);
+    }
+
+    /**
+     * Computes the hash of the tuple stored at the given offset
+     * in the given table. The result has to be consistent with
+     * the hash functions used by the subclasses.
+     */
+    private int hashAt(long[] table, int offset) {
+        int h = 23;
+        for (int i = 0; i < arity; i++) h = hash(h, table[offset + i]);
+        return spread(h);
+    }
+
+    /**
+     * Rehashes the contents of this history into a new table with a
+     * larger capacity. If tuples can be dropped, this is tried first.
+     *
+     * If current capacity is MAXIMUM_CAPACITY, this method does not
+     * resize the history, but sets threshold to MAXIMUM_CAPACITY-1.
+     * This has the effect of preventing future calls.
+     */
+    protected final void resize() {
+        if (log != null && log.getEpoch() != epoch) {
+            sweep();
+            if (size <= threshold) return;
+        }
+
+        int oldCapacity = capacity();
+        if (oldCapacity == MAXIMUM_CAPACITY) {
+            if (size == MAXIMUM_CAPACITY)
+                throw new IllegalStateException("Maximum capacity exhausted.");
+            threshold = MAXIMUM_CAPACITY-1;
+            return;
+        }
+
+        rehash(oldCapacity << 1, null);
+    }
+
+    /**
+     * Drops all tuples that refer to removed constraints, and
+     * shrinks the table if it has become sparse.
+     */
+    protected final void sweep() {
+        final TerminationLog log = this.log;
+        epoch = log.getEpoch();
+
+        final long[] table = this.table;
+        final int arity = this.arity;
+        int live = 0;
+        for (int o = 0; o < table.length; o += arity)
+            if (table[o] != 0 && !refersToRemoved(table, o, log)) live++;
+        if (live == size) return;
+
+        int capacity = capacity();
+        while (capacity > DEFAULT_INITIAL_CAPACITY && ((3 * capacity) >> 3) > (live << 1))
+            capacity >>= 1;
+        rehash(capacity, log);
+    }
+
+    private boolean refersToRemoved(long[] table, int offset, TerminationLog log) {
+        for (int i = 0; i < arity; i++)
+            if (log.contains(table[offset + i])) return true;
+        return false;
+    }
+
+    /**
+     * Rebuilds the table with the given capacity, leaving out
+     * all tuples that refer to removed constraints, if a log is given.
+     */
+    private void rehash(int newCapacity, TerminationLog filter) {
+        final long[] oldTable = table;
+        final int arity = this.arity;
+        final long[] newTable = new long[newCapacity * arity];
+        final int l = newCapacity - 1;
+        int size = 0;
+
+        for (int o = 0; o < oldTable.length; o += arity) {
+            if (oldTable[o] == 0) continue;
+            if (filter != null && refersToRemoved(oldTable, o, filter)) continue;
+
+            int j = hashAt(oldTable, o) & l;
+            while (newTable[j * arity] != 0) j = (j - 1) & l;
+            System.arraycopy(oldTable, o, newTable, j * arity, arity);
+            size++;
+        }
+
+        table = newTable;
+        this.size = size;
+        threshold = (3 * newCapacity) >> 2;
+    }
+
+    /**
+     * Removes all tuples from this history.
+     * The history will be empty after this call returns.
+     */
+    public void reset() {
+        table = new long[table.length];
+        size = 0;
+    }
+
+    /**
+     * Returns a string representation of this propagation history.
+     *
+     * @return a string representation of this propagation history.
+     */
+    @Override
+    public String toString() {
+        final long[] table = this.table;
+        final StringBuilder result = new StringBuilder();
+        result.append('[');
+        for (int o = 0; o < table.length; o += arity) {
+            if (table[o] == 0) continue;
+            if (result.length() > 1) result.append(", ");
+            result.append('(');
+            for (int i = 0; i < arity; i++) {
+                if (i != 0) result.append(", ");
+                result.append(table[o + i]);
+            }
+            result.append(')');
+        }
+        return result.append(']').toString();
+    }
+}
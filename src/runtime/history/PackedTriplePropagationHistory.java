@@ -0,0 +1,106 @@
+package runtime.history;
+
+import runtime.Trail;
+
+/**
+ * A propagation history for triples of constraint identifiers, 
+ * packed in a primitive array (see {@link PackedPropagationHistory}).
+ */
+public final class PackedTriplePropagationHistory extends PackedPropagationHistory {
+
+    public PackedTriplePropagationHistory() {
+        this(null);
+    }
+    
+    /**
+     * Constructs an empty history that drops triples once one of the 
+     * constraints they refer to is recorded as removed in the given log.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     */
+    public PackedTriplePropagationHistory(TerminationLog log) {
+        super(3, log);
+    }
+    
+    /**
+     * Constructs an empty history as {@link #PackedTriplePropagationHistory(TerminationLog)},
+     * that records its insertions on the given trail while a choice
+     * point is open, so they can be undone.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param trail
+     *  The trail to record insertions on (can be <code>null</code>).
+     */
+    public PackedTriplePropagationHistory(TerminationLog log, Trail trail) {
+        super(3, log, trail);
+    }
+    
+    protected static int hash(long X1, long X2, long X3) {
+        return spread(hash(hash(hash(23, X1), X2), X3));
+    }
+    
+    /**
+     * Returns whether or not this history contains the given triple.
+     * 
+     * @return <code>true</code> iff this history contains the given triple;
+     *  <code>false</code> otherwise.
+     */
+    public boolean contains(long X1, long X2, long X3) {
+        final long[] table = this.table;
+        final int l = (table.length / 3) - 1;
+        
+        for (int j = hash(X1, X2, X3) & l; ; j = (j - 1) & l) {
+            final int o = j * 3;
+            final long Y1 = table[o];
+            if (Y1 == 0) return false;
+            if (Y1 == X1 && table[o+1] == X2 && table[o+2] == X3) return true;
+        }
+    }
+    
+    /**
+     * Inserts the given triple in the history. 
+     * Returns whether or not it was already present before.
+     * 
+     * @return If the triple was already present, <code>false</code> 
+     *  is returned; else the result will be <code>true</code>.
+     */
+    public boolean insert(long X1, long X2, long X3) {
+        beforeAdd();
+        final long[] table = this.table;
+        final int l = (table.length / 3) - 1;
+        
+        for (int j = hash(X1, X2, X3) & l; ; j = (j - 1) & l) {
+            final int o = j * 3;
+            final long Y1 = table[o];
+            if (Y1 == 0) {
+                table[o] = X1;
+                table[o+1] = X2;
+                table[o+2] = X3;
+                afterAdd(o);
+                return true;
+            }
+            if (Y1 == X1 && table[o+1] == X2 && table[o+2] == X3) return false;
+        }
+    }
+    
+    /**
+     * Adds the given triple to the history. No equal triple is already
+     * stored in the history: this is an <em>essential precondition</em>
+     * to this method.
+     */
+    public void add(long X1, long X2, long X3) {
+        beforeAdd();
+        final long[] table = this.table;
+        final int l = (table.length / 3) - 1;
+        
+        int j = hash(X1, X2, X3) & l;
+        while (table[j * 3] != 0) j = (j - 1) & l;
+        final int o = j * 3;
+        table[o] = X1;
+        table[o+1] = X2;
+        table[o+2] = X3;
+        afterAdd(o);
+    }
+}
@@ -0,0 +1,288 @@
+package runtime.history;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Records which constraints can still be referred to by propagation
+ * histories. Handlers with propagation histories register the identifiers
+ * they allocate (see {@link #register(long)}), and record the removal
+ * of the corresponding constraints (see {@link #add(long)}).
+ * Propagation histories use the log to drop entries that refer to
+ * removed constraints: these can never be matched again.
+ * Identifiers that were never registered, such as those allocated
+ * by handlers without propagation histories, are considered removed
+ * as well: no propagation history refers to them.
+ * </p>
+ * <p>
+ * Only the identifiers that are registered but not yet removed are kept,
+ * in a bit set: a dense window over the most recently registered
+ * identifiers, of bounded size, and below that window only the
+ * words that still have bits set. A constraint that lives long
+ * (or of which the removal is never recorded) therefore costs at most
+ * one word, and does not prevent the window from moving on.
+ * The <em>epoch</em> of a log is the number of removals it recorded,
+ * which allows histories to tell cheaply whether anything changed
+ * since they last dropped their dead entries.
+ * </p>
+ * <p>
+ * <strong>Note that this implementation is not synchronized.</strong>
+ * </p>
+ *
+ * @see runtime.ConstraintSystem#getTerminationLog()
+ */
+public final class TerminationLog {
+
+    /**
+     * The maximal number of words of the dense window.
+     */
+    final static int MAXIMUM_WINDOW = 1 << 10;
+
+    /**
+     * The dense window: bit <code>i</code> of <code>words[j]</code>
+     * is set iff identifier <code>64 * (offset + j) + i</code>
+     * is registered and not removed.
+     */
+    private long[] words;
+
+    /**
+     * The index of the word at <code>words[0]</code>.
+     */
+    private long offset;
+
+    /**
+     * The words below the dense window that have bits set:
+     * <code>sparseWords[i]</code> is the word with index
+     * <code>sparseIndexes[i]</code>, sorted on these indexes.
+     */
+    private long[] sparseIndexes, sparseWords;
+
+    private int sparseSize;
+
+    private int epoch;
+
+    public TerminationLog() {
+        words = new long[16];
+        sparseIndexes = new long[8];
+        sparseWords = new long[8];
+    }
+
+    /**
+     * Registers the identifier of a constraint that propagation
+     * histories may refer to, until its removal is recorded.
+     *
+     * @param ID
+     *  A fresh (strictly positive) constraint identifier.
+     */
+    public void register(long ID) {
+        final long index = ID >>> 6;
+        if (index < offset) {
+            final int i = sparseInsert(index);
+            sparseWords[i] |= 1L << ID;
+        } else {
+            if (index - offset >= words.length) slide(index);
+            words[(int)(index - offset)] |= 1L << ID;
+        }
+    }
+
+    /**
+     * Records the removal of the constraint with the given identifier.
+     *
+     * @param ID
+     *  The (strictly positive) identifier of the removed constraint.
+     */
+    public void add(long ID) {
+        epoch++;
+        final long index = ID >>> 6;
+        if (index >= offset) {
+            if (index - offset < words.length)
+                words[(int)(index - offset)] &= ~(1L << ID);
+        } else {
+            final int i = sparseSearch(index);
+            if (i >= 0 && (sparseWords[i] &= ~(1L << ID)) == 0) sparseRemove(i);
+        }
+    }
+
+    /**
+     * Records the removal of all constraints with an identifier
+     * in the given (inclusive) range. This takes time proportional
+     * to the size of the dense window and the number of words below
+     * it that are in range, not to the size of the range.
+     *
+     * @param first
+     *  The lowest identifier of the range.
+     * @param last
+     *  The highest identifier of the range.
+     */
+    public void addAll(long first, long last) {
+        epoch++;
+        final long firstIndex = first >>> 6, lastIndex = last >>> 6;
+
+        final long end = Math.min(lastIndex, offset + words.length - 1);
+        for (long index = Math.max(firstIndex, offset); index <= end; index++)
+            words[(int)(index - offset)] &= ~mask(index, first, last);
+
+        int i = sparseSearch(firstIndex), j;
+        if (i < 0) i = -i - 1;
+        for (j = i; i < sparseSize && sparseIndexes[i] <= lastIndex; i++) {
+            final long word = sparseWords[i] & ~mask(sparseIndexes[i], first, last);
+            if (word != 0) {
+                sparseIndexes[j] = sparseIndexes[i];
+                sparseWords[j++] = word;
+            }
+        }
+        if (j < i) {
+            System.arraycopy(sparseIndexes, i, sparseIndexes, j, sparseSize - i);
+            System.arraycopy(sparseWords, i, sparseWords, j, sparseSize - i);
+            sparseSize -= i - j;
+        }
+    }
+
+    /**
+     * Checks whether the constraint with the given identifier
+     * has been removed. Negated identifiers, as used by some
+     * propagation histories, are treated as the identifier itself.
+     *
+     * @param ID
+     *  A (non-zero) constraint identifier.
+     * @return <code>true</code> if the constraint with the given
+     *  identifier is removed, or its identifier was never registered;
+     *  <code>false</code> otherwise.
+     */
+    public boolean contains(long ID) {
+        if (ID < 0) ID = -ID;
+        final long index = ID >>> 6, word;
+        if (index >= offset) {
+            if (index - offset >= words.length) return true;
+            word = words[(int)(index - offset)];
+        } else {
+            final int i = sparseSearch(index);
+            if (i < 0) return true;
+            word = sparseWords[i];
+        }
+        return (word & (1L << ID)) == 0;
+    }
+
+    /**
+     * Checks whether all constraints with an identifier in the given
+     * (inclusive) range have been removed.
+     *
+     * @param first
+     *  The lowest identifier of the range.
+     * @param last
+     *  The highest identifier of the range.
+     * @return <code>true</code> if no identifier in the given range
+     *  is registered and not removed; <code>false</code> otherwise.
+     */
+    public boolean containsAll(long first, long last) {
+        final long firstIndex = first >>> 6, lastIndex = last >>> 6;
+
+        final long end = Math.min(lastIndex, offset + words.length - 1);
+        for (long index = Math.max(firstIndex, offset); index <= end; index++)
+            if ((words[(int)(index - offset)] & mask(index, first, last)) != 0) return false;
+
+        int i = sparseSearch(firstIndex);
+        if (i < 0) i = -i - 1;
+        for (; i < sparseSize && sparseIndexes[i] <= lastIndex; i++)
+            if ((sparseWords[i] & mask(sparseIndexes[i], first, last)) != 0) return false;
+
+        return true;
+    }
+
+    /**
+     * Returns the number of removals recorded by this log.
+     * Histories can compare this number with the epoch of their
+     * last sweep to see whether sweeping again can be worthwhile.
+     *
+     * @return The number of removals recorded by this log.
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Returns the number of words this log currently uses.
+     */
+    int getNbWords() {
+        return words.length + sparseSize;
+    }
+
+    /**
+     * Moves the dense window up until it includes the word with the
+     * given index. Leading words without bits set are dropped; if the
+     * window would grow larger than {@link #MAXIMUM_WINDOW}, the words
+     * that fall out of it are moved below the window instead.
+     */
+    private void slide(long index) {
+        final long[] words = this.words;
+        final int length = words.length;
+
+        int first = 0;
+        while (first < length && words[first] == 0) first++;
+        long start = (first == length)? index : offset + first;
+        if (index - start >= MAXIMUM_WINDOW) {
+            start = index - MAXIMUM_WINDOW + 1;
+            final long spilled = Math.min(start - offset, length);
+            for (int i = first; i < spilled; i++)
+                if (words[i] != 0) sparseAppend(offset + i, words[i]);
+        }
+        final int skip = (int)Math.min(start - offset, length), kept = length - skip;
+
+        final int needed = (int)(index - start + 1);
+        if (needed > length) {
+            int capacity = length;
+            while (capacity < needed) capacity <<= 1;
+            final long[] result = new long[capacity];
+            System.arraycopy(words, skip, result, 0, kept);
+            this.words = result;
+        } else {
+            System.arraycopy(words, skip, words, 0, kept);
+            Arrays.fill(words, kept, length, 0);
+        }
+        offset = start;
+    }
+
+    /**
+     * Returns the bits of the word with the given index that
+     * correspond to identifiers in the given (inclusive) range.
+     */
+    private static long mask(long index, long first, long last) {
+        long result = -1L;
+        if (index == first >>> 6) result &= -1L << first;
+        if (index == last >>> 6) result &= -1L >>> (63 - (last & 63));
+        return result;
+    }
+
+    private int sparseSearch(long index) {
+        return Arrays.binarySearch(sparseIndexes, 0, sparseSize, index);
+    }
+
+    private void sparseAppend(long index, long word) {
+        final int i = sparseInsert(sparseSize, index);
+        sparseWords[i] = word;
+    }
+
+    private int sparseInsert(long index) {
+        final int i = sparseSearch(index);
+        return (i >= 0)? i : sparseInsert(-i - 1, index);
+    }
+
+    private int sparseInsert(int i, long index) {
+        if (sparseSize == sparseIndexes.length) {
+            sparseIndexes = Arrays.copyOf(sparseIndexes, 2 * sparseSize);
+            sparseWords = Arrays.copyOf(sparseWords, 2 * sparseSize);
+        }
+        System.arraycopy(sparseIndexes, i, sparseIndexes, i + 1, sparseSize - i);
+        System.arraycopy(sparseWords, i, sparseWords, i + 1, sparseSize - i);
+        sparseIndexes[i] = index;
+        sparseWords[i] = 0;
+        sparseSize++;
+        return i;
+    }
+
+    private void sparseRemove(int i) {
+        System.arraycopy(sparseIndexes, i + 1, sparseIndexes, i, sparseSize - i - 1);
+        System.arraycopy(sparseWords, i + 1, sparseWords, i, sparseSize - i - 1);
+        sparseSize--;
+    }
+}
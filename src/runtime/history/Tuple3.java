@@ -28,6 +28,7 @@
 
 package runtime.history;
 
+import runtime.history.TerminationLog;
 import runtime.history.TuplePropagationHistory;
 
 /* @javax.annotation.Generated(
@@ -35,15 +36,15 @@ import runtime.history.TuplePropagationHistory;
 	date = "2008-03-10T10:38:16.896+01:00",
 	comments = "http://www.cs.kuleuven.be/~petervw/JCHR/") */
 public final class Tuple3 extends TuplePropagationHistory.Tuple {
-	private final int X1;
-	private final int X2;
-	private final int X3;
+	private final long X1;
+	private final long X2;
+	private final long X3;
 
-	public Tuple3(int X1, int X2, int X3) {
+	public Tuple3(long X1, long X2, long X3) {
 		this.X1 = X1;
 		this.X2 = X2;
 		this.X3 = X3;
-		int hash = 37 * (37 * (37 * (23) + X1) + X2) + X3;
+		int hash = 37 * (37 * (37 * (23) + (int)(X1 ^ (X1 >>> 32))) + (int)(X2 ^ (X2 >>> 32))) + (int)(X3 ^ (X3 >>> 32));
 		hash ^= (hash >>> 20) ^ (hash >>> 12);
 		this.hash = hash ^ (hash >>> 7) ^ (hash >>> 4);
 	}
@@ -66,6 +67,13 @@ public final class Tuple3 extends TuplePropagationHistory.Tuple {
 		    && (this.X3 == other.X3);
 	}
 
+	@Override
+	protected boolean refersToRemoved(TerminationLog log) {
+		return log.contains(X1)
+		    || log.contains(X2)
+		    || log.contains(X3);
+	}
+
 	@Override
 	public String toString() {
 		final StringBuilder result = new StringBuilder(48);
@@ -1,5 +1,6 @@
 package runtime.history;
 
+import runtime.Trail;
 import util.Resettable;
 
 /**
@@ -97,6 +98,29 @@ public class TuplePropagationHistory implements Resettable {
      * The load factor for the hash table.
      */
     final float loadFactor;
+    
+    /**
+     * The log of removed constraints used to drop dead tuples,
+     * or <code>null</code> if tuples are never dropped.
+     */
+    private final TerminationLog log;
+    
+    /**
+     * The epoch of the log at the time of the last sweep.
+     */
+    private int epoch;
+    
+    /**
+     * The filter in front of the table, or <code>null</code>
+     * if all lookups consult the table.
+     */
+    private MembershipFilter filter;
+    
+    /**
+     * The trail on which insertions are recorded while a choice point
+     * is open, or <code>null</code> if insertions are never undone.
+     */
+    private final Trail trail;
 
     /**
      * Constructs an empty <tt>IdPropagationHistory</tt> with the specified initial
@@ -126,6 +150,8 @@ public class TuplePropagationHistory implements Resettable {
         this.loadFactor = loadFactor;
         threshold = (int)(capacity * loadFactor);
         table = new Tuple[capacity];
+        log = null;
+        trail = null;
     }
 
     /**
@@ -143,11 +169,64 @@ public class TuplePropagationHistory implements Resettable {
      * Constructs an empty <tt>IdPropagationHistory</tt> with the default initial capacity
      * (16) and the default load factor (0.75).
      */
-    @SuppressWarnings("unchecked")
     public TuplePropagationHistory() {
+        this((TerminationLog)null);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> with the default initial capacity
+     * (16) and the default load factor (0.75), that drops tuples once 
+     * one of the constraints they refer to is recorded as removed in 
+     * the given log.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     */
+    @SuppressWarnings("unchecked")
+    public TuplePropagationHistory(TerminationLog log) {
+        this(log, false);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> with the default initial capacity
+     * (16) and the default load factor (0.75), that drops tuples once 
+     * one of the constraints they refer to is recorded as removed in 
+     * the given log, and that optionally puts a {@link MembershipFilter} 
+     * in front of its table.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param filtered
+     *  Whether or not most lookups of absent tuples should be
+     *  answered by a filter, without consulting the table.
+     */
+    @SuppressWarnings("unchecked")
+    public TuplePropagationHistory(TerminationLog log, boolean filtered) {
+        this(log, filtered, null);
+    }
+    
+    /**
+     * Constructs an empty <tt>IdPropagationHistory</tt> as
+     * {@link #TuplePropagationHistory(TerminationLog, boolean)}, 
+     * that records its insertions on the given trail while a choice 
+     * point is open, so they can be undone.
+     * 
+     * @param log
+     *  The log of removed constraints (can be <code>null</code>).
+     * @param filtered
+     *  Whether or not most lookups of absent tuples should be
+     *  answered by a filter, without consulting the table.
+     * @param trail
+     *  The trail to record insertions on (can be <code>null</code>).
+     */
+    @SuppressWarnings("unchecked")
+    public TuplePropagationHistory(TerminationLog log, boolean filtered, Trail trail) {
+        this.trail = trail;
         this.loadFactor = DEFAULT_LOAD_FACTOR;
         threshold = (int)(DEFAULT_INITIAL_CAPACITY * DEFAULT_LOAD_FACTOR);
         table = new Tuple[DEFAULT_INITIAL_CAPACITY];
+        if ((this.log = log) != null) epoch = log.getEpoch();
+        if (filtered) filter = new MembershipFilter(DEFAULT_INITIAL_CAPACITY);
     }
 
     /**
@@ -184,6 +263,7 @@ public class TuplePropagationHistory implements Resettable {
      */
     public boolean contains(Tuple tuple) {
         int hash = tuple.hash;
+        if (filter != null && !filter.mightContain(hash)) return false;
         for (Tuple t = table[(hash & (table.length-1))]; t != null; t = t.next)
             if (t.hash == hash && t.equals(tuple)) return true;
         return false;
@@ -199,7 +279,9 @@ public class TuplePropagationHistory implements Resettable {
      *  is returned; else the result will be <code>true</code>.
      */
     public boolean insert(Tuple tuple) {
+        if (log != null && log.getEpoch() - epoch > size) sweep();
         int hash = tuple.hash;
+        if (filter != null) filter.add(hash);
         int i = hash & (table.length-1);
         
         for (Tuple t = table[i]; t != null; t = t.next)
@@ -209,6 +291,7 @@ public class TuplePropagationHistory implements Resettable {
         tuple.next = table[i]; 
         table[i] = tuple;
         if (size++ > threshold) resize();
+        trailInsertion(tuple);
         
         return true;
     }
@@ -222,10 +305,30 @@ public class TuplePropagationHistory implements Resettable {
      *  The new tuple to put in the history.
      */
     public void add(Tuple tuple) {
+        if (log != null && log.getEpoch() - epoch > size) sweep();
+        if (filter != null) filter.add(tuple.hash);
         int i = tuple.hash & (table.length-1);
         tuple.next = table[i]; 
         table[i] = tuple;
         if (size++ > threshold) resize();
+        trailInsertion(tuple);
+    }
+    
+    private void trailInsertion(Tuple tuple) {
+    	if (trail != null && trail.isTrailing()) trail.push(new Insertion(tuple));
+    }
+    
+    private final class Insertion extends Trail.Entry {
+    	private final Tuple tuple;
+    	
+    	Insertion(Tuple tuple) {
+    		this.tuple = tuple;
+    	}
+    	
+    	@Override
+    	protected void undo() {
+    		remove(tuple);
+    	}
     }
     
     /**
@@ -235,18 +338,26 @@ public class TuplePropagationHistory implements Resettable {
      * If current capacity is MAXIMUM_CAPACITY, this method does not
      * resize the map, but sets threshold to Integer.MAX_VALUE.
      * This has the effect of preventing future calls.
+     * If tuples can be dropped, this is tried first.
      */
     private final void resize() {
-        Tuple[] oldTable = table;
-        int oldCapacity = oldTable.length;
+        if (log != null && log.getEpoch() != epoch) {
+            sweep();
+            if (size <= threshold) return;
+        }
+        
+        int oldCapacity = table.length;
         
         if (oldCapacity == MAXIMUM_CAPACITY) {
             threshold = Integer.MAX_VALUE;
             return;
         }
         
-        int newCapacity = table.length << 1;
-
+        rehash(oldCapacity << 1);
+    }
+    
+    private final void rehash(int newCapacity) {
+        Tuple[] oldTable = table;
         Tuple[] newTable = new Tuple[newCapacity];
         
         for (int j = 0; j < oldTable.length; j++) {
@@ -264,6 +375,47 @@ public class TuplePropagationHistory implements Resettable {
         }
         table = newTable;
         threshold = (int)(newCapacity * loadFactor);
+        if (filter != null) rebuildFilter();
+    }
+    
+    private void rebuildFilter() {
+        final MembershipFilter filter = this.filter;
+        final Tuple[] table = this.table;
+        filter.clear(table.length);
+        for (int i = 0; i < table.length; i++)
+            for (Tuple t = table[i]; t != null; t = t.next)
+                filter.add(t.hash);
+    }
+
+    /**
+     * Drops all tuples that refer to removed constraints, and 
+     * shrinks the table if it has become sparse.
+     */
+    protected void sweep() {
+        final TerminationLog log = this.log;
+        epoch = log.getEpoch();
+        
+        final Tuple[] table = this.table;
+        int live = 0;
+        for (int i = 0; i < table.length; i++) {
+            Tuple prev = null;
+            for (Tuple t = table[i]; t != null; t = t.next) {
+                if (t.refersToRemoved(log)) {
+                    if (prev == null) table[i] = t.next; else prev.next = t.next;
+                } else {
+                    prev = t;
+                    live++;
+                }
+            }
+        }
+        size = live;
+        
+        int capacity = table.length;
+        while (capacity > DEFAULT_INITIAL_CAPACITY 
+                && (int)((capacity >> 1) * loadFactor) > (live << 1))
+            capacity >>= 1;
+        if (capacity != table.length) rehash(capacity);
+        else if (filter != null) rebuildFilter();
     }
 
     /**
@@ -273,23 +425,20 @@ public class TuplePropagationHistory implements Resettable {
      *  the tuple that is to be removed from the index
      */
     public void remove(Tuple tuple) {
-    	int hash = tuple.hash;
-        hash ^= (hash >>> 20) ^ (hash >>> 12);
-        hash = hash ^ (hash >>> 7) ^ (hash >>> 4);
-        int i = hash & (table.length-1);
+    	final int hash = tuple.hash;
+        final int i = hash & (table.length-1);
 
-        size--;
-        
-        Tuple prev = table[i];
-        if (prev.hash == hash && tuple.equals(prev)) {
-        	table[i] = prev.next;
-        } else {
-        	Tuple current = prev.next;
-    		while (current.hash != hash || !tuple.equals(current)) {
-    			prev = current;
-    			current = current.next;
-    		}
-            prev.next = current.next;
+        Tuple prev = null;
+        for (Tuple current = table[i]; current != null; current = current.next) {
+        	if (current.hash == hash && tuple.equals(current)) {
+        		if (prev == null)
+        			table[i] = current.next;
+        		else
+        			prev.next = current.next;
+        		size--;
+        		return;
+        	}
+        	prev = current;
         }
     }
 
@@ -302,6 +451,7 @@ public class TuplePropagationHistory implements Resettable {
         for (int i = 0; i < tab.length; i++)
             tab[i] = null;
         size = 0;
+        if (filter != null) filter.clear(tab.length);
     }
 
     protected static class Tuple {
@@ -312,6 +462,19 @@ public class TuplePropagationHistory implements Resettable {
     	public final int hashCode() {
         	return hash;
     	}
+        
+        /**
+         * Does this tuple contain the identifier of a constraint 
+         * that has been removed? If so, it can never be matched again.
+         * The default implementation conservatively returns 
+         * <code>false</code>.
+         * 
+         * @param log
+         *  The log of removed constraints.
+         */
+        protected boolean refersToRemoved(TerminationLog log) {
+        	return false;
+        }
     }
     
     /**
@@ -0,0 +1,88 @@
+package runtime.list;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import util.Resettable;
+
+/**
+ * An index for constraints keyed on a <code>boolean</code> or an
+ * <code>enum</code> value: one slot (typically holding a list of
+ * constraints) per possible value. Slots are addressed directly
+ * using {@link #indexOf(boolean)} or {@link #indexOf(Enum)}, so
+ * no hashing or key objects are needed.
+ * Empty slots are <code>null</code>.
+ */
+public final class ArrayIndex<V> implements Iterable<V>, Resettable {
+
+    private final Object[] slots;
+
+    /**
+     * Creates an index for <code>boolean</code> keys.
+     */
+    public ArrayIndex() {
+        this(2);
+    }
+
+    /**
+     * Creates an index for keys of the given <code>enum</code> type.
+     * Besides one slot per constant, a slot is reserved for
+     * the <code>null</code> key.
+     *
+     * @param enumType
+     *  The type of the keys.
+     */
+    public ArrayIndex(Class<? extends Enum<?>> enumType) {
+        this(enumType.getEnumConstants().length + 1);
+    }
+
+    private ArrayIndex(int size) {
+        slots = new Object[size];
+    }
+
+    public static int indexOf(boolean key) {
+        return key? 1 : 0;
+    }
+    public static int indexOf(Enum<?> key) {
+        return (key == null)? 0 : key.ordinal() + 1;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int index) {
+        return (V)slots[index];
+    }
+
+    public void put(int index, V value) {
+        slots[index] = value;
+    }
+
+    public void reset() {
+        final Object[] slots = this.slots;
+        for (int i = 0; i < slots.length; i++) slots[i] = null;
+    }
+
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private int index;
+
+            public boolean hasNext() {
+                final Object[] slots = ArrayIndex.this.slots;
+                while (index < slots.length) {
+                    if (slots[index] != null) return true;
+                    index++;
+                }
+                return false;
+            }
+
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return (V)slots[index++];
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -1,5 +1,7 @@
 package runtime.list;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import runtime.Constraint;
 import runtime.DoublyLinkedConstraintList;
 import runtime.Handler.RehashableKey;
@@ -8,9 +10,22 @@ public abstract class RehashableDoublyLinkedConstraintList<T extends Constraint>
 	extends DoublyLinkedConstraintList<T>
 	implements RehashableKey {
 	
-	private static int $idCounter;
-	private final int ID = --$idCounter;
+	private final static AtomicInteger $idCounter = new AtomicInteger();
+	private final int ID = $idCounter.decrementAndGet();
 	public final int getRehashableKeyId() {
 		return ID;
 	}
+	
+	/**
+	 * Checks whether the constraints in this list were stored in 
+	 * a generation of the constraint store that has expired
+	 * (see {@link runtime.Handler#expireGeneration()}). 
+	 * All constraints in a key belong to the same generation, 
+	 * and an expired key must not be rehashed into the current store.
+	 */
+	protected final boolean isExpired() {
+		final DoublyLinkedConstraintList.Node<T> first = firstNode();
+		return first != null && first.getValue() != null 
+			&& first.getValue().isExpired();
+	}
 }
\ No newline at end of file
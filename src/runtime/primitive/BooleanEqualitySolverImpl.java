@@ -4,8 +4,8 @@ import java.util.Iterator;
 
 import runtime.Constraint;
 import runtime.ConstraintSystem;
-import runtime.DoublyLinkedConstraintList;
 import runtime.FailureException;
+import runtime.ObserverList;
 
 public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 
@@ -28,17 +28,18 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
             if (Xrepr.value != value)
                 throw new FailureException("Cannot make equal: " + Xrepr.value + " != " + value);
         } else if (!constraintSystem.isQueuing()) {
+            if (constraintSystem.isTrailing()) Xrepr.trail(constraintSystem.getTrail());
             Xrepr.value = value;
             Xrepr.hasValue = true;
 
             Xrepr.rehashAllAndDispose();
             
-            final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+            final ObserverList<Constraint> observers = Xrepr.variableObservers;
             if (observers != null) {
                 Xrepr.variableObservers = null;
                 final Iterator<Constraint> iter = observers.iterator();
                 while (iter.hasNext()) 
-                    iter.next().reactivate();   /* notify */
+                    constraintSystem.reactivate(iter.next());   /* notify */
             }
         } else {
         	constraintSystem.new QueuedBuiltInConstraint() {
@@ -55,17 +56,18 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
             if (Yrepr.value != value)
                 throw new FailureException("Cannot make equal: " + Yrepr.value + " != " + value);
         } else if (!constraintSystem.isQueuing()) {
+            if (constraintSystem.isTrailing()) Yrepr.trail(constraintSystem.getTrail());
             Yrepr.value = value;
             Yrepr.hasValue = true;
 
             Yrepr.rehashAllAndDispose();
             
-            final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+            final ObserverList<Constraint> observers = Yrepr.variableObservers;
             if (observers != null) {
                 Yrepr.variableObservers = null;
                 final Iterator<Constraint> iter = observers.iterator();
                 while (iter.hasNext()) 
-                    iter.next().reactivate();   /* notify */
+                    constraintSystem.reactivate(iter.next());   /* notify */
             }
         } else {
         	constraintSystem.new QueuedBuiltInConstraint() {
@@ -83,6 +85,11 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
         
         if (Xrepr != Yrepr) {
         	if (!constraintSystem.isQueuing()) {
+	            final boolean trailing = constraintSystem.isTrailing();
+	            if (trailing) {
+	                Xrepr.trail(constraintSystem.getTrail());
+	                Yrepr.trail(constraintSystem.getTrail());
+	            }
 	            final boolean 
 	                XhasValue = Xrepr.hasValue, 
 	                YhasValue = Yrepr.hasValue;
@@ -102,12 +109,12 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                    } else {                               // (2) ground var
 	                        Yrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Yrepr.variableObservers;
 	                        if (observers != null) {
 	                            Yrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    }
 	                } else {
@@ -116,12 +123,12 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                        Xrepr.hasValue = true;
 	                        Xrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Xrepr.variableObservers;
 	                        if (observers != null) {
 	                            Xrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (4) var var
 	                        if (Yrepr.hashObservers != null) {
@@ -129,14 +136,17 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                            Yrepr.hashObservers = null;
 	                        }
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+	                        final ObserverList<Constraint> Xobs, Yobs;
 	                        if ((Yobs = Yrepr.variableObservers) != null) {
 	                            Yrepr.variableObservers = null;
 	                            if ((Xobs = Xrepr.variableObservers) != null) {
 	                            	final Iterator<Constraint> iter = Xobs.iterator();
-	                            	Xobs.mergeWith(Yobs);
+	                            	if (trailing)
+	                            	    Xrepr.variableObservers = Xobs.concat(Yobs);
+	                            	else
+	                            	    Xobs.mergeWith(Yobs);
 	                                while (iter.hasNext()) 
-	                                    iter.next().reactivate();   /* notify */
+	                                    constraintSystem.reactivate(iter.next());   /* notify */
 	                            } else {
 	                                Xrepr.variableObservers = Yobs;
 	                            }
@@ -154,12 +164,12 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                    } else {                               // (2) var ground 
 	                        Xrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Xrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Xrepr.variableObservers;
 	                        if (observers != null) {
 	                            Xrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    }
 	                } else {
@@ -168,12 +178,12 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                        Yrepr.hasValue = true;
 	                        Yrepr.rehashAllAndDispose();
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> observers = Yrepr.variableObservers;
+	                        final ObserverList<Constraint> observers = Yrepr.variableObservers;
 	                        if (observers != null) {
 	                            Yrepr.variableObservers = null;
 	                            final Iterator<Constraint> iter = observers.iterator();
 	                            while (iter.hasNext()) 
-	                                iter.next().reactivate();   /* notify */
+	                                constraintSystem.reactivate(iter.next());   /* notify */
 	                        }
 	                    } else {                               // (2) var var
 	                        if (Xrepr.hashObservers != null) {
@@ -181,14 +191,17 @@ public class BooleanEqualitySolverImpl implements BooleanEqualitySolver {
 	                            Xrepr.hashObservers = null;
 	                        }
 	                        
-	                        final DoublyLinkedConstraintList<Constraint> Xobs, Yobs;
+	                        final ObserverList<Constraint> Xobs, Yobs;
 	                        if ((Xobs = Xrepr.variableObservers) != null) {
 	                            Xrepr.variableObservers = null;
 	                            if ((Yobs = Yrepr.variableObservers) != null) {
 	                            	final Iterator<Constraint> iter = Yobs.iterator();
-	                            	Yobs.mergeWith(Xobs);
+	                            	if (trailing)
+	                            	    Yrepr.variableObservers = Yobs.concat(Xobs);
+	                            	else
+	                            	    Yobs.mergeWith(Xobs);
 	                                while (iter.hasNext()) 
-	                                    iter.next().reactivate();   /* notify */
+	                                    constraintSystem.reactivate(iter.next());   /* notify */
 	                            } else {
 	                                Yrepr.variableObservers = Xobs;
 	                            }
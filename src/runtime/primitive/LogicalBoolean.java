@@ -2,8 +2,10 @@ package runtime.primitive;
 
 import runtime.BuiltInConstraintObservable;
 import runtime.Constraint;
-import runtime.DoublyLinkedConstraintList;
+import runtime.IdGenerator;
 import runtime.InstantiationException;
+import runtime.ObserverList;
+import runtime.Trail;
 import runtime.Handler.RehashableKey;
 import runtime.hash.HashObservable;
 import runtime.hash.RehashableKeySet;
@@ -23,14 +25,19 @@ public class LogicalBoolean implements BuiltInConstraintObservable, HashObservab
 
     protected int rank;
 
-    protected DoublyLinkedConstraintList<Constraint> variableObservers;
+    protected ObserverList<Constraint> variableObservers;
     
     protected RehashableKeySet hashObservers; 
     
+    /**
+     * Whether the state of this variable is recorded on a trail with an
+     * open choice point: paths are not compressed across such variables,
+     * as the link to their parent can still be undone.
+     */
+    private boolean trailed;
+    
     private String name;
 
-    private static int counter;
-
     @JCHR_Declare
     public LogicalBoolean() {
         // NOP
@@ -57,9 +64,9 @@ public class LogicalBoolean implements BuiltInConstraintObservable, HashObservab
     public final void addBuiltInConstraintObserver(Constraint constraint) {
         LogicalBoolean found = find();
         if (! found.hasValue) {
-            DoublyLinkedConstraintList<Constraint> observers = found.variableObservers;
+            ObserverList<Constraint> observers = found.variableObservers;
             if (observers == null)
-                found.variableObservers = new DoublyLinkedConstraintList<Constraint>(constraint);
+                found.variableObservers = new ObserverList<Constraint>(constraint);
             else
                 observers.addFirst(constraint);
         }
@@ -143,10 +150,68 @@ public class LogicalBoolean implements BuiltInConstraintObservable, HashObservab
     }
 
     public final LogicalBoolean find() {
-        if (parent != this)
-            return (parent = parent.find());
-        else
-            return this;
+    	if (parent == this) return this;
+    	LogicalBoolean root = parent, stop = trailed? this : null, temp;
+    	while ((temp = root.parent) != root) {
+    		if (stop == null && root.trailed) stop = root;
+    		root = temp;
+    	}
+    	if (stop == null) stop = root;
+    	// compress the path up to the first link that can still be undone
+        LogicalBoolean current = this;
+        while (current != stop) {
+        	temp = current.parent;
+        	current.parent = stop;
+        	current = temp;
+        }
+        return root;
+    }
+    
+    /**
+     * Records the current state of this variable on the given trail,
+     * so it can be restored if the changes that follow are undone.
+     */
+    final void trail(Trail trail) {
+    	trail.push(new Undo(this));
+    }
+    
+    private final static class Undo extends Trail.Entry {
+    	private final LogicalBoolean logical;
+    	private final boolean value;
+    	private final boolean hasValue;
+    	private final LogicalBoolean parent;
+    	private final int rank;
+    	private final ObserverList<Constraint> variableObservers;
+    	private final RehashableKeySet hashObservers;
+    	private final boolean trailed;
+    	
+    	Undo(LogicalBoolean logical) {
+    		this.logical = logical;
+    		value = logical.value;
+    		hasValue = logical.hasValue;
+    		parent = logical.parent;
+    		rank = logical.rank;
+    		variableObservers = logical.variableObservers;
+    		hashObservers = logical.hashObservers;
+    		trailed = logical.trailed;
+    		logical.trailed = true;
+    	}
+    	
+    	@Override
+    	protected void undo() {
+    		logical.value = value;
+    		logical.hasValue = hasValue;
+    		logical.parent = parent;
+    		logical.rank = rank;
+    		logical.variableObservers = variableObservers;
+    		logical.hashObservers = hashObservers;
+    		logical.trailed = trailed;
+    	}
+    	
+    	@Override
+    	protected void commit() {
+    		logical.trailed = false;
+    	}
     }
     
     @Override
@@ -159,7 +224,7 @@ public class LogicalBoolean implements BuiltInConstraintObservable, HashObservab
     }
     
     public String getName() {
-        if (name == null) name = "$" + counter++;
+        if (name == null) name = IdGenerator.generateUniqueId();
         return name;
     }
 
@@ -0,0 +1,538 @@
+package runtime.tree;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+import runtime.Constraint;
+import runtime.ConstraintIterable;
+import runtime.DoublyLinkedConstraintList;
+import runtime.SinglyLinkedConstraintList;
+
+import util.Resettable;
+
+/**
+ * <p>
+ * An ordered index of constraints, supporting efficient range lookups.
+ * Constraints are grouped per key in a constraint list, and these lists
+ * are kept sorted on their keys in a skip list. Inserting a constraint and
+ * looking up the first key of a range both take expected logarithmic time
+ * in the number of distinct keys; iterating over the range is linear in
+ * the number of constraints returned.
+ * </p>
+ * <p>
+ * Keys are compared using their natural ordering (cf.\ {@link Comparable}),
+ * much like a {@link java.util.TreeMap} without a comparator does.
+ * Constraints with a <code>null</code> key are stored as well, but are
+ * only returned by the {@link #iterator()} method, never by a
+ * {@link #lookup(Object, boolean, Object, boolean) range lookup}.
+ * </p>
+ * <p>
+ * In contrast to the iterators of the Java Collections Framework,
+ * the iterators returned by a range lookup are not fail-fast:
+ * they offer the same guarantees as the iterators of the underlying
+ * constraint lists (cf.\ {@link ConstraintIterable}).
+ * Keys whose lists became empty are removed lazily,
+ * when they are passed during a later insertion or lookup.
+ * This never disturbs iterators that are still positioned on
+ * such a key.
+ * </p>
+ * <p>
+ * Primitive keys are boxed: each insertion and each range lookup
+ * (with bounds) then costs one small allocation, unless the values
+ * are cached by the <code>valueOf</code> methods of the wrapper classes.
+ * </p>
+ * <p>
+ * <strong>Note that this implementation is not synchronized.</strong>
+ * </p>
+ */
+public final class RangeIndex<K, T extends Constraint> implements Iterable<T>, Resettable {
+
+    /**
+     * The maximum number of levels of the skip list.
+     */
+    private final static int MAXIMUM_LEVEL = 32;
+
+    private final static int
+        UNIVERSAL = 0, SEMI_UNIVERSAL = 1, EXISTENTIAL = 2;
+
+    /**
+     * Whether constraints can be removed from this index or not:
+     * this determines the type of the constraint lists used.
+     */
+    private final boolean removable;
+
+    /**
+     * The head of the skip list: a sentinel entry with
+     * the maximal number of levels.
+     */
+    private final Entry<K, T> head;
+
+    /**
+     * The number of levels currently in use (always at least one).
+     */
+    private int level = 1;
+
+    /**
+     * The list of constraints with a <code>null</code> key
+     * (lazily created).
+     */
+    private Entry<K, T> nulls;
+
+    /**
+     * Buffer used during insertions: the last entry visited on each level.
+     */
+    private final Entry<K, T>[] update;
+
+    /**
+     * The state of the (xorshift) random number generator
+     * used to determine the levels of new entries.
+     */
+    private int seed;
+
+    /**
+     * Constructs an empty <tt>RangeIndex</tt> for constraints
+     * that might be removed.
+     */
+    public RangeIndex() {
+        this(true);
+    }
+
+    /**
+     * Constructs an empty <tt>RangeIndex</tt>.
+     *
+     * @param removable
+     *  Whether or not constraints can be removed from the index
+     *  (through their storage back pointers).
+     */
+    @SuppressWarnings("unchecked")
+    public RangeIndex(boolean removable) {
+        this.removable = removable;
+        this.head = createEntry(null, MAXIMUM_LEVEL);
+        this.update = (Entry<K, T>[])new Entry<?, ?>[MAXIMUM_LEVEL];
+        this.seed = System.identityHashCode(this) | 1;
+    }
+
+    /**
+     * Inserts the given constraint in the index, using the given key.
+     * The constraint has to be newer than all constraints
+     * that are already stored in the index: this is an
+     * <em>essential precondition</em> to this method.
+     *
+     * @param key
+     *  The key of the constraint.
+     * @param constraint
+     *  The constraint to be stored.
+     */
+    public void insert(K key, T constraint) {
+        if (key == null) {
+            if (nulls == null) nulls = createEntry(null, 0);
+            nulls.add(constraint);
+            return;
+        }
+
+        final Entry<K, T>[] update = this.update;
+        Entry<K, T> x = head;
+        for (int i = level - 1; i >= 0; i--)
+            update[i] = x = advance(x, i, key, true);
+
+        Entry<K, T> next = x.next[0];
+        if (next != null && compare(next.key, key) == 0) {
+            next.add(constraint);
+        } else {
+            final int height = randomLevel();
+            if (height > level) {
+                for (int i = level; i < height; i++) update[i] = head;
+                level = height;
+            }
+
+            final Entry<K, T> entry = createEntry(key, height);
+            for (int i = 0; i < height; i++) {
+                entry.next[i] = update[i].next[i];
+                update[i].next[i] = entry;
+            }
+            entry.add(constraint);
+        }
+
+        for (int i = 0; i < level; i++) update[i] = null;
+    }
+
+    /**
+     * Returns the constraints whose keys lie in the given range.
+     * A <code>null</code> bound stands for an unbounded range
+     * (on that side).
+     *
+     * @param lower
+     *  The lower bound of the range (or <code>null</code>).
+     * @param lowerInclusive
+     *  Whether or not the lower bound itself is part of the range.
+     * @param upper
+     *  The upper bound of the range (or <code>null</code>).
+     * @param upperInclusive
+     *  Whether or not the upper bound itself is part of the range.
+     * @return The constraints whose keys lie in the given range,
+     *  or <code>null</code> if the index contains no keys in this range.
+     */
+    public ConstraintIterable<T> lookup(K lower, boolean lowerInclusive, K upper, boolean upperInclusive) {
+        Entry<K, T> x = head;
+        if (lower != null)
+            for (int i = level - 1; i >= 0; i--)
+                x = advance(x, i, lower, lowerInclusive);
+
+        final Entry<K, T> first = x.next[0];
+        if (first == null || (upper != null && exceeds(first.key, upper, upperInclusive)))
+            return null;
+        return new Range<K, T>(first, upper, upperInclusive);
+    }
+
+    /**
+     * Returns a universal iterator over all constraints in this index.
+     *
+     * @return A universal iterator over all constraints in this index.
+     */
+    public Iterator<T> iterator() {
+        return new RangeIterator<K, T>(
+            (nulls == null)? null : nulls.iterator(UNIVERSAL),
+            head.next[0], null, false, UNIVERSAL
+        );
+    }
+
+    /**
+     * Returns a spliterator over all constraints in this index, so
+     * that they can be traversed in parallel. The spliterator is
+     * {@link Spliterator#SIZED}: this index does not keep count of its
+     * constraints, so it is walked once more to count them when the
+     * size is first needed (traversing all constraints without
+     * splitting does not need the size). Split off parts are copied
+     * to arrays, as by {@link Spliterators#spliterator(Iterator, long, int)}.
+     * <br/>
+     * Unlike the iterators, the spliterator should only be used
+     * while the index is not modified (e.g. in between handler calls):
+     * its size is no longer exact after a structural change.
+     *
+     * @return A spliterator over all constraints in this index.
+     */
+    @Override
+    public Spliterator<T> spliterator() {
+        return new IndexSpliterator<T>(this);
+    }
+
+    /**
+     * Removes all keys from this index.
+     * The constraints themselves are not terminated.
+     */
+    public void reset() {
+        for (int i = 0; i < level; i++) head.next[i] = null;
+        level = 1;
+        nulls = null;
+    }
+
+    /**
+     * Moves forward on the given level of the skip list, as long as
+     * the next key is smaller than (or, if <code>inclusive</code> is
+     * <code>false</code>, smaller than or equal to) the given key.
+     * Empty entries that are encountered on their highest level
+     * are unlinked from that level along the way.
+     */
+    private Entry<K, T> advance(Entry<K, T> x, int i, K key, boolean inclusive) {
+        Entry<K, T> next;
+        while ((next = x.next[i]) != null) {
+            if (next.levels == i + 1 && next.isEmpty()) {
+                x.next[i] = next.next[i];
+                next.levels = i;
+                continue;
+            }
+            final int c = compare(next.key, key);
+            if (c < 0 || (c == 0 && !inclusive))
+                x = next;
+            else
+                break;
+        }
+        return x;
+    }
+
+    private int randomLevel() {
+        int x = seed;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        seed = x;
+
+        int result = 1;
+        while ((x & 1) != 0 && result < MAXIMUM_LEVEL) {
+            result++;
+            x >>>= 1;
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K> int compare(K one, K other) {
+        return ((Comparable<? super K>)one).compareTo(other);
+    }
+
+    static <K> boolean exceeds(K key, K upper, boolean upperInclusive) {
+        final int c = compare(key, upper);
+        return c > 0 || (c == 0 && !upperInclusive);
+    }
+
+    private Entry<K, T> createEntry(K key, int height) {
+        return removable
+            ? new DoublyLinkedEntry<K, T>(key, height)
+            : new SinglyLinkedEntry<K, T>(key, height);
+    }
+
+    /**
+     * Returns a string representation of this index.
+     *
+     * @return a string representation of this index.
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append('{');
+        boolean first = true;
+        if (nulls != null) {
+            result.append("null=").append(nulls);
+            first = false;
+        }
+        for (Entry<K, T> x = head.next[0]; x != null; x = x.next[0]) {
+            if (x.isEmpty()) continue;
+            if (first) first = false; else result.append(", ");
+            result.append(x.key).append('=').append(x);
+        }
+        return result.append('}').toString();
+    }
+
+    private abstract static class Entry<K, T extends Constraint> {
+        final K key;
+
+        final Entry<K, T>[] next;
+
+        /**
+         * The number of levels on which this entry is still linked.
+         */
+        int levels;
+
+        @SuppressWarnings("unchecked")
+        Entry(K key, int height) {
+            this.key = key;
+            this.next = (Entry<K, T>[])new Entry<?, ?>[height];
+            this.levels = height;
+        }
+
+        abstract void add(T constraint);
+
+        abstract boolean isEmpty();
+
+        abstract Iterator<T> iterator(int kind);
+    }
+
+    private final static class DoublyLinkedEntry<K, T extends Constraint> extends Entry<K, T> {
+        private final DoublyLinkedConstraintList<T> list
+            = new DoublyLinkedConstraintList<T>();
+
+        DoublyLinkedEntry(K key, int height) {
+            super(key, height);
+        }
+
+        @Override
+        void add(T constraint) {
+            list.addFirst(constraint);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return list.isEmpty();
+        }
+
+        @Override
+        Iterator<T> iterator(int kind) {
+            switch (kind) {
+                case UNIVERSAL:
+                    return list.universalIterator();
+                case SEMI_UNIVERSAL:
+                    return list.semiUniversalIterator();
+                default:
+                    return list.existentialIterator();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return list.toString();
+        }
+    }
+
+    private final static class SinglyLinkedEntry<K, T extends Constraint> extends Entry<K, T> {
+        private final SinglyLinkedConstraintList<T> list
+            = new SinglyLinkedConstraintList<T>();
+
+        SinglyLinkedEntry(K key, int height) {
+            super(key, height);
+        }
+
+        @Override
+        void add(T constraint) {
+            list.addFirst(constraint);
+        }
+
+        @Override
+        boolean isEmpty() {
+            return list.isEmpty();
+        }
+
+        @Override
+        Iterator<T> iterator(int kind) {
+            switch (kind) {
+                case UNIVERSAL:
+                    return list.universalIterator();
+                case SEMI_UNIVERSAL:
+                    return list.semiUniversalIterator();
+                default:
+                    return list.existentialIterator();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return list.toString();
+        }
+    }
+
+    /**
+     * The result of a range lookup: all constraints, starting from
+     * a given entry, up to a given upper bound.
+     */
+    private final static class Range<K, T extends Constraint> implements ConstraintIterable<T> {
+        private final Entry<K, T> first;
+        private final K upper;
+        private final boolean upperInclusive;
+
+        Range(Entry<K, T> first, K upper, boolean upperInclusive) {
+            this.first = first;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+
+        public Iterator<T> iterator() {
+            return universalIterator();
+        }
+        public Iterator<T> universalIterator() {
+            return new RangeIterator<K, T>(null, first, upper, upperInclusive, UNIVERSAL);
+        }
+        public Iterator<T> semiUniversalIterator() {
+            return new RangeIterator<K, T>(null, first, upper, upperInclusive, SEMI_UNIVERSAL);
+        }
+        public Iterator<T> existentialIterator() {
+            return new RangeIterator<K, T>(null, first, upper, upperInclusive, EXISTENTIAL);
+        }
+    }
+
+    /**
+     * Delegates to a sized iterator spliterator, which is only created
+     * (and the constraints counted) once the size is needed.
+     */
+    private final static class IndexSpliterator<T> implements Spliterator<T> {
+        private final static int CHARACTERISTICS =
+            Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+        private Iterable<T> index;
+        private Spliterator<T> delegate;
+
+        IndexSpliterator(Iterable<T> index) {
+            this.index = index;
+        }
+
+        private Spliterator<T> getDelegate() {
+            if (delegate == null) {
+                long size = 0;
+                for (Iterator<T> iter = index.iterator(); iter.hasNext(); iter.next()) size++;
+                delegate = Spliterators.spliterator(index.iterator(), size, CHARACTERISTICS);
+                index = null;
+            }
+            return delegate;
+        }
+
+        public Spliterator<T> trySplit() {
+            return getDelegate().trySplit();
+        }
+
+        public boolean tryAdvance(Consumer<? super T> action) {
+            return getDelegate().tryAdvance(action);
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super T> action) {
+            if (delegate != null)
+                delegate.forEachRemaining(action);
+            else {
+                if (action == null) throw new NullPointerException();
+                final Iterator<T> iter = index.iterator();
+                index = null;
+                delegate = Spliterators.emptySpliterator();
+                while (iter.hasNext()) action.accept(iter.next());
+            }
+        }
+
+        public long estimateSize() {
+            return getDelegate().estimateSize();
+        }
+
+        public int characteristics() {
+            return CHARACTERISTICS | Spliterator.SIZED | Spliterator.SUBSIZED;
+        }
+    }
+
+    /**
+     * Iterates over the constraint lists of consecutive entries,
+     * until the upper bound (if any) is exceeded. Only the lowest
+     * level of the skip list is followed: entries that are unlinked
+     * during the iteration still point to their former successor,
+     * so the iteration is never disturbed by this.
+     */
+    private final static class RangeIterator<K, T extends Constraint> implements Iterator<T> {
+        private Iterator<T> current;
+        private Entry<K, T> next;
+        private final K upper;
+        private final boolean upperInclusive;
+        private final int kind;
+
+        RangeIterator(Iterator<T> current, Entry<K, T> next, K upper, boolean upperInclusive, int kind) {
+            this.current = current;
+            this.next = next;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+            this.kind = kind;
+        }
+
+        public boolean hasNext() {
+            while (current == null || !current.hasNext()) {
+                final Entry<K, T> next = this.next;
+                if (next == null || (upper != null && exceeds(next.key, upper, upperInclusive))) {
+                    this.next = null;
+                    return false;
+                }
+                current = next.iterator(kind);
+                this.next = next.next[0];
+            }
+            return true;
+        }
+
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            return current.next();
+        }
+
+        /**
+         * This operation is not supported by this iterator.
+         *
+         * @throws UnsupportedOperationException
+         */
+        public void remove() throws UnsupportedOperationException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
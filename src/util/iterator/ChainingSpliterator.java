@@ -0,0 +1,92 @@
+package util.iterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A spliterator over a sequence of spliterators, chaining them together
+ * (the spliterator counterpart of a {@link ChainingIterator}).
+ * Splitting first halves the sequence; once only one spliterator is left,
+ * that one is split. The characteristics are those shared by all
+ * remaining spliterators (except {@link Spliterator#ORDERED}: no order
+ * is defined between elements of different spliterators), and the
+ * estimated size is the sum of their estimated sizes.
+ *
+ * @see ChainingIterator
+ */
+public class ChainingSpliterator<T> implements Spliterator<T> {
+
+    private final List<Spliterator<? extends T>> spliterators;
+
+    private int index, fence;
+
+    /**
+     * Creates a new spliterator over the elements of the given spliterators.
+     *
+     * @param spliterators
+     *  The spliterators whose elements will be traversed by this spliterator.
+     *  The array is copied: the caller's array is never stored.
+     *
+     * @throws NullPointerException
+     *  If <code>spliterators</code> is a null pointer.
+     */
+    @SafeVarargs
+    public ChainingSpliterator(Spliterator<? extends T>... spliterators) {
+        this.spliterators = new ArrayList<Spliterator<? extends T>>(spliterators.length);
+        for (Spliterator<? extends T> spliterator : spliterators)
+            this.spliterators.add(spliterator);
+        this.fence = spliterators.length;
+    }
+
+    protected ChainingSpliterator(List<Spliterator<? extends T>> spliterators, int index, int fence) {
+        this.spliterators = spliterators;
+        this.index = index;
+        this.fence = fence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public Spliterator<T> trySplit() {
+        final int lo = index, n = fence - lo;
+        if (n > 1) {
+            final int mid = lo + (n >>> 1);
+            index = mid;
+            return new ChainingSpliterator<T>(spliterators, lo, mid);
+        }
+        if (n == 1)
+            return (Spliterator<T>)spliterators.get(lo).trySplit();
+        return null;
+    }
+
+    public boolean tryAdvance(Consumer<? super T> action) {
+        while (index < fence) {
+            if (spliterators.get(index).tryAdvance(action)) return true;
+            index++;
+        }
+        return false;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        while (index < fence) spliterators.get(index++).forEachRemaining(action);
+    }
+
+    public long estimateSize() {
+        long result = 0;
+        for (int i = index; i < fence; i++) {
+            result += spliterators.get(i).estimateSize();
+            if (result < 0) return Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    public int characteristics() {
+        if (index == fence) return Spliterator.SIZED | Spliterator.SUBSIZED;
+        if (fence - index == 1) return spliterators.get(index).characteristics();
+        int result = ~Spliterator.ORDERED;
+        for (int i = index; i < fence; i++)
+            result &= spliterators.get(i).characteristics();
+        return result & ~Spliterator.SORTED;
+    }
+}
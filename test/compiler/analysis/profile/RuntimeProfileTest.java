@@ -0,0 +1,208 @@
+package compiler.analysis.profile;
+
+import static compiler.codeGeneration.HandlerCompiler.analyse;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import compiler.CHRIntermediateForm.CHRIntermediateForm;
+import compiler.CHRIntermediateForm.constraints.ud.Occurrence;
+import compiler.CHRIntermediateForm.constraints.ud.UserDefinedConstraint;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.Lookup;
+import compiler.CHRIntermediateForm.constraints.ud.lookup.type.DefaultLookupType;
+import compiler.CHRIntermediateForm.constraints.ud.schedule.AbstractScheduleVisitor;
+import compiler.CHRIntermediateForm.rulez.Rule;
+import compiler.options.Options;
+
+/**
+ * Tests reading join profiles (cf. {@link RuntimeProfile}), and that
+ * the <code>-joinprofile</code> option changes the join order and the
+ * index selection of the profiled occurrences.
+ */
+public class RuntimeProfileTest {
+
+    final static String JOIN =
+        "package test.profile;\n" +
+        "public handler join {\n" +
+        "  public constraint a(int), b(int), c(int), d(int), e(int), hit(int);\n" +
+        "  rules {\n" +
+        "    local int X, Y;\n" +
+        "    r @ a(X), b(X), c(X) ==> hit(X);\n" +
+        "    s @ d(X), e(Y) ==> hit(Y);\n" +
+        "    t @ d(X), e(X) ==> hit(X);\n" +
+        "  }\n" +
+        "}\n";
+
+    final static String HEADER =
+        "rule,occurrence,attempts,fired,nanos,element,description,entries,candidates,survivors\n";
+
+    @Test
+    public void testSplitCsv() {
+        assertEquals(Arrays.asList("a", "", "c"), RuntimeProfile.splitCsv("a,,c"));
+        assertEquals(Arrays.asList("", ""), RuntimeProfile.splitCsv(","));
+        assertEquals(Arrays.asList(""), RuntimeProfile.splitCsv(""));
+        assertEquals(
+            Arrays.asList("r", "guard f(X, \"y\")", "1"),
+            RuntimeProfile.splitCsv("r,\"guard f(X, \"\"y\"\")\",1")
+        );
+        assertEquals(Arrays.asList("a,b", "\""), RuntimeProfile.splitCsv("\"a,b\",\"\"\"\""));
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        assertMalformed("", "Missing header line");
+        assertMalformed("rule;occurrence\n", "Missing header line");
+        assertMalformed(HEADER + "r,a_1,1,1,1,0,guard x,1,0\n", "Illegal number of fields on line 2");
+        assertMalformed(HEADER + "\nr,a_1,1,1,1,0,guard x,1,0,one\n", "Illegal counter on line 3");
+    }
+
+    static void assertMalformed(String csv, String message) {
+        try {
+            RuntimeProfile.read(new StringReader(csv));
+            fail();
+        } catch (IOException x) {
+            assertEquals(message, x.getMessage());
+        }
+    }
+
+    /**
+     * Fan-outs are averaged over the entries of a lookup, store sizes
+     * are the largest fan-out of an unindexed lookup of the constraint,
+     * and elements that were never reached are ignored.
+     */
+    @Test
+    public void testEstimates() throws Throwable {
+        final RuntimeProfile profile = RuntimeProfile.read(new StringReader(HEADER
+            + "r,a_1,10,4,100,0,lookup b_1 b(X) [HASH_MAP:[0]],10,50,8\n"
+            + "r,a_1,10,4,100,1,\"guard f(X, \"\"y\"\")\",8,0,2\n"
+            + "s,d_1,4,0,100,0,lookup e_1 e(Y) [" + DefaultLookupType.getInstance() + "],4,12,12\n"
+            + "s,e_1,2,0,100,0,lookup d_1 d(X) [" + DefaultLookupType.getInstance() + "],2,14,14\n"
+            + "t,d_2,0,0,0,0,lookup e_2 e(X) [HASH_MAP:[0]],0,0,0\n"
+            + "u,hit_1,3,3,100,,,,,\n"
+        ));
+        assertFalse(profile.isEmpty());
+        final CHRIntermediateForm cif = analyse(JOIN, new Options());
+
+        final RuntimeProfile.OccurrenceProfile a = profile.getOccurrenceProfile(getOccurrence(cif, "r", "a"));
+        assertNotNull(a);
+        assertEquals(5f, a.getFanOut(getOccurrence(cif, "r", "b")), 0);
+        assertTrue(a.isIndexed(getOccurrence(cif, "r", "b")));
+        assertTrue(Float.isNaN(a.getFanOut(getOccurrence(cif, "r", "c"))));
+
+        final RuntimeProfile.OccurrenceProfile d = profile.getOccurrenceProfile(getOccurrence(cif, "s", "d"));
+        assertEquals(3f, d.getFanOut(getOccurrence(cif, "s", "e")), 0);
+        assertFalse(d.isIndexed(getOccurrence(cif, "s", "e")));
+        assertNull(profile.getOccurrenceProfile(getOccurrence(cif, "t", "d")));
+
+        assertEquals(3f, profile.getStoreSize(getConstraint(cif, "e")), 0);
+        assertEquals(7f, profile.getStoreSize(getConstraint(cif, "d")), 0);
+        assertTrue(Float.isNaN(profile.getStoreSize(getConstraint(cif, "b"))));
+    }
+
+    /**
+     * Without a profile, the partners of <code>a(X)</code> are looked up
+     * in the order of the head, as their static costs are the same.
+     * A profile in which <code>b(X)</code> has a much larger fan-out than
+     * <code>c(X)</code> reverses this order; one in which the fan-outs
+     * are within a factor 2 does not.
+     */
+    @Test
+    public void testJoinOrder() throws Throwable {
+        assertEquals(Arrays.asList("b_1", "c_1"), getPartners(analyse(JOIN, new Options()), "r", "a"));
+
+        final String profile = HEADER
+            + "r,a_1,10,1,100,0,lookup b_1 b(X) [HASH_MAP:[0]],10,%d,1\n"
+            + "r,a_1,10,1,100,1,lookup c_1 c(X) [HASH_MAP:[0]],1,1,1\n";
+        assertEquals(
+            Arrays.asList("c_1", "b_1"),
+            getPartners(analyseWithProfile(String.format(profile, 30)), "r", "a")
+        );
+        assertEquals(
+            Arrays.asList("b_1", "c_1"),
+            getPartners(analyseWithProfile(String.format(profile, 15)), "r", "a")
+        );
+    }
+
+    /**
+     * Lookups are not indexed in stores that are measured to hold
+     * at most {@link compiler.analysis.indexselection.GreedyHashLookupInsertor#SMALL_STORE_SIZE}
+     * constraints on average.
+     */
+    @Test
+    public void testSmallStores() throws Throwable {
+        assertTrue(isIndexed(analyse(JOIN, new Options()), "t", "d"));
+
+        final String profile = HEADER
+            + "s,d_1,10,0,100,0,lookup e_1 e(Y) [" + DefaultLookupType.getInstance() + "],10,%d,0\n";
+        assertFalse(isIndexed(analyseWithProfile(String.format(profile, 40)), "t", "d"));
+        assertTrue(isIndexed(analyseWithProfile(String.format(profile, 50)), "t", "d"));
+    }
+
+    static CHRIntermediateForm analyseWithProfile(String csv) throws Throwable {
+        final File file = File.createTempFile("jchr", ".csv");
+        try {
+            Files.write(file.toPath(), csv.getBytes("UTF-8"));
+            return analyse(JOIN, new Options(), "-joinprofile", file.getPath());
+        } finally {
+            file.delete();
+        }
+    }
+
+    static Occurrence getOccurrence(CHRIntermediateForm cif, String rule, String constraint) {
+        for (Rule r : cif.getRules())
+            if (r.getIdentifier().equals(rule))
+                for (Occurrence occurrence : r.getPositiveHead())
+                    if (occurrence.getIdentifier().equals(constraint)) return occurrence;
+        throw new AssertionError(rule + ": " + constraint);
+    }
+
+    static UserDefinedConstraint getConstraint(CHRIntermediateForm cif, String constraint) {
+        for (UserDefinedConstraint result : cif.getUserDefinedConstraints())
+            if (result.getIdentifier().equals(constraint)) return result;
+        throw new AssertionError(constraint);
+    }
+
+    /**
+     * Returns the lookups of the schedule of the given active occurrence.
+     */
+    static List<Lookup> getLookups(CHRIntermediateForm cif, String rule, String active) throws Exception {
+        final List<Lookup> result = new ArrayList<Lookup>();
+        getOccurrence(cif, rule, active).accept(new AbstractScheduleVisitor() {
+            @Override
+            public void visit(Lookup lookup) throws Exception {
+                result.add(lookup);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Returns the names of the partners of the given active occurrence,
+     * in the order in which they are looked up.
+     */
+    static List<String> getPartners(CHRIntermediateForm cif, String rule, String active) throws Exception {
+        final List<String> result = new ArrayList<String>();
+        for (Lookup lookup : getLookups(cif, rule, active))
+            result.add(RuntimeProfile.getName(lookup.getOccurrence()));
+        return result;
+    }
+
+    static boolean isIndexed(CHRIntermediateForm cif, String rule, String active) throws Exception {
+        final List<Lookup> lookups = getLookups(cif, rule, active);
+        assertEquals(1, lookups.size());
+        return lookups.get(0).getLookupType() != DefaultLookupType.getInstance();
+    }
+}
@@ -0,0 +1,49 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests partner lookups on array indexes, used for lookups on a
+ * <code>boolean</code> (or <code>enum</code>) argument.
+ */
+public class ArrayIndexTest {
+
+    final static String FLAGS =
+        "package test.array;\n" +
+        "public handler flags {\n" +
+        "  public constraint flag(boolean, int), query(boolean), found(int);\n" +
+        "  rules {\n" +
+        "    local boolean B;\n" +
+        "    local int X;\n" +
+        "    find @ query(B) \\ flag(B, X) <=> found(X);\n" +
+        "  }\n" +
+        "}\n";
+
+    @Test
+    public void testGeneratesPrivateArrayIndex() throws Throwable {
+        final String source = HandlerCompiler.generate(FLAGS);
+        assertTrue(source.contains("private final ArrayIndex<"));
+    }
+
+    @Test
+    public void testArrayLookups() throws Throwable {
+        final Object handler = newHandler(FLAGS);
+        for (int i = 0; i < 6; i++) tell(handler, "flag", i % 3 == 0, i);
+        tell(handler, "query", true);
+
+        assertEquals(set("found(0)", "found(3)"), strings(lookup(handler, "found")));
+        assertEquals(4, lookup(handler, "flag").size());
+
+        tell(handler, "query", false);
+        assertEquals(6, lookup(handler, "found").size());
+        assertTrue(lookup(handler, "flag").isEmpty());
+    }
+}
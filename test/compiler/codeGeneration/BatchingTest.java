@@ -0,0 +1,114 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.primitive.IntEqualitySolver;
+import runtime.primitive.IntEqualitySolverImpl;
+import runtime.primitive.LogicalInt;
+
+/**
+ * Tests batched bindings (cf. {@link ConstraintSystem#beginBatch()}):
+ * constraints observing variables that are bound during a batch are
+ * reactivated once, when the batch is closed.
+ */
+public class BatchingTest {
+
+    final static String BATCH =
+        "package test.batch;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "import compiler.codeGeneration.BatchingTest;\n" +
+        "public handler batch {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint watch(LogicalInt, LogicalInt, LogicalInt), sum(int);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X, Y, Z;\n" +
+        "    count @ watch(X,Y,Z) ==> BatchingTest.activated(X, Y, Z) | sum(0);\n" +
+        "    done @ watch(X,Y,Z) ==> X == 1, Y == 2, Z == 3 | sum(6);\n" +
+        "  }\n" +
+        "}\n";
+
+    static int activations;
+
+    /**
+     * Called by the (failing) guard of the handler: counts the (re)activations
+     * of <code>watch</code> constraints.
+     */
+    public static boolean activated(LogicalInt X, LogicalInt Y, LogicalInt Z) {
+        activations++;
+        return false;
+    }
+
+    private ConstraintSystem system;
+    private IntEqualitySolver solver;
+    private Object handler;
+    private LogicalInt X, Y, Z;
+
+    @Before
+    public void setUp() throws Throwable {
+        system = ConstraintSystem.get();
+        solver = new IntEqualitySolverImpl(system);
+        handler = compile(BATCH).getConstructor(IntEqualitySolver.class).newInstance(solver);
+        X = new LogicalInt(); Y = new LogicalInt(); Z = new LogicalInt();
+        activations = 0;
+        tell(handler, "watch", X, Y, Z);
+        assertEquals(1, activations);
+    }
+
+    @Test
+    public void testUnbatched() throws Throwable {
+        solver.tellEqual(X, 1);
+        solver.tellEqual(Y, 2);
+        solver.tellEqual(Z, 3);
+        assertEquals(4, activations);
+        assertEquals(1, lookup(handler, "sum").size());
+    }
+
+    @Test
+    public void testBatched() throws Throwable {
+        system.beginBatch();
+        try {
+            solver.tellEqual(X, 1);
+            system.beginBatch();
+            try {
+                solver.tellEqual(Y, 2);
+            } finally {
+                system.endBatch();
+            }
+            assertEquals(1, activations);
+            solver.tellEqual(Z, 3);
+            assertEquals(0, lookup(handler, "sum").size());
+        } finally {
+            system.endBatch();
+        }
+        assertEquals(2, activations);
+        assertEquals(1, lookup(handler, "sum").size());
+        assertEquals(false, system.isBatching());
+    }
+
+    @Test
+    public void testBatchesAreIndependent() throws Throwable {
+        system.beginBatch();
+        solver.tellEqual(X, 1);
+        system.endBatch();
+        assertEquals(2, activations);
+
+        system.beginBatch();
+        solver.tellEqual(Y, 2);
+        solver.tellEqual(Z, 3);
+        system.endBatch();
+        assertEquals(3, activations);
+        assertEquals(1, lookup(handler, "sum").size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnbalancedEndBatch() {
+        system.endBatch();
+    }
+}
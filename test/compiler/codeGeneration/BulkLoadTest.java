@@ -0,0 +1,161 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.invoke;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.FailureException;
+import runtime.Handler;
+
+/**
+ * Tests bulk load sessions (cf. {@link Handler#beginBulkLoad()}),
+ * and the generated <code>tellAll</code> methods that use them.
+ */
+public class BulkLoadTest {
+
+    final static String BULK =
+        "package test.bulk;\n" +
+        "import compiler.codeGeneration.BulkLoadTest;\n" +
+        "public handler bulk {\n" +
+        "  public constraint item(String);\n" +
+        "  rules {\n" +
+        "    local String S;\n" +
+        "    log @ item(S) ==> BulkLoadTest.activated(S);\n" +
+        "    empty @ item(S) <=> S.isEmpty() | fail;\n" +
+        "  }\n" +
+        "}\n";
+
+    static final List<String> log = new ArrayList<String>();
+
+    /**
+     * Called by the body of the handler: logs the order
+     * in which constraints are activated.
+     */
+    public static void activated(String item) {
+        log.add(item);
+    }
+
+    private Handler handler;
+
+    @Before
+    public void setUp() throws Throwable {
+        log.clear();
+        handler = (Handler)newHandler(BULK);
+    }
+
+    /**
+     * A failure leaves the (thread local) constraint system in an
+     * inconsistent state.
+     */
+    @After
+    public void tearDown() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * Constraints told during a session are only activated (and stored)
+     * when it ends, in the order they were told.
+     */
+    @Test
+    public void testDeferredActivation() throws Throwable {
+        handler.beginBulkLoad();
+        tell(handler, "item", "a");
+        tell(handler, "item", "b");
+        tell(handler, "item", "c");
+        assertTrue(log.isEmpty());
+        assertTrue(lookup(handler, "item").isEmpty());
+
+        handler.endBulkLoad();
+        assertFalse(handler.isBulkLoading());
+        assertEquals(Arrays.asList("a", "b", "c"), log);
+        assertEquals(3, lookup(handler, "item").size());
+    }
+
+    /**
+     * A <code>tellAll</code> method joins the session in progress,
+     * and only starts (and ends) one of its own otherwise.
+     */
+    @Test
+    public void testTellAll() throws Throwable {
+        handler.beginBulkLoad();
+        tell(handler, "item", "a");
+        invoke(handler, "tellAllItem", (Object)new String[] { "b", "c" });
+        assertTrue(handler.isBulkLoading());
+        assertTrue(log.isEmpty());
+        handler.endBulkLoad();
+        assertEquals(Arrays.asList("a", "b", "c"), log);
+
+        invoke(handler, "tellAllItem", Arrays.asList("d", "e"));
+        assertFalse(handler.isBulkLoading());
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), log);
+    }
+
+    /**
+     * If telling the constraints fails half-way, the session of a
+     * <code>tellAll</code> method is still ended: the constraints told
+     * before the failure are activated, and later constraints are no
+     * longer deferred.
+     */
+    @Test
+    public void testTellAllFailure() throws Throwable {
+        final Iterable<String> items = new Iterable<String>() {
+            public Iterator<String> iterator() {
+                final Iterator<String> result = Arrays.asList("a", "b").iterator();
+                return new Iterator<String>() {
+                    public boolean hasNext() {
+                        return true;
+                    }
+                    public String next() {
+                        if (!result.hasNext()) throw new IllegalStateException("broken");
+                        return result.next();
+                    }
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+        try {
+            invoke(handler, "tellAllItem", items);
+            fail();
+        } catch (IllegalStateException x) {
+            assertEquals("broken", x.getMessage());
+        }
+        assertFalse(handler.isBulkLoading());
+        assertEquals(Arrays.asList("a", "b"), log);
+
+        tell(handler, "item", "c");
+        assertEquals(Arrays.asList("a", "b", "c"), log);
+    }
+
+    /**
+     * A failure while activating the constraints of a session
+     * ends the session as well.
+     */
+    @Test
+    public void testActivationFailure() throws Throwable {
+        try {
+            invoke(handler, "tellAllItem", (Object)new String[] { "a", "", "b" });
+            fail();
+        } catch (FailureException x) {
+            // item("")
+        }
+        assertFalse(handler.isBulkLoading());
+        assertEquals(Arrays.asList("a", ""), log);
+    }
+}
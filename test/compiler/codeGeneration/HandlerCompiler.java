@@ -0,0 +1,211 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.TupleCodeGenerator.getTupleClassName;
+import static compiler.codeGeneration.TupleCodeGenerator.getTuplePackage;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.ToolProvider;
+
+import compiler.Main;
+import compiler.CHRIntermediateForm.CHRIntermediateForm;
+import compiler.analysis.Analysis;
+import compiler.options.Options;
+
+/**
+ * Compiles JCHR sources for tests: the handler is generated in, and
+ * compiled to, a fresh temporary directory, and loaded from memory
+ * (the directory is deleted again right away). Constraints are told
+ * and inspected reflectively.
+ */
+public final class HandlerCompiler {
+
+    private HandlerCompiler() { /* non-instantiatable */ }
+
+    /**
+     * Compiles the given JCHR source, and returns the generated handler class.
+     *
+     * @param source
+     *  The JCHR source of a single handler.
+     * @param options
+     *  Compiler options, overriding those in the source.
+     */
+    public static Class<?> compile(String source, String... options) throws Throwable {
+        final Options opts = new Options();
+        final CHRIntermediateForm cif = analyse(source, opts, options);
+
+        final File dir = Files.createTempDirectory("jchr").toFile();
+        final List<String> files = new ArrayList<String>();
+
+        final String packageName = cif.getHandler().getPackageName();
+        final String typeName = HandlerCodeGenerator.getHandlerTypeName(cif.getHandler());
+        final File handlerFile = getFile(dir, packageName, typeName);
+        final HandlerCodeGenerator generator =
+            new HandlerCodeGenerator(cif, opts, new FileWriter(handlerFile));
+        generator.generate();
+        files.add(handlerFile.getPath());
+
+        for (int arity : generator.getUsedTupleArities()) {
+            final File tupleFile = getFile(dir, getTuplePackage().getName(), getTupleClassName(arity));
+            final Writer writer = new FileWriter(tupleFile);
+            new TupleCodeGenerator(writer, arity).generate();
+            files.add(tupleFile.getPath());
+        }
+
+        final List<String> arguments = new ArrayList<String>();
+        arguments.add("-nowarn");
+        arguments.add("-cp");
+        arguments.add(System.getProperty("java.class.path"));
+        arguments.add("-d");
+        arguments.add(dir.getPath());
+        arguments.addAll(files);
+        final Map<String, byte[]> classes = new HashMap<String, byte[]>();
+        try {
+            if (ToolProvider.getSystemJavaCompiler().run(null, null, null, arguments.toArray(new String[0])) != 0)
+                throw new AssertionError("Generated handler does not compile:\n"
+                    + new String(Files.readAllBytes(handlerFile.toPath())));
+            readClasses(dir, "", classes);
+        } finally {
+            delete(dir);
+        }
+
+        return new MemoryClassLoader(classes).loadClass(
+            packageName.length() == 0? typeName : packageName + '.' + typeName
+        );
+    }
+
+    private static void readClasses(File dir, String prefix, Map<String, byte[]> classes) throws IOException {
+        for (File file : dir.listFiles()) {
+            final String name = file.getName();
+            if (file.isDirectory())
+                readClasses(file, prefix + name + '.', classes);
+            else if (name.endsWith(".class"))
+                classes.put(prefix + name.substring(0, name.length() - 6), Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    private static void delete(File file) {
+        final File[] children = file.listFiles();
+        if (children != null) for (File child : children) delete(child);
+        file.delete();
+    }
+
+    private final static class MemoryClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        MemoryClassLoader(Map<String, byte[]> classes) {
+            super(HandlerCompiler.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            final byte[] bytes = classes.remove(name);
+            if (bytes == null) throw new ClassNotFoundException(name);
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Returns the Java source of the handler generated from the given
+     * JCHR source.
+     */
+    public static String generate(String source, String... options) throws Throwable {
+        final Options opts = new Options();
+        final StringWriter result = new StringWriter();
+        new HandlerCodeGenerator(analyse(source, opts, options), opts, result).generate();
+        return result.toString();
+    }
+
+    /**
+     * Returns the intermediate form of the given JCHR source, once
+     * analysed with the given options (which are processed into
+     * <code>opts</code>).
+     */
+    public static CHRIntermediateForm analyse(String source, Options opts, String... options) throws Throwable {
+        final CHRIntermediateForm result =
+            Main.constructCHRIntermediateFrom(new StringReader(source), opts);
+        opts.processOptions(options);
+        Analysis.analyse(result, opts);
+        return result;
+    }
+
+    private static File getFile(File dir, String packageName, String typeName) throws IOException {
+        final File result = new File(dir, packageName.replace('.', File.separatorChar));
+        if (!result.isDirectory() && !result.mkdirs())
+            throw new IOException("Could not create directory " + result);
+        return new File(result, typeName + ".java");
+    }
+
+    /**
+     * Compiles the given JCHR source, and returns a new instance of
+     * the generated handler (created with its default constructor).
+     */
+    public static Object newHandler(String source, String... options) throws Throwable {
+        return compile(source, options).getConstructor().newInstance();
+    }
+
+    /**
+     * Tells the constraint with the given identifier to the given handler.
+     */
+    public static void tell(Object handler, String constraint, Object... arguments) throws Throwable {
+        invoke(handler, "tell" + capitalize(constraint), arguments);
+    }
+
+    /**
+     * Returns the constraints with the given identifier in the store
+     * of the given handler.
+     */
+    public static Collection<?> lookup(Object handler, String constraint) throws Throwable {
+        return (Collection<?>)invoke(handler, "get" + capitalize(constraint) + "Constraints");
+    }
+
+    public static Object invoke(Object target, String name, Object... arguments) throws Throwable {
+        for (Method method : target.getClass().getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == arguments.length) {
+                try {
+                    return method.invoke(target, arguments);
+                } catch (InvocationTargetException x) {
+                    throw x.getCause();
+                } catch (IllegalArgumentException x) {
+                    continue;   // overloaded
+                }
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+
+    /**
+     * Returns the string representations of the given constraints.
+     */
+    public static Set<String> strings(Iterable<?> constraints) {
+        final Set<String> result = new HashSet<String>();
+        for (Object constraint : constraints) result.add(constraint.toString());
+        return result;
+    }
+
+    public static Set<String> set(String... strings) {
+        final Set<String> result = new HashSet<String>();
+        for (String string : strings) result.add(string);
+        return result;
+    }
+
+    private static String capitalize(String identifier) {
+        return Character.toUpperCase(identifier.charAt(0)) + identifier.substring(1);
+    }
+}
@@ -0,0 +1,144 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.Handler;
+import runtime.Metrics;
+
+/**
+ * Tests the counters of handlers compiled with the <code>-metrics</code>
+ * option (cf. {@link Metrics}), and measures what they cost.
+ */
+public class MetricsTest {
+
+    final static String MATCHES =
+        "package test.metrics;\n" +
+        "public handler matches {\n" +
+        "  public constraint a(int), b(int);\n" +
+        "  rules {\n" +
+        "    local int X;\n" +
+        "    match @ a(X) \\ b(X) <=> true;\n" +
+        "    once @ a(X) \\ a(X) <=> true;\n" +
+        "  }\n" +
+        "}\n";
+
+    final static String PRIMES =
+        "package test.metrics;\n" +
+        "public handler primes {\n" +
+        "  public constraint candidate(int);\n" +
+        "  private constraint prime(int);\n" +
+        "  rules {\n" +
+        "    local int N, X, Y;\n" +
+        "    one @ candidate(1) <=> true;\n" +
+        "    next @ candidate(N) <=> prime(N), candidate(Math.decrementExact(N));\n" +
+        "    absorb @ prime(Y) \\ prime(X) <=> Math.floorMod(X, Y) == 0 | true;\n" +
+        "  }\n" +
+        "}\n";
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * The counters of a small run, of which all events are known.
+     * The <code>once</code> rule removes the new duplicate (set semantics),
+     * and only constraints that were stored count as removed.
+     */
+    @Test
+    public void testCounters() throws Throwable {
+        final Handler handler = (Handler)newHandler(MATCHES, "-metrics", "on");
+        assertTrue(handler.hasMetrics());
+        tell(handler, "a", 1);
+        tell(handler, "b", 1);     // match a(1)
+        tell(handler, "b", 2);     // stored
+        tell(handler, "b", 1);     // match a(1)
+        final Metrics before = handler.getMetrics();
+        tell(handler, "a", 2);     // match b(2)
+        tell(handler, "a", 1);     // once a(1)
+
+        final Metrics metrics = handler.getMetrics();
+        assertEquals(3, metrics.get("constraint:a.activations"));
+        assertEquals(2, metrics.get("constraint:a.stores"));
+        assertEquals(0, metrics.get("constraint:a.removals"));
+        assertEquals(3, metrics.get("constraint:b.activations"));
+        assertEquals(1, metrics.get("constraint:b.stores"));
+        assertEquals(1, metrics.get("constraint:b.removals"));
+        assertEquals(0, metrics.get("constraint:b.reactivations"));
+        assertEquals(3, metrics.get("rule:match.firings"));
+        assertEquals(1, metrics.get("rule:once.firings"));
+
+        // a(X) of match, of once, and the passive (removed) a(X) of once
+        assertEquals(3, metrics.get("occurrence:a_1.attempts"));
+        assertEquals(1, metrics.get("occurrence:a_1.partners"));
+        assertEquals(3, metrics.get("occurrence:a_2.attempts"));
+        assertEquals(1, metrics.get("occurrence:a_2.partners"));
+        assertEquals(0, metrics.get("occurrence:a_3.attempts"));
+        assertEquals(3, metrics.get("occurrence:b_1.attempts"));
+        assertEquals(2, metrics.get("occurrence:b_1.partners"));
+
+        final Metrics delta = metrics.since(before);
+        assertEquals(2, delta.get("constraint:a.activations"));
+        assertEquals(0, delta.get("constraint:b.activations"));
+        assertEquals(1, delta.get("rule:match.firings"));
+        assertEquals(metrics.getNbCounters(), metrics.asMap().size());
+
+        handler.resetMetrics();
+        for (long value : handler.getMetrics().asMap().values())
+            assertEquals(0, value);
+    }
+
+    /**
+     * Handlers compiled without the option have no counters.
+     */
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNoMetrics() throws Throwable {
+        final Handler handler = (Handler)newHandler(MATCHES);
+        assertFalse(handler.hasMetrics());
+        handler.getMetrics();
+    }
+
+    /**
+     * Compares the median times of a run with and without counters,
+     * once both are warmed up. Sieving primes is about the worst case:
+     * the loops over partners do little more than increment a counter.
+     * The overhead measured is typically a few percent; only a gross
+     * regression fails the test, as timings on a shared machine are noisy.
+     */
+    @Test(timeout = 120000)
+    public void testOverhead() throws Throwable {
+        final Class<?> plain = compile(PRIMES), counting = compile(PRIMES, "-metrics", "on");
+        final int nbRuns = 41;
+        final long[] plainTimes = new long[nbRuns], countingTimes = new long[nbRuns];
+        for (int i = 0; i < 30; i++) {
+            sieve(plain);
+            sieve(counting);
+        }
+        for (int i = 0; i < nbRuns; i++) {
+            plainTimes[i] = sieve(plain);
+            countingTimes[i] = sieve(counting);
+        }
+        Arrays.sort(plainTimes);
+        Arrays.sort(countingTimes);
+        final double overhead = (double)countingTimes[nbRuns / 2] / plainTimes[nbRuns / 2] - 1;
+        System.out.printf("-metrics overhead: %.1f%%%n", 100 * overhead);
+        assertTrue("overhead " + overhead, overhead < .25);
+    }
+
+    static long sieve(Class<?> handlerClass) throws Throwable {
+        final long start = System.nanoTime();
+        tell(handlerClass.getConstructor().newInstance(), "candidate", 2000);
+        return System.nanoTime() - start;
+    }
+}
@@ -0,0 +1,74 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Regression tests for the traversal of partner constraint lists with
+ * node cursors, in particular when an occurrence is resumed through a
+ * continuation after its rule fired.
+ */
+public class PartnerCursorTest {
+
+    final static String DIJKSTRA =
+        "package test.cursor;\n" +
+        "public handler dijkstra {\n" +
+        "  public constraint dist(int, int), edge(int, int, int), source(int);\n" +
+        "  rules {\n" +
+        "    local int V, D, D1, D2, U, W;\n" +
+        "    keep @ dist(V,D1) \\ dist(V,D2) <=> D1 =< D2 | true;\n" +
+        "    init @ source(V) ==> dist(V,0);\n" +
+        "    step @ dist(V,D), edge(V,U,W) ==> dist(U, Math.addExact(D,W));\n" +
+        "  }\n" +
+        "}\n";
+
+    @Test(timeout = 60000)
+    public void testResumedPropagationTerminates() throws Throwable {
+        Object handler = newHandler(DIJKSTRA);
+        tell(handler, "edge", 0, 0, 1);
+        tell(handler, "edge", 0, 0, 91);
+        tell(handler, "edge", 0, 3, 4);
+        tell(handler, "source", 0);
+
+        assertEquals(set("dist(0, 0)", "dist(3, 4)"), strings(lookup(handler, "dist")));
+    }
+
+    final static String JOIN =
+        "package test.cursor;\n" +
+        "public handler join {\n" +
+        "  public constraint a(int, int), b(int, int), c(int, int), d(int, int), r(int, int, int, int);\n" +
+        "  rules {\n" +
+        "    local int X, I, J, K, L;\n" +
+        "    join @ a(X,I), b(X,J), c(X,K), d(X,L) ==> r(I,J,K,L);\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * Each combination of partners has to fire exactly once, whichever
+     * constraint is told last (i.e. is the active one).
+     */
+    @Test(timeout = 60000)
+    public void testPropagationWithThreePartners() throws Throwable {
+        final String[] order = { "a", "b", "c", "d" };
+        final int[] counts = { 2, 3, 2, 3 };
+
+        for (int last = 0; last < order.length; last++) {
+            Object handler = newHandler(JOIN);
+            for (int i = 0; i < order.length; i++) if (i != last)
+                for (int j = 0; j < counts[i]; j++) tell(handler, order[i], 0, j);
+            for (int j = 0; j < counts[last]; j++) tell(handler, order[last], 0, j);
+
+            Set<String> results = strings(lookup(handler, "r"));
+            assertEquals(lookup(handler, "r").size(), results.size());
+            assertEquals(2 * 3 * 2 * 3, results.size());
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.FailureException;
+import runtime.Handler;
+
+/**
+ * Tests the scheduling of the constraints told by rules with a priority
+ * (cf. {@link runtime.ConstraintSystem#schedule(int, runtime.Handler.Continuation)}).
+ */
+public class PriorityTest {
+
+    final static String PRIORITY =
+        "package test.priority;\n" +
+        "import compiler.codeGeneration.PriorityTest;\n" +
+        "public handler prio {\n" +
+        "  public constraint start, boom, low(int), high(int);\n" +
+        "  rules {\n" +
+        "    local int N;\n" +
+        "    l @ low(N) ==> PriorityTest.seen(\"low\", N) | boom;\n" +
+        "    h @ high(N) ==> PriorityTest.seen(\"high\", N) | boom;\n" +
+        "    b @ boom <=> fail;\n" +
+        "    one @ start ==> low(1) pragma priority(2);\n" +
+        "    two @ start ==> high(2) pragma priority(1);\n" +
+        "    three @ start ==> boom, low(3) pragma priority(5);\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * The priority of <code>queue</code> is only used by the pragma.
+     */
+    final static String JOBS =
+        "package test.priority;\n" +
+        "import compiler.codeGeneration.PriorityTest;\n" +
+        "public handler jobs {\n" +
+        "  public constraint start, job(int, int), run(int);\n" +
+        "  rules {\n" +
+        "    local int N, P;\n" +
+        "    queue @ start, job(N, P) ==> run(N) pragma priority(P);\n" +
+        "    log @ run(N) <=> PriorityTest.ran(N);\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * Single-source shortest paths. With the priority pragma, the distances
+     * told by <code>expand</code> are activated in order of increasing
+     * distance (Dijkstra's algorithm); without it, they are activated
+     * depth-first, as soon as they are told.
+     */
+    final static String DIJKSTRA =
+        "package test.priority;\n" +
+        "import compiler.codeGeneration.PriorityTest;\n" +
+        "public handler dijkstra {\n" +
+        "  public constraint source(int), edge(int, int, int), dist(int, int);\n" +
+        "  rules {\n" +
+        "    local int U, V, W, D, E;\n" +
+        "    start @ source(V) ==> dist(V, 0);\n" +
+        "    keep @ dist(V, D) \\ dist(V, E) <=> D =< E | true;\n" +
+        "    expand @ dist(V, D), edge(V, U, W) ==> PriorityTest.expand(V, D)\n" +
+        "        | dist(U, Math.addExact(D, W))%s;\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * Two diamonds hanging from node <code>0</code>: in each, node
+     * <code>2</code> (resp. <code>4</code>) is reached through one cheap
+     * and one expensive path, and the edges of the two diamonds are told
+     * in opposite orders, so a depth-first search takes the expensive
+     * path in one of them, whatever order it tries the edges in.
+     */
+    final static int[][] EDGES = {
+        {0, 1, 1}, {1, 2, 1}, {0, 2, 5}, {2, 5, 1},
+        {0, 4, 5}, {0, 3, 1}, {3, 4, 1}, {4, 6, 1}
+    };
+    final static String[] DISTANCES = {
+        "dist(0, 0)", "dist(1, 1)", "dist(2, 2)", "dist(3, 1)",
+        "dist(4, 2)", "dist(5, 3)", "dist(6, 3)"
+    };
+
+    static final List<String> log = new ArrayList<String>();
+
+    /**
+     * Called by the (failing) guards of the handler: logs the order
+     * in which constraints are activated.
+     */
+    public static boolean seen(String what, int n) {
+        log.add(what + n);
+        return false;
+    }
+
+    public static void ran(int job) {
+        log.add("run" + job);
+    }
+
+    static final List<Integer> expanded = new ArrayList<Integer>();
+
+    /**
+     * Called by the guard of the <code>expand</code> rule: logs the
+     * distances of the nodes that are expanded, in order.
+     */
+    public static boolean expand(int node, int distance) {
+        expanded.add(distance);
+        return true;
+    }
+
+    @Before
+    public void setUp() {
+        expanded.clear();
+        log.clear();
+    }
+
+    /**
+     * A failure leaves the (thread local) constraint system in an
+     * inconsistent state.
+     */
+    @After
+    public void tearDown() {
+        ConstraintSystem.reset();
+    }
+
+    @Test
+    public void testHighestPriorityFirst() throws Throwable {
+        final Object handler = newHandler(PRIORITY);
+        try {
+            tell(handler, "start");
+            fail();
+        } catch (FailureException x) {
+            // boom
+        }
+        // rule "one" fires first, but "two" has the higher priority
+        assertEquals(Arrays.asList("high2", "low1"), log);
+    }
+
+    @Test
+    public void testFailureClearsSchedule() throws Throwable {
+        final Handler handler = (Handler)newHandler(PRIORITY);
+        try {
+            tell(handler, "start");
+            fail();
+        } catch (FailureException x) {
+            // boom
+        }
+        // low(3) is discarded along with the failed computation
+        assertFalse(handler.getConstraintSystem().hasScheduled());
+        assertFalse(log.contains("low3"));
+    }
+
+    @Test
+    public void testPriorityPerFiring() throws Throwable {
+        final Object handler = newHandler(JOBS);
+        tell(handler, "job", 1, 3);
+        tell(handler, "job", 2, -1);
+        tell(handler, "job", 3, 2);
+        tell(handler, "job", 4, 0);
+        tell(handler, "start");
+        assertEquals(Arrays.asList("run2", "run4", "run3", "run1"), log);
+    }
+
+    /**
+     * A priority computed from the variables of the head of a rule
+     * makes the search best-first: every node is expanded once,
+     * in order of increasing distance.
+     */
+    @Test
+    public void testBestFirst() throws Throwable {
+        final Object handler = shortestPaths(" pragma priority(Math.addExact(D, W))");
+        assertEquals(set(DISTANCES), strings(lookup(handler, "dist")));
+        assertEquals(EDGES.length, expanded.size());
+        for (int i = 1; i < expanded.size(); i++)
+            assertTrue(expanded.get(i-1) <= expanded.get(i));
+    }
+
+    /**
+     * Without priorities, the distances told by rules are activated
+     * immediately: the search is depth-first, and expands some nodes
+     * more than once.
+     */
+    @Test
+    public void testDepthFirst() throws Throwable {
+        final Object handler = shortestPaths("");
+        assertEquals(set(DISTANCES), strings(lookup(handler, "dist")));
+        assertTrue(expanded.size() > EDGES.length);
+    }
+
+    static Object shortestPaths(String pragma) throws Throwable {
+        final Object handler = newHandler(String.format(DIJKSTRA, pragma));
+        for (int[] edge : EDGES) tell(handler, "edge", edge[0], edge[1], edge[2]);
+        tell(handler, "source", 0);
+        return handler;
+    }
+}
@@ -0,0 +1,115 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.invoke;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Spliterator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+/**
+ * Tests partner lookups on ordered (range) indexes, both on constraints
+ * that are never removed and on constraints that are.
+ */
+public class RangeIndexTest {
+
+    final static String RANGE =
+        "package test.range;\n" +
+        "public handler range {\n" +
+        "  public constraint item(int), query(int, int), found(int), taken(int);\n" +
+        "  rules {\n" +
+        "    local int X, L, U;\n" +
+        "    find @ query(L,U), item(X) ==> L =< X, X < U | found(X);\n" +
+        "    take @ query(L,U) \\ item(X) <=> L > X | taken(X);\n" +
+        "  }\n" +
+        "}\n";
+
+    @Test
+    public void testGeneratesRangeIndexes() throws Throwable {
+        final String source = HandlerCompiler.generate(RANGE);
+        assertTrue(source.contains("RangeIndex<java.lang.Integer, ItemConstraint>"));
+        assertTrue(source.contains("RangeIndex<java.lang.Integer, QueryConstraint>"));
+    }
+
+    @Test
+    public void testRangeLookups() throws Throwable {
+        final Object handler = newHandler(RANGE);
+        for (int i = -3; i < 10; i++) tell(handler, "item", i);
+        tell(handler, "item", 5);
+        tell(handler, "query", 3, 7);
+
+        assertEquals(
+            set("found(3)", "found(4)", "found(5)", "found(6)"),
+            strings(lookup(handler, "found"))
+        );
+        assertEquals(5, lookup(handler, "found").size());
+        assertEquals(
+            set("taken(-3)", "taken(-2)", "taken(-1)", "taken(0)", "taken(1)", "taken(2)"),
+            strings(lookup(handler, "taken"))
+        );
+        assertEquals(8, lookup(handler, "item").size());
+
+        // the active constraint looks up the (range indexed) queries
+        tell(handler, "item", 6);
+        tell(handler, "item", 7);
+        tell(handler, "item", Integer.MIN_VALUE);
+        assertEquals(6, lookup(handler, "found").size());
+        assertEquals(7, lookup(handler, "taken").size());
+        assertEquals(10, lookup(handler, "item").size());
+    }
+
+    @Test
+    public void testEmptyRanges() throws Throwable {
+        final Object handler = newHandler(RANGE);
+        for (int i = 0; i < 10; i += 2) tell(handler, "item", i);
+        tell(handler, "query", 5, 5);
+        tell(handler, "query", 9, 100);
+        tell(handler, "query", 3, 4);
+        tell(handler, "query", -100, 0);
+
+        assertEquals(0, lookup(handler, "found").size());
+        assertEquals(set("taken(0)", "taken(2)", "taken(4)", "taken(6)", "taken(8)"),
+            strings(lookup(handler, "taken")));
+        assertEquals(0, lookup(handler, "item").size());
+
+        // keys whose lists became empty are skipped
+        for (int i = 1; i < 10; i += 2) tell(handler, "item", i);
+        assertEquals(set("found(3)", "found(9)"), strings(lookup(handler, "found")));
+        assertEquals(9, lookup(handler, "taken").size());
+        assertEquals(set("item(9)"), strings(lookup(handler, "item")));
+    }
+
+    /**
+     * Streams over range indexed stores are sized, so they can be
+     * split evenly, and skip removed constraints.
+     */
+    @Test
+    public void testSizedStream() throws Throwable {
+        final Object handler = newHandler(RANGE);
+        for (int i = 0; i < 1000; i++) tell(handler, "item", i % 100);
+        tell(handler, "query", 10, 10);     // removes all items below 10
+
+        final Spliterator<?> spliterator = stream(handler, "item").spliterator();
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(900, spliterator.getExactSizeIfKnown());
+        final Spliterator<?> prefix = spliterator.trySplit();
+        assertTrue(prefix.hasCharacteristics(Spliterator.SIZED));
+        assertEquals(900, prefix.getExactSizeIfKnown() + spliterator.getExactSizeIfKnown());
+
+        assertEquals(900, stream(handler, "item").parallel().count());
+        assertEquals(strings(lookup(handler, "item")),
+            stream(handler, "item").parallel().map(Object::toString).collect(Collectors.toSet()));
+    }
+
+    static Stream<?> stream(Object handler, String constraint) throws Throwable {
+        return (Stream<?>)invoke(handler, "stream" + Character.toUpperCase(constraint.charAt(0)) + constraint.substring(1));
+    }
+}
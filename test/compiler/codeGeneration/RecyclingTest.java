@@ -0,0 +1,151 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.reflect.Field;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+
+/**
+ * Tests that handlers compiled with the <code>-recycling</code> option
+ * reuse the objects of constraints that are never stored, and of
+ * private constraints that are stored and then removed, but only once
+ * no activation can refer to them anymore.
+ */
+public class RecyclingTest {
+
+    final static String SLOTS =
+        "package test.recycling;\n" +
+        "import compiler.codeGeneration.RecyclingTest;\n" +
+        "public handler slots {\n" +
+        "  public constraint put(int), take(int), move(int, int), taken(int);\n" +
+        "  private constraint slot(int);\n" +
+        "  rules {\n" +
+        "    local int N, M;\n" +
+        "    put @ put(N) <=> slot(N);\n" +
+        "    take @ take(N), slot(N) <=> taken(N);\n" +
+        "%s" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * A rule that calls back into the handler: this makes all constraints
+     * recursive as far as stack optimizations are concerned, so these have
+     * to be disabled for constraints to remain recyclable.
+     */
+    final static String MOVE =
+        "    move @ move(N, M), slot(N) <=> RecyclingTest.moved(M);\n";
+
+    static Object handler;
+
+    static Object removed, free;
+
+    /**
+     * Called by the body of the <code>move</code> rule: tells a new
+     * <code>put</code> constraint while the removed <code>slot</code>
+     * constraint is still referred to by the activation in progress.
+     */
+    public static void moved(int slot) {
+        try {
+            removed = get(handler, "$$slotRemoved");
+            free = get(handler, "$$slotFreeList");
+            tell(handler, "put", slot);
+        } catch (Throwable x) {
+            throw new AssertionError(x);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        handler = removed = free = null;
+        ConstraintSystem.reset();
+    }
+
+    @Test
+    public void testNeverStored() throws Throwable {
+        handler = newSlots("");
+        tell(handler, "put", 1);
+        final Object put = get(handler, "$$putFreeList");
+        assertNotNull(put);
+        tell(handler, "put", 2);
+        assertSame(put, get(handler, "$$putFreeList"));
+    }
+
+    /**
+     * Removed constraints are reused once the call that removed them
+     * has returned.
+     */
+    @Test
+    public void testRemoved() throws Throwable {
+        handler = newSlots("");
+        tell(handler, "put", 1);
+        assertNull(get(handler, "$$slotFreeList"));
+        tell(handler, "take", 1);
+        final Object slot = get(handler, "$$slotFreeList");
+        assertNotNull(slot);
+        assertNull(get(slot, "$$nextFree"));
+
+        tell(handler, "put", 2);
+        assertNull(get(handler, "$$slotFreeList"));
+        tell(handler, "take", 2);
+        assertSame(slot, get(handler, "$$slotFreeList"));
+        assertEquals(set("taken(1)", "taken(2)"), strings(lookup(handler, "taken")));
+    }
+
+    /**
+     * A constraint that is removed during a call is not reused before
+     * that call returns, not even by calls it makes in turn.
+     */
+    @Test
+    public void testNestedCall() throws Throwable {
+        handler = newSlots(MOVE, "-stack", "off");
+        tell(handler, "put", 1);
+        tell(handler, "put", 2);
+        tell(handler, "take", 1);
+        tell(handler, "take", 2);
+        final Object first = get(handler, "$$slotFreeList");
+        final Object second = get(first, "$$nextFree");
+        assertNotNull(second);
+
+        tell(handler, "put", 3);
+        assertSame(second, get(handler, "$$slotFreeList"));
+        tell(handler, "move", 3, 4);
+        assertSame(first, removed);
+        assertSame(second, free);
+        assertNull(get(handler, "$$slotRemoved"));
+        assertSame(first, get(handler, "$$slotFreeList"));
+        assertNull(get(first, "$$nextFree"));
+
+        tell(handler, "take", 4);
+        assertSame(second, get(handler, "$$slotFreeList"));
+        assertSame(first, get(second, "$$nextFree"));
+        assertNotSame(first, second);
+        assertEquals(set("taken(1)", "taken(2)", "taken(4)"), strings(lookup(handler, "taken")));
+    }
+
+    static Object newSlots(String rules, String... options) throws Throwable {
+        final String[] arguments = new String[options.length + 2];
+        arguments[0] = "-recycling";
+        arguments[1] = "on";
+        System.arraycopy(options, 0, arguments, 2, options.length);
+        return compile(String.format(SLOTS, rules), arguments).getConstructor().newInstance();
+    }
+
+    static Object get(Object object, String name) throws Exception {
+        final Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+}
@@ -0,0 +1,148 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.invoke;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import runtime.Constraint;
+import runtime.ConstraintSystem;
+import runtime.history.TerminationLog;
+import runtime.primitive.IntEqualitySolver;
+import runtime.primitive.IntEqualitySolverImpl;
+import runtime.primitive.LogicalInt;
+
+/**
+ * Tests resetting handlers by expiring the generation of their store
+ * (cf. {@link runtime.Handler#expireGeneration()}).
+ */
+public class ResetTest {
+
+    final static String RESET =
+        "package test.reset;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "public handler reset {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint watch(LogicalInt), seen(int), key(int);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X; local int N;\n" +
+        "    bound @ watch(X) <=> X == 1 | seen(1);\n" +
+        "    set @ key(N) \\ key(N) <=> true;\n" +
+        "  }\n" +
+        "}\n";
+
+    private IntEqualitySolver solver;
+    private Object handler;
+
+    @Before
+    public void setUp() throws Throwable {
+        solver = new IntEqualitySolverImpl(ConstraintSystem.get());
+        handler = compile(RESET).getConstructor(IntEqualitySolver.class).newInstance(solver);
+    }
+
+    @Test
+    public void testResetEmptiesStore() throws Throwable {
+        for (int i = 0; i < 10; i++) tell(handler, "key", i % 5);
+        assertEquals(5, lookup(handler, "key").size());
+
+        invoke(handler, "reset");
+        assertEquals(0, lookup(handler, "key").size());
+        tell(handler, "key", 1);
+        tell(handler, "key", 1);
+        assertEquals(1, lookup(handler, "key").size());
+    }
+
+    @Test
+    public void testExpiredConstraintsAreNotReactivated() throws Throwable {
+        final LogicalInt X = new LogicalInt();
+        tell(handler, "watch", X);
+        final Constraint watch = (Constraint)lookup(handler, "watch").iterator().next();
+        assertTrue(watch.isAlive());
+
+        invoke(handler, "reset");
+        assertEquals(0, lookup(handler, "watch").size());
+
+        // reached through the variable: detected as expired
+        solver.tellEqual(X, 1);
+        assertEquals(0, lookup(handler, "seen").size());
+        assertFalse(watch.isAlive());
+        assertTrue(watch.isTerminated());
+    }
+
+    @Test
+    public void testNewGenerationIsReactivated() throws Throwable {
+        invoke(handler, "reset");
+        final LogicalInt X = new LogicalInt();
+        tell(handler, "watch", X);
+        solver.tellEqual(X, 1);
+        assertEquals(1, lookup(handler, "seen").size());
+        assertEquals(0, lookup(handler, "watch").size());
+    }
+
+    final static String LOGGED =
+        "package test.reset;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "public handler logged {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint p(LogicalInt), q(LogicalInt), fired(int);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X, Y;\n" +
+        "    pq @ p(X), q(Y) ==> X == Y | fired(1);\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * The constraints of an expired generation are never terminated, 
+     * but their identifiers are released in the termination log;
+     * those of another handler in the same constraint system,
+     * allocated in between, are not.
+     */
+    @Test
+    public void testResetReleasesIdentifiers() throws Throwable {
+        final Class<?> logged = compile(LOGGED);
+        final Object first = logged.getConstructor(IntEqualitySolver.class).newInstance(solver), 
+            second = logged.getConstructor(IntEqualitySolver.class).newInstance(solver);
+        final TerminationLog log = ConstraintSystem.get().getTerminationLog();
+
+        for (int i = 0; i < 100; i++) {
+            tell(first, "p", new LogicalInt());
+            tell(second, "p", new LogicalInt());
+        }
+        final long[] firstIds = ids(first), secondIds = ids(second);
+        for (long ID : firstIds) assertFalse(log.contains(ID));
+
+        final int epoch = log.getEpoch();
+        invoke(first, "reset");
+        assertTrue(log.getEpoch() > epoch);
+        for (long ID : firstIds) assertTrue(log.contains(ID));
+        for (long ID : secondIds) assertFalse(log.contains(ID));
+
+        invoke(second, "reset");
+        assertTrue(log.containsAll(firstIds[0], secondIds[secondIds.length - 1]));
+
+        // the next generation still has its histories
+        final LogicalInt X = new LogicalInt(), Y = new LogicalInt();
+        tell(first, "p", X);
+        tell(first, "q", Y);
+        solver.tellEqual(X, 1);
+        solver.tellEqual(Y, 1);
+        assertEquals(1, lookup(first, "fired").size());
+        assertFalse(log.contains(ids(first)[0]));
+    }
+
+    static long[] ids(Object handler) throws Throwable {
+        final long[] result = new long[lookup(handler, "p").size()];
+        int i = 0;
+        for (Object p : lookup(handler, "p")) result[i++] = ((Constraint)p).getConstraintId();
+        Arrays.sort(result);
+        return result;
+    }
+}
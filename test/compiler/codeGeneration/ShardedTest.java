@@ -0,0 +1,172 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.generate;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import runtime.Handler;
+import runtime.ShardedHandler;
+
+/**
+ * Tests the <code>Sharded</code> front-end of handlers compiled with
+ * the <code>-sharded</code> option (cf. {@link ShardedHandler}).
+ */
+public class ShardedTest {
+
+    @Test(timeout = 60000)
+    public void testShardedHandler() throws Throwable {
+        final Class<?> sharded = getSharded(compile(StripedTest.KEYED, "-sharded", "on"));
+        final ShardedHandler<?> handler = (ShardedHandler<?>)
+            sharded.getMethod("create", int.class).invoke(null, 3);
+        try {
+            assertEquals(3, handler.getNbShards());
+
+            final int nbKeys = 16, nbItems = 100;
+            for (int k = 0; k < nbKeys; k++) tell(handler, "total", k, 0);
+            for (int i = 0; i < nbItems; i++)
+                for (int k = 0; k < nbKeys; k++) tell(handler, "item", k, 1);
+
+            final Set<String> expected = set();
+            for (int k = 0; k < nbKeys; k++) expected.add("total(" + k + ", " + nbItems + ")");
+            assertEquals(expected, strings(lookup(handler, "total")));
+            assertEquals(expected, strings(handler.lookup()));
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    final static String EDGES =
+        "package test.sharded;\n" +
+        "public handler edges {\n" +
+        "  public constraint edge(int, int);\n" +
+        "  rules {\n" +
+        "    local int X, Y;\n" +
+        "    dup @ edge(X, Y) \\ edge(X, Y) <=> true%s;\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * A <code>partition</code> pragma selects the partitioning arguments
+     * if there is more than one candidate.
+     */
+    @Test(timeout = 60000)
+    public void testPartitionPragma() throws Throwable {
+        assertTrue(generate(String.format(EDGES, ""), "-sharded", "on").contains("submit($0, "));
+        final String pragma = String.format(EDGES, " pragma partition(Y)");
+        assertTrue(generate(pragma, "-sharded", "on").contains("submit($1, "));
+
+        final Class<?> sharded = getSharded(compile(pragma, "-sharded", "on"));
+        final ShardedHandler<?> handler = (ShardedHandler<?>)
+            sharded.getMethod("create", int.class).invoke(null, 2);
+        try {
+            for (int i = 0; i < 10; i++) tell(handler, "edge", i % 3, i % 2);
+            assertEquals(
+                set("edge(0, 0)", "edge(1, 1)", "edge(2, 0)", "edge(0, 1)", "edge(1, 0)", "edge(2, 1)"),
+                strings(handler.lookup())
+            );
+        } finally {
+            handler.shutdown();
+        }
+    }
+
+    /**
+     * A task that is submitted while the handler is shut down is either
+     * still run, or rejected: waiting for it never blocks forever.
+     */
+    @Test(timeout = 60000)
+    public void testShutdownRace() throws Throwable {
+        for (int i = 0; i < 500; i++) {
+            final Idle handler = Idle.create();
+            final Thread waiter = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (true) handler.await();
+                    } catch (IllegalStateException x) {
+                        // shut down
+                    }
+                }
+            };
+            waiter.start();
+            handler.shutdown();
+            waiter.join();
+        }
+    }
+
+    static class Idle extends ShardedHandler<Handler> {
+        private Idle() {
+            super(2);
+        }
+
+        static Idle create() {
+            final Idle result = new Idle();
+            result.start();
+            return result;
+        }
+
+        @Override
+        protected Handler createShard() {
+            return null;
+        }
+    }
+
+    /**
+     * A shard whose handler cannot be created makes {@link Failing#create()}
+     * fail, and the worker threads of the other shards are shut down again.
+     */
+    @Test(timeout = 60000)
+    public void testFailingShard() throws Throwable {
+        try {
+            Failing.create();
+            fail();
+        } catch (IllegalStateException x) {
+            assertEquals("no handler", x.getMessage());
+        }
+        assertEquals(3, Failing.THREADS.size());
+        for (Thread thread : Failing.THREADS) {
+            thread.join();
+            assertFalse(thread.isAlive());
+        }
+    }
+
+    static class Failing extends ShardedHandler<Handler> {
+        final static Set<Thread> THREADS = Collections.synchronizedSet(new HashSet<Thread>());
+
+        private Failing() {
+            super(3);
+        }
+
+        static Failing create() {
+            final Failing result = new Failing();
+            result.start();
+            return result;
+        }
+
+        @Override
+        protected Handler createShard() {
+            THREADS.add(Thread.currentThread());
+            if (Thread.currentThread().getName().endsWith("-1"))
+                throw new IllegalStateException("no handler");
+            return null;
+        }
+    }
+
+    static Class<?> getSharded(Class<?> handler) {
+        for (Class<?> nested : handler.getClasses())
+            if (nested.getSimpleName().equals("Sharded")) return nested;
+        throw new AssertionError("No Sharded front-end generated");
+    }
+}
@@ -0,0 +1,150 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import runtime.StripedHandler;
+
+/**
+ * Tests the <code>Striped</code> front-end of handlers compiled with
+ * the <code>-striped</code> option (cf. {@link StripedHandler}):
+ * constraints told from several threads should lead to the same
+ * constraint store as when they are told from a single thread.
+ */
+public class StripedTest {
+
+    final static int NB_THREADS = 4;
+
+    final static String KEYED =
+        "package test.striped;\n" +
+        "public handler keyed {\n" +
+        "  public constraint item(int, int), total(int, int);\n" +
+        "  rules {\n" +
+        "    local int K, X, Y;\n" +
+        "    add @ total(K, X), item(K, Y) <=> total(K, Math.addExact(X, Y));\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * A partitioned handler is striped by partitioning key.
+     */
+    @Test(timeout = 60000)
+    public void testPartitionedHandler() throws Throwable {
+        final StripedHandler<?> handler = newStriped(KEYED, 3);
+        assertEquals(3, handler.getNbStripes());
+
+        final int nbKeys = 16, nbItems = 500;
+        for (int k = 0; k < nbKeys; k++) tell(handler, "total", k, 0);
+        run(new Task() {
+            public void run(int thread) throws Throwable {
+                for (int i = 0; i < nbItems; i++)
+                    for (int k = 0; k < nbKeys; k++) tell(handler, "item", k, 1);
+            }
+        });
+
+        final Set<String> expected = set();
+        for (int k = 0; k < nbKeys; k++) expected.add("total(" + k + ", " + NB_THREADS * nbItems + ")");
+        assertEquals(expected, strings(lookup(handler, "total")));
+        assertTrue(lookup(handler, "item").isEmpty());
+        assertEquals(expected, strings(handler.lookup()));
+
+        handler.reset();
+        assertTrue(handler.lookup().isEmpty());
+    }
+
+    final static String PARTS =
+        "package test.striped;\n" +
+        "public handler parts {\n" +
+        "  public constraint a(int), b(int), sum(int), c(int, int), max(int, int);\n" +
+        "  rules {\n" +
+        "    local int X, Y, K;\n" +
+        "    sum @ sum(X), sum(Y) <=> sum(Math.addExact(X, Y));\n" +
+        "    ab @ a(X), b(X) ==> sum(X);\n" +
+        "    max @ max(K, X) \\ max(K, Y) <=> X >= Y | true;\n" +
+        "    cm @ c(K, X) ==> max(K, X);\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * A handler that is not partitioned is striped by its independent
+     * parts: here {a, b, sum} and {c, max}.
+     */
+    @Test(timeout = 60000)
+    public void testIndependentParts() throws Throwable {
+        final StripedHandler<?> handler = newStriped(PARTS);
+        assertEquals(2, handler.getNbStripes());
+
+        final int n = 1000;
+        run(new Task() {
+            public void run(int thread) throws Throwable {
+                for (int i = thread; i < n; i += NB_THREADS) {
+                    tell(handler, "a", i);
+                    tell(handler, "b", i);
+                    tell(handler, "c", i % 10, i);
+                }
+            }
+        });
+
+        final Set<String> expected = set("sum(" + n * (n - 1) / 2 + ")");
+        for (int k = 0; k < 10; k++) expected.add("max(" + k + ", " + (n - 10 + k) + ")");
+        assertEquals(expected, union(strings(lookup(handler, "sum")), strings(lookup(handler, "max"))));
+        assertEquals(n, lookup(handler, "a").size());
+        assertEquals(n, lookup(handler, "c").size());
+    }
+
+    static StripedHandler<?> newStriped(String source, Object... arguments) throws Throwable {
+        for (Class<?> nested : compile(source, "-striped", "on").getClasses()) {
+            if (nested.getSimpleName().equals("Striped")) {
+                final Class<?>[] types = new Class<?>[arguments.length];
+                for (int i = 0; i < types.length; i++) types[i] = int.class;
+                return (StripedHandler<?>)nested.getConstructor(types).newInstance(arguments);
+            }
+        }
+        throw new AssertionError("No Striped front-end generated");
+    }
+
+    interface Task {
+        void run(int thread) throws Throwable;
+    }
+
+    /**
+     * Runs the given task on {@link #NB_THREADS} threads at once,
+     * and rethrows the first failure (if any).
+     */
+    static void run(final Task task) throws Throwable {
+        final List<Thread> threads = new ArrayList<Thread>(NB_THREADS);
+        final Throwable[] failures = new Throwable[NB_THREADS];
+        for (int i = 0; i < NB_THREADS; i++) {
+            final int thread = i;
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        task.run(thread);
+                    } catch (Throwable x) {
+                        failures[thread] = x;
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) thread.start();
+        for (Thread thread : threads) thread.join();
+        for (Throwable failure : failures) if (failure != null) throw failure;
+    }
+
+    static Set<String> union(Set<String> first, Set<String> second) {
+        first.addAll(second);
+        return first;
+    }
+}
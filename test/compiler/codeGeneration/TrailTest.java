@@ -0,0 +1,123 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.newHandler;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.EqualitySolverImpl;
+import runtime.Logical;
+
+/**
+ * Tests undoing changes to the constraint store and to logical
+ * variables using choice points (cf. {@link runtime.Trail}).
+ */
+public class TrailTest {
+
+    final static String TAKE =
+        "package test.trail;\n" +
+        "public handler take {\n" +
+        "  public constraint item(int), take(int);\n" +
+        "  rules {\n" +
+        "    local int N;\n" +
+        "    take @ take(N) \\ item(N) <=> N > 0 | true;\n" +
+        "  }\n" +
+        "}\n";
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    @Test
+    public void testStoreChangesAreUndone() throws Throwable {
+        final ConstraintSystem system = ConstraintSystem.get();
+        final Object handler = newHandler(TAKE, "-trailing", "on");
+        tell(handler, "item", 1);
+        tell(handler, "item", 2);
+
+        final int mark = system.mark();
+        tell(handler, "take", 1);
+        assertEquals(set("item(2)", "take(1)"), all(handler));
+
+        system.undoTo(mark);
+        assertEquals(set("item(1)", "item(2)"), all(handler));
+
+        // a revived constraint can be removed again
+        tell(handler, "take", 1);
+        tell(handler, "take", 2);
+        system.release(mark);
+        assertEquals(set("take(1)", "take(2)"), all(handler));
+    }
+
+    @Test
+    public void testNestedChoicePoints() throws Throwable {
+        final ConstraintSystem system = ConstraintSystem.get();
+        final Object handler = newHandler(TAKE, "-trailing", "on");
+        tell(handler, "item", 1);
+        tell(handler, "item", 2);
+
+        final int outer = system.mark();
+        tell(handler, "take", 1);
+        final int inner = system.mark();
+        tell(handler, "take", 2);
+        assertEquals(set("take(1)", "take(2)"), all(handler));
+
+        system.undoTo(inner);
+        assertEquals(set("item(2)", "take(1)"), all(handler));
+        system.release(inner);
+
+        system.undoTo(outer);
+        system.release(outer);
+        assertEquals(set("item(1)", "item(2)"), all(handler));
+    }
+
+    /**
+     * Paths of logical variables that are compressed while a choice point
+     * is open may not skip links that are undone afterwards.
+     */
+    @Test
+    public void testPathCompressionIsUndone() {
+        final ConstraintSystem system = ConstraintSystem.get();
+        final EqualitySolverImpl<Integer> solver = new EqualitySolverImpl<Integer>(system);
+        final Logical<Integer> A = new Logical<Integer>(), B = new Logical<Integer>(),
+            D = new Logical<Integer>(), E = new Logical<Integer>();
+        solver.tellEqual(B, A);     // A -> B
+        solver.tellEqual(D, E);     // E -> D
+
+        final int mark = system.mark();
+        solver.tellEqual(D, B);     // B -> D
+        assertSame(D, A.find());
+        solver.tellEqual(A, 1);
+        assertEquals(Integer.valueOf(1), E.getValue());
+
+        system.undoTo(mark);
+        assertSame(B, A.find());
+        assertSame(D, E.find());
+        assertTrue(A.isVar());
+        assertTrue(E.isVar());
+        system.release(mark);
+
+        solver.tellEqual(D, B);
+        assertSame(D, A.find());
+        assertSame(D, E.find());
+    }
+
+    static Set<String> all(Object handler) throws Throwable {
+        final Set<String> result = new HashSet<String>();
+        result.addAll(strings(lookup(handler, "item")));
+        result.addAll(strings(lookup(handler, "take")));
+        return result;
+    }
+}
@@ -0,0 +1,147 @@
+package compiler.codeGeneration;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.generate;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.set;
+import static compiler.codeGeneration.HandlerCompiler.strings;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.Watcher;
+import runtime.primitive.IntEqualitySolver;
+import runtime.primitive.IntEqualitySolverImpl;
+import runtime.primitive.LogicalInt;
+
+/**
+ * Tests that constraints observe their arguments through {@link Watcher}s,
+ * so that binding a variable only resumes the occurrences that depend
+ * on it, and that a constraint is still reactivated only once per batch
+ * of bindings (cf. {@link ConstraintSystem#beginBatch()}).
+ */
+public class WatcherTest {
+
+    final static String WAKE =
+        "package test.watcher;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "import compiler.codeGeneration.WatcherTest;\n" +
+        "public handler wake {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint c(LogicalInt, LogicalInt), hit(String);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X, Y;\n" +
+        "    rx @ c(X, Y) ==> WatcherTest.tried(\"x\"), X == 1 | hit(\"x\");\n" +
+        "    ry @ c(X, Y) ==> WatcherTest.tried(\"y\"), Y == 1 | hit(\"y\");\n" +
+        "    rxy @ c(X, Y) ==> WatcherTest.tried(\"xy\"), X == Y | hit(\"xy\");\n" +
+        "  }\n" +
+        "}\n";
+
+    static final List<String> tried = new ArrayList<String>();
+
+    /**
+     * Called by the guards of the handler: logs which occurrences
+     * of <code>c</code> are tried.
+     */
+    public static boolean tried(String rule) {
+        tried.add(rule);
+        return true;
+    }
+
+    private ConstraintSystem system;
+
+    private IntEqualitySolver solver;
+
+    private LogicalInt X, Y;
+
+    @After
+    public void reset() {
+        tried.clear();
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * Tells <code>c(X, Y)</code> to a new handler, compiled with
+     * the given options.
+     */
+    Object setUp(String... options) throws Throwable {
+        system = ConstraintSystem.get();
+        solver = new IntEqualitySolverImpl(system);
+        final Object handler = compile(WAKE, options).getConstructor(IntEqualitySolver.class).newInstance(solver);
+        X = new LogicalInt();
+        Y = new LogicalInt();
+        tell(handler, "c", X, Y);
+        tried.clear();
+        return handler;
+    }
+
+    /**
+     * Binding <code>X</code> only resumes the occurrences of
+     * <code>c</code> that depend on it.
+     */
+    @Test
+    public void testTargetedWakeups() throws Throwable {
+        assertTrue(generate(WAKE, "-generation", "off").contains("new Watcher("));
+        final Object handler = setUp("-generation", "off");
+        solver.tellEqual(X, 1);
+        assertEquals(sorted("x", "xy"), sorted(tried));
+        tried.clear();
+        solver.tellEqual(Y, 1);
+        assertEquals(sorted("y", "xy"), sorted(tried));
+        assertEquals(set("hit(\"x\")", "hit(\"y\")", "hit(\"xy\")"), strings(lookup(handler, "hit")));
+    }
+
+    /**
+     * With the <code>-watchers</code> option turned off, all occurrences
+     * are resumed.
+     */
+    @Test
+    public void testWatchersOff() throws Throwable {
+        assertFalse(generate(WAKE, "-generation", "off", "-watchers", "off").contains("new Watcher("));
+        final Object handler = setUp("-generation", "off", "-watchers", "off");
+        solver.tellEqual(X, 1);
+        assertEquals(sorted("x", "y", "xy"), sorted(tried));
+        solver.tellEqual(Y, 1);
+        assertEquals(set("hit(\"x\")", "hit(\"y\")", "hit(\"xy\")"), strings(lookup(handler, "hit")));
+    }
+
+    /**
+     * A constraint whose watchers are notified several times during
+     * a batch is reactivated only once, for all occurrences concerned.
+     */
+    @Test
+    public void testBatch() throws Throwable {
+        final Object handler = setUp("-generation", "off");
+        system.beginBatch();
+        try {
+            solver.tellEqual(X, 1);
+            solver.tellEqual(Y, 1);
+            assertTrue(tried.isEmpty());
+        } finally {
+            system.endBatch();
+        }
+        assertEquals(sorted("x", "y", "xy"), sorted(tried));
+        assertEquals(set("hit(\"x\")", "hit(\"y\")", "hit(\"xy\")"), strings(lookup(handler, "hit")));
+    }
+
+    static List<String> sorted(String... strings) {
+        final List<String> result = new ArrayList<String>();
+        Collections.addAll(result, strings);
+        return sorted(result);
+    }
+
+    static List<String> sorted(List<String> strings) {
+        final List<String> result = new ArrayList<String>(strings);
+        Collections.sort(result);
+        return result;
+    }
+}
@@ -0,0 +1,111 @@
+package compiler.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import compiler.Main;
+import compiler.CHRIntermediateForm.CHRIntermediateForm;
+import compiler.CHRIntermediateForm.arg.argument.IArgument;
+import compiler.CHRIntermediateForm.arg.argument.constant.IntArgument;
+import compiler.CHRIntermediateForm.members.AbstractMethodInvocation;
+import compiler.CHRIntermediateForm.rulez.Rule;
+import compiler.CHRIntermediateForm.variables.Variable;
+import compiler.options.Options;
+
+/**
+ * Tests parsing the <code>priority</code> pragma, and using
+ * <code>priority</code> as an ordinary identifier.
+ */
+public class PriorityPragmaTest {
+
+    static CHRIntermediateForm parse(String source) throws Throwable {
+        return Main.constructCHRIntermediateFrom(new StringReader(source), new Options());
+    }
+
+    @Test
+    public void testPriorityPragma() throws Throwable {
+        final CHRIntermediateForm cif = parse(
+            "package test.parser;\n" +
+            "public handler prio {\n" +
+            "  public constraint a(int), b(int);\n" +
+            "  rules {\n" +
+            "    local int N;\n" +
+            "    first @ a(N) ==> b(N) pragma priority(3);\n" +
+            "    second @ b(N) ==> N > 0 | a(N) pragma no_history, priority(1);\n" +
+            "    third @ a(N), b(N) ==> true;\n" +
+            "  }\n" +
+            "}\n"
+        );
+        assertEquals(3, cif.getNbRules());
+        final Rule first = cif.getRules().get(0), second = cif.getRules().get(1);
+        assertTrue(first.hasPriority());
+        assertEquals(3, value(first.getPriority()));
+        assertTrue(second.hasPriority());
+        assertEquals(1, value(second.getPriority()));
+        assertFalse(cif.getRules().get(2).hasPriority());
+    }
+
+    /**
+     * Priorities can be expressions over the variables of the positive head
+     * of a rule, which are evaluated each time the rule fires.
+     */
+    @Test
+    public void testPriorityExpression() throws Throwable {
+        final CHRIntermediateForm cif = parse(
+            "package test.parser;\n" +
+            "public handler prio {\n" +
+            "  public constraint dist(int, int), edge(int, int, int);\n" +
+            "  rules {\n" +
+            "    local int U, V, W, D;\n" +
+            "    head @ dist(V, D), edge(V, U, W) ==> dist(U, Math.addExact(D, W)) pragma priority(D);\n" +
+            "    call @ dist(V, D), edge(V, U, W) ==> dist(U, Math.addExact(D, W))\n" +
+            "        pragma priority(Math.addExact(D, W));\n" +
+            "  }\n" +
+            "}\n"
+        );
+        final Rule head = cif.getRules().get(0), call = cif.getRules().get(1);
+        assertTrue(head.getPriority() instanceof Variable);
+        assertEquals("D", ((Variable)head.getPriority()).getIdentifier());
+        assertTrue(call.getPriority() instanceof AbstractMethodInvocation);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testIllegalPriority() throws Throwable {
+        parse(
+            "package test.parser;\n" +
+            "public handler prio {\n" +
+            "  public constraint a(String), b(String);\n" +
+            "  rules {\n" +
+            "    local String S;\n" +
+            "    r @ a(S) ==> b(S) pragma priority(S);\n" +
+            "  }\n" +
+            "}\n"
+        );
+    }
+
+    @Test
+    public void testPriorityIsNoKeyword() throws Throwable {
+        final CHRIntermediateForm cif = parse(
+            "package test.parser;\n" +
+            "public handler prio {\n" +
+            "  public constraint priority(int);\n" +
+            "  rules {\n" +
+            "    local int P;\n" +
+            "    priority @ priority(P) \\ priority(P) <=> true pragma priority(2);\n" +
+            "  }\n" +
+            "}\n"
+        );
+        assertEquals(1, cif.getNbUdConstraints());
+        assertEquals("priority", cif.getUserDefinedConstraints().iterator().next().getIdentifier());
+        assertEquals(2, value(cif.getRules().get(0).getPriority()));
+    }
+
+    static int value(IArgument priority) {
+        return ((IntArgument)priority).getValue();
+    }
+}
@@ -0,0 +1,147 @@
+package runtime;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.primitive.IntEqualitySolver;
+import runtime.primitive.IntEqualitySolverImpl;
+import runtime.primitive.LogicalInt;
+
+/**
+ * Tests the join profiles of handlers compiled with the <code>-profile</code>
+ * option, and their CSV and JSON exports (cf. {@link JoinProfile}).
+ */
+public class JoinProfileTest {
+
+    final static String HITS =
+        "package test.profile;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "public handler hits {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint c(LogicalInt, LogicalInt), d(int), hit(int);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X, Y;\n" +
+        "    local int N;\n" +
+        "    r @ c(X, Y), d(N) ==> X == 1 | hit(N);\n" +
+        "    q @ c(X, Y) ==> Y == 1 | hit(0);\n" +
+        "  }\n" +
+        "}\n";
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * A profile with two occurrences, one of which has no schedule
+     * elements, and descriptions that have to be quoted or escaped.
+     */
+    static JoinProfile newProfile() {
+        final JoinProfile.Layout layout = new JoinProfile.Layout(
+            new String[] { "r", "s" },
+            new String[] { "a_1", "b_1" },
+            new String[][] {
+                { "lookup b_1 b(X) [HASH_MAP:[0]]", "guard f(X, \"y\")" },
+                { }
+            }
+        );
+        assertEquals(4 + 2 * 2 + 4, layout.getNbCounters());
+        return new JoinProfile(layout, new long[] {
+            10, 3, 500, 4,  8, 20,  6, 0,
+            2, 2, 100, 2
+        });
+    }
+
+    @Test
+    public void testCounters() {
+        final JoinProfile profile = newProfile();
+        assertEquals(2, profile.getNbOccurrences());
+        assertEquals(10, profile.getAttempts(0));
+        assertEquals(3, profile.getFirings(0));
+        assertEquals(500, profile.getNanos(0));
+        assertEquals(4, profile.getMatches(0));
+        assertEquals(8, profile.getEntries(0, 0));
+        assertEquals(20, profile.getCandidates(0, 0));
+        assertEquals(6, profile.getSurvivors(0, 0));
+        assertEquals(6, profile.getEntries(0, 1));
+        // the last element's survivors include the matches the history rejected
+        assertEquals(4, profile.getSurvivors(0, 1));
+        assertEquals(0, profile.getNbElements(1));
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        final StringBuilder csv = new StringBuilder();
+        newProfile().writeCsv(csv);
+        assertEquals(
+            "rule,occurrence,attempts,fired,nanos,element,description,entries,candidates,survivors\n" +
+            "r,a_1,10,3,500,0,lookup b_1 b(X) [HASH_MAP:[0]],8,20,6\n" +
+            "r,a_1,10,3,500,1,\"guard f(X, \"\"y\"\")\",6,0,4\n" +
+            "s,b_1,2,2,100,,,,,\n",
+            csv.toString()
+        );
+        assertEquals(csv.toString(), newProfile().toString());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        final StringBuilder json = new StringBuilder();
+        newProfile().writeJson(json);
+        assertEquals(
+            "[\n" +
+            "  {\"rule\": \"r\", \"occurrence\": \"a_1\", \"attempts\": 10, \"fired\": 3, \"nanos\": 500, \"elements\": [\n" +
+            "    {\"element\": 0, \"description\": \"lookup b_1 b(X) [HASH_MAP:[0]]\", \"entries\": 8, \"candidates\": 20, \"survivors\": 6},\n" +
+            "    {\"element\": 1, \"description\": \"guard f(X, \\\"y\\\")\", \"entries\": 6, \"candidates\": 0, \"survivors\": 4}]},\n" +
+            "  {\"rule\": \"s\", \"occurrence\": \"b_1\", \"attempts\": 2, \"fired\": 2, \"nanos\": 100, \"elements\": []}\n" +
+            "]\n",
+            json.toString()
+        );
+    }
+
+    /**
+     * A match that is rejected by the propagation history survived the
+     * last element of the schedule, but the rule did not fire.
+     * The measured counters are those of the exports as well.
+     */
+    @Test
+    public void testHistory() throws Throwable {
+        final IntEqualitySolver solver = new IntEqualitySolverImpl(ConstraintSystem.get());
+        final Object handler = compile(HITS, "-profile", "on", "-generation", "off", "-watchers", "off")
+            .getConstructor(IntEqualitySolver.class).newInstance(solver);
+        final LogicalInt X = new LogicalInt(), Y = new LogicalInt();
+        tell(handler, "c", X, Y);
+        tell(handler, "d", 5);
+        solver.tellEqual(X, 1);     // r fires
+        solver.tellEqual(Y, 2);     // reactivates c: r matches again
+        assertEquals(1, lookup(handler, "hit").size());
+
+        final JoinProfile profile = ((Handler)handler).getJoinProfile();
+        int r = 0;
+        while (!profile.getOccurrence(r).equals("c_1")) r++;
+        assertEquals("r", profile.getRule(r));
+        assertEquals(3, profile.getAttempts(r));
+        assertEquals(2, profile.getNbElements(r));
+        assertTrue(profile.getElement(r, 0).startsWith("lookup d_1 "));
+        assertEquals(3, profile.getEntries(r, 0));
+        assertEquals(2, profile.getCandidates(r, 0));
+        assertEquals(2, profile.getEntries(r, 1));
+        assertEquals(2, profile.getMatches(r));
+        assertEquals(2, profile.getSurvivors(r, 1));
+        assertEquals(1, profile.getFirings(r));
+
+        final String csv = profile.toString();
+        assertTrue(csv, csv.contains("r,c_1,3,1,"));
+        assertTrue(csv, csv.contains(",\"guard builtin.askEqual(X, 1)\",2,0,2\n"));
+        final StringBuilder json = new StringBuilder();
+        profile.writeJson(json);
+        assertTrue(json.toString(), json.toString().contains(
+            "\"description\": \"guard builtin.askEqual(X, 1)\", \"entries\": 2, \"candidates\": 0, \"survivors\": 2}"
+        ));
+    }
+}
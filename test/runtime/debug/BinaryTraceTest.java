@@ -0,0 +1,95 @@
+package runtime.debug;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.Channels;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.ConstraintSystem;
+import runtime.Handler;
+
+/**
+ * Tests that traces written by a {@link BinaryTracer}, once decoded by
+ * a {@link BinaryTraceDecoder}, are the same as those written by a
+ * textual tracer.
+ */
+public class BinaryTraceTest {
+
+    final static String GCD =
+        "package test.trace;\n" +
+        "public handler gcd {\n" +
+        "  public constraint gcd(int);\n" +
+        "  rules {\n" +
+        "    local int N, M;\n" +
+        "    zero @ gcd(0) <=> true;\n" +
+        "    step @ gcd(N) \\ gcd(M) <=> N =< M | gcd(Math.subtractExact(M, N));\n" +
+        "  }\n" +
+        "}\n";
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * The constraints removed by a rule are terminated before the rule
+     * has fired: their dictionary entries may only be dropped afterwards,
+     * so each constraint is defined exactly once.
+     */
+    @Test
+    public void testRoundTrip() throws Throwable {
+        final Class<?> gcd = compile(GCD, "-debug", "full");
+
+        final ByteArrayOutputStream text = new ByteArrayOutputStream();
+        run(gcd, new OutputStreamTracer(new PrintStream(text, true, "UTF-8")));
+
+        final ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        final BinaryTracer tracer = new BinaryTracer(Channels.newChannel(binary), 64);
+        run(gcd, tracer);
+        tracer.close();
+
+        final ByteArrayOutputStream decoded = new ByteArrayOutputStream();
+        final int[] nbDefinitions = new int[1];
+        final long nbEvents = new BinaryTraceDecoder(
+            new ByteArrayInputStream(binary.toByteArray()),
+            new OutputStreamTracer(new PrintStream(decoded, true, "UTF-8"))
+        ) {
+            @Override
+            protected boolean decode(int event) throws IOException {
+                if (event == BinaryTracer.DEFINE_CONSTRAINT) nbDefinitions[0]++;
+                return super.decode(event);
+            }
+        }.decode();
+
+        final String expected = text.toString("UTF-8");
+        assertEquals(expected, decoded.toString("UTF-8"));
+        assertEquals(expected.split("\\R").length, nbEvents);
+        assertTrue(nbEvents > 20);
+        assertEquals(count(expected, "activated"), nbDefinitions[0]);
+    }
+
+    static void run(Class<?> handlerClass, Tracer tracer) throws Throwable {
+        ConstraintSystem.reset();
+        final Handler handler = (Handler)handlerClass.getConstructor().newInstance();
+        handler.setTracer(tracer);
+        tell(handler, "gcd", 9);
+        tell(handler, "gcd", 6);
+        tell(handler, "gcd", 4);
+    }
+
+    static int count(String trace, String event) {
+        int result = 0;
+        for (String line : trace.split("\\R"))
+            if (line.trim().startsWith(event)) result++;
+        return result;
+    }
+}
@@ -0,0 +1,139 @@
+package runtime.debug;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.Constraint;
+import runtime.ConstraintSystem;
+import runtime.Handler;
+
+/**
+ * Tests the events recorded by a {@link FlightRecorderTracer}, and that
+ * its state is restored after a rule body threw an exception.
+ */
+public class FlightRecorderTracerTest {
+
+    final static String BOOM =
+        "package test.trace;\n" +
+        "import runtime.debug.FlightRecorderTracerTest;\n" +
+        "public handler boom {\n" +
+        "  public constraint boom(int), idle(int);\n" +
+        "  rules {\n" +
+        "    local int N;\n" +
+        "    nest @ boom(N) ==> N > 0 | boom(Math.decrementExact(N));\n" +
+        "    bang @ boom(0) <=> FlightRecorderTracerTest.bang();\n" +
+        "  }\n" +
+        "}\n";
+
+    /**
+     * Called by the body of the <code>bang</code> rule.
+     */
+    public static void bang() {
+        throw new IllegalStateException("bang");
+    }
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * Every rule that fires while a recording is running is recorded
+     * as a <code>jchr.RuleFired</code> event.
+     */
+    @Test
+    public void testRuleFired() throws Throwable {
+        final Class<?> gcd = compile(BinaryTraceTest.GCD, "-debug", "full");
+        final int[] nbFires = new int[1];
+        final FlightRecorderTracer tracer = new FlightRecorderTracer() {
+            @Override
+            public void fires(String ruleId, int activeIndex, Constraint... constraints) {
+                nbFires[0]++;
+                super.fires(ruleId, activeIndex, constraints);
+            }
+        };
+
+        final File file = File.createTempFile("jchr", ".jfr");
+        try {
+            final Recording recording = new Recording();
+            try {
+                recording.enable("jchr.RuleFired").withThreshold(Duration.ZERO);
+                recording.start();
+                BinaryTraceTest.run(gcd, tracer);
+                recording.stop();
+                recording.dump(file.toPath());
+            } finally {
+                recording.close();
+            }
+            assertTrue(nbFires[0] > 5);
+            assertEquals(0, tracer.getDepth());
+
+            final List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+            final Set<String> rules = new HashSet<String>();
+            int nbFired = 0;
+            for (RecordedEvent event : events) {
+                if (!event.getEventType().getName().equals("jchr.RuleFired")) continue;
+                nbFired++;
+                assertNotNull(event.getString("constraint"));
+                rules.add(event.getString("rule"));
+            }
+            assertEquals(nbFires[0], nbFired);
+            assertTrue(rules.contains("step"));
+        } finally {
+            file.delete();
+        }
+
+        // without a recording, no events are begun but the depth still balances
+        BinaryTraceTest.run(gcd, tracer);
+        assertEquals(0, tracer.getDepth());
+    }
+
+    /**
+     * The rules that were firing when a body threw an exception are
+     * forgotten once the next call into the handler starts.
+     */
+    @Test
+    public void testException() throws Throwable {
+        final Handler handler = (Handler)compile(BOOM, "-debug", "full").getConstructor().newInstance();
+        final FlightRecorderTracer tracer = new FlightRecorderTracer();
+        handler.setTracer(tracer);
+
+        for (int i = 0; i < 3; i++) {
+            try {
+                tell(handler, "boom", 2);
+                fail();
+            } catch (IllegalStateException x) {
+                assertEquals("bang", x.getMessage());
+            }
+            assertTrue(tracer.getDepth() > 0);
+            final int depth = tracer.getDepth();
+
+            tell(handler, "idle", i);
+            assertEquals(0, tracer.getDepth());
+            try {
+                tell(handler, "boom", 2);
+                fail();
+            } catch (IllegalStateException x) {
+                // bang
+            }
+            assertEquals(depth, tracer.getDepth());
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package runtime.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
+
+import org.junit.Test;
+
+/**
+ * Tests the incremental resizing of {@link HashIndex}es: the table is
+ * grown and shrunk by migrating a few buckets per insertion, and
+ * iterators created while a resize is in progress see every entry once.
+ */
+public class IncrementalResizingTest {
+
+    @Test
+    public void testIncrementalGrow() {
+        final HashIndex<Integer> index = new HashIndex<Integer>(true);
+        final int n = 10000;
+        int nbResizes = 0;
+        for (int i = 0; i < n; i++) {
+            index.putFirstTime(i);
+            if (index.oldTable != null) nbResizes++;
+            // every entry remains reachable during the migration
+            if (i % 97 == 0)
+                for (int j = 0; j <= i; j += 13) assertEquals(Integer.valueOf(j), index.get(j));
+        }
+        assertTrue(nbResizes > 0);
+        assertEquals(n, index.size());
+        assertTrue(capacity(index) >= n / HashIndex.DEFAULT_LOAD_FACTOR);
+        assertEquals(range(0, n), toSet(index.iterator()));
+    }
+
+    @Test
+    public void testIncrementalShrink() {
+        final HashIndex<Integer> index = new HashIndex<Integer>(true);
+        final int n = 10000;
+        // entries are removed by identity
+        final Integer[] values = new Integer[n];
+        for (int i = 0; i < n; i++) index.putFirstTime(values[i] = i);
+        for (int i = n; index.oldTable != null; i++) putAndRemove(index, i);
+        final int capacity = capacity(index);
+
+        for (int i = 100; i < n; i++) index.remove(values[i]);
+        // removals never start a resize...
+        assertNull(index.oldTable);
+        assertEquals(capacity, capacity(index));
+        // ... the next insertion does
+        index.putFirstTime(n);
+        assertNotNull(index.oldTable);
+        for (int i = n + 1; index.oldTable != null; i++) putAndRemove(index, i);
+        assertTrue(capacity(index) < capacity);
+
+        final Set<Integer> expected = range(0, 100);
+        expected.add(n);
+        assertEquals(expected, toSet(index.iterator()));
+        for (int i : expected) assertEquals(Integer.valueOf(i), index.get(i));
+    }
+
+    static void putAndRemove(HashIndex<Integer> index, int i) {
+        final Integer value = i;
+        index.putFirstTime(value);
+        index.remove(value);
+    }
+
+    /**
+     * Removing each entry as it is visited removes all entries, also if
+     * the index has to shrink, and if a resize was in progress when the
+     * iteration started.
+     */
+    @Test
+    public void testRemoveWhileIterating() {
+        for (int m = 0; m < 2; m++) {
+            final HashIndex<Integer> index = new HashIndex<Integer>(true);
+            final int n = 1000;
+            for (int i = 0; i < n; i++) index.putFirstTime(i);
+            if (m == 1) {
+                while (index.oldTable == null) index.putFirstTime(index.size());
+                index.putFirstTime(index.size());
+            }
+            final boolean migrating = index.oldTable != null;
+            final int size = index.size();
+
+            int visited = 0;
+            final Iterator<Integer> iterator = index.iterator();
+            while (iterator.hasNext()) {
+                index.remove(iterator.next());
+                visited++;
+            }
+            assertEquals(size, visited);
+            assertEquals(0, index.size());
+            assertEquals(migrating, index.oldTable != null);
+            assertTrue(!index.iterator().hasNext());
+            assertEquals("{}", index.toString());
+        }
+    }
+
+    /**
+     * Insertions during an iteration advance the resize in progress:
+     * the entries that were present when the iteration started are
+     * all visited, and none is visited twice.
+     */
+    @Test
+    public void testInsertWhileIterating() {
+        final HashIndex<Integer> index = new HashIndex<Integer>(true);
+        int n = 0;
+        while (n < 1000 || index.oldTable == null) index.putFirstTime(n++);
+        final Set<Integer> expected = range(0, n);
+
+        final List<Integer> visited = new ArrayList<Integer>();
+        final Iterator<Integer> iterator = index.iterator();
+        while (iterator.hasNext()) {
+            visited.add(iterator.next());
+            index.putFirstTime(-visited.size());
+        }
+        final Set<Integer> unique = new HashSet<Integer>(visited);
+        assertEquals(visited.size(), unique.size());
+        for (Integer i : unique) if (i < 0) expected.add(i);
+        assertEquals(expected, unique);
+    }
+
+    @Test
+    public void testSpliteratorWhileMigrating() {
+        final HashIndex<Integer> index = new HashIndex<Integer>(true);
+        int n = 0;
+        while (n < 1000 || index.oldTable == null) index.putFirstTime(n++);
+        for (int i = 0; i < 10; i++) index.putFirstTime(n++);
+        assertNotNull(index.oldTable);
+        assertTrue(index.migrated > 0);
+
+        assertEquals(range(0, n), StreamSupport.stream(index.spliterator(), true).collect(Collectors.toSet()));
+        assertEquals(n, StreamSupport.stream(index.spliterator(), true).count());
+        assertNotNull(index.oldTable);
+    }
+
+    @Test
+    public void testFDSSHashIndex() {
+        final FDSSHashIndex<Integer> index = new FDSSHashIndex<Integer>(true) {
+            @Override
+            protected int hash(Integer entry) {
+                return entry;
+            }
+        };
+        final int n = 1000;
+        for (int i = 0; i < n; i++) index.putFirstTime(i);
+        while (index.oldTable == null) index.putFirstTime(index.size());
+        final int size = index.size();
+
+        final Set<Integer> snapshot = toSet(index.safeIterator());
+        assertEquals(range(0, size), snapshot);
+
+        int visited = 0;
+        final Iterator<Integer> iterator = index.iterator();
+        while (iterator.hasNext()) {
+            index.remove(iterator.next());
+            visited++;
+        }
+        assertEquals(size, visited);
+        assertTrue(index.isEmpty());
+    }
+
+    static int capacity(HashIndex<?> index) {
+        return Array.getLength(index.table);
+    }
+
+    static Set<Integer> range(int from, int to) {
+        final Set<Integer> result = new HashSet<Integer>();
+        for (int i = from; i < to; i++) result.add(i);
+        return result;
+    }
+
+    static Set<Integer> toSet(Iterator<Integer> iterator) {
+        final Set<Integer> result = new HashSet<Integer>();
+        while (iterator.hasNext()) assertTrue(result.add(iterator.next()));
+        return result;
+    }
+}
@@ -0,0 +1,59 @@
+package runtime.hash;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the {@link IntHashIndex} and {@link LongHashIndex}, which share
+ * their sizing and iteration through {@link PrimitiveHashIndex}.
+ */
+public class PrimitiveHashIndexTest {
+
+    @Test
+    public void testIntHashIndex() {
+        final IntHashIndex<Integer> index = new IntHashIndex<Integer>(2);
+        final int n = 1000;
+        for (int i = 0; i < n; i++) index.put(i * 7, i);
+        assertEquals(n, index.size());
+        for (int i = 0; i < n; i++) assertEquals(Integer.valueOf(i), index.get(i * 7));
+        assertNull(index.get(1));
+
+        // removing every other key shifts back the clusters
+        for (int i = 0; i < n; i += 2) assertEquals(Integer.valueOf(i), index.remove(i * 7));
+        assertNull(index.remove(0));
+        assertEquals(n / 2, index.size());
+        for (int i = 0; i < n; i++)
+            assertEquals(i % 2 == 0 ? null : Integer.valueOf(i), index.get(i * 7));
+
+        final Set<Integer> values = new HashSet<Integer>();
+        for (Integer value : index) assertTrue(values.add(value));
+        assertEquals(n / 2, values.size());
+
+        index.reset();
+        assertTrue(index.isEmpty());
+        assertEquals("{}", index.toString());
+    }
+
+    @Test
+    public void testLongHashIndex() {
+        final LongHashIndex<String> index = new LongHashIndex<String>();
+        final int n = 1000;
+        for (int i = 0; i < n; i++) index.put((long)i << 32 | (-i & 0xFFFFFFFFL), "v" + i);
+        assertEquals(n, index.size());
+        for (int i = 0; i < n; i++) assertEquals("v" + i, index.get((long)i << 32 | (-i & 0xFFFFFFFFL)));
+        assertNull(index.get(-1L));
+
+        for (int i = 0; i < n; i++) index.remove((long)i << 32 | (-i & 0xFFFFFFFFL));
+        assertTrue(index.isEmpty());
+        assertTrue(!index.iterator().hasNext());
+
+        index.put(Long.MAX_VALUE, "max");
+        assertEquals("{" + Long.MAX_VALUE + "=max}", index.toString());
+    }
+}
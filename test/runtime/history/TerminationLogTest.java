@@ -0,0 +1,169 @@
+package runtime.history;
+
+import static compiler.codeGeneration.HandlerCompiler.compile;
+import static compiler.codeGeneration.HandlerCompiler.lookup;
+import static compiler.codeGeneration.HandlerCompiler.tell;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import runtime.Constraint;
+import runtime.ConstraintSystem;
+import runtime.primitive.IntEqualitySolver;
+import runtime.primitive.IntEqualitySolverImpl;
+import runtime.primitive.LogicalInt;
+
+/**
+ * Tests that a {@link TerminationLog} answers exactly, and that its size
+ * only depends on the constraints that are still alive: long-lived
+ * constraints and identifiers that are never registered do not keep
+ * it from moving on.
+ */
+public class TerminationLogTest {
+
+    final static int N = 1000000;
+
+    final static int BOUND = TerminationLog.MAXIMUM_WINDOW + 64;
+
+    /**
+     * A few long-lived constraints, registered long before millions
+     * of short-lived ones, cost a word each.
+     */
+    @Test
+    public void testLongLivedAnchors() {
+        final TerminationLog log = new TerminationLog();
+        final long[] anchors = { 1, 2, 100, 64 * 1000 + 7, 500000 };
+        int a = 0;
+        for (long ID = 1; ID <= N; ID++) {
+            log.register(ID);
+            if (a < anchors.length && anchors[a] == ID) a++;
+            else log.add(ID);
+            assertTrue(log.getNbWords() <= BOUND);
+        }
+        for (long anchor : anchors) assertFalse(log.contains(anchor));
+        for (long anchor : anchors) {
+            assertTrue(log.contains(anchor - 1) || anchor == 2);
+            assertTrue(log.contains(anchor + 1) || anchor == 1);
+        }
+        assertTrue(log.contains(N / 2 + 1));
+        assertTrue(log.contains(-(N / 2 + 1)));
+        assertFalse(log.contains(-500000));
+
+        for (long anchor : anchors) log.add(anchor);
+        for (long anchor : anchors) assertTrue(log.contains(anchor));
+        assertEquals(N, log.getEpoch());
+    }
+
+    /**
+     * Identifiers that are never registered (e.g. those of handlers
+     * without propagation histories) count as removed.
+     */
+    @Test
+    public void testUnregisteredIdentifiers() {
+        final TerminationLog log = new TerminationLog();
+        for (long ID = 1; ID <= N; ID += 3) {
+            log.register(ID);
+            assertFalse(log.contains(ID));
+            assertTrue(log.contains(ID + 1));
+            log.add(ID);
+            assertTrue(log.getNbWords() <= BOUND);
+        }
+        for (long ID = 1; ID <= N; ID += 1001) assertTrue(log.contains(ID));
+        assertTrue(log.contains(2 * N));
+    }
+
+    /**
+     * Constraints that are alive when the window moves on are kept
+     * below it, and can still be registered and removed there.
+     */
+    @Test
+    public void testBelowWindow() {
+        final TerminationLog log = new TerminationLog();
+        for (long ID = 1; ID <= 64 * 10; ID += 2) log.register(ID);
+        log.register(64L * 4 * TerminationLog.MAXIMUM_WINDOW);
+        for (long ID = 1; ID <= 64 * 10; ID++) assertEquals(ID % 2 == 0, log.contains(ID));
+
+        log.register(64 * 20 + 1);
+        assertFalse(log.contains(64 * 20 + 1));
+        for (long ID = 1; ID <= 64 * 10; ID += 2) log.add(ID);
+        for (long ID = 1; ID <= 64 * 10; ID++) assertTrue(log.contains(ID));
+        assertFalse(log.contains(64 * 20 + 1));
+        assertEquals(TerminationLog.MAXIMUM_WINDOW + 1, log.getNbWords());
+    }
+
+    @Test
+    public void testAddAll() {
+        final TerminationLog log = new TerminationLog();
+        for (long ID = 1; ID <= 64 * 10; ID++) log.register(ID);
+        log.register(64L * 4 * TerminationLog.MAXIMUM_WINDOW);
+        for (long ID = 64L * 4 * TerminationLog.MAXIMUM_WINDOW + 1; ID <= 64L * 5 * TerminationLog.MAXIMUM_WINDOW; ID++)
+            log.register(ID);
+
+        assertFalse(log.containsAll(70, 130));
+        log.addAll(70, 130);
+        assertTrue(log.containsAll(70, 130));
+        assertFalse(log.contains(69));
+        assertFalse(log.contains(131));
+
+        final long first = 64L * 4 * TerminationLog.MAXIMUM_WINDOW + 3;
+        log.addAll(first, first + 1000);
+        assertTrue(log.containsAll(first, first + 1000));
+        assertFalse(log.containsAll(first - 1, first + 1000));
+        assertFalse(log.containsAll(first, first + 1001));
+
+        log.addAll(1, 64L * 5 * TerminationLog.MAXIMUM_WINDOW);
+        assertTrue(log.containsAll(1, 64L * 5 * TerminationLog.MAXIMUM_WINDOW));
+        assertEquals(3, log.getEpoch());
+    }
+
+    final static String CHURN =
+        "package test.log;\n" +
+        "import runtime.primitive.LogicalInt;\n" +
+        "public handler churn {\n" +
+        "  solver runtime.primitive.IntEqualitySolver builtin;\n" +
+        "  public constraint p(LogicalInt), q(LogicalInt, int), clear(int), fired(int);\n" +
+        "  rules {\n" +
+        "    local LogicalInt X, Y; local int N;\n" +
+        "    pq @ p(X), q(Y, N) ==> X == Y | fired(N);\n" +
+        "    clear @ clear(N), q(Y, N) <=> true;\n" +
+        "  }\n" +
+        "}\n";
+
+    @After
+    public void reset() {
+        ConstraintSystem.reset();
+    }
+
+    /**
+     * A handler with propagation histories registers its identifiers,
+     * and records the removal of its constraints: a constraint that stays
+     * in the store does not keep the log of its constraint system
+     * from moving on.
+     */
+    @Test
+    public void testHandler() throws Throwable {
+        final ConstraintSystem system = ConstraintSystem.get();
+        final IntEqualitySolver solver = new IntEqualitySolverImpl(system);
+        final Object handler = compile(CHURN).getConstructor(IntEqualitySolver.class).newInstance(solver);
+        final TerminationLog log = system.getTerminationLog();
+
+        final LogicalInt X = new LogicalInt();
+        tell(handler, "p", X);
+        final Constraint p = (Constraint)lookup(handler, "p").iterator().next();
+        for (int i = 0; i < N / 10; i++) {
+            tell(handler, "q", new LogicalInt(), i);
+            tell(handler, "clear", i);
+            assertTrue(log.getNbWords() <= BOUND);
+        }
+        assertFalse(log.contains(p.getConstraintId()));
+
+        final LogicalInt Y = new LogicalInt();
+        tell(handler, "q", Y, -1);
+        solver.tellEqual(X, 1);
+        solver.tellEqual(Y, 1);
+        assertEquals(1, lookup(handler, "fired").size());
+    }
+}